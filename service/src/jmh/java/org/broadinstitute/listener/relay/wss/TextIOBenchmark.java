@@ -0,0 +1,67 @@
+package org.broadinstitute.listener.relay.wss;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the per-message cost of calling the private text methods of the relay channel through a
+ * cached method handle with the previous lookup on every message. A stand-in channel with the same
+ * method signature is used, as the relay channel needs a live connection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TextIOBenchmark {
+  private static final MethodType WRITE_TYPE =
+      MethodType.methodType(
+          CompletableFuture.class,
+          Channel.class,
+          Object.class,
+          Duration.class,
+          boolean.class,
+          String.class);
+
+  private final Channel channel = new Channel();
+  private final String text = "{\"header\":{\"msg_type\":\"status\"},\"content\":{}}";
+  private final Duration timeout = Duration.ofSeconds(30);
+  private final MethodHandle writeMethod =
+      WebSocketTextIOUtils.findMethod(Channel.class, "writeAsync", WRITE_TYPE);
+
+  @Benchmark
+  public Object writeText_cachedHandle() throws Throwable {
+    return (CompletableFuture<?>)
+        writeMethod.invokeExact(channel, (Object) text, timeout, true, "");
+  }
+
+  @Benchmark
+  public Object writeText_reflectionPerMessage()
+      throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+    Method method =
+        channel
+            .getClass()
+            .getDeclaredMethod(
+                "writeAsync", Object.class, Duration.class, boolean.class, String.class);
+    method.setAccessible(true);
+    return method.invoke(channel, text, Duration.ofSeconds(30), true, "");
+  }
+
+  private static class Channel {
+    private final CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
+
+    private CompletableFuture<Void> writeAsync(
+        Object data, Duration timeout, boolean last, String mode) {
+      return written;
+    }
+  }
+}
@@ -4,34 +4,92 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.azure.relay.HybridConnectionListener;
 import com.microsoft.azure.relay.RelayConnectionStringBuilder;
 import com.microsoft.azure.relay.TokenProvider;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpClient.Version;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import org.apache.commons.lang3.StringUtils;
+import org.broadinstitute.listener.relay.health.StatusSnapshot;
 import org.broadinstitute.listener.relay.http.RelayedHttpRequestProcessor;
+import org.broadinstitute.listener.relay.inspectors.AccessLogWriter;
+import org.broadinstitute.listener.relay.inspectors.AuthCacheInvalidator;
+import org.broadinstitute.listener.relay.inspectors.AuthCacheSnapshot;
+import org.broadinstitute.listener.relay.inspectors.B2CTokenVerifier;
+import org.broadinstitute.listener.relay.inspectors.CircuitBreaker;
+import org.broadinstitute.listener.relay.inspectors.DateAccessedReporter;
+import org.broadinstitute.listener.relay.inspectors.GoogleTokenInfoClient;
 import org.broadinstitute.listener.relay.inspectors.InspectorLocator;
 import org.broadinstitute.listener.relay.inspectors.InspectorsProcessor;
+import org.broadinstitute.listener.relay.inspectors.JwksKeyProvider;
+import org.broadinstitute.listener.relay.inspectors.RedisSharedAuthCache;
 import org.broadinstitute.listener.relay.inspectors.RequestInspector;
+import org.broadinstitute.listener.relay.inspectors.RequestLogger;
 import org.broadinstitute.listener.relay.inspectors.SamResourceClient;
+import org.broadinstitute.listener.relay.inspectors.SessionTicketSigner;
 import org.broadinstitute.listener.relay.inspectors.SetDateAccessedInspectorOptions;
+import org.broadinstitute.listener.relay.inspectors.SharedAuthCache;
 import org.broadinstitute.listener.relay.inspectors.TokenChecker;
 import org.broadinstitute.listener.relay.transport.DefaultTargetResolver;
 import org.broadinstitute.listener.relay.transport.TargetResolver;
+import org.broadinstitute.listener.relay.wss.ByteBufferPool;
+import org.broadinstitute.listener.relay.wss.OutboundFlowControl;
+import org.broadinstitute.listener.relay.wss.PendingUpgrades;
+import org.broadinstitute.listener.relay.wss.TargetWebSocketClients;
+import org.broadinstitute.listener.relay.wss.WebSocketKeepAlive;
+import org.broadinstitute.listener.relay.wss.WebSocketLimits;
+import org.broadinstitute.listener.relay.wss.WebSocketTraffic;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
 
 @Configuration
 @EnableConfigurationProperties(ListenerProperties.class)
 @EnableCaching
 public class AppConfiguration {
+  private static final int DEFAULT_JWKS_REFRESH_INTERVAL_IN_SECONDS = 3600;
+  private static final int DEFAULT_SESSION_TICKET_TTL_IN_SECONDS = 300;
+  private static final int DEFAULT_SESSION_TICKET_KEY_ROTATION_INTERVAL_IN_SECONDS = 3600;
+  private static final int DEFAULT_SNAPSHOT_WRITE_INTERVAL_IN_SECONDS = 60;
+  private static final int DEFAULT_RESTORED_PERMISSION_MAX_AGE_IN_SECONDS = 300;
+  private static final int DEFAULT_REDIS_PORT = 6379;
+  private static final int DEFAULT_SHARED_CACHE_TIMEOUT_IN_MILLIS = 200;
+  private static final int DEFAULT_SHARED_CACHE_MAX_TTL_IN_SECONDS = 3600;
+  private static final int DEFAULT_STATUS_REFRESH_INTERVAL_IN_SECONDS = 5;
+  private static final int DEFAULT_ACCESS_LOG_QUEUE_CAPACITY = 10000;
+  private static final int DEFAULT_WEBSOCKET_OUTBOUND_QUEUE_CAPACITY = 16;
+  private static final int DEFAULT_WEBSOCKET_BUFFER_POOL_SIZE = 256;
+  private static final int WEBSOCKET_POOLED_BUFFER_SIZE = 16 * 1024;
+  private static final int DEFAULT_WEBSOCKET_WRITE_TIMEOUT_IN_SECONDS = 30;
+  private static final int DEFAULT_WEBSOCKET_CLIENT_COUNT = 1;
+  private static final int DEFAULT_WEBSOCKET_CLIENT_THREADS = 4;
+  private static final int DEFAULT_WEBSOCKET_CONNECT_TIMEOUT_IN_SECONDS = 10;
+  private static final int DEFAULT_WEBSOCKET_MAX_CONCURRENT_UPGRADES = 16;
+  private static final int DEFAULT_WEBSOCKET_UPGRADE_TTL_IN_SECONDS = 60;
+  private static final long MAXIMUM_PENDING_UPGRADES = 10000;
+  private static final int DEFAULT_WEBSOCKET_PING_INTERVAL_IN_SECONDS = 30;
+  private static final int DEFAULT_WEBSOCKET_IDLE_TIMEOUT_IN_SECONDS = 3600;
+  private static final int DEFAULT_WEBSOCKET_PONG_TIMEOUT_IN_SECONDS = 30;
+  private static final int DEFAULT_WEBSOCKET_SUMMARY_INTERVAL_IN_SECONDS = 300;
+  private static final int DEFAULT_WEBSOCKET_MAX_CONNECTIONS = 256;
+  private static final long DEFAULT_WEBSOCKET_BYTES_PER_SECOND_PER_CONNECTION = 8L * 1024 * 1024;
+  private static final long DEFAULT_WEBSOCKET_BYTES_PER_SECOND = 32L * 1024 * 1024;
+
   @Autowired private ListenerProperties properties;
 
   @Bean
@@ -41,13 +99,127 @@ public class AppConfiguration {
   }
 
   @Bean
-  public SamResourceClient samResourceClient(TokenChecker tokenChecker) {
+  public CircuitBreaker samCircuitBreaker(MeterRegistry meterRegistry) {
+    return newCircuitBreaker("sam", meterRegistry);
+  }
+
+  @Bean
+  public CircuitBreaker tokenInfoCircuitBreaker(MeterRegistry meterRegistry) {
+    return newCircuitBreaker("tokeninfo", meterRegistry);
+  }
+
+  @Bean
+  public GoogleTokenInfoClient googleTokenInfoClient(
+      @Qualifier("tokenInfoCircuitBreaker") CircuitBreaker tokenInfoCircuitBreaker) {
+    CircuitBreakerProperties breakerProperties = properties.getCircuitBreakerProperties();
+    Duration timeout = GoogleTokenInfoClient.DEFAULT_TIMEOUT;
+    if (breakerProperties != null && breakerProperties.tokenInfoTimeoutInSeconds() > 0) {
+      timeout = Duration.ofSeconds(breakerProperties.tokenInfoTimeoutInSeconds());
+    }
+    return new GoogleTokenInfoClient(timeout, tokenInfoCircuitBreaker);
+  }
+
+  @Bean
+  public TokenChecker tokenChecker(GoogleTokenInfoClient googleTokenInfoClient) {
+    TokenVerificationProperties verificationProperties =
+        properties.getTokenVerificationProperties();
+    if (verificationProperties == null || !verificationProperties.enabled()) {
+      return new TokenChecker(googleTokenInfoClient);
+    }
+
+    if (StringUtils.isBlank(verificationProperties.jwksUri())) {
+      throw new IllegalStateException(
+          "Token verification is enabled but the JWKS URI configuration is missing.");
+    }
+
+    int refreshIntervalInSeconds = verificationProperties.jwksRefreshIntervalInSeconds();
+    if (refreshIntervalInSeconds <= 0) {
+      refreshIntervalInSeconds = DEFAULT_JWKS_REFRESH_INTERVAL_IN_SECONDS;
+    }
+
+    var keyProvider =
+        new JwksKeyProvider(
+            verificationProperties.jwksUri(), Duration.ofSeconds(refreshIntervalInSeconds));
+    return new TokenChecker(
+        googleTokenInfoClient,
+        new B2CTokenVerifier(
+            keyProvider, verificationProperties.issuer(), verificationProperties.audience()));
+  }
+
+  @Bean
+  @ConditionalOnProperty(prefix = "listener.shared-cache-properties", name = "enabled")
+  public CircuitBreaker redisCircuitBreaker(MeterRegistry meterRegistry) {
+    return newCircuitBreaker("redis", meterRegistry);
+  }
+
+  @Bean
+  @ConditionalOnProperty(prefix = "listener.shared-cache-properties", name = "enabled")
+  public RedisSharedAuthCache sharedAuthCache(
+      @Qualifier("redisCircuitBreaker") CircuitBreaker redisCircuitBreaker,
+      MeterRegistry meterRegistry) {
+    SharedCacheProperties cacheProperties = properties.getSharedCacheProperties();
+    if (StringUtils.isBlank(cacheProperties.host())) {
+      throw new IllegalStateException(
+          "The shared auth cache is enabled but the host configuration is missing.");
+    }
+
+    int port = cacheProperties.port() > 0 ? cacheProperties.port() : DEFAULT_REDIS_PORT;
+    int timeoutInMillis =
+        cacheProperties.timeoutInMillis() > 0
+            ? cacheProperties.timeoutInMillis()
+            : DEFAULT_SHARED_CACHE_TIMEOUT_IN_MILLIS;
+    int maxTtlInSeconds =
+        cacheProperties.maxTtlInSeconds() > 0
+            ? cacheProperties.maxTtlInSeconds()
+            : DEFAULT_SHARED_CACHE_MAX_TTL_IN_SECONDS;
+
+    var jedisPool =
+        new JedisPool(
+            new JedisPoolConfig(),
+            cacheProperties.host(),
+            port,
+            timeoutInMillis,
+            StringUtils.defaultIfBlank(cacheProperties.password(), null),
+            cacheProperties.ssl());
+    // permissions are shared by the replicas of the same resource only
+    SamInspectorProperties samProperties = properties.getSamInspectorProperties();
+    var keyPrefix =
+        String.format(
+            "listener:permission:%s:%s:%s:",
+            samProperties.samResourceType(),
+            samProperties.samResourceId(),
+            samProperties.samAction());
+
+    return new RedisSharedAuthCache(
+        jedisPool,
+        keyPrefix,
+        Duration.ofSeconds(maxTtlInSeconds),
+        redisCircuitBreaker,
+        meterRegistry);
+  }
+
+  @Bean
+  public SamResourceClient samResourceClient(
+      TokenChecker tokenChecker,
+      @Qualifier("samCircuitBreaker") CircuitBreaker samCircuitBreaker,
+      MeterRegistry meterRegistry,
+      Optional<SharedAuthCache> sharedAuthCache) {
+    CircuitBreakerProperties breakerProperties = properties.getCircuitBreakerProperties();
+    Duration timeout = SamResourceClient.DEFAULT_TIMEOUT;
+    if (breakerProperties != null && breakerProperties.samTimeoutInSeconds() > 0) {
+      timeout = Duration.ofSeconds(breakerProperties.samTimeoutInSeconds());
+    }
+
     return new SamResourceClient(
         properties.getSamInspectorProperties().samUrl(),
         properties.getSamInspectorProperties().samResourceId(),
         properties.getSamInspectorProperties().samResourceType(),
         tokenChecker,
-        properties.getSamInspectorProperties().samAction());
+        properties.getSamInspectorProperties().samAction(),
+        timeout,
+        samCircuitBreaker,
+        meterRegistry,
+        sharedAuthCache.orElse(null));
   }
 
   @Bean
@@ -57,23 +229,230 @@ public class AppConfiguration {
         properties.getSetDateAccessedInspectorProperties().workspaceId(),
         properties.getSetDateAccessedInspectorProperties().callWindowInSeconds(),
         properties.getSetDateAccessedInspectorProperties().runtimeName(),
-        HttpClient.newBuilder().version(Version.HTTP_1_1).build());
+        HttpClient.newBuilder()
+            .version(Version.HTTP_1_1)
+            .connectTimeout(DateAccessedReporter.TIMEOUT)
+            .build());
+  }
+
+  @Bean
+  public AuthCacheInvalidator authCacheInvalidator(
+      CacheManager cacheManager,
+      TokenChecker tokenChecker,
+      SamResourceClient samResourceClient,
+      Optional<SessionTicketSigner> sessionTicketSigner,
+      Optional<SharedAuthCache> sharedAuthCache) {
+    return new AuthCacheInvalidator(
+        cacheManager, tokenChecker, samResourceClient, sessionTicketSigner, sharedAuthCache);
+  }
+
+  @Bean
+  @ConditionalOnProperty(prefix = "listener.cache-snapshot-properties", name = "enabled")
+  public AuthCacheSnapshot authCacheSnapshot(
+      TokenChecker tokenChecker, SamResourceClient samResourceClient) {
+    CacheSnapshotProperties snapshotProperties = properties.getCacheSnapshotProperties();
+    if (StringUtils.isBlank(snapshotProperties.path())) {
+      throw new IllegalStateException(
+          "The auth cache snapshot is enabled but the snapshot path configuration is missing.");
+    }
+
+    int writeIntervalInSeconds = snapshotProperties.writeIntervalInSeconds();
+    if (writeIntervalInSeconds <= 0) {
+      writeIntervalInSeconds = DEFAULT_SNAPSHOT_WRITE_INTERVAL_IN_SECONDS;
+    }
+    int restoredPermissionMaxAgeInSeconds = snapshotProperties.restoredPermissionMaxAgeInSeconds();
+    if (restoredPermissionMaxAgeInSeconds <= 0) {
+      restoredPermissionMaxAgeInSeconds = DEFAULT_RESTORED_PERMISSION_MAX_AGE_IN_SECONDS;
+    }
+
+    return new AuthCacheSnapshot(
+        Path.of(snapshotProperties.path()),
+        Duration.ofSeconds(writeIntervalInSeconds),
+        Duration.ofSeconds(restoredPermissionMaxAgeInSeconds),
+        tokenChecker,
+        samResourceClient);
+  }
+
+  @Bean
+  @ConditionalOnProperty(prefix = "listener.session-ticket-properties", name = "enabled")
+  public SessionTicketSigner sessionTicketSigner() {
+    SessionTicketProperties ticketProperties = properties.getSessionTicketProperties();
+    String resourceId = properties.getSamInspectorProperties().samResourceId();
+    if (StringUtils.isBlank(resourceId)) {
+      throw new IllegalStateException(
+          "Session tickets are enabled but the Sam resource id configuration is missing.");
+    }
+
+    int ticketTtlInSeconds = ticketProperties.ticketTtlInSeconds();
+    if (ticketTtlInSeconds <= 0) {
+      ticketTtlInSeconds = DEFAULT_SESSION_TICKET_TTL_IN_SECONDS;
+    }
+    int keyRotationIntervalInSeconds = ticketProperties.keyRotationIntervalInSeconds();
+    if (keyRotationIntervalInSeconds <= 0) {
+      keyRotationIntervalInSeconds = DEFAULT_SESSION_TICKET_KEY_ROTATION_INTERVAL_IN_SECONDS;
+    }
+
+    return new SessionTicketSigner(
+        resourceId,
+        Duration.ofSeconds(ticketTtlInSeconds),
+        Duration.ofSeconds(keyRotationIntervalInSeconds));
+  }
+
+  @Bean
+  public StatusSnapshot statusSnapshot(HealthEndpoint healthEndpoint, ObjectMapper objectMapper) {
+    int refreshIntervalInSeconds = properties.getStatusRefreshIntervalInSeconds();
+    if (refreshIntervalInSeconds <= 0) {
+      refreshIntervalInSeconds = DEFAULT_STATUS_REFRESH_INTERVAL_IN_SECONDS;
+    }
+
+    return new StatusSnapshot(
+        healthEndpoint, objectMapper, Duration.ofSeconds(refreshIntervalInSeconds));
+  }
+
+  @Bean
+  public AccessLogWriter accessLogWriter(TokenChecker tokenChecker, MeterRegistry meterRegistry) {
+    int queueCapacity = properties.getAccessLogQueueCapacity();
+    if (queueCapacity <= 0) {
+      queueCapacity = DEFAULT_ACCESS_LOG_QUEUE_CAPACITY;
+    }
+
+    return new AccessLogWriter(new RequestLogger(tokenChecker), queueCapacity, meterRegistry);
+  }
+
+  @Bean
+  public OutboundFlowControl outboundFlowControl(MeterRegistry meterRegistry) {
+    int queueCapacity = properties.getWebSocketOutboundQueueCapacity();
+    if (queueCapacity <= 0) {
+      queueCapacity = DEFAULT_WEBSOCKET_OUTBOUND_QUEUE_CAPACITY;
+    }
+    int bufferPoolSize = properties.getWebSocketBufferPoolSize();
+    if (bufferPoolSize <= 0) {
+      bufferPoolSize = DEFAULT_WEBSOCKET_BUFFER_POOL_SIZE;
+    }
+
+    int writeTimeoutInSeconds = properties.getWebSocketWriteTimeoutInSeconds();
+    if (writeTimeoutInSeconds <= 0) {
+      writeTimeoutInSeconds = DEFAULT_WEBSOCKET_WRITE_TIMEOUT_IN_SECONDS;
+    }
+
+    return new OutboundFlowControl(
+        queueCapacity,
+        new ByteBufferPool(WEBSOCKET_POOLED_BUFFER_SIZE, bufferPoolSize),
+        Duration.ofSeconds(writeTimeoutInSeconds),
+        meterRegistry);
+  }
+
+  @Bean
+  public TargetWebSocketClients targetWebSocketClients(MeterRegistry meterRegistry) {
+    int clientCount = properties.getWebSocketClientCount();
+    if (clientCount <= 0) {
+      clientCount = DEFAULT_WEBSOCKET_CLIENT_COUNT;
+    }
+    int threadsPerClient = properties.getWebSocketClientThreads();
+    if (threadsPerClient <= 0) {
+      threadsPerClient = DEFAULT_WEBSOCKET_CLIENT_THREADS;
+    }
+
+    int connectTimeoutInSeconds = properties.getWebSocketConnectTimeoutInSeconds();
+    if (connectTimeoutInSeconds <= 0) {
+      connectTimeoutInSeconds = DEFAULT_WEBSOCKET_CONNECT_TIMEOUT_IN_SECONDS;
+    }
+    int maxConcurrentUpgrades = properties.getWebSocketMaxConcurrentUpgrades();
+    if (maxConcurrentUpgrades <= 0) {
+      maxConcurrentUpgrades = DEFAULT_WEBSOCKET_MAX_CONCURRENT_UPGRADES;
+    }
+
+    return new TargetWebSocketClients(
+        clientCount,
+        threadsPerClient,
+        Duration.ofSeconds(connectTimeoutInSeconds),
+        maxConcurrentUpgrades,
+        meterRegistry);
+  }
+
+  @Bean
+  public PendingUpgrades pendingUpgrades(
+      WebSocketLimits webSocketLimits, MeterRegistry meterRegistry) {
+    int ttlInSeconds = properties.getWebSocketUpgradeTtlInSeconds();
+    if (ttlInSeconds <= 0) {
+      ttlInSeconds = DEFAULT_WEBSOCKET_UPGRADE_TTL_IN_SECONDS;
+    }
+
+    return new PendingUpgrades(
+        Duration.ofSeconds(ttlInSeconds),
+        MAXIMUM_PENDING_UPGRADES,
+        webSocketLimits,
+        meterRegistry);
+  }
+
+  @Bean
+  public WebSocketKeepAlive webSocketKeepAlive(MeterRegistry meterRegistry) {
+    int pingIntervalInSeconds = properties.getWebSocketPingIntervalInSeconds();
+    if (pingIntervalInSeconds <= 0) {
+      pingIntervalInSeconds = DEFAULT_WEBSOCKET_PING_INTERVAL_IN_SECONDS;
+    }
+    int idleTimeoutInSeconds = properties.getWebSocketIdleTimeoutInSeconds();
+    if (idleTimeoutInSeconds <= 0) {
+      idleTimeoutInSeconds = DEFAULT_WEBSOCKET_IDLE_TIMEOUT_IN_SECONDS;
+    }
+    int pongTimeoutInSeconds = properties.getWebSocketPongTimeoutInSeconds();
+    if (pongTimeoutInSeconds <= 0) {
+      pongTimeoutInSeconds = DEFAULT_WEBSOCKET_PONG_TIMEOUT_IN_SECONDS;
+    }
+    int summaryIntervalInSeconds = properties.getWebSocketSummaryIntervalInSeconds();
+    if (summaryIntervalInSeconds <= 0) {
+      summaryIntervalInSeconds = DEFAULT_WEBSOCKET_SUMMARY_INTERVAL_IN_SECONDS;
+    }
+
+    return new WebSocketKeepAlive(
+        Duration.ofSeconds(pingIntervalInSeconds),
+        Duration.ofSeconds(idleTimeoutInSeconds),
+        Duration.ofSeconds(pongTimeoutInSeconds),
+        Duration.ofSeconds(summaryIntervalInSeconds),
+        meterRegistry);
+  }
+
+  @Bean
+  public WebSocketLimits webSocketLimits(MeterRegistry meterRegistry) {
+    int maxConnections = properties.getWebSocketMaxConnections();
+    if (maxConnections <= 0) {
+      maxConnections = DEFAULT_WEBSOCKET_MAX_CONNECTIONS;
+    }
+    long bytesPerSecondPerConnection = properties.getWebSocketBytesPerSecondPerConnection();
+    if (bytesPerSecondPerConnection <= 0) {
+      bytesPerSecondPerConnection = DEFAULT_WEBSOCKET_BYTES_PER_SECOND_PER_CONNECTION;
+    }
+    long bytesPerSecond = properties.getWebSocketBytesPerSecond();
+    if (bytesPerSecond <= 0) {
+      bytesPerSecond = DEFAULT_WEBSOCKET_BYTES_PER_SECOND;
+    }
+
+    return new WebSocketLimits(
+        maxConnections, bytesPerSecondPerConnection, bytesPerSecond, meterRegistry);
+  }
+
+  @Bean
+  public WebSocketTraffic webSocketTraffic(MeterRegistry meterRegistry) {
+    return new WebSocketTraffic(meterRegistry);
   }
 
   @Bean
   public RelayedHttpRequestProcessor relayedHttpRequestProcessor(
       TargetResolver targetResolver,
       TokenChecker tokenChecker,
-      HealthEndpoint healthEndpoint,
-      ObjectMapper objectMapper,
-      SamResourceClient samResourceClient) {
+      StatusSnapshot statusSnapshot,
+      AccessLogWriter accessLogWriter,
+      SamResourceClient samResourceClient,
+      Optional<SessionTicketSigner> sessionTicketSigner) {
     return new RelayedHttpRequestProcessor(
+        HttpClient.newBuilder().version(Version.HTTP_1_1).build(),
         targetResolver,
         properties.getCorsSupportProperties(),
         tokenChecker,
-        healthEndpoint,
-        objectMapper,
-        samResourceClient);
+        statusSnapshot,
+        accessLogWriter,
+        samResourceClient,
+        sessionTicketSigner.orElse(null));
   }
 
   @Bean
@@ -109,4 +488,17 @@ public class AppConfiguration {
 
     return new InspectorsProcessor(inspectors);
   }
+
+  private CircuitBreaker newCircuitBreaker(String name, MeterRegistry meterRegistry) {
+    CircuitBreakerProperties breakerProperties = properties.getCircuitBreakerProperties();
+    int failureThreshold = CircuitBreaker.DEFAULT_FAILURE_THRESHOLD;
+    Duration openDuration = CircuitBreaker.DEFAULT_OPEN_DURATION;
+    if (breakerProperties != null && breakerProperties.failureThreshold() > 0) {
+      failureThreshold = breakerProperties.failureThreshold();
+    }
+    if (breakerProperties != null && breakerProperties.openStateDurationInSeconds() > 0) {
+      openDuration = Duration.ofSeconds(breakerProperties.openStateDurationInSeconds());
+    }
+    return new CircuitBreaker(name, failureThreshold, openDuration, meterRegistry);
+  }
 }
@@ -0,0 +1,7 @@
+package org.broadinstitute.listener.config;
+
+public record CacheSnapshotProperties(
+    boolean enabled,
+    String path,
+    int writeIntervalInSeconds,
+    int restoredPermissionMaxAgeInSeconds) {}
@@ -0,0 +1,7 @@
+package org.broadinstitute.listener.config;
+
+public record CircuitBreakerProperties(
+    int failureThreshold,
+    int openStateDurationInSeconds,
+    int samTimeoutInSeconds,
+    int tokenInfoTimeoutInSeconds) {}
@@ -9,10 +9,32 @@ public class ListenerProperties {
 
   private String relayConnectionString;
   private String relayConnectionName;
+  private int statusRefreshIntervalInSeconds;
+  private int accessLogQueueCapacity;
+  private int webSocketOutboundQueueCapacity;
+  private int webSocketBufferPoolSize;
+  private int webSocketWriteTimeoutInSeconds;
+  private int webSocketClientCount;
+  private int webSocketClientThreads;
+  private int webSocketConnectTimeoutInSeconds;
+  private int webSocketMaxConcurrentUpgrades;
+  private int webSocketUpgradeTtlInSeconds;
+  private int webSocketPingIntervalInSeconds;
+  private int webSocketIdleTimeoutInSeconds;
+  private int webSocketPongTimeoutInSeconds;
+  private int webSocketSummaryIntervalInSeconds;
+  private int webSocketMaxConnections;
+  private long webSocketBytesPerSecondPerConnection;
+  private long webSocketBytesPerSecond;
   private TargetProperties targetProperties;
   private SamInspectorProperties samInspectorProperties;
   private CorsSupportProperties corsSupportProperties;
   private SetDateAccessedInspectorProperties setDateAccessedInspectorProperties;
+  private TokenVerificationProperties tokenVerificationProperties;
+  private SessionTicketProperties sessionTicketProperties;
+  private CircuitBreakerProperties circuitBreakerProperties;
+  private CacheSnapshotProperties cacheSnapshotProperties;
+  private SharedCacheProperties sharedCacheProperties;
 
   public CorsSupportProperties getCorsSupportProperties() {
     return corsSupportProperties;
@@ -48,6 +70,142 @@ public class ListenerProperties {
     this.relayConnectionName = relayConnectionName;
   }
 
+  public int getStatusRefreshIntervalInSeconds() {
+    return statusRefreshIntervalInSeconds;
+  }
+
+  public void setStatusRefreshIntervalInSeconds(int statusRefreshIntervalInSeconds) {
+    this.statusRefreshIntervalInSeconds = statusRefreshIntervalInSeconds;
+  }
+
+  public int getAccessLogQueueCapacity() {
+    return accessLogQueueCapacity;
+  }
+
+  public void setAccessLogQueueCapacity(int accessLogQueueCapacity) {
+    this.accessLogQueueCapacity = accessLogQueueCapacity;
+  }
+
+  public int getWebSocketOutboundQueueCapacity() {
+    return webSocketOutboundQueueCapacity;
+  }
+
+  public void setWebSocketOutboundQueueCapacity(int webSocketOutboundQueueCapacity) {
+    this.webSocketOutboundQueueCapacity = webSocketOutboundQueueCapacity;
+  }
+
+  public int getWebSocketBufferPoolSize() {
+    return webSocketBufferPoolSize;
+  }
+
+  public void setWebSocketBufferPoolSize(int webSocketBufferPoolSize) {
+    this.webSocketBufferPoolSize = webSocketBufferPoolSize;
+  }
+
+  public int getWebSocketWriteTimeoutInSeconds() {
+    return webSocketWriteTimeoutInSeconds;
+  }
+
+  public void setWebSocketWriteTimeoutInSeconds(int webSocketWriteTimeoutInSeconds) {
+    this.webSocketWriteTimeoutInSeconds = webSocketWriteTimeoutInSeconds;
+  }
+
+  public int getWebSocketClientCount() {
+    return webSocketClientCount;
+  }
+
+  public void setWebSocketClientCount(int webSocketClientCount) {
+    this.webSocketClientCount = webSocketClientCount;
+  }
+
+  public int getWebSocketClientThreads() {
+    return webSocketClientThreads;
+  }
+
+  public void setWebSocketClientThreads(int webSocketClientThreads) {
+    this.webSocketClientThreads = webSocketClientThreads;
+  }
+
+  public int getWebSocketConnectTimeoutInSeconds() {
+    return webSocketConnectTimeoutInSeconds;
+  }
+
+  public void setWebSocketConnectTimeoutInSeconds(int webSocketConnectTimeoutInSeconds) {
+    this.webSocketConnectTimeoutInSeconds = webSocketConnectTimeoutInSeconds;
+  }
+
+  public int getWebSocketMaxConcurrentUpgrades() {
+    return webSocketMaxConcurrentUpgrades;
+  }
+
+  public void setWebSocketMaxConcurrentUpgrades(int webSocketMaxConcurrentUpgrades) {
+    this.webSocketMaxConcurrentUpgrades = webSocketMaxConcurrentUpgrades;
+  }
+
+  public int getWebSocketUpgradeTtlInSeconds() {
+    return webSocketUpgradeTtlInSeconds;
+  }
+
+  public void setWebSocketUpgradeTtlInSeconds(int webSocketUpgradeTtlInSeconds) {
+    this.webSocketUpgradeTtlInSeconds = webSocketUpgradeTtlInSeconds;
+  }
+
+  public int getWebSocketPingIntervalInSeconds() {
+    return webSocketPingIntervalInSeconds;
+  }
+
+  public void setWebSocketPingIntervalInSeconds(int webSocketPingIntervalInSeconds) {
+    this.webSocketPingIntervalInSeconds = webSocketPingIntervalInSeconds;
+  }
+
+  public int getWebSocketIdleTimeoutInSeconds() {
+    return webSocketIdleTimeoutInSeconds;
+  }
+
+  public void setWebSocketIdleTimeoutInSeconds(int webSocketIdleTimeoutInSeconds) {
+    this.webSocketIdleTimeoutInSeconds = webSocketIdleTimeoutInSeconds;
+  }
+
+  public int getWebSocketPongTimeoutInSeconds() {
+    return webSocketPongTimeoutInSeconds;
+  }
+
+  public void setWebSocketPongTimeoutInSeconds(int webSocketPongTimeoutInSeconds) {
+    this.webSocketPongTimeoutInSeconds = webSocketPongTimeoutInSeconds;
+  }
+
+  public int getWebSocketSummaryIntervalInSeconds() {
+    return webSocketSummaryIntervalInSeconds;
+  }
+
+  public void setWebSocketSummaryIntervalInSeconds(int webSocketSummaryIntervalInSeconds) {
+    this.webSocketSummaryIntervalInSeconds = webSocketSummaryIntervalInSeconds;
+  }
+
+  public int getWebSocketMaxConnections() {
+    return webSocketMaxConnections;
+  }
+
+  public void setWebSocketMaxConnections(int webSocketMaxConnections) {
+    this.webSocketMaxConnections = webSocketMaxConnections;
+  }
+
+  public long getWebSocketBytesPerSecondPerConnection() {
+    return webSocketBytesPerSecondPerConnection;
+  }
+
+  public void setWebSocketBytesPerSecondPerConnection(long webSocketBytesPerSecondPerConnection) {
+    this.webSocketBytesPerSecondPerConnection = webSocketBytesPerSecondPerConnection;
+  }
+
+  public long getWebSocketBytesPerSecond() {
+    return webSocketBytesPerSecond;
+  }
+
+  public void setWebSocketBytesPerSecond(long webSocketBytesPerSecond) {
+    this.webSocketBytesPerSecond = webSocketBytesPerSecond;
+  }
+
   public TargetProperties getTargetProperties() {
     return targetProperties;
   }
@@ -72,4 +230,45 @@ public class ListenerProperties {
       SetDateAccessedInspectorProperties setDateAccessedInspectorProperties) {
     this.setDateAccessedInspectorProperties = setDateAccessedInspectorProperties;
   }
+
+  public TokenVerificationProperties getTokenVerificationProperties() {
+    return tokenVerificationProperties;
+  }
+
+  public void setTokenVerificationProperties(
+      TokenVerificationProperties tokenVerificationProperties) {
+    this.tokenVerificationProperties = tokenVerificationProperties;
+  }
+
+  public SessionTicketProperties getSessionTicketProperties() {
+    return sessionTicketProperties;
+  }
+
+  public void setSessionTicketProperties(SessionTicketProperties sessionTicketProperties) {
+    this.sessionTicketProperties = sessionTicketProperties;
+  }
+
+  public CircuitBreakerProperties getCircuitBreakerProperties() {
+    return circuitBreakerProperties;
+  }
+
+  public void setCircuitBreakerProperties(CircuitBreakerProperties circuitBreakerProperties) {
+    this.circuitBreakerProperties = circuitBreakerProperties;
+  }
+
+  public CacheSnapshotProperties getCacheSnapshotProperties() {
+    return cacheSnapshotProperties;
+  }
+
+  public void setCacheSnapshotProperties(CacheSnapshotProperties cacheSnapshotProperties) {
+    this.cacheSnapshotProperties = cacheSnapshotProperties;
+  }
+
+  public SharedCacheProperties getSharedCacheProperties() {
+    return sharedCacheProperties;
+  }
+
+  public void setSharedCacheProperties(SharedCacheProperties sharedCacheProperties) {
+    this.sharedCacheProperties = sharedCacheProperties;
+  }
 }
@@ -0,0 +1,4 @@
+package org.broadinstitute.listener.config;
+
+public record SessionTicketProperties(
+    boolean enabled, int ticketTtlInSeconds, int keyRotationIntervalInSeconds) {}
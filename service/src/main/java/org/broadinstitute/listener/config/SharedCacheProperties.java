@@ -0,0 +1,10 @@
+package org.broadinstitute.listener.config;
+
+public record SharedCacheProperties(
+    boolean enabled,
+    String host,
+    int port,
+    String password,
+    boolean ssl,
+    int timeoutInMillis,
+    int maxTtlInSeconds) {}
@@ -0,0 +1,8 @@
+package org.broadinstitute.listener.config;
+
+public record TokenVerificationProperties(
+    boolean enabled,
+    String jwksUri,
+    String issuer,
+    String audience,
+    int jwksRefreshIntervalInSeconds) {}
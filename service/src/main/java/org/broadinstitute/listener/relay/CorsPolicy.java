@@ -0,0 +1,168 @@
+package org.broadinstitute.listener.relay;
+
+import static com.google.common.net.HttpHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS;
+import static com.google.common.net.HttpHeaders.ACCESS_CONTROL_ALLOW_HEADERS;
+import static com.google.common.net.HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS;
+import static com.google.common.net.HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN;
+import static com.google.common.net.HttpHeaders.ACCESS_CONTROL_MAX_AGE;
+import static com.google.common.net.HttpHeaders.CONTENT_SECURITY_POLICY;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.broadinstitute.listener.config.CorsSupportProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The CORS configuration compiled once at startup.
+ *
+ * <p>Valid hosts are kept in a hash set. An entry of the form {@code *.example.com} allows every
+ * origin whose host ends with {@code .example.com}, on any port, and {@code *} allows every
+ * origin. Other entries are compared with the authority of the origin, port included. The
+ * decision for an origin, together with the CORS headers of its responses, is computed once and
+ * cached, so responses only copy ready-made headers.
+ */
+public class CorsPolicy {
+  static final int DECISIONS_MAXIMUM_SIZE = 1000;
+
+  private static final String ANY_HOST = "*";
+  private static final String WILDCARD_PREFIX = "*.";
+  private static final Logger logger = LoggerFactory.getLogger(CorsPolicy.class);
+
+  private final CorsSupportProperties properties;
+  private final boolean allowsAnyHost;
+  private final Set<String> hosts;
+  private final List<String> hostSuffixes;
+  // Keyed by origin. Empty for denied origins.
+  private final Cache<String, Optional<Map<String, String>>> decisions;
+
+  private CorsPolicy(CorsSupportProperties properties) {
+    this.properties = properties;
+    var exactHosts = new HashSet<String>();
+    var suffixes = new ArrayList<String>();
+    var anyHost = false;
+    var validHosts = properties.validHosts() == null ? List.<String>of() : properties.validHosts();
+    for (String host : validHosts) {
+      if (host.equals(ANY_HOST)) {
+        anyHost = true;
+      } else if (host.startsWith(WILDCARD_PREFIX)) {
+        suffixes.add(host.substring(1));
+      } else if (!host.isEmpty()) {
+        exactHosts.add(host);
+      }
+    }
+    this.allowsAnyHost = anyHost;
+    this.hosts = Set.copyOf(exactHosts);
+    this.hostSuffixes = List.copyOf(suffixes);
+    this.decisions = Caffeine.newBuilder().maximumSize(DECISIONS_MAXIMUM_SIZE).build();
+  }
+
+  public static CorsPolicy compile(CorsSupportProperties properties) {
+    return new CorsPolicy(properties);
+  }
+
+  public CorsSupportProperties getProperties() {
+    return properties;
+  }
+
+  /**
+   * @param origin value of the Origin header; null or empty if the request has none
+   * @return true if the origin is allowed
+   */
+  public boolean isAllowed(String origin) {
+    return getCorsHeaders(origin).isPresent();
+  }
+
+  /**
+   * Adds the CORS headers for the origin to the response headers, without replacing the headers
+   * already set.
+   *
+   * @param responseHeaders response headers
+   * @param origin value of the Origin header; null or empty if the request has none
+   * @return true if the origin is allowed; false if it is not, and no header was added.
+   */
+  public boolean writeHeaders(Map<String, String> responseHeaders, String origin) {
+    var corsHeaders = getCorsHeaders(origin);
+    if (corsHeaders.isEmpty()) {
+      return false;
+    }
+
+    corsHeaders.get().forEach(responseHeaders::putIfAbsent);
+    return true;
+  }
+
+  /**
+   * Adds the CORS headers for the origin to the response headers, without replacing the headers
+   * already set.
+   *
+   * @return true if the origin is allowed; false if it is not, and no header was added.
+   */
+  public boolean writeHeaders(RelayHeaders responseHeaders, String origin) {
+    var corsHeaders = getCorsHeaders(origin);
+    if (corsHeaders.isEmpty()) {
+      return false;
+    }
+
+    corsHeaders.get().forEach(responseHeaders::setIfAbsent);
+    return true;
+  }
+
+  private Optional<Map<String, String>> getCorsHeaders(String origin) {
+    return decisions.get(origin == null ? "" : origin, this::decide);
+  }
+
+  private Optional<Map<String, String>> decide(String origin) {
+    if (!origin.isEmpty() && !allowsAnyHost) {
+      var originUrl = getOriginUrl(origin);
+      if (originUrl.isEmpty() || !isValidHost(originUrl.get())) {
+        return Optional.empty();
+      }
+    }
+
+    var headers = new LinkedHashMap<String, String>();
+    headers.put(ACCESS_CONTROL_ALLOW_METHODS, properties.preflightMethods());
+    headers.put(ACCESS_CONTROL_ALLOW_ORIGIN, origin.isEmpty() ? ANY_HOST : origin);
+    headers.put(ACCESS_CONTROL_ALLOW_CREDENTIALS, "true");
+    headers.put(CONTENT_SECURITY_POLICY, properties.contentSecurityPolicy());
+    headers.put(ACCESS_CONTROL_ALLOW_HEADERS, properties.allowHeaders());
+    headers.put(ACCESS_CONTROL_MAX_AGE, properties.maxAge());
+    // configured values may be missing, so the headers may hold nulls
+    return Optional.of(Collections.unmodifiableMap(headers));
+  }
+
+  /**
+   * @param origin value of the Origin header
+   * @return the URL of the origin; empty if the origin is not a valid URL.
+   */
+  static Optional<URL> getOriginUrl(String origin) {
+    try {
+      return Optional.of(new URL(origin));
+    } catch (MalformedURLException e) {
+      logger.warn("Error parsing origin {}: {}", origin, e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  private boolean isValidHost(URL originUrl) {
+    if (originUrl.getAuthority() != null && hosts.contains(originUrl.getAuthority())) {
+      return true;
+    }
+    // the port is not part of the suffix, so it is left out of the comparison
+    for (String suffix : hostSuffixes) {
+      if (originUrl.getHost().endsWith(suffix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
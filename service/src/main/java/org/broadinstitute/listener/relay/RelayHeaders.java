@@ -0,0 +1,361 @@
+package org.broadinstitute.listener.relay;
+
+import static com.google.common.net.HttpHeaders.SET_COOKIE;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * HTTP headers as an ordered list of name-value pairs. Names are case-insensitive and a name may
+ * have several values, e.g. one per Set-Cookie header of a response.
+ *
+ * <p>Names and values are kept in two parallel arrays. A request has a few dozen headers at most,
+ * so lookups scan the arrays instead of hashing, and the headers of a request are built once and
+ * passed from the relay listener to the target without intermediate copies.
+ *
+ * <p>Instances created by {@link #of(Map)} are read-only. Instances are not synchronized.
+ */
+public final class RelayHeaders {
+  private static final int DEFAULT_CAPACITY = 16;
+  private static final int MAX_SPELLINGS = 64;
+
+  private final boolean readOnly;
+  private String[] names;
+  private String[] values;
+  private int size;
+  private Map<String, String> mapView;
+
+  public RelayHeaders() {
+    this(DEFAULT_CAPACITY, false);
+  }
+
+  private RelayHeaders(int capacity, boolean readOnly) {
+    this.names = new String[capacity];
+    this.values = new String[capacity];
+    this.readOnly = readOnly;
+  }
+
+  /**
+   * Creates read-only headers from a single-valued map, such as the headers of a relayed request.
+   *
+   * @param headers headers; null is treated as no headers
+   */
+  public static RelayHeaders of(Map<String, String> headers) {
+    if (headers == null) {
+      return new RelayHeaders(0, true);
+    }
+
+    var relayHeaders = new RelayHeaders(headers.size(), true);
+    headers.forEach(relayHeaders::append);
+    return relayHeaders;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public String getName(int index) {
+    return names[checkIndex(index)];
+  }
+
+  public String getValue(int index) {
+    return values[checkIndex(index)];
+  }
+
+  public boolean contains(String name) {
+    return indexOf(name, 0) >= 0;
+  }
+
+  /**
+   * @param name header name, in any case
+   * @return the first value of the header; null if the header is not present.
+   */
+  public String getFirst(String name) {
+    var index = indexOf(name, 0);
+    return index < 0 ? null : values[index];
+  }
+
+  /**
+   * @param name header name, in any case
+   * @return all the values of the header, in order; empty if the header is not present.
+   */
+  public List<String> getAll(String name) {
+    var all = new ArrayList<String>(1);
+    for (int i = indexOf(name, 0); i >= 0; i = indexOf(name, i + 1)) {
+      all.add(values[i]);
+    }
+    return all;
+  }
+
+  /** Adds a value to the header, keeping the values already present. */
+  public void add(String name, String value) {
+    checkWritable();
+    append(name, value);
+  }
+
+  /** Replaces all the values of the header with the given value. */
+  public void set(String name, String value) {
+    remove(name);
+    append(name, value);
+  }
+
+  /**
+   * Adds the header if it is not present.
+   *
+   * @return true if the header was added.
+   */
+  public boolean setIfAbsent(String name, String value) {
+    checkWritable();
+    if (contains(name)) {
+      return false;
+    }
+    append(name, value);
+    return true;
+  }
+
+  /**
+   * Removes all the values of the header, whatever the case of its name.
+   *
+   * @return true if the header was present.
+   */
+  public boolean remove(String name) {
+    checkWritable();
+    var kept = 0;
+    for (int i = 0; i < size; i++) {
+      if (!names[i].equalsIgnoreCase(name)) {
+        names[kept] = names[i];
+        values[kept] = values[i];
+        kept++;
+      }
+    }
+    var removed = kept < size;
+    Arrays.fill(names, kept, size, null);
+    Arrays.fill(values, kept, size, null);
+    size = kept;
+    return removed;
+  }
+
+  /** Calls the action for each name-value pair, in order. */
+  public void forEach(BiConsumer<String, String> action) {
+    for (int i = 0; i < size; i++) {
+      action.accept(names[i], values[i]);
+    }
+  }
+
+  /**
+   * Puts the headers into a single-valued map, such as the headers of a relay response.
+   *
+   * <p>The first value of a header is put under its name, replacing the value in the map. Each
+   * further value is added as by {@link #addTo(Map, String, String)}.
+   *
+   * @throws IllegalStateException if a Set-Cookie header cannot be added
+   */
+  public void writeTo(Map<String, String> target) {
+    for (int i = 0; i < size; i++) {
+      if (indexOf(names[i], 0) == i) {
+        target.put(names[i], values[i]);
+      } else {
+        addTo(target, names[i], values[i]);
+      }
+    }
+  }
+
+  /**
+   * Adds a value to a header of a single-valued map, without replacing the values already in it.
+   *
+   * <p>The headers of a relay response are a single-valued map, so a value is joined to the one
+   * already in the map, separated by a comma. Set-Cookie values cannot be joined: this is a hard
+   * limit of the relay API, worked around by putting each further cookie under a spelling of the
+   * name that differs only in case, e.g. {@code Set-Cookie} and {@code set-Cookie}. The relay
+   * sends each key of the map as a header line of its own, and clients match header names
+   * case-insensitively.
+   *
+   * @param target single-valued headers, such as the headers of a relay response
+   * @throws IllegalStateException if a cookie cannot be added: the target is case-insensitive, or
+   *     already has {@link #MAX_SPELLINGS} spellings of Set-Cookie.
+   */
+  public static void addTo(Map<String, String> target, String name, String value) {
+    if (!target.containsKey(name)) {
+      target.put(name, value);
+      return;
+    }
+
+    if (!name.equalsIgnoreCase(SET_COOKIE)) {
+      target.put(name, target.get(name) + ", " + value);
+      return;
+    }
+
+    var spelling = unusedSpelling(name, target);
+    if (spelling == null) {
+      throw new IllegalStateException(
+          "Cannot add another Set-Cookie header to a map of "
+              + target.getClass().getName()
+              + " that already has "
+              + target.size()
+              + " headers");
+    }
+    target.put(spelling, value);
+  }
+
+  /**
+   * Returns a read-only map view of the headers. Lookups in the view are case-insensitive and
+   * return the first value of a header; iteration returns one entry per header.
+   */
+  public Map<String, String> asMap() {
+    if (mapView == null) {
+      mapView = new MapView();
+    }
+    return mapView;
+  }
+
+  @Override
+  public String toString() {
+    var builder = new StringBuilder("[");
+    for (int i = 0; i < size; i++) {
+      builder.append(i == 0 ? "" : ", ").append(names[i]);
+    }
+    return builder.append(']').toString();
+  }
+
+  private void append(String name, String value) {
+    if (size == names.length) {
+      var capacity = Math.max(DEFAULT_CAPACITY, size * 2);
+      names = Arrays.copyOf(names, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+    names[size] = name;
+    values[size] = value;
+    size++;
+  }
+
+  private int indexOf(Object name, int from) {
+    if (!(name instanceof String)) {
+      return -1;
+    }
+    for (int i = from; i < size; i++) {
+      if (names[i].equalsIgnoreCase((String) name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    return index;
+  }
+
+  private void checkWritable() {
+    if (readOnly) {
+      throw new UnsupportedOperationException("The headers are read-only.");
+    }
+  }
+
+  /**
+   * @return a spelling of the name that differs only in case and is not a key of the target; null
+   *     if the target is case-insensitive or already has {@link #MAX_SPELLINGS} spellings.
+   */
+  private static String unusedSpelling(String name, Map<String, String> target) {
+    // a case-insensitive map finds a spelling that none of its keys equals
+    var swapped = flipCase(name, -1);
+    if (target.containsKey(swapped) && target.keySet().stream().noneMatch(swapped::equals)) {
+      return null;
+    }
+
+    var letters = Math.min(name.length(), Integer.SIZE - 1);
+    var spellings = Math.min(1L << letters, MAX_SPELLINGS);
+    // each bit of the variant flips the case of one of the first letters of the name
+    for (int variant = 1; variant < spellings; variant++) {
+      var spelling = flipCase(name, variant);
+      if (!target.containsKey(spelling)) {
+        return spelling;
+      }
+    }
+    return null;
+  }
+
+  /** Flips the case of the letters of the name whose index is a bit set in the mask. */
+  private static String flipCase(String name, int mask) {
+    var chars = name.toCharArray();
+    for (int i = 0; i < chars.length && i < Integer.SIZE; i++) {
+      if ((mask & 1 << i) != 0) {
+        chars[i] =
+            Character.isUpperCase(chars[i])
+                ? Character.toLowerCase(chars[i])
+                : Character.toUpperCase(chars[i]);
+      }
+    }
+    return new String(chars);
+  }
+
+  private class MapView extends AbstractMap<String, String> {
+    @Override
+    public String get(Object key) {
+      var index = indexOf(key, 0);
+      return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return indexOf(key, 0) >= 0;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+      return new AbstractSet<>() {
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+          return new Iterator<>() {
+            private int next = nextFirstOccurrence(0);
+
+            @Override
+            public boolean hasNext() {
+              return next < size;
+            }
+
+            @Override
+            public Entry<String, String> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              var entry = new SimpleImmutableEntry<>(names[next], values[next]);
+              next = nextFirstOccurrence(next + 1);
+              return entry;
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          var count = 0;
+          for (int i = nextFirstOccurrence(0); i < size; i = nextFirstOccurrence(i + 1)) {
+            count++;
+          }
+          return count;
+        }
+      };
+    }
+
+    private int nextFirstOccurrence(int from) {
+      var i = from;
+      while (i < size && indexOf(names[i], 0) < i) {
+        i++;
+      }
+      return i;
+    }
+  }
+}
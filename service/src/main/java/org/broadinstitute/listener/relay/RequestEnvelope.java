@@ -0,0 +1,151 @@
+package org.broadinstitute.listener.relay;
+
+import static com.google.common.net.HttpHeaders.COOKIE;
+
+import com.microsoft.azure.relay.RelayedHttpListenerContext;
+import com.microsoft.azure.relay.RelayedHttpListenerRequest;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.broadinstitute.listener.relay.inspectors.TokenChecker;
+import org.springframework.lang.NonNull;
+
+/**
+ * A relayed request together with the values derived from it: case-insensitive headers, token,
+ * token digest and claims.
+ *
+ * <p>The envelope is created once per request and passed through the inspectors, the processor and
+ * the request logger, so each value is derived at most once, on first use. The stages of a request
+ * use its envelope one at a time, so the envelope is not synchronized.
+ */
+public class RequestEnvelope {
+
+  private final RelayedHttpListenerRequest request;
+  private final RelayedHttpListenerContext context;
+  private final long createdAtNanos = System.nanoTime();
+
+  private RelayHeaders headers;
+  private Optional<String> token;
+  private String tokenDigest;
+  private Map<String, String> claims;
+
+  private RequestEnvelope(RelayedHttpListenerRequest request, RelayedHttpListenerContext context) {
+    this.request = request;
+    this.context = context;
+  }
+
+  public static RequestEnvelope of(@NonNull RelayedHttpListenerContext context) {
+    return new RequestEnvelope(context.getRequest(), context);
+  }
+
+  /** Creates an envelope for a request whose context is not available. */
+  public static RequestEnvelope of(@NonNull RelayedHttpListenerRequest request) {
+    return new RequestEnvelope(request, null);
+  }
+
+  public RelayedHttpListenerRequest getRequest() {
+    return request;
+  }
+
+  /**
+   * @return the context of the request; null if the envelope was created from the request only.
+   */
+  public RelayedHttpListenerContext getContext() {
+    return context;
+  }
+
+  /** @return the time elapsed since the envelope was created, in milliseconds. */
+  public long getAgeMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdAtNanos);
+  }
+
+  /** @return true if the relayed request has headers. */
+  public boolean hasHeaders() {
+    return request.getHeaders() != null;
+  }
+
+  /**
+   * Returns the request headers, read from the relayed request once. The same instance is relayed
+   * to the target.
+   *
+   * @return read-only headers; empty if the request has no headers.
+   */
+  public RelayHeaders getRelayHeaders() {
+    if (headers == null) {
+      headers = RelayHeaders.of(request.getHeaders());
+    }
+    return headers;
+  }
+
+  /**
+   * Returns the request headers as a map. HTTP header names are case-insensitive, and so are the
+   * keys of the returned map.
+   *
+   * @return read-only headers; empty if the request has no headers.
+   */
+  public Map<String, String> getHeaders() {
+    return getRelayHeaders().asMap();
+  }
+
+  public Optional<String> getHeader(String name) {
+    return Optional.ofNullable(getHeaders().get(name));
+  }
+
+  public Optional<String> getCookie(String name) {
+    return Optional.ofNullable(Utils.findCookie(getHeaders().get(COOKIE), name));
+  }
+
+  /**
+   * Returns the token of the request, taken from the token cookie or else from the bearer
+   * authorization header.
+   */
+  public Optional<String> getToken() {
+    if (token == null) {
+      token = getCookie(Utils.TOKEN_NAME).or(() -> Utils.getTokenFromAuthorization(getHeaders()));
+    }
+    return token;
+  }
+
+  /** @return the digest of the token; see {@link Utils#getTokenDigest(String)}. */
+  public Optional<String> getTokenDigest() {
+    if (tokenDigest == null) {
+      tokenDigest = getToken().map(Utils::getTokenDigest).orElse(null);
+    }
+    return Optional.ofNullable(tokenDigest);
+  }
+
+  /**
+   * Returns the claims of the token.
+   *
+   * @param tokenChecker checker used to decode the token the first time the claims are needed
+   * @return the claims; empty if the request has no token.
+   */
+  public Map<String, String> getClaims(TokenChecker tokenChecker)
+      throws IOException, InterruptedException {
+    if (claims == null) {
+      var maybeToken = getToken();
+      claims =
+          maybeToken.isPresent()
+              ? tokenChecker.getOauthInfo(maybeToken.get(), getTokenDigest().get()).claims()
+              : Map.of();
+    }
+    return claims;
+  }
+
+  /**
+   * Returns the claims of the token if they are already known, without checking the token.
+   *
+   * @param tokenChecker checker whose cache is looked up if the claims were not needed yet
+   * @return the claims; empty if the request has no token or the token was not checked.
+   */
+  public Map<String, String> getKnownClaims(TokenChecker tokenChecker) {
+    if (claims != null) {
+      return claims;
+    }
+    return getTokenDigest()
+        .flatMap(tokenChecker::getCachedOauthInfo)
+        .map(OauthInfo::claims)
+        .orElse(Map.of());
+  }
+}
@@ -2,13 +2,11 @@ package org.broadinstitute.listener.relay;
 
 import static com.google.common.net.HttpHeaders.*;
 
-import java.net.MalformedURLException;
+import com.google.common.hash.Hashing;
 import java.net.URI;
-import java.net.URL;
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Optional;
-import org.broadinstitute.listener.config.CorsSupportProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,13 +16,39 @@ public class Utils {
   public static final String TOKEN_NAME = "LeoToken";
   public static final String SET_COOKIE_API_PATH = "setcookie";
   public static final String STATUS_API_PATH = "listenerstatus";
+  private static final String BEARER_PREFIX = "Bearer ";
 
   public static final Optional<String> getTokenFromAuthorization(Map<String, String> headers) {
     var authValue = headers.getOrDefault(AUTHORIZATION, null);
 
-    return Optional.ofNullable(authValue)
-        .filter(s -> s.contains("Bearer "))
-        .map(s -> s.replaceFirst("Bearer ", "").trim());
+    return Optional.ofNullable(authValue).map(Utils::parseBearerToken);
+  }
+
+  /**
+   * Extracts the token of a bearer Authorization value. The scheme must come first and is matched
+   * case-insensitively. Only the token itself is allocated.
+   *
+   * @param authorization value of the Authorization header
+   * @return the token, trimmed; null if the value is not a bearer token.
+   */
+  public static String parseBearerToken(String authorization) {
+    var start = 0;
+    var end = authorization.length();
+    while (start < end && authorization.charAt(start) <= ' ') {
+      start++;
+    }
+    if (!authorization.regionMatches(true, start, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+      return null;
+    }
+
+    start += BEARER_PREFIX.length();
+    while (start < end && authorization.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && authorization.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    return authorization.substring(start, end);
   }
 
   public static boolean isSetCookiePath(URI uri) {
@@ -36,39 +60,15 @@ public class Utils {
     }
   }
 
-  public static void writeCORSHeaders(
-      Map<String, String> responseHeaders,
-      Map<String, String> requestHeaders,
-      CorsSupportProperties corsSupportProperties) {
-    responseHeaders.putIfAbsent(
-        ACCESS_CONTROL_ALLOW_METHODS, corsSupportProperties.preflightMethods());
-
-    responseHeaders.putIfAbsent(
-        ACCESS_CONTROL_ALLOW_ORIGIN, requestHeaders.getOrDefault("Origin", "*"));
-
-    responseHeaders.putIfAbsent(ACCESS_CONTROL_ALLOW_CREDENTIALS, "true");
-    responseHeaders.putIfAbsent(
-        CONTENT_SECURITY_POLICY, corsSupportProperties.contentSecurityPolicy());
-    responseHeaders.putIfAbsent(ACCESS_CONTROL_ALLOW_HEADERS, corsSupportProperties.allowHeaders());
-    responseHeaders.putIfAbsent(ACCESS_CONTROL_MAX_AGE, corsSupportProperties.maxAge());
-  }
-
-  public static boolean isValidOrigin(String origin, CorsSupportProperties corsSupportProperties) {
-    if (origin.isEmpty() || corsSupportProperties.validHosts().contains("*")) {
-      return true;
-    }
-
-    // We want to strip the protocol.
-    URL url;
-    try {
-      url = new URL(origin);
-    } catch (MalformedURLException e) {
-      logger.error(
-          String.format("Error parsing URL:%s. MalformedURLException: %s", origin, e.getMessage()));
-      return false;
-    }
-
-    return corsSupportProperties.validHosts().contains(url.getAuthority());
+  /**
+   * Returns the hex encoded SHA-256 digest of a token. The digest is used instead of the raw token
+   * wherever a token needs to be kept as a key.
+   *
+   * @param token access token
+   * @return hex encoded digest
+   */
+  public static String getTokenDigest(String token) {
+    return Hashing.sha256().hashString(token, StandardCharsets.UTF_8).toString();
   }
 
   public static Optional<String> getToken(Map<String, String> headers) {
@@ -76,15 +76,60 @@ public class Utils {
   }
 
   private static Optional<String> getTokenFromCookie(Map<String, String> headers) {
+    return getCookie(headers, Utils.TOKEN_NAME);
+  }
+
+  /**
+   * Returns the value of a cookie of the request.
+   *
+   * @param headers request headers
+   * @param cookieName name of the cookie
+   * @return the value of the cookie; empty if the request does not have it.
+   */
+  public static Optional<String> getCookie(Map<String, String> headers, String cookieName) {
     var cookieValue = headers.getOrDefault("cookie", headers.get("Cookie"));
+    return Optional.ofNullable(findCookie(cookieValue, cookieName));
+  }
 
-    String[] splitted =
-        Optional.ofNullable(cookieValue).map(s -> s.split(";")).orElse(new String[0]);
+  /**
+   * Scans the value of a Cookie header for a cookie. When the cookie appears more than once, the
+   * first value wins. Only the value itself is allocated.
+   *
+   * @param cookieHeader value of the Cookie header; may be null
+   * @param cookieName name of the cookie
+   * @return the value of the cookie; null if the header does not have it.
+   */
+  public static String findCookie(String cookieHeader, String cookieName) {
+    if (cookieHeader == null) {
+      return null;
+    }
 
-    return Arrays.stream(splitted)
-        .filter(s -> s.contains(String.format("%s=", Utils.TOKEN_NAME)))
-        .findFirst()
-        .map(s -> s.split("=")[1]);
+    var length = cookieHeader.length();
+    var pairStart = 0;
+    while (pairStart < length) {
+      var pairEnd = cookieHeader.indexOf(';', pairStart);
+      if (pairEnd < 0) {
+        pairEnd = length;
+      }
+
+      var nameStart = pairStart;
+      while (nameStart < pairEnd && cookieHeader.charAt(nameStart) <= ' ') {
+        nameStart++;
+      }
+      var nameEnd = nameStart + cookieName.length();
+      if (nameEnd <= pairEnd && cookieHeader.startsWith(cookieName, nameStart)) {
+        var separator = nameEnd;
+        while (separator < pairEnd && cookieHeader.charAt(separator) <= ' ') {
+          separator++;
+        }
+        if (separator < pairEnd && cookieHeader.charAt(separator) == '=') {
+          return cookieHeader.substring(separator + 1, pairEnd);
+        }
+      }
+
+      pairStart = pairEnd + 1;
+    }
+    return null;
   }
 
   public static boolean isStatusPath(URI uri) {
@@ -0,0 +1,33 @@
+package org.broadinstitute.listener.relay.health;
+
+import java.util.List;
+import org.broadinstitute.listener.relay.inspectors.CircuitBreaker;
+import org.broadinstitute.listener.relay.inspectors.SamResourceClient;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health.Builder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Contributes to Actuator health reporting. Reports the state of the circuit breakers of the remote
+ * services and the number of decisions served from last known-good permissions. Always up: while a
+ * breaker is open the listener keeps serving known-good permissions.
+ */
+@Component
+public class CircuitBreakerHealth extends AbstractHealthIndicator {
+
+  private final List<CircuitBreaker> circuitBreakers;
+  private final SamResourceClient samResourceClient;
+
+  public CircuitBreakerHealth(
+      List<CircuitBreaker> circuitBreakers, SamResourceClient samResourceClient) {
+    this.circuitBreakers = circuitBreakers;
+    this.samResourceClient = samResourceClient;
+  }
+
+  @Override
+  protected void doHealthCheck(Builder builder) {
+    builder.up();
+    circuitBreakers.forEach(b -> builder.withDetail(b.getName(), b.getState().name()));
+    builder.withDetail("staleDecisions", (long) samResourceClient.getStaleDecisionCount());
+  }
+}
@@ -0,0 +1,119 @@
+package org.broadinstitute.listener.relay.health;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.HealthComponent;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.context.event.EventListener;
+
+/**
+ * The response of the listener status endpoint, computed in the background.
+ *
+ * <p>The actuator health is evaluated and serialized when the snapshot is created, on a schedule,
+ * and whenever the availability of the application changes, so probes are answered from memory
+ * without running the health indicators on the request threads.
+ */
+public class StatusSnapshot implements AutoCloseable {
+
+  /** Status code and JSON body of the status response. */
+  public record Snapshot(int statusCode, byte[] body) {}
+
+  private final Logger logger = LoggerFactory.getLogger(StatusSnapshot.class);
+  private final HealthEndpoint healthEndpoint;
+  private final ObjectMapper objectMapper;
+  private final ScheduledExecutorService refreshExecutor;
+  private volatile Snapshot snapshot;
+
+  /**
+   * @param healthEndpoint actuator health endpoint
+   * @param objectMapper mapper used to serialize the health
+   * @param refreshInterval how often the snapshot is recomputed
+   */
+  public StatusSnapshot(
+      HealthEndpoint healthEndpoint, ObjectMapper objectMapper, Duration refreshInterval) {
+    this(healthEndpoint, objectMapper, createRefreshExecutor());
+    refresh();
+    refreshExecutor.scheduleWithFixedDelay(
+        this::refresh,
+        refreshInterval.toMillis(),
+        refreshInterval.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  private StatusSnapshot(
+      HealthEndpoint healthEndpoint,
+      ObjectMapper objectMapper,
+      ScheduledExecutorService refreshExecutor) {
+    this.healthEndpoint = healthEndpoint;
+    this.objectMapper = objectMapper;
+    this.refreshExecutor = refreshExecutor;
+  }
+
+  /** Creates a status that is computed on every call to {@link #get()}. */
+  public static StatusSnapshot onDemand(HealthEndpoint healthEndpoint, ObjectMapper objectMapper) {
+    return new StatusSnapshot(healthEndpoint, objectMapper, (ScheduledExecutorService) null);
+  }
+
+  /**
+   * Returns the latest snapshot. The snapshot is computed on the calling thread only if none is
+   * available yet, or if the status is computed on demand.
+   */
+  public Snapshot get() throws JsonProcessingException {
+    var current = snapshot;
+    if (current == null || refreshExecutor == null) {
+      current = compute();
+      snapshot = current;
+    }
+    return current;
+  }
+
+  @EventListener
+  public void onAvailabilityChange(AvailabilityChangeEvent<?> event) {
+    if (refreshExecutor == null) {
+      return;
+    }
+
+    try {
+      refreshExecutor.execute(this::refresh);
+    } catch (RejectedExecutionException e) {
+      logger.debug("Status snapshot closed; ignoring availability change {}", event.getState());
+    }
+  }
+
+  @Override
+  public void close() {
+    if (refreshExecutor != null) {
+      refreshExecutor.shutdownNow();
+    }
+  }
+
+  void refresh() {
+    try {
+      snapshot = compute();
+    } catch (JsonProcessingException | RuntimeException e) {
+      // keep serving the previous snapshot
+      logger.error("Failed to refresh the status snapshot", e);
+    }
+  }
+
+  private Snapshot compute() throws JsonProcessingException {
+    HealthComponent health = healthEndpoint.health();
+    int statusCode = health.getStatus() == Status.UP ? 200 : 500;
+    return new Snapshot(statusCode, objectMapper.writeValueAsBytes(health));
+  }
+
+  private static ScheduledExecutorService createRefreshExecutor() {
+    return Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("status-snapshot-%d").setDaemon(true).build());
+  }
+}
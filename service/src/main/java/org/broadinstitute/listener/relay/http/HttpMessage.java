@@ -1,20 +1,20 @@
 package org.broadinstitute.listener.relay.http;
 
 import java.io.InputStream;
-import java.util.Map;
 import java.util.Optional;
+import org.broadinstitute.listener.relay.RelayHeaders;
 
 public abstract class HttpMessage {
 
-  private final Map<String, String> headers;
+  private final RelayHeaders headers;
   private final InputStream body;
 
-  protected HttpMessage(Map<String, String> headers, InputStream body) {
+  protected HttpMessage(RelayHeaders headers, InputStream body) {
     this.headers = headers;
     this.body = body;
   }
 
-  public Optional<Map<String, String>> getHeaders() {
+  public Optional<RelayHeaders> getHeaders() {
     return Optional.ofNullable(headers);
   }
 
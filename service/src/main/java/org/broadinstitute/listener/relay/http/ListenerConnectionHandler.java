@@ -4,6 +4,7 @@ import com.microsoft.azure.relay.HybridConnectionListener;
 import com.microsoft.azure.relay.RelayedHttpListenerContext;
 import com.microsoft.azure.relay.RelayedHttpListenerRequest;
 import org.broadinstitute.listener.relay.InvalidRelayTargetException;
+import org.broadinstitute.listener.relay.RequestEnvelope;
 import org.broadinstitute.listener.relay.Utils;
 import org.broadinstitute.listener.relay.inspectors.InspectorsProcessor;
 import org.broadinstitute.listener.relay.transport.TargetResolver;
@@ -32,9 +33,8 @@ public class ListenerConnectionHandler {
     this.inspectorsProcessor = inspectorsProcessor;
   }
 
-  public boolean isRelayedHttpRequestAcceptedByInspectors(
-      RelayedHttpListenerRequest listenerRequest) {
-    return this.inspectorsProcessor.isRelayedHttpRequestAccepted(listenerRequest);
+  public boolean isRelayedHttpRequestAcceptedByInspectors(RequestEnvelope requestEnvelope) {
+    return this.inspectorsProcessor.isRelayedHttpRequestAccepted(requestEnvelope);
   }
 
   public boolean isPreflight(RelayedHttpListenerRequest listenerRequest) {
@@ -5,9 +5,9 @@ import com.microsoft.azure.relay.RelayedHttpListenerRequest;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
 import org.broadinstitute.listener.relay.InvalidRelayTargetException;
+import org.broadinstitute.listener.relay.RelayHeaders;
+import org.broadinstitute.listener.relay.RequestEnvelope;
 import org.broadinstitute.listener.relay.transport.TargetResolver;
 import org.springframework.lang.NonNull;
 
@@ -39,7 +39,7 @@ public class RelayedHttpRequest extends HttpMessage {
   private RelayedHttpRequest(
       URL targetUrl,
       String method,
-      Map<String, String> headers,
+      RelayHeaders headers,
       InputStream body,
       RelayedHttpListenerContext context,
       URI targetWebSocketUri) {
@@ -53,13 +53,23 @@ public class RelayedHttpRequest extends HttpMessage {
   public static RelayedHttpRequest createRelayedHttpRequest(
       @NonNull RelayedHttpListenerContext context, @NonNull TargetResolver targetResolver)
       throws InvalidRelayTargetException {
+    return createRelayedHttpRequest(RequestEnvelope.of(context), targetResolver);
+  }
+
+  /**
+   * Creates the relayed request from an envelope, reusing the headers already parsed from the
+   * listener request.
+   */
+  public static RelayedHttpRequest createRelayedHttpRequest(
+      @NonNull RequestEnvelope requestEnvelope, @NonNull TargetResolver targetResolver)
+      throws InvalidRelayTargetException {
 
-    RelayedHttpListenerRequest listenerRequest = context.getRequest();
+    RelayedHttpListenerRequest listenerRequest = requestEnvelope.getRequest();
 
-    Map<String, String> relayedHeaders = null;
+    RelayHeaders relayedHeaders = null;
 
-    if (listenerRequest.getHeaders() != null) {
-      relayedHeaders = new HashMap<>(listenerRequest.getHeaders());
+    if (requestEnvelope.hasHeaders()) {
+      relayedHeaders = requestEnvelope.getRelayHeaders();
     }
 
     InputStream relayedBody = null;
@@ -77,7 +87,7 @@ public class RelayedHttpRequest extends HttpMessage {
         listenerRequest.getHttpMethod(),
         relayedHeaders,
         relayedBody,
-        context,
+        requestEnvelope.getContext(),
         targetWebSocketUri);
   }
 
@@ -2,7 +2,7 @@ package org.broadinstitute.listener.relay.http;
 
 import static com.google.common.net.HttpHeaders.SET_COOKIE;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.microsoft.azure.relay.RelayedHttpListenerContext;
 import com.microsoft.azure.relay.RelayedHttpListenerRequest;
 import com.microsoft.azure.relay.RelayedHttpListenerResponse;
@@ -11,80 +11,113 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
-import java.net.http.HttpClient.Version;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.apache.commons.lang3.StringUtils;
 import org.broadinstitute.listener.config.CorsSupportProperties;
+import org.broadinstitute.listener.relay.CorsPolicy;
+import org.broadinstitute.listener.relay.OauthInfo;
+import org.broadinstitute.listener.relay.RelayHeaders;
+import org.broadinstitute.listener.relay.RequestEnvelope;
 import org.broadinstitute.listener.relay.Utils;
+import org.broadinstitute.listener.relay.health.StatusSnapshot;
+import org.broadinstitute.listener.relay.inspectors.AccessLogWriter;
 import org.broadinstitute.listener.relay.inspectors.RequestLogger;
 import org.broadinstitute.listener.relay.inspectors.SamResourceClient;
+import org.broadinstitute.listener.relay.inspectors.SessionTicketSigner;
 import org.broadinstitute.listener.relay.inspectors.TokenChecker;
 import org.broadinstitute.listener.relay.transport.TargetResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.actuate.health.HealthComponent;
-import org.springframework.boot.actuate.health.HealthEndpoint;
-import org.springframework.boot.actuate.health.Status;
 import org.springframework.lang.NonNull;
 import org.springframework.util.StreamUtils;
 
-public class RelayedHttpRequestProcessor {
+public class RelayedHttpRequestProcessor implements AutoCloseable {
+  // permission checks waiting to prime the cache; more are dropped while Sam is slow
+  private static final int PERMISSION_CACHE_WARMER_QUEUE_CAPACITY = 64;
+  // how long the setcookie call waits for the permission check to issue a session ticket
+  static final Duration SESSION_TICKET_PERMISSION_TIMEOUT = Duration.ofSeconds(1);
 
   private final HttpClient httpClient;
   private final TargetResolver targetHostResolver;
   private final CorsSupportProperties corsSupportProperties;
+  private final CorsPolicy corsPolicy;
   private final TokenChecker tokenChecker;
-  private final HealthEndpoint healthEndpoint;
-  private final ObjectMapper objectMapper;
+  private final StatusSnapshot statusSnapshot;
   private final SamResourceClient samResourceClient;
+  private final RequestLogger requestLogger;
+  private final AccessLogWriter accessLogWriter;
+  private final SessionTicketSigner sessionTicketSigner;
+  private final ThreadPoolExecutor permissionCacheWarmer;
 
   protected final Logger logger = LoggerFactory.getLogger(RelayedHttpRequestProcessor.class);
 
-  public RelayedHttpRequestProcessor(
-      @NonNull TargetResolver targetHostResolver,
-      CorsSupportProperties corsSupportProperties,
-      TokenChecker tokenChecker,
-      HealthEndpoint healthEndpoint,
-      ObjectMapper objectMapper,
-      SamResourceClient samResourceClient) {
-    this.httpClient = HttpClient.newBuilder().version(Version.HTTP_1_1).build();
-    this.targetHostResolver = targetHostResolver;
-    this.corsSupportProperties = corsSupportProperties;
-    this.tokenChecker = tokenChecker;
-    this.healthEndpoint = healthEndpoint;
-    this.objectMapper = objectMapper;
-    this.samResourceClient = samResourceClient;
-  }
-
+  /**
+   * @param statusSnapshot source of the listener status responses
+   * @param accessLogWriter writer of the access log; if null, access log lines are written on the
+   *     request thread.
+   * @param sessionTicketSigner signer of session tickets; if null, no session ticket is issued.
+   */
   public RelayedHttpRequestProcessor(
       HttpClient httpClient,
       @NonNull TargetResolver targetHostResolver,
       CorsSupportProperties corsSupportProperties,
       TokenChecker tokenChecker,
-      HealthEndpoint healthEndpoint,
-      ObjectMapper objectMapper,
-      SamResourceClient samResourceClient) {
+      StatusSnapshot statusSnapshot,
+      AccessLogWriter accessLogWriter,
+      SamResourceClient samResourceClient,
+      SessionTicketSigner sessionTicketSigner) {
     this.httpClient = httpClient;
     this.targetHostResolver = targetHostResolver;
     this.corsSupportProperties = corsSupportProperties;
+    this.corsPolicy = CorsPolicy.compile(corsSupportProperties);
     this.tokenChecker = tokenChecker;
-    this.healthEndpoint = healthEndpoint;
-    this.objectMapper = objectMapper;
+    this.statusSnapshot = statusSnapshot;
     this.samResourceClient = samResourceClient;
+    this.sessionTicketSigner = sessionTicketSigner;
+    this.requestLogger = new RequestLogger(tokenChecker);
+    this.accessLogWriter = accessLogWriter;
+    this.permissionCacheWarmer =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            0,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(PERMISSION_CACHE_WARMER_QUEUE_CAPACITY),
+            new ThreadFactoryBuilder()
+                .setNameFormat("permission-cache-warmer-%d")
+                .setDaemon(true)
+                .build());
+  }
+
+  @Override
+  public void close() {
+    permissionCacheWarmer.shutdownNow();
   }
 
   public TargetHttpResponse executeRequestOnTarget(RelayedHttpListenerContext requestContext) {
+    return executeRequestOnTarget(RequestEnvelope.of(requestContext));
+  }
+
+  public TargetHttpResponse executeRequestOnTarget(RequestEnvelope requestEnvelope) {
 
     HttpResponse<?> clientResponse = null;
     try {
       RelayedHttpRequest request =
-          RelayedHttpRequest.createRelayedHttpRequest(requestContext, targetHostResolver);
+          RelayedHttpRequest.createRelayedHttpRequest(requestEnvelope, targetHostResolver);
 
       HttpRequest localRequest = toClientHttpRequest(request);
 
@@ -93,7 +126,7 @@ public class RelayedHttpRequestProcessor {
       clientResponse = httpClient.send(localRequest, HttpResponse.BodyHandlers.ofInputStream());
 
       return TargetHttpResponse.createTargetHttpResponse(
-          clientResponse, request.getContext(), corsSupportProperties);
+          clientResponse, requestEnvelope, corsPolicy);
 
     } catch (Throwable ex) {
 
@@ -104,7 +137,7 @@ public class RelayedHttpRequestProcessor {
           logger.error("Failed to close body from response.", ex);
         }
       }
-      return handleExceptionResponse(ex, requestContext);
+      return handleExceptionResponse(ex, requestEnvelope);
     }
   }
 
@@ -131,11 +164,9 @@ public class RelayedHttpRequestProcessor {
   }
 
   public Result writePreflightResponse(RelayedHttpListenerContext context) {
-    Map<String, String> requestHeaders = context.getRequest().getHeaders();
-    if (!Utils.isValidOrigin(requestHeaders.getOrDefault("Origin", ""), corsSupportProperties)) {
-      logger.error(
-          String.format(
-              "Origin %s not allowed. Error Code: RHRP-001", requestHeaders.get("Origin")));
+    var origin = context.getRequest().getHeaders().get("Origin");
+    if (!corsPolicy.isAllowed(origin)) {
+      logger.error(String.format("Origin %s not allowed. Error Code: RHRP-001", origin));
       return Result.FAILURE;
     }
 
@@ -146,8 +177,7 @@ public class RelayedHttpRequestProcessor {
 
     RelayedHttpListenerResponse listenerResponse = context.getResponse();
     listenerResponse.setStatusCode(204);
-    Utils.writeCORSHeaders(
-        listenerResponse.getHeaders(), context.getRequest().getHeaders(), corsSupportProperties);
+    corsPolicy.writeHeaders(listenerResponse.getHeaders(), origin);
 
     try {
       listenerResponse.getOutputStream().close();
@@ -173,11 +203,9 @@ public class RelayedHttpRequestProcessor {
     Map<String, String> requestHeaders = context.getRequest().getHeaders();
 
     // Check Origin header of the request
-    if (!Utils.isValidOrigin(requestHeaders.getOrDefault("Origin", ""), corsSupportProperties)) {
-      logger.error(
-          String.format(
-              "Origin %s not allowed. Error Code: RHRP-002",
-              requestHeaders.getOrDefault("Origin", "")));
+    var origin = requestHeaders.get("Origin");
+    if (!corsPolicy.isAllowed(origin)) {
+      logger.error(String.format("Origin %s not allowed. Error Code: RHRP-002", origin));
       return Result.FAILURE;
     }
 
@@ -207,8 +235,12 @@ public class RelayedHttpRequestProcessor {
                   "%s=%s; Max-Age=%s; Path=/; Secure; SameSite=None; HttpOnly; Partitioned",
                   Utils.TOKEN_NAME, authToken.get(), expiresIn.orElse(0L)));
 
-      Utils.writeCORSHeaders(
-          listenerResponse.getHeaders(), context.getRequest().getHeaders(), corsSupportProperties);
+      var permissionCheck = warmPermissionCache(authToken.get());
+      if (sessionTicketSigner != null && permissionCheck.isPresent()) {
+        writeSessionTicketCookie(listenerResponse.getHeaders(), oauthInfo, permissionCheck.get());
+      }
+
+      corsPolicy.writeHeaders(listenerResponse.getHeaders(), origin);
 
       getOutputStreamFromContext(context).close();
     } catch (IOException e) {
@@ -222,6 +254,76 @@ public class RelayedHttpRequestProcessor {
     return Result.SUCCESS;
   }
 
+  /**
+   * Checks the Sam permission of the token in the background, so that the first relayed request of
+   * the user finds the result in the permission cache. The check is skipped when too many are
+   * waiting: the request then checks the permission itself.
+   *
+   * @return the pending check; empty if skipped.
+   */
+  private Optional<Future<Instant>> warmPermissionCache(String authToken) {
+    try {
+      return Optional.of(
+          permissionCacheWarmer.submit(
+              () -> {
+                var expiresAt = samResourceClient.checkPermission(authToken);
+                logger.debug("Permission cache primed. Permission expires at: {}", expiresAt);
+                return expiresAt;
+              }));
+    } catch (RejectedExecutionException e) {
+      logger.debug("Too many permission checks waiting. Permission cache not primed.");
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Issues a session ticket once the background permission check completes. The ticket replaces
+   * the permission check of later requests, so it is only issued with a granted permission.
+   *
+   * <p>This is a trade-off: the setcookie call waits for Sam, but at most {@link
+   * #SESSION_TICKET_PERMISSION_TIMEOUT}. When Sam is slower, the response is sent without a ticket;
+   * the check still completes in the background, so the ticket is issued from the permission
+   * cache by the next setcookie call, and requests go through the permission check meanwhile.
+   */
+  private void writeSessionTicketCookie(
+      Map<String, String> responseHeaders, OauthInfo oauthInfo, Future<Instant> permissionCheck)
+      throws InterruptedException {
+    var subject = oauthInfo.claims().get("sub");
+    if (subject == null) {
+      logger.warn("Token has no subject. Session ticket not issued.");
+      return;
+    }
+
+    Instant permissionExpiresAt;
+    try {
+      permissionExpiresAt =
+          permissionCheck.get(SESSION_TICKET_PERMISSION_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      logger.info("The permission check is still running. Session ticket not issued.");
+      return;
+    } catch (ExecutionException e) {
+      logger.error("Fail to check permission. Session ticket not issued.", e.getCause());
+      return;
+    }
+
+    var now = Instant.now();
+    if (!permissionExpiresAt.isAfter(now)) {
+      logger.info("User has no permission on the resource. Session ticket not issued.");
+      return;
+    }
+
+    // the ticket expires with the permission, or after the ticket TTL if sooner
+    var ticket = sessionTicketSigner.issue(subject, permissionExpiresAt);
+    RelayHeaders.addTo(
+        responseHeaders,
+        SET_COOKIE,
+        String.format(
+            "%s=%s; Max-Age=%s; Path=/; Secure; SameSite=None; HttpOnly; Partitioned",
+            SessionTicketSigner.TICKET_NAME,
+            ticket.value(),
+            ticket.expiresAt().getEpochSecond() - now.getEpochSecond()));
+  }
+
   public Result writeStatusResponse(RelayedHttpListenerContext context) {
     if (context.getResponse() == null) {
       logger.error("The context did not have a valid response");
@@ -233,16 +335,21 @@ public class RelayedHttpRequestProcessor {
     // Write headers
     listenerResponse.getHeaders().put("Content-Type", "application/json");
 
-    // Use spring actuator health check to drive status endpoint
-    HealthComponent health = healthEndpoint.health();
+    // Spring actuator health check drives the status endpoint; it is computed in the background
+    StatusSnapshot.Snapshot status;
+    try {
+      status = statusSnapshot.get();
+    } catch (IOException e) {
+      logger.error("Failed to compute the listener status.", e);
+      return Result.FAILURE;
+    }
 
     // Write status
-    final int statusCode = health.getStatus() == Status.UP ? 200 : 500;
-    listenerResponse.setStatusCode(statusCode);
+    listenerResponse.setStatusCode(status.statusCode());
 
     // Write body
     try (final OutputStream outputStream = getOutputStreamFromContext(context)) {
-      objectMapper.writeValue(outputStream, health);
+      outputStream.write(status.body());
     } catch (IOException e) {
       logger.error("Failed to write response body to the remote client.", e);
       return Result.FAILURE;
@@ -267,24 +374,24 @@ public class RelayedHttpRequestProcessor {
     }
 
     if (targetResponse.getHeaders().isPresent()) {
-      listenerResponse.getHeaders().putAll(targetResponse.getHeaders().get());
+      var targetHeaders = targetResponse.getHeaders().get();
+      removeHeadersNotAcceptedByAzureRelay(targetHeaders);
+      // see IA-4478
+      targetHeaders.remove("Server");
 
-      removeHeadersNotAcceptedByAzureRelay(listenerResponse.getHeaders());
+      targetHeaders.writeTo(listenerResponse.getHeaders());
     }
 
     // ensure anti-sniffing header is set (regardless of targetResponse header status)
     listenerResponse.getHeaders().put("X-Content-Type-Options", "nosniff");
-    listenerResponse.getHeaders().remove("Server");
-    listenerResponse.getHeaders().remove("server");
-
-    logRequest(targetResponse.getContext().getRequest(), targetResponse.getStatusCode());
 
     OutputStream outputStream = targetResponse.getCallerResponseOutputStream();
 
     Result result = Result.SUCCESS;
+    long responseBytes = 0;
     if (targetResponse.getBody().isPresent()) {
       try {
-        StreamUtils.copy(targetResponse.getBody().get(), outputStream);
+        responseBytes = StreamUtils.copy(targetResponse.getBody().get(), outputStream);
       } catch (IOException e) {
         logger.error("Failed to write response body to the remote client.", e);
         result = Result.FAILURE;
@@ -305,33 +412,50 @@ public class RelayedHttpRequestProcessor {
       result = Result.FAILURE;
     }
 
+    logRequest(targetResponse.getRequestEnvelope(), targetResponse.getStatusCode(), responseBytes);
+
     return result;
   }
 
-  private void logRequest(RelayedHttpListenerRequest request, int statusCode) {
-    var requestLogger = new RequestLogger();
-    try {
-      requestLogger.logRequest(request, statusCode, OffsetDateTime.now(), "RELAY_REQUEST_RESPONSE");
-    } catch (IOException | InterruptedException e) {
-      logger.error("Error logging response", e);
+  private void logRequest(RequestEnvelope requestEnvelope, int statusCode, long responseBytes) {
+    var record =
+        requestLogger.capture(
+            requestEnvelope,
+            statusCode,
+            OffsetDateTime.now(),
+            "RELAY_REQUEST_RESPONSE",
+            responseBytes,
+            requestEnvelope == null ? -1 : requestEnvelope.getAgeMillis());
+    if (record == null) {
+      return;
+    }
+
+    if (accessLogWriter != null) {
+      accessLogWriter.enqueue(record);
+    } else {
+      requestLogger.write(record);
     }
   }
 
-  private void removeHeadersNotAcceptedByAzureRelay(Map<String, String> headers) {
-    headers.remove("transfer-encoding");
+  private void removeHeadersNotAcceptedByAzureRelay(RelayHeaders headers) {
     headers.remove("Transfer-Encoding");
   }
 
   public TargetHttpResponse handleExceptionResponse(
       Throwable exception, RelayedHttpListenerContext context) {
+    return handleExceptionResponse(exception, RequestEnvelope.of(context));
+  }
+
+  public TargetHttpResponse handleExceptionResponse(
+      Throwable exception, RequestEnvelope requestEnvelope) {
     String message =
         String.format(
             Locale.ROOT,
             "Relayed request failed. Tracking ID:%s",
-            context.getTrackingContext().getTrackingId());
+            requestEnvelope.getContext().getTrackingContext().getTrackingId());
     logger.error(message, exception);
     return TargetHttpResponse.createTargetHttpResponseFromException(
-        500, exception, context, corsSupportProperties);
+        500, exception, requestEnvelope, corsSupportProperties);
   }
 
   private HttpRequest toClientHttpRequest(RelayedHttpRequest request) throws URISyntaxException {
@@ -347,20 +471,20 @@ public class RelayedHttpRequestProcessor {
     logger.debug("Constructing local HTTP Request. URI: {}", request.getTargetUrl());
 
     if (request.getHeaders().isPresent()) {
-      for (Map.Entry<String, String> entry : request.getHeaders().get().entrySet()) {
-        String key = entry.getKey();
+      var headers = request.getHeaders().get();
+      for (int i = 0; i < headers.size(); i++) {
+        String key = headers.getName(i);
 
         // Not logging values as they could be sensitive.
         // TODO: implement logging for values that masks sensitive information.
-        logger.debug("Header name:{}", entry.getKey());
+        logger.debug("Header name:{}", key);
 
         // These headers cannot be set in Java http client
-        if (key.equals("Host") || key.equals("Via")) {
+        if (key.equalsIgnoreCase("Host") || key.equalsIgnoreCase("Via")) {
           continue;
         }
 
-        String value = entry.getValue();
-        requestBuilder.header(key, value);
+        requestBuilder.header(key, headers.getValue(i));
       }
     }
 
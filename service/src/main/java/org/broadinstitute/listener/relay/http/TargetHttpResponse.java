@@ -9,10 +9,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
 import org.broadinstitute.listener.config.CorsSupportProperties;
-import org.broadinstitute.listener.relay.Utils;
+import org.broadinstitute.listener.relay.CorsPolicy;
+import org.broadinstitute.listener.relay.RelayHeaders;
+import org.broadinstitute.listener.relay.RequestEnvelope;
 
 /**
  * Represents a response of the local endpoint that is independent of the HTTP client
@@ -30,25 +30,25 @@ public class TargetHttpResponse extends HttpMessage {
   }
 
   private final int statusCode;
-  private final RelayedHttpListenerContext context;
+  private final RequestEnvelope requestEnvelope;
   private final String statusDescription;
 
   private TargetHttpResponse(
-      Map<String, String> headers,
+      RelayHeaders headers,
       InputStream body,
       CorsSupportProperties corsSupportProperties,
       int statusCode,
       String statusDescription,
-      RelayedHttpListenerContext context) {
+      RequestEnvelope requestEnvelope) {
     super(headers, body);
     this.corsSupportProperties = corsSupportProperties;
     this.statusCode = statusCode;
     this.statusDescription = statusDescription;
-    this.context = context;
+    this.requestEnvelope = requestEnvelope;
   }
 
   public OutputStream getCallerResponseOutputStream() {
-    return (OutputStream) context.getResponse().getOutputStream();
+    return (OutputStream) getContext().getResponse().getOutputStream();
   }
 
   public static TargetHttpResponse createTargetHttpResponseFromException(
@@ -56,6 +56,16 @@ public class TargetHttpResponse extends HttpMessage {
       Throwable ex,
       RelayedHttpListenerContext context,
       CorsSupportProperties corsSupportProperties) {
+    return createTargetHttpResponseFromException(
+        statusCode, ex, RequestEnvelope.of(context), corsSupportProperties);
+  }
+
+  public static TargetHttpResponse createTargetHttpResponseFromException(
+      int statusCode,
+      Throwable ex,
+      RequestEnvelope requestEnvelope,
+      CorsSupportProperties corsSupportProperties) {
+    var context = requestEnvelope.getContext();
 
     String statusDescription = "";
     if (ex != null && ex.getMessage() != null) {
@@ -67,8 +77,8 @@ public class TargetHttpResponse extends HttpMessage {
             "{ \"message\":\"The listener failed to process the request.\", \"tracking_id\":\"%s\"}",
             context.getTrackingContext().getTrackingId());
 
-    Map<String, String> headers = new HashMap<>();
-    headers.put("Content-Type", "application/json");
+    var headers = new RelayHeaders();
+    headers.add("Content-Type", "application/json");
 
     return new TargetHttpResponse(
         headers,
@@ -76,56 +86,59 @@ public class TargetHttpResponse extends HttpMessage {
         corsSupportProperties,
         statusCode,
         statusDescription,
-        context);
+        requestEnvelope);
   }
 
   public static TargetHttpResponse createTargetHttpResponse(
-      HttpResponse<?> clientHttpResponse,
-      RelayedHttpListenerContext context,
-      CorsSupportProperties corsSupportProperties)
+      HttpResponse<?> clientHttpResponse, RequestEnvelope requestEnvelope, CorsPolicy corsPolicy)
       throws Exception {
     int responseStatusCode = clientHttpResponse.statusCode();
-    Map<String, String> responseHeaders = new HashMap<>();
+    var responseHeaders = new RelayHeaders();
     if (clientHttpResponse.headers() != null && !clientHttpResponse.headers().map().isEmpty()) {
 
-      // TODO: implement multi header value support.
-      // only the first header value is set for now.
       clientHttpResponse
           .headers()
           .map()
           .forEach(
-              (key, value) -> {
-                String headerValue = value.iterator().next();
+              (key, values) -> {
                 if (!key.equalsIgnoreCase(CONTENT_SECURITY_POLICY)) {
-                  if (key.equalsIgnoreCase(SET_COOKIE)) {
-                    // setcookie response from jupyter lab looks like this: set-cookie:
-                    // _xsrf=2|63084c74|2d3173085f60f5a3889e8c1e1879d0a6|1654868473; expires=Sun, 10
-                    // Jul 2022 13:41:13 GMT; Path=/saturn-403635c5-c58b-4bcd-b3d1-55aa5bd8919d/
-                    var cookieValue =
-                        String.format(
-                            "%s; Secure; SameSite=None; HttpOnly; Partitioned", headerValue);
-                    responseHeaders.put(key, cookieValue);
-                  } else responseHeaders.put(key, headerValue);
+                  for (String headerValue : values) {
+                    if (key.equalsIgnoreCase(SET_COOKIE)) {
+                      // setcookie response from jupyter lab looks like this: set-cookie:
+                      // _xsrf=2|63084c74|2d3173085f60f5a3889e8c1e1879d0a6|1654868473;
+                      // expires=Sun, 10 Jul 2022 13:41:13 GMT;
+                      // Path=/saturn-403635c5-c58b-4bcd-b3d1-55aa5bd8919d/
+                      var cookieValue =
+                          String.format(
+                              "%s; Secure; SameSite=None; HttpOnly; Partitioned", headerValue);
+                      responseHeaders.add(key, cookieValue);
+                    } else responseHeaders.add(key, headerValue);
+                  }
                 }
               });
-      Map<String, String> requestHeaders = context.getRequest().getHeaders();
-      if (Utils.isValidOrigin(requestHeaders.getOrDefault("Origin", ""), corsSupportProperties)) {
-        Utils.writeCORSHeaders(responseHeaders, requestHeaders, corsSupportProperties);
-      } else {
+      var origin = requestEnvelope.getHeaders().get("Origin");
+      if (!corsPolicy.writeHeaders(responseHeaders, origin)) {
         throw new Exception(
-            String.format(
-                "Origin %s not allowed. Error Code: RHRP-003",
-                requestHeaders.getOrDefault("Origin", "")));
+            String.format("Origin %s not allowed. Error Code: RHRP-003", origin));
       }
     }
 
     InputStream body = (InputStream) clientHttpResponse.body();
 
     return new TargetHttpResponse(
-        responseHeaders, body, corsSupportProperties, responseStatusCode, "", context);
+        responseHeaders,
+        body,
+        corsPolicy.getProperties(),
+        responseStatusCode,
+        "",
+        requestEnvelope);
   }
 
   public RelayedHttpListenerContext getContext() {
-    return context;
+    return requestEnvelope.getContext();
+  }
+
+  public RequestEnvelope getRequestEnvelope() {
+    return requestEnvelope;
   }
 }
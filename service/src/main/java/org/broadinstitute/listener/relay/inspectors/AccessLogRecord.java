@@ -0,0 +1,89 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import java.time.OffsetDateTime;
+import java.util.Map;
+import org.broadinstitute.listener.relay.RequestEnvelope;
+
+/**
+ * The values of an access log line, captured on the request thread and formatted later by {@link
+ * RequestLogger}.
+ *
+ * @param responseBytes size of the response body; -1 if unknown
+ * @param durationMillis time taken to respond; -1 if unknown
+ * @param headers request headers, for debug logging; null if they were not captured
+ */
+public record AccessLogRecord(
+    String prefix,
+    String remoteAddress,
+    String subject,
+    String email,
+    String identityType,
+    OffsetDateTime timestamp,
+    String method,
+    String uri,
+    int statusCode,
+    String referer,
+    String origin,
+    String userAgent,
+    long responseBytes,
+    long durationMillis,
+    String trackingId,
+    Map<String, String> headers) {
+
+  private static final String MISSING = "-";
+
+  /**
+   * Captures the access log values of a request. Only the claims already known for the token are
+   * used, so the capture never checks the token.
+   *
+   * @param requestEnvelope relayed request
+   * @param tokenChecker checker whose cache holds the claims of the token
+   * @param statusCode status code of the response
+   * @param timestamp timestamp of the request
+   * @param prefix logging prefix to include
+   * @param responseBytes size of the response body; -1 if unknown
+   * @param durationMillis time taken to respond; -1 if unknown
+   * @param includeHeaders true to capture the request headers
+   */
+  public static AccessLogRecord capture(
+      RequestEnvelope requestEnvelope,
+      TokenChecker tokenChecker,
+      int statusCode,
+      OffsetDateTime timestamp,
+      String prefix,
+      long responseBytes,
+      long durationMillis,
+      boolean includeHeaders) {
+    var request = requestEnvelope.getRequest();
+    var headers = requestEnvelope.getHeaders();
+    var claims = requestEnvelope.getKnownClaims(tokenChecker);
+
+    var remoteAddress = "";
+    if (request.getRemoteEndPoint() != null) {
+      remoteAddress = request.getRemoteEndPoint().getHostString();
+    }
+    var trackingId = MISSING;
+    var context = requestEnvelope.getContext();
+    if (context != null && context.getTrackingContext() != null) {
+      trackingId = context.getTrackingContext().getTrackingId();
+    }
+
+    return new AccessLogRecord(
+        prefix,
+        remoteAddress,
+        claims.getOrDefault("sub", MISSING),
+        claims.getOrDefault("email", MISSING),
+        claims.getOrDefault("idtyp", MISSING),
+        timestamp,
+        request.getHttpMethod(),
+        String.valueOf(request.getUri()),
+        statusCode,
+        headers.getOrDefault("Referer", MISSING),
+        headers.getOrDefault("Origin", MISSING),
+        headers.getOrDefault("User-Agent", MISSING),
+        responseBytes,
+        durationMillis,
+        trackingId,
+        includeHeaders ? headers : null);
+  }
+}
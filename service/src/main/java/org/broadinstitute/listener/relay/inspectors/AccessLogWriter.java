@@ -0,0 +1,117 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes access log records on a background thread, so request threads never wait on logging.
+ *
+ * <p>Records are kept in a lock-free queue bounded by {@code capacity}. When the queue is full,
+ * records are dropped and counted in {@code listener.access_log.dropped}. Records still queued
+ * are written on close.
+ */
+public class AccessLogWriter implements AutoCloseable {
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+  private final Logger logger = LoggerFactory.getLogger(AccessLogWriter.class);
+  private final RequestLogger requestLogger;
+  private final int capacity;
+  private final Queue<AccessLogRecord> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final Thread writerThread;
+  private final Counter writtenCounter;
+  private final Counter droppedCounter;
+  private volatile boolean closed;
+
+  /**
+   * @param requestLogger formatter of the records
+   * @param capacity maximum number of records waiting to be written
+   * @param meterRegistry registry of the written and dropped record counters
+   */
+  public AccessLogWriter(RequestLogger requestLogger, int capacity, MeterRegistry meterRegistry) {
+    this.requestLogger = requestLogger;
+    this.capacity = capacity;
+    this.writtenCounter = meterRegistry.counter("listener.access_log.written");
+    this.droppedCounter = meterRegistry.counter("listener.access_log.dropped");
+    this.writerThread = new Thread(this::run, "access-log-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Queues a record. Never blocks.
+   *
+   * @return true if the record was queued; false if it was dropped.
+   */
+  public boolean enqueue(AccessLogRecord record) {
+    if (record == null) {
+      return false;
+    }
+
+    if (closed) {
+      droppedCounter.increment();
+      return false;
+    }
+
+    var size = queued.incrementAndGet();
+    if (size > capacity) {
+      queued.decrementAndGet();
+      droppedCounter.increment();
+      return false;
+    }
+
+    queue.offer(record);
+    // the writer is woken up when records start arriving; while it is busy, it polls the queue,
+    // and it wakes up by itself after a short while in case a wake up was missed.
+    if (size == 1) {
+      LockSupport.unpark(writerThread);
+    }
+    return true;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(writerThread);
+    try {
+      writerThread.join(CLOSE_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @VisibleForTesting
+  int getQueued() {
+    return queued.get();
+  }
+
+  private void run() {
+    while (!closed) {
+      drain();
+      LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+    }
+    drain();
+  }
+
+  private void drain() {
+    AccessLogRecord record;
+    while ((record = queue.poll()) != null) {
+      queued.decrementAndGet();
+      try {
+        requestLogger.write(record);
+        writtenCounter.increment();
+      } catch (RuntimeException e) {
+        logger.error("Failed to write an access log record", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,195 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import org.broadinstitute.listener.relay.Utils;
+import org.broadinstitute.listener.relay.inspectors.SharedAuthCache.Invalidation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.CacheManager;
+
+/**
+ * Evicts auth decisions from all the caches at once: the Spring permission and user-enabled
+ * caches, the OAuth info cache, the known-good, restored and shared permissions, and the session
+ * tickets.
+ *
+ * <p>Entries are evicted from the caches that others are filled from first, and the Spring caches
+ * last, so a request cannot fill an evicted cache back from one not evicted yet. Each invalidation
+ * first advances the {@link InvalidationEpoch}, so that a check that called Sam or the token
+ * endpoint before the invalidation does not cache its answer after it: {@link TokenChecker} and
+ * {@link SamResourceClient} evict their own write when the epoch moved, and the Spring caches are
+ * keyed by epoch.
+ *
+ * <p>With a {@link SharedAuthCache}, each invalidation is published to the other replicas, which
+ * apply it to their in-process caches and session tickets. They leave the shared cache alone: the
+ * publishing replica evicted it already.
+ */
+public class AuthCacheInvalidator {
+  static final List<String> SPRING_CACHE_NAMES = List.of("expiresAt", "userEnabled");
+
+  private final Logger logger = LoggerFactory.getLogger(AuthCacheInvalidator.class);
+  private final CacheManager cacheManager;
+  private final TokenChecker tokenChecker;
+  private final SamResourceClient samResourceClient;
+  private final Optional<SessionTicketSigner> sessionTicketSigner;
+  private final Optional<SharedAuthCache> sharedAuthCache;
+
+  public AuthCacheInvalidator(
+      CacheManager cacheManager,
+      TokenChecker tokenChecker,
+      SamResourceClient samResourceClient,
+      Optional<SessionTicketSigner> sessionTicketSigner,
+      Optional<SharedAuthCache> sharedAuthCache) {
+    this.cacheManager = cacheManager;
+    this.tokenChecker = tokenChecker;
+    this.samResourceClient = samResourceClient;
+    this.sessionTicketSigner = sessionTicketSigner;
+    this.sharedAuthCache = sharedAuthCache;
+    sharedAuthCache.ifPresent(cache -> cache.subscribeToInvalidations(this::applyInvalidation));
+  }
+
+  /**
+   * Evicts the entries of a token. The session tickets of the token's subject are revoked too.
+   *
+   * @param digest token digest, as returned by {@link Utils#getTokenDigest(String)}
+   * @return the number of entries evicted from the Spring caches
+   */
+  public synchronized int invalidateByDigest(String digest) {
+    advanceEpoch();
+    var evicted = evictDigests(Set.of(digest), true);
+    publish(Invalidation.digest(digest));
+    logger.info("Evicted the cached auth decisions of token {}", digest);
+    return evicted;
+  }
+
+  /**
+   * Evicts the entries of all the cached tokens of a subject and revokes their session tickets.
+   * Tokens are found by subject through the OAuth info cache.
+   *
+   * @param subject value of the `sub` claim
+   * @return the number of entries evicted from the Spring caches
+   */
+  public synchronized int invalidateBySubject(String subject) {
+    advanceEpoch();
+    var digests = new HashSet<>(tokenChecker.getCachedTokenDigests(subject));
+    revokeSessionTickets(subject);
+    var evicted = evictDigests(digests, true);
+    publish(Invalidation.subject(subject));
+    logger.info(
+        "Evicted the cached auth decisions of {} tokens of subject {}", digests.size(), subject);
+    return evicted;
+  }
+
+  /** Evicts all the entries and revokes all the session tickets. */
+  public synchronized void invalidateAll() {
+    advanceEpoch();
+    evictAll(true);
+    publish(Invalidation.all());
+    logger.info("Evicted all the cached auth decisions");
+  }
+
+  /** Applies an invalidation published by another replica. */
+  synchronized void applyInvalidation(Invalidation invalidation) {
+    advanceEpoch();
+    switch (invalidation.scope()) {
+      case DIGEST -> evictDigests(Set.of(invalidation.value()), false);
+      case SUBJECT -> {
+        var subject = invalidation.value();
+        revokeSessionTickets(subject);
+        evictDigests(new HashSet<>(tokenChecker.getCachedTokenDigests(subject)), false);
+      }
+      case ALL -> evictAll(false);
+    }
+    logger.info("Applied the invalidation of another replica: {}", invalidation);
+  }
+
+  /**
+   * Evicts the entries of tokens and revokes the session tickets of their subjects.
+   *
+   * @param shared whether to evict the shared permissions too
+   * @return the number of entries evicted from the Spring caches
+   */
+  private int evictDigests(Set<String> digests, boolean shared) {
+    for (String digest : digests) {
+      tokenChecker.getCachedSubject(digest).ifPresent(this::revokeSessionTickets);
+      if (shared) {
+        samResourceClient.invalidate(digest);
+      } else {
+        samResourceClient.invalidateLocally(digest);
+      }
+      tokenChecker.invalidate(digest);
+    }
+    return evictFromSpringCaches(digests);
+  }
+
+  private void evictAll(boolean shared) {
+    sessionTicketSigner.ifPresent(SessionTicketSigner::revokeAll);
+    if (shared) {
+      samResourceClient.invalidateAll();
+    } else {
+      samResourceClient.invalidateAllLocally();
+    }
+    tokenChecker.invalidateAll();
+    SPRING_CACHE_NAMES.stream()
+        .map(cacheManager::getCache)
+        .filter(Objects::nonNull)
+        .forEach(org.springframework.cache.Cache::clear);
+  }
+
+  /** Advanced before the digests of a subject are listed, so that none is cached unnoticed. */
+  private void advanceEpoch() {
+    tokenChecker.getInvalidationEpoch().advance();
+  }
+
+  private void publish(Invalidation invalidation) {
+    sharedAuthCache.ifPresent(cache -> cache.publishInvalidation(invalidation));
+  }
+
+  private void revokeSessionTickets(String subject) {
+    sessionTicketSigner.ifPresent(signer -> signer.revokeSubject(subject));
+  }
+
+  /**
+   * The Spring caches are keyed by raw token and epoch, so keys are matched by their digest.
+   * Entries of previous epochs are unreachable already, but are evicted to free their slots.
+   */
+  private int evictFromSpringCaches(Set<String> digests) {
+    if (digests.isEmpty()) {
+      return 0;
+    }
+
+    var evicted = 0;
+    for (String cacheName : SPRING_CACHE_NAMES) {
+      var cache = cacheManager.getCache(cacheName);
+      if (cache == null) {
+        continue;
+      }
+
+      for (Object key : getKeys(cache)) {
+        if (key instanceof SamResourceClient.PermissionCacheKey cacheKey
+            && digests.contains(Utils.getTokenDigest(cacheKey.accessToken()))) {
+          cache.evict(key);
+          evicted++;
+        }
+      }
+    }
+    return evicted;
+  }
+
+  private Set<Object> getKeys(org.springframework.cache.Cache cache) {
+    var nativeCache = cache.getNativeCache();
+    if (nativeCache instanceof Cache<?, ?> caffeineCache) {
+      return Set.copyOf(caffeineCache.asMap().keySet());
+    }
+    if (nativeCache instanceof ConcurrentMap<?, ?> map) {
+      return Set.copyOf(map.keySet());
+    }
+    logger.warn("Cannot list the keys of cache {}", cache.getName());
+    return Set.of();
+  }
+}
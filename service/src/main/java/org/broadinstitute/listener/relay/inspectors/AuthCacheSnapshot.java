@@ -0,0 +1,273 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashCode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.broadinstitute.listener.relay.OauthInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists the OAuth info and permission caches to a local file, so that a restarted listener
+ * serves warm auth decisions right away instead of calling Sam and the token info API for every
+ * user.
+ *
+ * <p>Token digests and expirations are written, never raw tokens. OAuth info entries also keep
+ * the subject and email claims, which session tickets, request logs and invalidations by subject
+ * need; their other claims are dropped. The snapshot is restored when this object is created,
+ * written periodically, and written once more on close.
+ *
+ * <p>The file is a header (magic number, version, entry count) followed by the entries: entry type
+ * (1 byte), SHA-256 token digest (32 bytes), expiration in epoch seconds (8 bytes), claim count (1
+ * byte) and the claims as UTF-8 name and value, each prefixed with its length (2 bytes). It is
+ * written through a memory-mapped temporary file that is then moved over the snapshot.
+ */
+public class AuthCacheSnapshot implements AutoCloseable {
+  static final int MAGIC = 0x4c534e50;
+  static final int VERSION = 2;
+  private static final int HEADER_SIZE = 3 * Integer.BYTES;
+  private static final int DIGEST_SIZE = 32;
+  private static final int MAX_STRING_SIZE = 0xFFFF;
+  private static final int MIN_ENTRY_SIZE = 1 + DIGEST_SIZE + Long.BYTES + 1;
+
+  enum EntryType {
+    OAUTH_INFO,
+    PERMISSION
+  }
+
+  /**
+   * @param claims claims of an OAuth info entry; empty for a permission
+   */
+  record Entry(EntryType type, String tokenDigest, Instant expiresAt, Map<String, String> claims) {}
+
+  private final Logger logger = LoggerFactory.getLogger(AuthCacheSnapshot.class);
+  private final Path path;
+  private final Duration restoredPermissionMaxAge;
+  private final TokenChecker tokenChecker;
+  private final SamResourceClient samResourceClient;
+  private final ScheduledExecutorService writeExecutor;
+
+  /**
+   * @param path snapshot file
+   * @param writeInterval how often the snapshot is written
+   * @param restoredPermissionMaxAge how long restored permissions are served without calling Sam
+   * @param tokenChecker owner of the OAuth info cache
+   * @param samResourceClient owner of the permission cache
+   */
+  public AuthCacheSnapshot(
+      Path path,
+      Duration writeInterval,
+      Duration restoredPermissionMaxAge,
+      TokenChecker tokenChecker,
+      SamResourceClient samResourceClient) {
+    this.path = path;
+    this.restoredPermissionMaxAge = restoredPermissionMaxAge;
+    this.tokenChecker = tokenChecker;
+    this.samResourceClient = samResourceClient;
+    restore();
+
+    this.writeExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("auth-cache-snapshot-%d")
+                .setDaemon(true)
+                .build());
+    writeExecutor.scheduleWithFixedDelay(
+        this::write, writeInterval.toSeconds(), writeInterval.toSeconds(), TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void close() {
+    writeExecutor.shutdownNow();
+    write();
+  }
+
+  @VisibleForTesting
+  void restore() {
+    List<Entry> entries;
+    try {
+      entries = readEntries(path);
+    } catch (NoSuchFileException e) {
+      logger.info("No auth cache snapshot found at {}", path);
+      return;
+    } catch (IOException | RuntimeException e) {
+      logger.error("Failed to read the auth cache snapshot at {}", path, e);
+      return;
+    }
+
+    var oauthInfos = new HashMap<String, OauthInfo>();
+    var permissions = new HashMap<String, Instant>();
+    for (Entry entry : entries) {
+      if (entry.type() == EntryType.OAUTH_INFO) {
+        oauthInfos.put(
+            entry.tokenDigest(),
+            new OauthInfo(Optional.of(entry.expiresAt()), "", entry.claims()));
+      } else {
+        permissions.put(entry.tokenDigest(), entry.expiresAt());
+      }
+    }
+
+    var restoredOauthInfo = tokenChecker.restoreOauthInfo(oauthInfos);
+    var restoredPermissions =
+        samResourceClient.restorePermissions(permissions, restoredPermissionMaxAge);
+    logger.info(
+        "Restored {} OAuth info entries and {} permissions from the auth cache snapshot",
+        restoredOauthInfo,
+        restoredPermissions);
+  }
+
+  @VisibleForTesting
+  synchronized void write() {
+    var entries = new ArrayList<Entry>();
+    tokenChecker
+        .exportOauthInfo()
+        .forEach(
+            (digest, oauthInfo) ->
+                entries.add(
+                    new Entry(
+                        EntryType.OAUTH_INFO,
+                        digest,
+                        oauthInfo.expiresAt().get(),
+                        oauthInfo.claims())));
+    samResourceClient
+        .exportPermissions()
+        .forEach(
+            (digest, expiresAt) ->
+                entries.add(new Entry(EntryType.PERMISSION, digest, expiresAt, Map.of())));
+
+    try {
+      writeEntries(path, entries);
+      logger.debug("Wrote {} entries to the auth cache snapshot", entries.size());
+    } catch (IOException | RuntimeException e) {
+      logger.error("Failed to write the auth cache snapshot to {}", path, e);
+    }
+  }
+
+  @VisibleForTesting
+  static void writeEntries(Path path, List<Entry> entries) throws IOException {
+    var tempFile = path.resolveSibling(path.getFileName() + ".tmp");
+    var encodedClaims = new ArrayList<List<byte[]>>(entries.size());
+    var size = HEADER_SIZE + (long) entries.size() * MIN_ENTRY_SIZE;
+    for (Entry entry : entries) {
+      var encoded = new ArrayList<byte[]>();
+      entry
+          .claims()
+          .forEach(
+              (name, value) -> {
+                if (value == null) {
+                  return;
+                }
+                var nameBytes = name.getBytes(StandardCharsets.UTF_8);
+                var valueBytes = value.getBytes(StandardCharsets.UTF_8);
+                // lengths are written as 2 bytes
+                if (nameBytes.length <= MAX_STRING_SIZE && valueBytes.length <= MAX_STRING_SIZE) {
+                  encoded.add(nameBytes);
+                  encoded.add(valueBytes);
+                }
+              });
+      for (byte[] bytes : encoded) {
+        size += Short.BYTES + bytes.length;
+      }
+      encodedClaims.add(encoded);
+    }
+
+    try (var channel =
+        FileChannel.open(
+            tempFile,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, size);
+      buffer.putInt(MAGIC).putInt(VERSION).putInt(entries.size());
+      for (int i = 0; i < entries.size(); i++) {
+        var entry = entries.get(i);
+        var claims = encodedClaims.get(i);
+        buffer.put((byte) entry.type().ordinal());
+        buffer.put(HashCode.fromString(entry.tokenDigest()).asBytes());
+        buffer.putLong(entry.expiresAt().getEpochSecond());
+        buffer.put((byte) (claims.size() / 2));
+        for (byte[] bytes : claims) {
+          buffer.putShort((short) bytes.length);
+          buffer.put(bytes);
+        }
+      }
+      buffer.force();
+    }
+
+    Files.move(
+        tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  @VisibleForTesting
+  static List<Entry> readEntries(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() < HEADER_SIZE
+          || buffer.getInt() != MAGIC
+          || buffer.getInt() != VERSION) {
+        throw new IOException("Unknown auth cache snapshot format");
+      }
+
+      var count = buffer.getInt();
+      if (count < 0 || buffer.remaining() < (long) count * MIN_ENTRY_SIZE) {
+        throw new IOException("Truncated auth cache snapshot");
+      }
+
+      var now = Instant.now();
+      var entryTypes = EntryType.values();
+      var entries = new ArrayList<Entry>(count);
+      var digest = new byte[DIGEST_SIZE];
+      try {
+        for (int i = 0; i < count; i++) {
+          var type = buffer.get();
+          buffer.get(digest);
+          var expiresAt = Instant.ofEpochSecond(buffer.getLong());
+          if (type < 0 || type >= entryTypes.length) {
+            throw new IOException("Unknown auth cache snapshot entry type: " + type);
+          }
+          var claimCount = Byte.toUnsignedInt(buffer.get());
+          var claims = new HashMap<String, String>();
+          for (int j = 0; j < claimCount; j++) {
+            claims.put(readString(buffer), readString(buffer));
+          }
+          if (expiresAt.isAfter(now)) {
+            var tokenDigest = HashCode.fromBytes(digest).toString();
+            entries.add(new Entry(entryTypes[type], tokenDigest, expiresAt, Map.copyOf(claims)));
+          }
+        }
+      } catch (BufferUnderflowException e) {
+        throw new IOException("Truncated auth cache snapshot", e);
+      }
+      return entries;
+    }
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    var bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
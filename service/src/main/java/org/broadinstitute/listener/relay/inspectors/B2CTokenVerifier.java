@@ -0,0 +1,60 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.auth0.jwt.interfaces.RSAKeyProvider;
+import java.util.Optional;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verifies B2C tokens locally: the signature against the keys of the key provider, and the issuer
+ * and audience claims against the configured values. Expiration is checked by the {@link
+ * TokenChecker}.
+ */
+public class B2CTokenVerifier {
+  private static final String SUPPORTED_ALGORITHM = "RS256";
+
+  private final Logger logger = LoggerFactory.getLogger(B2CTokenVerifier.class);
+  private final Algorithm algorithm;
+  private final String issuer;
+  private final String audience;
+
+  public B2CTokenVerifier(RSAKeyProvider keyProvider, String issuer, String audience) {
+    this.algorithm = Algorithm.RSA256(keyProvider);
+    this.issuer = issuer;
+    this.audience = audience;
+  }
+
+  /**
+   * Verifies the decoded token.
+   *
+   * @param jwt decoded token
+   * @return the reason the token was rejected; empty if the token is valid.
+   */
+  public Optional<String> verify(DecodedJWT jwt) {
+    if (!SUPPORTED_ALGORITHM.equals(jwt.getAlgorithm())) {
+      return Optional.of("JWT algorithm not supported");
+    }
+
+    try {
+      algorithm.verify(jwt);
+    } catch (SignatureVerificationException e) {
+      logger.debug("JWT signature verification failed", e);
+      return Optional.of("JWT signature invalid");
+    }
+
+    if (StringUtils.isNotBlank(issuer) && !issuer.equals(jwt.getIssuer())) {
+      return Optional.of("JWT issuer invalid");
+    }
+
+    if (StringUtils.isNotBlank(audience)
+        && (jwt.getAudience() == null || !jwt.getAudience().contains(audience))) {
+      return Optional.of("JWT audience invalid");
+    }
+
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,115 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A circuit breaker for calls to a remote service.
+ *
+ * <p>The breaker opens after a number of consecutive failures. While open, calls are rejected
+ * without reaching the service. After the open duration, a single trial call is let through
+ * (half-open): its success closes the breaker, its failure opens it again.
+ */
+public class CircuitBreaker {
+  public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+  private final String name;
+  private final int failureThreshold;
+  private final Duration openDuration;
+  private final Counter rejectedCallsCounter;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private Instant openedAt = Instant.EPOCH;
+  private boolean trialCallInFlight;
+
+  public CircuitBreaker(
+      String name, int failureThreshold, Duration openDuration, MeterRegistry meterRegistry) {
+    this.name = name;
+    this.failureThreshold = failureThreshold;
+    this.openDuration = openDuration;
+
+    Gauge.builder("listener.circuit_breaker.state", this, b -> b.getState().ordinal())
+        .description("0: closed, 1: open, 2: half-open")
+        .tag("name", name)
+        .register(meterRegistry);
+    this.rejectedCallsCounter =
+        meterRegistry.counter("listener.circuit_breaker.rejected_calls", "name", name);
+  }
+
+  /**
+   * Asks for permission to call the service. A caller that gets the permission must report the
+   * outcome with {@link #onSuccess()} or {@link #onFailure()}, or give the permission back with
+   * {@link #releasePermission()} when the call had no outcome.
+   *
+   * @return true if the call can be made; false if the breaker is open.
+   */
+  public synchronized boolean tryAcquirePermission() {
+    if (state == State.OPEN && Instant.now().isAfter(openedAt.plus(openDuration))) {
+      logger.info("Circuit breaker {} is half-open. Letting a trial call through.", name);
+      state = State.HALF_OPEN;
+    }
+
+    if (state == State.CLOSED || (state == State.HALF_OPEN && !trialCallInFlight)) {
+      trialCallInFlight = state == State.HALF_OPEN;
+      return true;
+    }
+
+    rejectedCallsCounter.increment();
+    return false;
+  }
+
+  public synchronized void onSuccess() {
+    if (state != State.CLOSED) {
+      logger.info("Circuit breaker {} is closed", name);
+    }
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+    trialCallInFlight = false;
+  }
+
+  /**
+   * Gives back a permission without recording an outcome, e.g. when the call was interrupted. A
+   * half-open breaker stays half-open, and lets another trial call through.
+   */
+  public synchronized void releasePermission() {
+    trialCallInFlight = false;
+  }
+
+  public synchronized void onFailure() {
+    consecutiveFailures++;
+    trialCallInFlight = false;
+    if (state == State.HALF_OPEN
+        || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+      logger.warn(
+          "Circuit breaker {} is open after {} consecutive failures", name, consecutiveFailures);
+      state = State.OPEN;
+      openedAt = Instant.now();
+    }
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public double getRejectedCallCount() {
+    return rejectedCallsCounter.count();
+  }
+}
@@ -0,0 +1,11 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import java.io.IOException;
+
+/** Thrown instead of calling a remote service while its circuit breaker is open. */
+public class CircuitBreakerOpenException extends IOException {
+
+  public CircuitBreakerOpenException(String circuitBreakerName) {
+    super(String.format("Circuit breaker %s is open", circuitBreakerName));
+  }
+}
@@ -0,0 +1,155 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reports runtime activity to the service in the background.
+ *
+ * <p>Requests only record their token with {@link #recordActivity(String)}. A single background
+ * thread sends at most one PATCH per call window, using the most recent token. The first activity
+ * after a quiet window is reported right away; activity within a window is coalesced into one
+ * report at the start of the next window. Failed reports are retried with the same token.
+ */
+public class DateAccessedReporter implements AutoCloseable {
+  /** Connect and request timeout of the calls to the service. */
+  public static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  static final int MAX_ATTEMPTS = 3;
+
+  private final Logger logger = LoggerFactory.getLogger(DateAccessedReporter.class);
+  private final URI serviceUri;
+  private final HttpClient httpClient;
+  private final long callWindowNanos;
+  private final Duration retryBackoff;
+  private final ScheduledExecutorService executor;
+
+  private final AtomicReference<String> latestToken = new AtomicReference<>();
+  private final AtomicBoolean reportScheduled = new AtomicBoolean(false);
+  private volatile long nextReportNanos;
+
+  private final Counter activityCounter;
+  private final Counter successCounter;
+  private final Counter failureCounter;
+  private final Counter retryCounter;
+
+  public DateAccessedReporter(
+      URI serviceUri,
+      HttpClient httpClient,
+      Duration callWindow,
+      Duration retryBackoff,
+      MeterRegistry meterRegistry) {
+    this.serviceUri = serviceUri;
+    this.httpClient = httpClient;
+    this.callWindowNanos = callWindow.toNanos();
+    this.retryBackoff = retryBackoff;
+    this.nextReportNanos = System.nanoTime();
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("date-accessed-reporter-%d")
+                .setDaemon(true)
+                .build());
+
+    this.activityCounter = meterRegistry.counter("listener.date_accessed.activity");
+    this.successCounter =
+        meterRegistry.counter("listener.date_accessed.reports", "outcome", "success");
+    this.failureCounter =
+        meterRegistry.counter("listener.date_accessed.reports", "outcome", "failure");
+    this.retryCounter = meterRegistry.counter("listener.date_accessed.reports", "outcome", "retry");
+  }
+
+  /**
+   * Records activity for the runtime. Never blocks.
+   *
+   * @param token token of the user; used for the next report.
+   */
+  public void recordActivity(String token) {
+    latestToken.set(token);
+    activityCounter.increment();
+
+    if (reportScheduled.compareAndSet(false, true)) {
+      long delay = Math.max(0, nextReportNanos - System.nanoTime());
+      executor.schedule(this::report, delay, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private void report() {
+    nextReportNanos = System.nanoTime() + callWindowNanos;
+    // clear the flag before taking the token, so activity recorded from now on schedules the
+    // report of the next window.
+    reportScheduled.set(false);
+
+    String token = latestToken.getAndSet(null);
+    if (token != null) {
+      send(token, 1);
+    }
+  }
+
+  private void send(String token, int attempt) {
+    var request =
+        HttpRequest.newBuilder()
+            .uri(serviceUri)
+            .method("PATCH", HttpRequest.BodyPublishers.noBody())
+            .timeout(TIMEOUT)
+            .header("Authorization", "Bearer " + token)
+            .build();
+
+    logger.debug("Making a call to the last accessed date API at this URL: {}", serviceUri);
+
+    try {
+      HttpResponse<String> response =
+          httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+      logger.info(
+          "The set last accessed date API call was made with the following response: {}",
+          response.statusCode());
+
+      if (response.statusCode() >= 500) {
+        retryOrFail(token, attempt, null);
+      } else if (response.statusCode() >= 400) {
+        failureCounter.increment();
+      } else {
+        successCounter.increment();
+      }
+    } catch (IOException | RuntimeException e) {
+      retryOrFail(token, attempt, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failureCounter.increment();
+    }
+  }
+
+  private void retryOrFail(String token, int attempt, Exception cause) {
+    if (attempt >= MAX_ATTEMPTS) {
+      logger.error("Failed to call the set date accessed API after {} attempts", attempt, cause);
+      failureCounter.increment();
+      return;
+    }
+
+    logger.warn("Failed to call the set date accessed API. Attempt: {}", attempt, cause);
+    retryCounter.increment();
+    executor.schedule(
+        () -> send(token, attempt + 1),
+        retryBackoff.multipliedBy(attempt).toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+}
@@ -1,24 +1,72 @@
 package org.broadinstitute.listener.relay.inspectors;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.gson.Gson;
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import org.springframework.stereotype.Component;
+import java.time.Duration;
 
-@Component
 public class GoogleTokenInfoClient {
-  private final HttpClient httpClient = HttpClient.newHttpClient();
+  public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+  private static final Gson GSON = new Gson();
+  private final HttpClient httpClient;
+  private final Duration timeout;
+  private final CircuitBreaker circuitBreaker;
   private final String GOOGLE_OAUTH_SERVER =
       "https://www.googleapis.com/oauth2/v1/tokeninfo?access_token=";
 
+  /**
+   * @param timeout connect and request timeout of calls to the tokeninfo API
+   * @param circuitBreaker breaker that guards the tokeninfo API
+   */
+  public GoogleTokenInfoClient(Duration timeout, CircuitBreaker circuitBreaker) {
+    this(HttpClient.newBuilder().connectTimeout(timeout).build(), timeout, circuitBreaker);
+  }
+
+  @VisibleForTesting
+  GoogleTokenInfoClient(HttpClient httpClient, Duration timeout, CircuitBreaker circuitBreaker) {
+    this.httpClient = httpClient;
+    this.timeout = timeout;
+    this.circuitBreaker = circuitBreaker;
+  }
+
   public GoogleOauthInfoResponse getTokenInfo(String token)
       throws IOException, InterruptedException {
-    var request = HttpRequest.newBuilder().uri(URI.create(GOOGLE_OAUTH_SERVER + token)).build();
+    var request =
+        HttpRequest.newBuilder()
+            .uri(URI.create(GOOGLE_OAUTH_SERVER + token))
+            .timeout(timeout)
+            .build();
+
+    if (!circuitBreaker.tryAcquirePermission()) {
+      throw new CircuitBreakerOpenException(circuitBreaker.getName());
+    }
+
+    HttpResponse<String> oauthInfoResponse;
+    try {
+      oauthInfoResponse = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    } catch (IOException | RuntimeException e) {
+      circuitBreaker.onFailure();
+      throw e;
+    } catch (InterruptedException e) {
+      // neither a failure nor a success of the service
+      circuitBreaker.releasePermission();
+      throw e;
+    }
+
+    // the service is failing, or throttling the listener
+    if (oauthInfoResponse.statusCode() >= 500 || oauthInfoResponse.statusCode() == 429) {
+      circuitBreaker.onFailure();
+      throw new IOException(
+          String.format("Tokeninfo API failed with status %d", oauthInfoResponse.statusCode()));
+    }
 
-    var oauthInfoResponse = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-    return new Gson().fromJson(oauthInfoResponse.body(), GoogleOauthInfoResponse.class);
+    // invalid tokens get a 4xx response with an error in the body
+    circuitBreaker.onSuccess();
+    return GSON.fromJson(oauthInfoResponse.body(), GoogleOauthInfoResponse.class);
   }
 }
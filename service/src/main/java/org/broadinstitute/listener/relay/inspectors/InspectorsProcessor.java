@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import org.broadinstitute.listener.relay.RequestEnvelope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.lang.NonNull;
@@ -27,10 +28,22 @@ public class InspectorsProcessor {
    */
   public boolean isRelayedWebSocketUpgradeRequestAccepted(
       @NonNull RelayedHttpListenerRequest listenerRequest) {
+    return isRelayedWebSocketUpgradeRequestAccepted(RequestEnvelope.of(listenerRequest));
+  }
+
+  /**
+   * Returns true if all inspectors accept the websocket upgrade request. The inspectors share the
+   * values parsed from the request through the envelope.
+   *
+   * @param requestEnvelope
+   * @return true or false
+   */
+  public boolean isRelayedWebSocketUpgradeRequestAccepted(
+      @NonNull RequestEnvelope requestEnvelope) {
     return isRequestAccepted(
-        request ->
-            applyInspectorsToWebSocketUpgradeRequest(request).stream().collect(Collectors.toSet()),
-        listenerRequest);
+        envelope ->
+            applyInspectorsToWebSocketUpgradeRequest(envelope).stream().collect(Collectors.toSet()),
+        requestEnvelope);
   }
 
   /**
@@ -41,16 +54,26 @@ public class InspectorsProcessor {
    * @return true or false
    */
   public boolean isRelayedHttpRequestAccepted(@NonNull RelayedHttpListenerRequest listenerRequest) {
+    return isRelayedHttpRequestAccepted(RequestEnvelope.of(listenerRequest));
+  }
+
+  /**
+   * Returns true if all inspectors accept the HTTP request. The inspectors share the values parsed
+   * from the request through the envelope.
+   *
+   * @param requestEnvelope
+   * @return true or false
+   */
+  public boolean isRelayedHttpRequestAccepted(@NonNull RequestEnvelope requestEnvelope) {
     return isRequestAccepted(
-        request ->
-            applyInspectorsToRelayedHttpRequest(request).stream().collect(Collectors.toSet()),
-        listenerRequest);
+        envelope ->
+            applyInspectorsToRelayedHttpRequest(envelope).stream().collect(Collectors.toSet()),
+        requestEnvelope);
   }
 
   private boolean isRequestAccepted(
-      Function<RelayedHttpListenerRequest, Set<Boolean>> distinctSet,
-      RelayedHttpListenerRequest listenerRequest) {
-    Set<Boolean> distinctResults = distinctSet.apply(listenerRequest);
+      Function<RequestEnvelope, Set<Boolean>> distinctSet, RequestEnvelope requestEnvelope) {
+    Set<Boolean> distinctResults = distinctSet.apply(requestEnvelope);
     boolean result;
     int size = distinctResults.size();
     switch (size) {
@@ -68,32 +91,31 @@ public class InspectorsProcessor {
     logger.info(
         "Inspection result for the HTTP request. Result: {}, URI:{}",
         result,
-        listenerRequest.getUri());
+        requestEnvelope.getRequest().getUri());
 
     return result;
   }
 
-  private List<Boolean> applyInspectorsToRelayedHttpRequest(
-      RelayedHttpListenerRequest listenerRequest) {
+  private List<Boolean> applyInspectorsToRelayedHttpRequest(RequestEnvelope requestEnvelope) {
     List<Boolean> results = new ArrayList<>();
 
     if (!inspectors.isEmpty()) {
       inspectors.forEach(
           requestInspector ->
-              results.add(requestInspector.inspectRelayedHttpRequest(listenerRequest)));
+              results.add(requestInspector.inspectRelayedHttpRequest(requestEnvelope)));
     }
 
     return results;
   }
 
   private List<Boolean> applyInspectorsToWebSocketUpgradeRequest(
-      RelayedHttpListenerRequest listenerRequest) {
+      RequestEnvelope requestEnvelope) {
     List<Boolean> results = new ArrayList<>();
 
     if (!inspectors.isEmpty()) {
       inspectors.forEach(
           requestInspector ->
-              results.add(requestInspector.inspectWebSocketUpgradeRequest(listenerRequest)));
+              results.add(requestInspector.inspectWebSocketUpgradeRequest(requestEnvelope)));
     }
 
     return results;
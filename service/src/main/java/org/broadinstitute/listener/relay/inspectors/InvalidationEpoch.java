@@ -0,0 +1,31 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the invalidations of the auth caches, so that a check that started before an
+ * invalidation does not cache its answer after it.
+ *
+ * <p>The invalidator advances the epoch before evicting. A check reads the epoch before calling the
+ * network, and after caching its answer removes it again if the epoch moved: either the eviction
+ * came after the write and removed it, or the check sees the new epoch.
+ */
+public class InvalidationEpoch {
+  private final AtomicLong epoch = new AtomicLong();
+
+  public long current() {
+    return epoch.get();
+  }
+
+  public void advance() {
+    epoch.incrementAndGet();
+  }
+
+  /**
+   * @param epoch epoch read before a check
+   * @return true if no invalidation started since
+   */
+  public boolean isCurrent(long epoch) {
+    return this.epoch.get() == epoch;
+  }
+}
@@ -0,0 +1,173 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import com.auth0.jwt.interfaces.RSAKeyProvider;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides the RSA public keys of a JSON Web Key Set (JWKS). The key set is loaded from a URL or a
+ * local file, kept in memory and reloaded periodically. A token signed with an unknown key id
+ * triggers an early reload, at most once per {@link #MIN_RELOAD_INTERVAL}.
+ *
+ * <p>Key sets are loaded on the refresh thread only, with a timeout, so a slow JWKS host never
+ * blocks the requests: a request with an unknown key id is rejected, and the reload it triggers
+ * serves the requests that follow.
+ */
+public class JwksKeyProvider implements RSAKeyProvider, AutoCloseable {
+  static final Duration MIN_RELOAD_INTERVAL = Duration.ofSeconds(30);
+  static final Duration FETCH_TIMEOUT = Duration.ofSeconds(10);
+
+  private final Logger logger = LoggerFactory.getLogger(JwksKeyProvider.class);
+  private final URI jwksUri;
+  private final HttpClient httpClient =
+      HttpClient.newBuilder().connectTimeout(FETCH_TIMEOUT).build();
+  private final ScheduledExecutorService refreshExecutor;
+  private volatile Map<String, RSAPublicKey> keys = Map.of();
+  private final AtomicReference<Instant> lastLoadAttempt = new AtomicReference<>(Instant.EPOCH);
+
+  public JwksKeyProvider(String jwksLocation, Duration refreshInterval) {
+    this.jwksUri = toUri(jwksLocation);
+    // the first load happens before the provider serves any request
+    reload();
+
+    this.refreshExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("jwks-refresh-%d").setDaemon(true).build());
+    refreshExecutor.scheduleWithFixedDelay(
+        this::reload,
+        refreshInterval.toSeconds(),
+        refreshInterval.toSeconds(),
+        TimeUnit.SECONDS);
+  }
+
+  @Override
+  public RSAPublicKey getPublicKeyById(String keyId) {
+    if (keyId == null) {
+      return null;
+    }
+
+    var key = keys.get(keyId);
+    if (key == null) {
+      requestReload(keyId);
+    }
+    return key;
+  }
+
+  private void requestReload(String keyId) {
+    var lastAttempt = lastLoadAttempt.get();
+    var now = Instant.now();
+    if (now.isAfter(lastAttempt.plus(MIN_RELOAD_INTERVAL))
+        && lastLoadAttempt.compareAndSet(lastAttempt, now)) {
+      logger.info("Key id {} not found in the key set. Reloading the key set.", keyId);
+      refreshExecutor.execute(this::reload);
+    }
+  }
+
+  @Override
+  public RSAPrivateKey getPrivateKey() {
+    // this provider is only used to verify signatures
+    return null;
+  }
+
+  @Override
+  public String getPrivateKeyId() {
+    return null;
+  }
+
+  @Override
+  public void close() {
+    refreshExecutor.shutdownNow();
+  }
+
+  /** Loads the key set. Runs on the refresh thread, except for the first load. */
+  private void reload() {
+    lastLoadAttempt.set(Instant.now());
+    try {
+      keys = parseKeys(fetch());
+      logger.info("Loaded {} keys from the key set at {}", keys.size(), jwksUri);
+    } catch (IOException | RuntimeException e) {
+      // keep serving the keys of the last successful load
+      logger.error("Failed to load the key set from {}", jwksUri, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private String fetch() throws IOException, InterruptedException {
+    if ("file".equals(jwksUri.getScheme())) {
+      return Files.readString(Path.of(jwksUri));
+    }
+
+    var request = HttpRequest.newBuilder(jwksUri).timeout(FETCH_TIMEOUT).GET().build();
+    var response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    if (response.statusCode() != 200) {
+      throw new IOException("Unexpected status code " + response.statusCode());
+    }
+    return response.body();
+  }
+
+  private Map<String, RSAPublicKey> parseKeys(String json) {
+    var parsedKeys = new HashMap<String, RSAPublicKey>();
+    var keySet = JsonParser.parseString(json).getAsJsonObject().getAsJsonArray("keys");
+    for (JsonElement element : keySet) {
+      var key = element.getAsJsonObject();
+      if (!"RSA".equals(getString(key, "kty")) || getString(key, "kid") == null) {
+        continue;
+      }
+
+      try {
+        parsedKeys.put(getString(key, "kid"), toPublicKey(key));
+      } catch (GeneralSecurityException | IllegalArgumentException e) {
+        logger.error("Skipping invalid key {} in the key set", getString(key, "kid"), e);
+      }
+    }
+    return Map.copyOf(parsedKeys);
+  }
+
+  private static RSAPublicKey toPublicKey(JsonObject key) throws GeneralSecurityException {
+    var modulus = new BigInteger(1, Base64.getUrlDecoder().decode(getString(key, "n")));
+    var exponent = new BigInteger(1, Base64.getUrlDecoder().decode(getString(key, "e")));
+    return (RSAPublicKey)
+        KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(modulus, exponent));
+  }
+
+  private static String getString(JsonObject object, String member) {
+    var element = object.get(member);
+    return element == null || element.isJsonNull() ? null : element.getAsString();
+  }
+
+  private static URI toUri(String jwksLocation) {
+    var uri = URI.create(jwksLocation);
+    if (uri.getScheme() == null) {
+      // a plain path to a local file
+      return Path.of(jwksLocation).toUri();
+    }
+    return uri;
+  }
+}
@@ -0,0 +1,231 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.ScanParams;
+
+/**
+ * {@link SharedAuthCache} backed by Redis, or any server speaking the Redis protocol.
+ *
+ * <p>Permissions are stored as epoch seconds under {@code <keyPrefix><digest>}, and expire in
+ * Redis together with the token, or after {@code maxTtl} if sooner. The key prefix must identify
+ * the resource, so that listeners of different resources can share a server. Calls are guarded by
+ * a circuit breaker, so an unavailable server costs at most one timeout per open period.
+ *
+ * <p>Invalidations are published on the {@code <keyPrefix>invalidations} channel, as {@code
+ * <origin> <scope> <value>}. The origin identifies the publishing instance, so that it ignores its
+ * own invalidations. A daemon thread holds the subscription, and subscribes again after {@link
+ * #RESUBSCRIBE_DELAY} when the connection is lost.
+ */
+public class RedisSharedAuthCache implements SharedAuthCache, AutoCloseable {
+  static final Duration RESUBSCRIBE_DELAY = Duration.ofSeconds(5);
+  private static final int SCAN_COUNT = 500;
+
+  private final Logger logger = LoggerFactory.getLogger(RedisSharedAuthCache.class);
+  private final JedisPool jedisPool;
+  private final String keyPrefix;
+  private final Duration maxTtl;
+  private final CircuitBreaker circuitBreaker;
+  private final Counter hitCounter;
+  private final Counter missCounter;
+  private final Counter errorCounter;
+  private final String invalidationChannel;
+  private final String origin = UUID.randomUUID().toString();
+  private final ExecutorService subscriberExecutor =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("shared-cache-subscriber-%d")
+              .setDaemon(true)
+              .build());
+  private volatile JedisPubSub subscription;
+  private volatile boolean closed;
+
+  public RedisSharedAuthCache(
+      JedisPool jedisPool,
+      String keyPrefix,
+      Duration maxTtl,
+      CircuitBreaker circuitBreaker,
+      MeterRegistry meterRegistry) {
+    this.jedisPool = jedisPool;
+    this.keyPrefix = keyPrefix;
+    this.maxTtl = maxTtl;
+    this.circuitBreaker = circuitBreaker;
+    this.hitCounter = meterRegistry.counter("listener.auth_cache.l2.requests", "result", "hit");
+    this.missCounter = meterRegistry.counter("listener.auth_cache.l2.requests", "result", "miss");
+    this.errorCounter = meterRegistry.counter("listener.auth_cache.l2.requests", "result", "error");
+    this.invalidationChannel = keyPrefix + "invalidations";
+  }
+
+  @Override
+  public Optional<Instant> getPermission(String digest) {
+    // a missing key is mapped to an empty value, to tell it apart from a failed call
+    var value = call(jedis -> Objects.requireNonNullElse(jedis.get(keyPrefix + digest), ""));
+    if (value.isEmpty()) {
+      errorCounter.increment();
+      return Optional.empty();
+    }
+
+    if (!value.get().isEmpty()) {
+      try {
+        var expiresAt = Instant.ofEpochSecond(Long.parseLong(value.get()));
+        if (expiresAt.isAfter(Instant.now())) {
+          hitCounter.increment();
+          return Optional.of(expiresAt);
+        }
+      } catch (NumberFormatException e) {
+        logger.warn("Invalid value in the shared auth cache", e);
+      }
+    }
+
+    missCounter.increment();
+    return Optional.empty();
+  }
+
+  @Override
+  public void putPermission(String digest, Instant expiresAt) {
+    var ttl = Duration.between(Instant.now(), expiresAt);
+    if (ttl.compareTo(maxTtl) > 0) {
+      ttl = maxTtl;
+    }
+
+    var ttlInSeconds = (int) ttl.toSeconds();
+    if (ttlInSeconds <= 0) {
+      return;
+    }
+
+    call(
+        jedis ->
+            jedis.setex(
+                keyPrefix + digest, ttlInSeconds, String.valueOf(expiresAt.getEpochSecond())));
+  }
+
+  @Override
+  public void evictPermission(String digest) {
+    call(jedis -> jedis.del(keyPrefix + digest));
+  }
+
+  @Override
+  public void evictAllPermissions() {
+    call(
+        jedis -> {
+          var params = new ScanParams().match(keyPrefix + "*").count(SCAN_COUNT);
+          var cursor = ScanParams.SCAN_POINTER_START;
+          do {
+            var result = jedis.scan(cursor, params);
+            if (!result.getResult().isEmpty()) {
+              jedis.del(result.getResult().toArray(new String[0]));
+            }
+            cursor = result.getCursor();
+          } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+          return cursor;
+        });
+  }
+
+  @Override
+  public void publishInvalidation(Invalidation invalidation) {
+    var message = String.join(" ", origin, invalidation.scope().name(), invalidation.value());
+    call(jedis -> jedis.publish(invalidationChannel, message));
+  }
+
+  @Override
+  public void subscribeToInvalidations(Consumer<Invalidation> handler) {
+    subscriberExecutor.execute(() -> subscribe(handler));
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    var current = subscription;
+    if (current != null && current.isSubscribed()) {
+      current.unsubscribe();
+    }
+    subscriberExecutor.shutdownNow();
+    jedisPool.close();
+  }
+
+  /** Holds the subscription until closed. Not guarded by the circuit breaker: it never ends. */
+  private void subscribe(Consumer<Invalidation> handler) {
+    while (!closed) {
+      var pubSub =
+          new JedisPubSub() {
+            @Override
+            public void onMessage(String channel, String message) {
+              try {
+                parseInvalidation(message).ifPresent(handler);
+              } catch (RuntimeException e) {
+                logger.error("Failed to apply an invalidation of another replica", e);
+              }
+            }
+          };
+      subscription = pubSub;
+      try (var jedis = jedisPool.getResource()) {
+        // blocks until unsubscribed or disconnected
+        jedis.subscribe(pubSub, invalidationChannel);
+      } catch (RuntimeException e) {
+        if (!closed) {
+          logger.warn("Lost the subscription to the shared cache invalidations", e);
+        }
+      }
+
+      if (!closed) {
+        try {
+          Thread.sleep(RESUBSCRIBE_DELAY.toMillis());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /** @return the invalidation of a message; empty if published by this instance or malformed. */
+  Optional<Invalidation> parseInvalidation(String message) {
+    var parts = message.split(" ", 3);
+    if (parts.length != 3 || parts[0].equals(origin)) {
+      return Optional.empty();
+    }
+
+    try {
+      return Optional.of(new Invalidation(Invalidation.Scope.valueOf(parts[1]), parts[2]));
+    } catch (IllegalArgumentException e) {
+      logger.warn("Invalid message on the shared cache invalidation channel: {}", message);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Runs a command on a pooled connection.
+   *
+   * @return the result of the command; empty if the call failed or the command returned null.
+   */
+  private <T> Optional<T> call(Function<Jedis, T> command) {
+    if (!circuitBreaker.tryAcquirePermission()) {
+      return Optional.empty();
+    }
+
+    try (var jedis = jedisPool.getResource()) {
+      var result = command.apply(jedis);
+      circuitBreaker.onSuccess();
+      return Optional.ofNullable(result);
+    } catch (RuntimeException e) {
+      circuitBreaker.onFailure();
+      logger.warn("Shared auth cache call failed", e);
+      return Optional.empty();
+    }
+  }
+}
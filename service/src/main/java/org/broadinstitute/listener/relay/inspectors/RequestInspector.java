@@ -1,11 +1,10 @@
 package org.broadinstitute.listener.relay.inspectors;
 
-import com.microsoft.azure.relay.RelayedHttpListenerRequest;
+import org.broadinstitute.listener.relay.RequestEnvelope;
 
 public interface RequestInspector {
 
-  public boolean inspectWebSocketUpgradeRequest(
-      RelayedHttpListenerRequest relayedHttpListenerRequest);
+  public boolean inspectWebSocketUpgradeRequest(RequestEnvelope requestEnvelope);
 
-  public boolean inspectRelayedHttpRequest(RelayedHttpListenerRequest relayedHttpListenerRequest);
+  public boolean inspectRelayedHttpRequest(RequestEnvelope requestEnvelope);
 }
@@ -1,22 +1,29 @@
 package org.broadinstitute.listener.relay.inspectors;
 
 import com.microsoft.azure.relay.RelayedHttpListenerRequest;
-import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Optional;
-import java.util.TreeMap;
 import org.apache.commons.lang3.StringUtils;
-import org.broadinstitute.listener.relay.Utils;
+import org.broadinstitute.listener.relay.RequestEnvelope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Formats access log lines. Only the claims already known for the token are logged, so logging
+ * never checks a token. See {@link AccessLogWriter} for logging off the request threads.
+ */
 public class RequestLogger {
 
   private final Logger logger = LoggerFactory.getLogger(RequestLogger.class);
   private static final List<String> MUST_MASKED_HEADER_NAMES = List.of("Authorization", "Cookie");
+  private static final String MISSING = "-";
+  private final TokenChecker tokenChecker;
+
+  public RequestLogger(TokenChecker tokenChecker) {
+    this.tokenChecker = tokenChecker;
+  }
 
   /**
    * Logs a relayed HTTP request with the result status code
@@ -25,77 +32,91 @@ public class RequestLogger {
    * @param statusCode Result of the request
    * @param requestTimestamp Timestamp of the request
    * @param prefix Logging prefix to include
-   * @throws IOException
-   * @throws InterruptedException
    */
   public void logRequest(
       RelayedHttpListenerRequest relayedHttpListenerRequest,
       int statusCode,
       OffsetDateTime requestTimestamp,
-      String prefix)
-      throws IOException, InterruptedException {
-    if (relayedHttpListenerRequest == null) {
-      logger.warn("Null request provided for logging");
-      return;
-    }
-
-    // HTTP headers are case-insensitive
-    var headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
-    headers.putAll(relayedHttpListenerRequest.getHeaders());
-
-    var referer = headers.getOrDefault("Referer", "-");
-    var origin = headers.getOrDefault("Origin", "-");
-    var ua = headers.getOrDefault("User-Agent", "-");
-
-    String endpoint = "";
-    if (relayedHttpListenerRequest.getRemoteEndPoint() != null) {
-      endpoint = relayedHttpListenerRequest.getRemoteEndPoint().getHostString();
-    }
-    var claims = getTokenClaims(headers);
-
-    // log in a single apache-ish line
-    logger.info(
-        "{} - {} \"{}\" \"-\" \"{}\" \"{}\" [{}] \"{} {}\" {} \"{}\" \"{}\" \"{}\"",
-        prefix,
-        endpoint,
-        claims.getOrDefault("sub", "-"),
-        claims.getOrDefault("email", "-"),
-        claims.getOrDefault("idtyp", "-"),
-        requestTimestamp,
-        relayedHttpListenerRequest.getHttpMethod(),
-        relayedHttpListenerRequest.getUri(),
+      String prefix) {
+    logRequest(
+        relayedHttpListenerRequest == null ? null : RequestEnvelope.of(relayedHttpListenerRequest),
         statusCode,
-        referer,
-        origin,
-        ua);
-
-    logHeaders(relayedHttpListenerRequest.getHeaders());
+        requestTimestamp,
+        prefix);
   }
 
-  private Map<String, String> getTokenClaims(Map<String, String> headers)
-      throws IOException, InterruptedException {
-    var tokenChecker = new TokenChecker(new GoogleTokenInfoClient());
-    var maybeToken = getToken(headers);
-    if (maybeToken.isPresent()) {
-      return tokenChecker.getOauthInfo(maybeToken.get()).claims();
+  /**
+   * Logs a relayed HTTP request with the result status code, reusing the headers and claims
+   * already parsed from the request.
+   *
+   * @param requestEnvelope Relayed request
+   * @param statusCode Result of the request
+   * @param requestTimestamp Timestamp of the request
+   * @param prefix Logging prefix to include
+   */
+  public void logRequest(
+      RequestEnvelope requestEnvelope,
+      int statusCode,
+      OffsetDateTime requestTimestamp,
+      String prefix) {
+    var record = capture(requestEnvelope, statusCode, requestTimestamp, prefix, -1, -1);
+    if (record != null) {
+      write(record);
     }
-
-    return Map.of();
   }
 
-  private Optional<String> getToken(Map<String, String> headers) {
-    if (headers == null) {
-      logger.error("No auth headers found");
-      return Optional.empty();
+  /**
+   * Captures the access log values of a request, to be written later with {@link
+   * #write(AccessLogRecord)}.
+   *
+   * @return the record; null if there is no request to log.
+   */
+  public AccessLogRecord capture(
+      RequestEnvelope requestEnvelope,
+      int statusCode,
+      OffsetDateTime requestTimestamp,
+      String prefix,
+      long responseBytes,
+      long durationMillis) {
+    if (requestEnvelope == null || requestEnvelope.getRequest() == null) {
+      logger.warn("Null request provided for logging");
+      return null;
     }
 
-    var rawToken = Utils.getToken(headers);
-    if (rawToken.isEmpty()) {
-      logger.error("No valid token found");
-      return Optional.empty();
-    } else {
-      return rawToken;
-    }
+    return AccessLogRecord.capture(
+        requestEnvelope,
+        tokenChecker,
+        statusCode,
+        requestTimestamp,
+        prefix,
+        responseBytes,
+        durationMillis,
+        logger.isDebugEnabled());
+  }
+
+  /** Writes the access log line of a record. */
+  public void write(AccessLogRecord record) {
+    // log in a single apache-ish line
+    logger.info(
+        "{} - {} \"{}\" \"-\" \"{}\" \"{}\" [{}] \"{} {}\" {} \"{}\" \"{}\" \"{}\""
+            + " {} {} \"{}\"",
+        record.prefix(),
+        record.remoteAddress(),
+        record.subject(),
+        record.email(),
+        record.identityType(),
+        record.timestamp(),
+        record.method(),
+        record.uri(),
+        record.statusCode(),
+        record.referer(),
+        record.origin(),
+        record.userAgent(),
+        record.responseBytes() < 0 ? MISSING : record.responseBytes(),
+        record.durationMillis() < 0 ? MISSING : record.durationMillis(),
+        record.trackingId());
+
+    logHeaders(record.headers());
   }
 
   private void logHeaders(Map<String, String> headers) {
@@ -1,9 +1,8 @@
 package org.broadinstitute.listener.relay.inspectors;
 
-import com.microsoft.azure.relay.RelayedHttpListenerRequest;
 import java.time.Instant;
-import java.util.Map;
-import org.broadinstitute.listener.relay.Utils;
+import java.util.Optional;
+import org.broadinstitute.listener.relay.RequestEnvelope;
 import org.broadinstitute.listener.relay.inspectors.InspectorType.InspectorNameConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,30 +13,35 @@ import org.springframework.stereotype.Component;
 public class SamPermissionInspector implements RequestInspector {
   private final Logger logger = LoggerFactory.getLogger(SamPermissionInspector.class);
   private final SamResourceClient samResourceClient;
+  private final Optional<SessionTicketSigner> sessionTicketSigner;
 
-  public SamPermissionInspector(SamResourceClient samResourceClient) {
+  public SamPermissionInspector(
+      SamResourceClient samResourceClient, Optional<SessionTicketSigner> sessionTicketSigner) {
     this.samResourceClient = samResourceClient;
+    this.sessionTicketSigner = sessionTicketSigner;
   }
 
   @Override
-  public boolean inspectWebSocketUpgradeRequest(
-      @NonNull RelayedHttpListenerRequest relayedHttpListenerRequest) {
-    return checkPermission(relayedHttpListenerRequest.getHeaders());
+  public boolean inspectWebSocketUpgradeRequest(@NonNull RequestEnvelope requestEnvelope) {
+    return checkPermission(requestEnvelope);
   }
 
   @Override
-  public boolean inspectRelayedHttpRequest(
-      @NonNull RelayedHttpListenerRequest relayedHttpListenerRequest) {
-    return checkPermission(relayedHttpListenerRequest.getHeaders());
+  public boolean inspectRelayedHttpRequest(@NonNull RequestEnvelope requestEnvelope) {
+    return checkPermission(requestEnvelope);
   }
 
-  private boolean checkPermission(Map<String, String> headers) {
-    if (headers == null) {
+  private boolean checkPermission(RequestEnvelope requestEnvelope) {
+    if (!requestEnvelope.hasHeaders()) {
       logger.error("No auth headers found");
       return false;
     }
 
-    var leoToken = Utils.getToken(headers);
+    if (hasValidSessionTicket(requestEnvelope)) {
+      return true;
+    }
+
+    var leoToken = requestEnvelope.getToken();
 
     if (leoToken.isEmpty()) {
       logger.error("No valid token found");
@@ -48,6 +52,17 @@ public class SamPermissionInspector implements RequestInspector {
     }
   }
 
+  private boolean hasValidSessionTicket(RequestEnvelope requestEnvelope) {
+    if (sessionTicketSigner.isEmpty()) {
+      return false;
+    }
+
+    return requestEnvelope
+        .getCookie(SessionTicketSigner.TICKET_NAME)
+        .flatMap(ticket -> sessionTicketSigner.get().verify(ticket))
+        .isPresent();
+  }
+
   public boolean checkCachedPermission(String accessToken) {
     var expiresAt = samResourceClient.checkPermission(accessToken);
     return expiresAt.isAfter(Instant.now());
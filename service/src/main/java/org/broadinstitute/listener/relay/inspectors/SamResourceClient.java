@@ -1,65 +1,138 @@
 package org.broadinstitute.listener.relay.inspectors;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Map;
+import java.util.stream.Collectors;
 import okhttp3.OkHttpClient;
 import org.broadinstitute.dsde.workbench.client.sam.ApiClient;
 import org.broadinstitute.dsde.workbench.client.sam.ApiException;
 import org.broadinstitute.dsde.workbench.client.sam.api.ResourcesApi;
 import org.broadinstitute.dsde.workbench.client.sam.api.UsersApi;
+import org.broadinstitute.listener.relay.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.Cacheable;
 
 public class SamResourceClient {
+  public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+  static final int KNOWN_GOOD_PERMISSIONS_MAXIMUM_SIZE = 1000;
+
   private final String samUrl;
   private final String samResourceId;
   private final String samResourceType;
   private final TokenChecker tokenChecker;
   private final String samAction;
   private final OkHttpClient commonHttpClient;
+  private final CircuitBreaker circuitBreaker;
+  private final SharedAuthCache sharedAuthCache;
+  private final Counter staleDecisionsCounter;
+
+  // Keyed by token digest. Served while Sam is unavailable, until the token expires.
+  private final Cache<String, Instant> knownGoodPermissions;
+  // Keyed by token digest. Permissions restored from a snapshot, served without calling Sam.
+  private final Cache<String, Instant> restoredPermissions;
 
   private final Logger logger = LoggerFactory.getLogger(SamResourceClient.class);
 
+  /**
+   * @param sharedAuthCache second-level cache shared with other replicas; if null, permissions are
+   *     only cached in this process.
+   */
   public SamResourceClient(
       String samUrl,
       String samResourceId,
       String samResourceType,
       TokenChecker tokenChecker,
-      String samAction) {
+      String samAction,
+      Duration timeout,
+      CircuitBreaker circuitBreaker,
+      MeterRegistry meterRegistry,
+      SharedAuthCache sharedAuthCache) {
     this.samUrl = samUrl;
     this.samResourceId = samResourceId;
     this.samResourceType = samResourceType;
     this.tokenChecker = tokenChecker;
     this.samAction = samAction;
-    this.commonHttpClient = new ApiClient().getHttpClient().newBuilder().build();
+    this.commonHttpClient =
+        new ApiClient()
+            .getHttpClient()
+            .newBuilder()
+            .connectTimeout(timeout)
+            .readTimeout(timeout)
+            .callTimeout(timeout)
+            .build();
+    this.circuitBreaker = circuitBreaker;
+    this.sharedAuthCache = sharedAuthCache;
+    this.staleDecisionsCounter = meterRegistry.counter("listener.sam.stale_decisions");
+    this.knownGoodPermissions =
+        Caffeine.newBuilder()
+            .maximumSize(KNOWN_GOOD_PERMISSIONS_MAXIMUM_SIZE)
+            .expireAfter(new PermissionExpiry())
+            .build();
+    this.restoredPermissions =
+        Caffeine.newBuilder()
+            .maximumSize(KNOWN_GOOD_PERMISSIONS_MAXIMUM_SIZE)
+            .expireAfter(new PermissionExpiry())
+            .build();
   }
 
   // Should only be used in checkCachedPermission, but making it public so that we can test it
-  @Cacheable("expiresAt")
+  @Cacheable(value = "expiresAt", key = "#root.target.cacheKey(#accessToken)")
   public Instant checkPermission(String accessToken) {
+    var digest = Utils.getTokenDigest(accessToken);
+    var epoch = tokenChecker.getInvalidationEpoch().current();
+    var restoredExpiresAt = restoredPermissions.getIfPresent(digest);
+    if (restoredExpiresAt != null) {
+      return restoredExpiresAt;
+    }
+
+    if (sharedAuthCache != null) {
+      var sharedExpiresAt = sharedAuthCache.getPermission(digest);
+      if (sharedExpiresAt.isPresent()) {
+        putKnownGoodPermission(digest, sharedExpiresAt.get(), epoch);
+        return sharedExpiresAt.get();
+      }
+    }
+
     try {
       var oauthInfo = tokenChecker.getOauthInfo(accessToken);
       if (oauthInfo.expiresAt().isPresent()) {
 
-        var apiClient = getApiClient(accessToken);
-        var resourceApi = new ResourcesApi(apiClient);
-
-        var res = resourceApi.resourcePermissionV2(samResourceType, samResourceId, samAction);
-        if (res) return oauthInfo.expiresAt().get();
-        else {
+        var res = hasPermission(accessToken);
+        if (res) {
+          if (sharedAuthCache != null) {
+            sharedAuthCache.putPermission(digest, oauthInfo.expiresAt().get());
+          }
+          putKnownGoodPermission(digest, oauthInfo.expiresAt().get(), epoch);
+          return oauthInfo.expiresAt().get();
+        } else {
           logger.error("unauthorized request");
+          knownGoodPermissions.invalidate(digest);
           return Instant.EPOCH;
         }
       } else {
         logger.error("Token expired " + oauthInfo.error());
+        knownGoodPermissions.invalidate(digest);
         return Instant.EPOCH;
       }
-    } catch (IOException | InterruptedException e) {
+    } catch (IOException e) {
+      // the token info or Sam is unavailable, or its circuit breaker is open
+      return getKnownGoodPermission(digest, e);
+    } catch (InterruptedException e) {
       logger.error("Fail to check token info", e);
       return Instant.EPOCH;
     } catch (ApiException e) {
+      if (isServiceFailure(e)) {
+        return getKnownGoodPermission(digest, e);
+      }
       logger.error("Fail to check Sam permission", e);
       return Instant.EPOCH;
     } catch (Exception e) {
@@ -71,16 +144,25 @@ public class SamResourceClient {
   /**
    * Checks if the given user is enabled in Sam and has accepted the Terms of Service.
    *
+   * <p>Only positive results are cached, so a user who just got enabled, or just accepted the Terms
+   * of Service, is not rejected until the cache entry expires.
+   *
    * @param accessToken user token
    * @return true if the user is enabled; false otherwise.
    */
+  @Cacheable(
+      value = "userEnabled",
+      key = "#root.target.cacheKey(#accessToken)",
+      unless = "!#result")
   public boolean isUserEnabled(String accessToken) {
     var apiClient = getApiClient(accessToken);
     var usersApi = new UsersApi(apiClient);
     try {
-      var userInfo = usersApi.getUserStatusInfo();
       // Note getEnabled() also includes whether the user has accepted the Terms of Service
-      return userInfo.getEnabled();
+      return callSam(() -> usersApi.getUserStatusInfo().getEnabled());
+    } catch (CircuitBreakerOpenException e) {
+      logger.error("Fail to check Sam user status", e);
+      return false;
     } catch (ApiException e) {
       logger.error("Fail to check Sam permission", e);
       return false;
@@ -90,6 +172,164 @@ public class SamResourceClient {
     }
   }
 
+  /**
+   * Returns the granted permissions that have not expired yet.
+   *
+   * @return expiration of the permissions, keyed by token digest
+   */
+  public Map<String, Instant> exportPermissions() {
+    var now = Instant.now();
+    return knownGoodPermissions.asMap().entrySet().stream()
+        .filter(e -> e.getValue().isAfter(now))
+        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+  }
+
+  /**
+   * Restores permissions, e.g. from a snapshot taken before a restart. Restored permissions are
+   * served without calling Sam for at most {@code maxAge}, and as known-good permissions until they
+   * expire. Expired permissions are skipped.
+   *
+   * @param permissions expiration of the permissions, keyed by token digest
+   * @param maxAge how long a restored permission is served without calling Sam
+   * @return the number of restored permissions
+   */
+  public int restorePermissions(Map<String, Instant> permissions, Duration maxAge) {
+    var now = Instant.now();
+    var restored = 0;
+    for (var entry : permissions.entrySet()) {
+      if (entry.getValue().isAfter(now)) {
+        knownGoodPermissions.put(entry.getKey(), entry.getValue());
+        var servedUntil = now.plus(maxAge);
+        restoredPermissions.put(
+            entry.getKey(),
+            entry.getValue().isBefore(servedUntil) ? entry.getValue() : servedUntil);
+        restored++;
+      }
+    }
+    return restored;
+  }
+
+  /**
+   * Drops the shared, known-good and restored permission of a token, so that its next check calls
+   * Sam.
+   *
+   * @param digest token digest
+   */
+  public void invalidate(String digest) {
+    if (sharedAuthCache != null) {
+      sharedAuthCache.evictPermission(digest);
+    }
+    invalidateLocally(digest);
+  }
+
+  public void invalidateAll() {
+    if (sharedAuthCache != null) {
+      sharedAuthCache.evictAllPermissions();
+    }
+    invalidateAllLocally();
+  }
+
+  /**
+   * Drops the known-good and restored permission of a token, but not the shared one. Used for the
+   * invalidations of other replicas, which evicted the shared permission already.
+   *
+   * @param digest token digest
+   */
+  public void invalidateLocally(String digest) {
+    knownGoodPermissions.invalidate(digest);
+    restoredPermissions.invalidate(digest);
+  }
+
+  public void invalidateAllLocally() {
+    knownGoodPermissions.invalidateAll();
+    restoredPermissions.invalidateAll();
+  }
+
+  /**
+   * Returns the key of a token in the Spring caches. The key carries the invalidation epoch, and is
+   * computed before the method runs, so an answer computed across an invalidation is cached under
+   * a key that is no longer looked up. As a consequence, any invalidation makes all the entries
+   * cached before it unreachable; they expire with their TTL.
+   *
+   * @param accessToken user token
+   * @return key of the token in the current epoch
+   */
+  public PermissionCacheKey cacheKey(String accessToken) {
+    return new PermissionCacheKey(accessToken, tokenChecker.getInvalidationEpoch().current());
+  }
+
+  public CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  public double getStaleDecisionCount() {
+    return staleDecisionsCounter.count();
+  }
+
+  private boolean hasPermission(String accessToken)
+      throws ApiException, CircuitBreakerOpenException {
+    var resourceApi = new ResourcesApi(getApiClient(accessToken));
+    return callSam(
+        () -> resourceApi.resourcePermissionV2(samResourceType, samResourceId, samAction));
+  }
+
+  private <T> T callSam(SamCall<T> samCall) throws ApiException, CircuitBreakerOpenException {
+    if (!circuitBreaker.tryAcquirePermission()) {
+      throw new CircuitBreakerOpenException(circuitBreaker.getName());
+    }
+
+    try {
+      var result = samCall.call();
+      circuitBreaker.onSuccess();
+      return result;
+    } catch (ApiException e) {
+      if (isServiceFailure(e)) {
+        circuitBreaker.onFailure();
+      } else {
+        circuitBreaker.onSuccess();
+      }
+      throw e;
+    } catch (RuntimeException e) {
+      circuitBreaker.onFailure();
+      throw e;
+    }
+  }
+
+  /**
+   * Caches a known-good permission, unless an invalidation started since {@code epoch}. Then the
+   * permission may have been revoked before it was granted, so it is evicted again, from the shared
+   * cache too.
+   */
+  private void putKnownGoodPermission(String digest, Instant expiresAt, long epoch) {
+    knownGoodPermissions.put(digest, expiresAt);
+    if (!tokenChecker.getInvalidationEpoch().isCurrent(epoch)) {
+      knownGoodPermissions.asMap().remove(digest, expiresAt);
+      if (sharedAuthCache != null) {
+        sharedAuthCache.evictPermission(digest);
+      }
+    }
+  }
+
+  private Instant getKnownGoodPermission(String digest, Exception cause) {
+    var expiresAt = knownGoodPermissions.getIfPresent(digest);
+    if (expiresAt != null && expiresAt.isAfter(Instant.now())) {
+      logger.warn("Fail to check permission. Serving the last known-good permission.", cause);
+      staleDecisionsCounter.increment();
+      return expiresAt;
+    }
+
+    logger.error("Fail to check permission", cause);
+    return Instant.EPOCH;
+  }
+
+  /**
+   * Network errors have code 0. Rate limiting and server errors mean Sam is unavailable; other
+   * errors are answers about the request.
+   */
+  private static boolean isServiceFailure(ApiException e) {
+    return e.getCode() == 0 || e.getCode() == 429 || e.getCode() >= 500;
+  }
+
   @VisibleForTesting
   ApiClient getApiClient(String accessToken) {
     // OkHttpClient objects manage their own thread pools, so it's much more performant to share one
@@ -98,4 +338,37 @@ public class SamResourceClient {
     apiClient.setAccessToken(accessToken);
     return apiClient;
   }
+
+  /** Key of the Spring caches: the token, and the invalidation epoch it was checked in. */
+  public record PermissionCacheKey(String accessToken, long epoch) {
+    @Override
+    public String toString() {
+      // keys may be logged by the cache; don't leak the token
+      return Utils.getTokenDigest(accessToken) + "@" + epoch;
+    }
+  }
+
+  @FunctionalInterface
+  private interface SamCall<T> {
+    T call() throws ApiException;
+  }
+
+  private static class PermissionExpiry implements Expiry<String, Instant> {
+    @Override
+    public long expireAfterCreate(String key, Instant expiresAt, long currentTime) {
+      return Math.max(0, Duration.between(Instant.now(), expiresAt).toNanos());
+    }
+
+    @Override
+    public long expireAfterUpdate(
+        String key, Instant expiresAt, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, expiresAt, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(
+        String key, Instant expiresAt, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
 }
@@ -0,0 +1,194 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Issues and verifies session tickets: short-lived values signed by the listener that prove a user
+ * already passed the full token and Sam permission check for this listener's resource.
+ *
+ * <p>A ticket has the form {@code <keyId>.<expiresAt>.<subject>.<signature>}, where the signature
+ * is an HMAC-SHA256 over the key id, expiry, subject and resource id. Signing keys are random,
+ * never leave the process and are rotated lazily; tickets signed with the current or the previous
+ * key are accepted. Verification needs no cache lookups and no remote calls.
+ */
+public class SessionTicketSigner {
+  public static final String TICKET_NAME = "LeoSessionTicket";
+
+  private static final int KEY_SIZE_IN_BYTES = 32;
+  private static final String SEPARATOR = ".";
+
+  private final Logger logger = LoggerFactory.getLogger(SessionTicketSigner.class);
+  private final SecureRandom secureRandom = new SecureRandom();
+  private final String resourceId;
+  private final Duration ticketTtl;
+  private final Duration keyRotationInterval;
+  private final Cache<String, Boolean> revokedSubjects;
+  private volatile KeyRing keyRing;
+
+  public SessionTicketSigner(String resourceId, Duration ticketTtl, Duration keyRotationInterval) {
+    if (ticketTtl.compareTo(keyRotationInterval) > 0) {
+      throw new IllegalArgumentException(
+          "The session ticket TTL must not be longer than the key rotation interval");
+    }
+    this.resourceId = resourceId;
+    this.ticketTtl = ticketTtl;
+    this.keyRotationInterval = keyRotationInterval;
+    this.keyRing = new KeyRing(newKey(0), null, Instant.now());
+    this.revokedSubjects = Caffeine.newBuilder().expireAfterWrite(ticketTtl).build();
+  }
+
+  /**
+   * Issues a ticket for the subject.
+   *
+   * @param subject subject of the validated token
+   * @param permissionExpiresAt when the permission of the subject expires; the ticket never
+   *     outlives it.
+   * @return the signed ticket and its expiry, which is at most the ticket TTL from now
+   */
+  public Ticket issue(String subject, Instant permissionExpiresAt) {
+    var now = Instant.now();
+    var expiresAt = now.plus(ticketTtl);
+    if (permissionExpiresAt.isBefore(expiresAt)) {
+      expiresAt = permissionExpiresAt;
+    }
+    expiresAt = Instant.ofEpochSecond(expiresAt.getEpochSecond());
+
+    var key = currentKey(now);
+    var encoder = Base64.getUrlEncoder().withoutPadding();
+    var encodedSubject = encoder.encodeToString(subject.getBytes(StandardCharsets.UTF_8));
+    var payload = key.id() + SEPARATOR + expiresAt.getEpochSecond() + SEPARATOR + encodedSubject;
+
+    return new Ticket(payload + SEPARATOR + encoder.encodeToString(sign(key, payload)), expiresAt);
+  }
+
+  /**
+   * Verifies a ticket.
+   *
+   * @param ticket ticket as issued by {@link #issue(String, Instant)}
+   * @return the subject of the ticket; empty if the ticket is malformed, expired, revoked or not
+   *     signed by this listener.
+   */
+  public Optional<String> verify(String ticket) {
+    var parts = ticket.split("\\.");
+    if (parts.length != 4) {
+      return Optional.empty();
+    }
+
+    try {
+      var expiresAt = Instant.ofEpochSecond(Long.parseLong(parts[1]));
+      if (!expiresAt.isAfter(Instant.now())) {
+        logger.debug("Session ticket expired");
+        return Optional.empty();
+      }
+
+      var key = keyRing.find(Long.parseLong(parts[0]));
+      if (key.isEmpty()) {
+        logger.debug("Session ticket signed with an unknown key");
+        return Optional.empty();
+      }
+
+      var payload = parts[0] + SEPARATOR + parts[1] + SEPARATOR + parts[2];
+      var signature = Base64.getUrlDecoder().decode(parts[3]);
+      if (!MessageDigest.isEqual(sign(key.get(), payload), signature)) {
+        logger.warn("Session ticket signature invalid");
+        return Optional.empty();
+      }
+
+      var subject = new String(Base64.getUrlDecoder().decode(parts[2]), StandardCharsets.UTF_8);
+      if (revokedSubjects.getIfPresent(subject) != null) {
+        logger.debug("Session tickets of the subject were revoked");
+        return Optional.empty();
+      }
+
+      return Optional.of(subject);
+    } catch (IllegalArgumentException e) {
+      // NumberFormatException is an IllegalArgumentException too
+      logger.debug("Malformed session ticket", e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Rejects the tickets of a subject. Revocations are kept for the ticket TTL, which outlives all
+   * the tickets issued before the revocation.
+   *
+   * @param subject subject of the tickets
+   */
+  public void revokeSubject(String subject) {
+    revokedSubjects.put(subject, Boolean.TRUE);
+  }
+
+  /** Rejects all the tickets issued so far, by replacing both the current and previous keys. */
+  public synchronized void revokeAll() {
+    rotateKey();
+    rotateKey();
+  }
+
+  @VisibleForTesting
+  synchronized void rotateKey() {
+    var current = keyRing.current();
+    keyRing = new KeyRing(newKey(current.id() + 1), current, Instant.now());
+  }
+
+  private SigningKey currentKey(Instant now) {
+    var ring = keyRing;
+    if (now.isAfter(ring.createdAt().plus(keyRotationInterval))) {
+      synchronized (this) {
+        if (keyRing == ring) {
+          rotateKey();
+        }
+      }
+      ring = keyRing;
+    }
+    return ring.current();
+  }
+
+  private byte[] sign(SigningKey key, String payload) {
+    return key.hmac()
+        .newHasher()
+        .putString(payload, StandardCharsets.UTF_8)
+        .putString(SEPARATOR, StandardCharsets.UTF_8)
+        .putString(resourceId, StandardCharsets.UTF_8)
+        .hash()
+        .asBytes();
+  }
+
+  private SigningKey newKey(long id) {
+    var keyBytes = new byte[KEY_SIZE_IN_BYTES];
+    secureRandom.nextBytes(keyBytes);
+    return new SigningKey(id, Hashing.hmacSha256(keyBytes));
+  }
+
+  /**
+   * @param value signed ticket, as sent in the cookie
+   * @param expiresAt when the ticket expires, truncated to the second as in the ticket
+   */
+  public record Ticket(String value, Instant expiresAt) {}
+
+  private record SigningKey(long id, HashFunction hmac) {}
+
+  private record KeyRing(SigningKey current, SigningKey previous, Instant createdAt) {
+    Optional<SigningKey> find(long id) {
+      if (current.id() == id) {
+        return Optional.of(current);
+      }
+      if (previous != null && previous.id() == id) {
+        return Optional.of(previous);
+      }
+      return Optional.empty();
+    }
+  }
+}
@@ -1,46 +1,35 @@
 package org.broadinstitute.listener.relay.inspectors;
 
 import com.google.common.base.Strings;
-import com.microsoft.azure.relay.RelayedHttpListenerRequest;
-import java.io.IOException;
-import java.net.MalformedURLException;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.net.URISyntaxException;
-import java.net.URL;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Instant;
+import java.time.Duration;
 import java.util.Locale;
-import java.util.Map;
+import java.util.Optional;
 import org.apache.http.client.utils.URIBuilder;
-import org.broadinstitute.listener.relay.Utils;
+import org.broadinstitute.listener.relay.RequestEnvelope;
 import org.broadinstitute.listener.relay.inspectors.InspectorType.InspectorNameConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 @Component(InspectorNameConstants.SET_DATE_ACCESSED)
-public class SetDateAccessedInspector implements RequestInspector {
+public class SetDateAccessedInspector implements RequestInspector, AutoCloseable {
   private final Logger logger = LoggerFactory.getLogger(SetDateAccessedInspector.class);
-  private Instant lastAccessedDate;
-  private final URL serviceUrl;
+  private final DateAccessedReporter dateAccessedReporter;
 
-  private final int callWindowInSeconds;
-  private final HttpClient httpClient;
   private static final int MIN_CALL_WINDOW_IN_SECONDS = 1;
+  private static final Duration RETRY_BACKOFF = Duration.ofSeconds(2);
   private static final String API_ENDPOINT_PATTERN = "%s/api/v2/runtimes/%s/%s/updateDateAccessed";
   private static final String ACTION_HEADER_KEY = "X-SetDateAccessedInspector-Action";
   private static final String ACTION_HEADER_VALUE_IGNORE = "ignore";
 
-  public SetDateAccessedInspector(SetDateAccessedInspectorOptions options)
-      throws URISyntaxException, MalformedURLException {
+  public SetDateAccessedInspector(
+      SetDateAccessedInspectorOptions options, MeterRegistry meterRegistry)
+      throws URISyntaxException {
 
     validateOptions(options);
 
-    this.httpClient = options.httpClient();
-    this.callWindowInSeconds = options.callWindowInSeconds();
-
-    lastAccessedDate = Instant.now();
     URIBuilder builder =
         new URIBuilder(
             String.format(
@@ -50,7 +39,13 @@ public class SetDateAccessedInspector implements RequestInspector {
                 options.workspaceId(),
                 options.runtimeName()));
 
-    serviceUrl = builder.build().toURL();
+    dateAccessedReporter =
+        new DateAccessedReporter(
+            builder.build(),
+            options.httpClient(),
+            Duration.ofSeconds(options.callWindowInSeconds()),
+            RETRY_BACKOFF,
+            meterRegistry);
   }
 
   private void validateOptions(SetDateAccessedInspectorOptions options) {
@@ -85,96 +80,55 @@ public class SetDateAccessedInspector implements RequestInspector {
   }
 
   @Override
-  public boolean inspectWebSocketUpgradeRequest(
-      RelayedHttpListenerRequest relayedHttpListenerRequest) {
+  public boolean inspectWebSocketUpgradeRequest(RequestEnvelope requestEnvelope) {
 
-    return checkLastAccessDateAndCallServiceIfExpired(relayedHttpListenerRequest);
+    return recordActivity(requestEnvelope);
   }
 
   /**
-   * Inspect the request. Call Leonardo to updateDateAccessed on our resource, unless the request
-   * headers include {@code X-SetDateAccessedInspector-Action=ignore}.
+   * Inspect the request. Record activity so that Leonardo's updateDateAccessed is called on our
+   * resource in the background, unless the request headers include {@code
+   * X-SetDateAccessedInspector-Action=ignore}.
    *
    * @return whether to relay the original request.
    */
   @Override
-  public boolean inspectRelayedHttpRequest(RelayedHttpListenerRequest relayedHttpListenerRequest) {
-    if (isActionIgnore(relayedHttpListenerRequest)) {
+  public boolean inspectRelayedHttpRequest(RequestEnvelope requestEnvelope) {
+    if (isActionIgnore(requestEnvelope)) {
       logger.info("SetDateAccessedInspector will ignore this request.");
       return true;
     } else {
-      return checkLastAccessDateAndCallServiceIfExpired(relayedHttpListenerRequest);
+      return recordActivity(requestEnvelope);
     }
   }
 
-  private boolean isActionIgnore(RelayedHttpListenerRequest relayedHttpListenerRequest) {
-    Map<String, String> headers = relayedHttpListenerRequest.getHeaders();
-    if (headers == null) {
+  private boolean isActionIgnore(RequestEnvelope requestEnvelope) {
+    if (!requestEnvelope.hasHeaders()) {
       logger.error("No request headers found");
       return false;
     }
 
-    String actionValue = headers.getOrDefault(ACTION_HEADER_KEY, null);
-
-    return ACTION_HEADER_VALUE_IGNORE.equals(actionValue);
+    return requestEnvelope
+        .getHeader(ACTION_HEADER_KEY)
+        .map(ACTION_HEADER_VALUE_IGNORE::equals)
+        .orElse(false);
   }
 
-  private boolean checkLastAccessDateAndCallServiceIfExpired(
-      RelayedHttpListenerRequest relayedHttpListenerRequest) {
-    try {
-      if (hasLastAccessDateExpired()) {
-        setLastAccessedDateOnService(relayedHttpListenerRequest);
-        updateLastAccessedDate();
-      }
-    } catch (RuntimeException ex) {
+  private boolean recordActivity(RequestEnvelope requestEnvelope) {
+    Optional<String> token = requestEnvelope.getToken();
+
+    if (token.isEmpty()) {
       logger.error(
-          "Failed to set the last accessed date. The request still will get processed", ex);
+          "Authorization token not found in the request. The request still will get processed");
+    } else {
+      dateAccessedReporter.recordActivity(token.get());
     }
 
     return true;
   }
 
-  public void setLastAccessedDateOnService(RelayedHttpListenerRequest relayedHttpListenerRequest) {
-    HttpRequest request;
-    try {
-      request =
-          HttpRequest.newBuilder()
-              .uri(serviceUrl.toURI())
-              .method("PATCH", HttpRequest.BodyPublishers.noBody())
-              .header(
-                  "Authorization",
-                  "Bearer "
-                      + Utils.getToken(relayedHttpListenerRequest.getHeaders())
-                          .orElseThrow(
-                              () ->
-                                  new RuntimeException(
-                                      "Authorization token not found in the request")))
-              .build();
-    } catch (URISyntaxException e) {
-      logger.error("Failed to parse the URL to set the date accessed via the API", e);
-      throw new RuntimeException(e);
-    }
-
-    logger.debug("Making a call to the last accessed date API at this URL: {}", serviceUrl);
-
-    HttpResponse<String> response;
-    try {
-      response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-    } catch (IOException | InterruptedException e) {
-      logger.error("Failed to call the set date accessed API", e);
-      throw new RuntimeException(e);
-    }
-
-    logger.info(
-        "The set last accessed date API call was made with the following response: {}",
-        response.statusCode());
-  }
-
-  private synchronized boolean hasLastAccessDateExpired() {
-    return Instant.now().isAfter(lastAccessedDate);
-  }
-
-  private synchronized void updateLastAccessedDate() {
-    lastAccessedDate = lastAccessedDate.plusSeconds(callWindowInSeconds);
+  @Override
+  public void close() {
+    dateAccessedReporter.close();
   }
 }
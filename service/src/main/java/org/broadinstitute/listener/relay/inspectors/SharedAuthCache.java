@@ -0,0 +1,77 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Second-level cache of Sam permission decisions, shared by the listener replicas of a resource.
+ * It sits behind the in-process caches: it is only read when they miss, and written when Sam
+ * grants a permission.
+ *
+ * <p>It also carries the invalidations between the replicas, so that an eviction on one replica
+ * reaches the in-process caches of the others.
+ *
+ * <p>Implementations must not fail requests: errors are logged and treated as misses.
+ */
+public interface SharedAuthCache {
+
+  /**
+   * @param digest token digest
+   * @return when the permission of the token expires; empty if not cached.
+   */
+  Optional<Instant> getPermission(String digest);
+
+  /**
+   * @param digest token digest
+   * @param expiresAt when the permission of the token expires
+   */
+  void putPermission(String digest, Instant expiresAt);
+
+  /** @param digest token digest */
+  void evictPermission(String digest);
+
+  void evictAllPermissions();
+
+  /**
+   * Tells the other replicas to evict auth decisions from their in-process caches.
+   *
+   * @param invalidation what to evict
+   */
+  void publishInvalidation(Invalidation invalidation);
+
+  /**
+   * Registers the handler of the invalidations published by the other replicas. Invalidations
+   * published while the replica is not subscribed are lost: the entries they evict expire with
+   * their TTL.
+   *
+   * @param handler called with each invalidation published by another replica
+   */
+  void subscribeToInvalidations(Consumer<Invalidation> handler);
+
+  /**
+   * Eviction of cached auth decisions.
+   *
+   * @param scope what the value identifies
+   * @param value token digest or subject; empty for {@link Scope#ALL}
+   */
+  record Invalidation(Scope scope, String value) {
+    public enum Scope {
+      DIGEST,
+      SUBJECT,
+      ALL
+    }
+
+    public static Invalidation digest(String digest) {
+      return new Invalidation(Scope.DIGEST, digest);
+    }
+
+    public static Invalidation subject(String subject) {
+      return new Invalidation(Scope.SUBJECT, subject);
+    }
+
+    public static Invalidation all() {
+      return new Invalidation(Scope.ALL, "");
+    }
+  }
+}
@@ -2,33 +2,195 @@ package org.broadinstitute.listener.relay.inspectors;
 
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.broadinstitute.listener.relay.OauthInfo;
+import org.broadinstitute.listener.relay.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Component;
 
-@Component
 public class TokenChecker {
+  static final int OAUTH_INFO_CACHE_MAXIMUM_SIZE = 1000;
+  /** Claims kept when OAuth info is exported; the others are not needed after a restart. */
+  static final Set<String> SNAPSHOT_CLAIMS = Set.of("sub", "email");
+
   private final Logger logger = LoggerFactory.getLogger(SamResourceClient.class);
   private final GoogleTokenInfoClient googleTokenInfoClient;
+  private final B2CTokenVerifier b2cTokenVerifier;
+
+  // Keyed by token digest. Entries expire together with the token they describe.
+  private final Cache<String, OauthInfo> oauthInfoCache;
+  private final InvalidationEpoch invalidationEpoch = new InvalidationEpoch();
 
   public TokenChecker(GoogleTokenInfoClient googleTokenInfoClient) {
+    this(googleTokenInfoClient, null);
+  }
+
+  /**
+   * @param googleTokenInfoClient client used to check Google tokens
+   * @param b2cTokenVerifier verifier for B2C tokens; if null, B2C tokens are only decoded.
+   */
+  public TokenChecker(
+      GoogleTokenInfoClient googleTokenInfoClient, B2CTokenVerifier b2cTokenVerifier) {
     this.googleTokenInfoClient = googleTokenInfoClient;
+    this.b2cTokenVerifier = b2cTokenVerifier;
+    this.oauthInfoCache =
+        Caffeine.newBuilder()
+            .maximumSize(OAUTH_INFO_CACHE_MAXIMUM_SIZE)
+            .expireAfter(new OauthInfoExpiry())
+            .build();
   }
 
+  /**
+   * Returns the OAuth info of the token. Results of valid tokens are cached until the token
+   * expires, so only the first call for a token may reach the network.
+   *
+   * @param token access token
+   * @return OAuth info of the token
+   */
   public OauthInfo getOauthInfo(String token) throws IOException, InterruptedException {
-    return getOauthInfoWithAnchorTimestamp(token, Instant.now());
+    return getOauthInfo(token, Utils.getTokenDigest(token));
+  }
+
+  /**
+   * Returns the OAuth info of the token, when its digest is already known.
+   *
+   * @param token access token
+   * @param digest digest of the token, as returned by {@link Utils#getTokenDigest(String)}
+   * @return OAuth info of the token
+   */
+  public OauthInfo getOauthInfo(String token, String digest)
+      throws IOException, InterruptedException {
+    var cached = oauthInfoCache.getIfPresent(digest);
+    if (cached != null) {
+      return cached;
+    }
+
+    var epoch = invalidationEpoch.current();
+    var oauthInfo = getOauthInfoWithAnchorTimestamp(token, Instant.now());
+    if (oauthInfo.expiresAt().isPresent()) {
+      oauthInfoCache.put(digest, oauthInfo);
+      if (!invalidationEpoch.isCurrent(epoch)) {
+        // invalidated while checking the token: the answer may predate the invalidation
+        oauthInfoCache.asMap().remove(digest, oauthInfo);
+      }
+    }
+    return oauthInfo;
+  }
+
+  /**
+   * Returns the cached OAuth info that can be restored: entries that expire and have a subject.
+   * Only the claims in {@link #SNAPSHOT_CLAIMS} are kept.
+   *
+   * @return OAuth info, keyed by token digest
+   */
+  public Map<String, OauthInfo> exportOauthInfo() {
+    var exported = new HashMap<String, OauthInfo>();
+    oauthInfoCache
+        .asMap()
+        .forEach(
+            (digest, oauthInfo) -> {
+              if (oauthInfo.expiresAt().isPresent() && oauthInfo.claims().get("sub") != null) {
+                var claims = new HashMap<>(oauthInfo.claims());
+                claims.keySet().retainAll(SNAPSHOT_CLAIMS);
+                exported.put(digest, new OauthInfo(oauthInfo.expiresAt(), "", claims));
+              }
+            });
+    return exported;
+  }
+
+  /**
+   * Restores OAuth info, e.g. from a snapshot taken before a restart. Expired entries and entries
+   * without a subject are skipped, so restored entries are found by subject and carry the claims
+   * that session tickets and request logs need.
+   *
+   * @param oauthInfos OAuth info, keyed by token digest
+   * @return the number of restored entries
+   */
+  public int restoreOauthInfo(Map<String, OauthInfo> oauthInfos) {
+    var now = Instant.now();
+    var restored = 0;
+    for (var entry : oauthInfos.entrySet()) {
+      var oauthInfo = entry.getValue();
+      if (oauthInfo.expiresAt().filter(now::isBefore).isPresent()
+          && oauthInfo.claims().get("sub") != null) {
+        oauthInfoCache.asMap().putIfAbsent(entry.getKey(), oauthInfo);
+        restored++;
+      }
+    }
+    return restored;
+  }
+
+  /**
+   * Returns the digests of the cached tokens of a subject, restored ones included.
+   *
+   * @param subject value of the `sub` claim
+   * @return token digests
+   */
+  public Set<String> getCachedTokenDigests(String subject) {
+    return oauthInfoCache.asMap().entrySet().stream()
+        .filter(e -> subject.equals(e.getValue().claims().get("sub")))
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toSet());
+  }
+
+  /**
+   * Returns the cached OAuth info of a token, without checking the token.
+   *
+   * @param digest token digest
+   * @return OAuth info; empty if the token is not cached.
+   */
+  public Optional<OauthInfo> getCachedOauthInfo(String digest) {
+    return Optional.ofNullable(oauthInfoCache.getIfPresent(digest));
+  }
+
+  /**
+   * Returns the subject of a cached token.
+   *
+   * @param digest token digest
+   * @return value of the `sub` claim; empty if the token is not cached or has no subject.
+   */
+  public Optional<String> getCachedSubject(String digest) {
+    return Optional.ofNullable(oauthInfoCache.getIfPresent(digest))
+        .map(oauthInfo -> oauthInfo.claims().get("sub"));
+  }
+
+  /**
+   * Returns the epoch of the auth cache invalidations, shared with {@link SamResourceClient} and
+   * advanced by {@link AuthCacheInvalidator}.
+   */
+  public InvalidationEpoch getInvalidationEpoch() {
+    return invalidationEpoch;
+  }
+
+  public void invalidate(String digest) {
+    oauthInfoCache.invalidate(digest);
+  }
+
+  public void invalidateAll() {
+    oauthInfoCache.invalidateAll();
   }
 
   public OauthInfo getOauthInfoWithAnchorTimestamp(String token, Instant anchor)
       throws IOException, InterruptedException {
     var jwt = tryDecodeAsB2CToken(token);
     if (jwt.isPresent()) {
+      if (b2cTokenVerifier != null) {
+        var verificationError = b2cTokenVerifier.verify(jwt.get());
+        if (verificationError.isPresent()) {
+          return new OauthInfo(Optional.empty(), verificationError.get(), Map.of());
+        }
+      }
+
       var jwtExpiration = jwt.get().getExpiresAt().toInstant();
       if (jwtExpiration.isAfter(anchor)) {
         var stringClaims = new HashMap<String, String>();
@@ -68,4 +230,27 @@ public class TokenChecker {
       return Optional.empty();
     }
   }
+
+  private static class OauthInfoExpiry implements Expiry<String, OauthInfo> {
+    @Override
+    public long expireAfterCreate(String key, OauthInfo value, long currentTime) {
+      return value
+          .expiresAt()
+          .map(expiresAt -> Duration.between(Instant.now(), expiresAt).toNanos())
+          .filter(nanos -> nanos > 0)
+          .orElse(0L);
+    }
+
+    @Override
+    public long expireAfterUpdate(
+        String key, OauthInfo value, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(
+        String key, OauthInfo value, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
 }
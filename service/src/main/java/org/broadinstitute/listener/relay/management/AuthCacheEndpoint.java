@@ -0,0 +1,50 @@
+package org.broadinstitute.listener.relay.management;
+
+import java.util.Map;
+import org.broadinstitute.listener.relay.inspectors.AuthCacheInvalidator;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint to evict cached auth decisions, e.g. to revoke access right away.
+ *
+ * <ul>
+ *   <li>{@code DELETE /actuator/authcache}: evicts everything
+ *   <li>{@code DELETE /actuator/authcache/digest/{digest}}: evicts the entries of a token
+ *   <li>{@code DELETE /actuator/authcache/subject/{subject}}: evicts the entries of a user
+ * </ul>
+ */
+@Component
+@Endpoint(id = "authcache")
+public class AuthCacheEndpoint {
+  private final AuthCacheInvalidator authCacheInvalidator;
+
+  public AuthCacheEndpoint(AuthCacheInvalidator authCacheInvalidator) {
+    this.authCacheInvalidator = authCacheInvalidator;
+  }
+
+  @DeleteOperation
+  public Map<String, Object> invalidateAll() {
+    authCacheInvalidator.invalidateAll();
+    return Map.of("scope", "all");
+  }
+
+  @DeleteOperation
+  public WebEndpointResponse<Map<String, Object>> invalidate(
+      @Selector String scope, @Selector String value) {
+    int evicted;
+    switch (scope) {
+      case "digest" -> evicted = authCacheInvalidator.invalidateByDigest(value);
+      case "subject" -> evicted = authCacheInvalidator.invalidateBySubject(value);
+      default -> {
+        return new WebEndpointResponse<>(
+            Map.of("error", "Unknown scope. Use `digest` or `subject`."),
+            WebEndpointResponse.STATUS_BAD_REQUEST);
+      }
+    }
+    return new WebEndpointResponse<>(Map.of("scope", scope, "evictedEntries", evicted));
+  }
+}
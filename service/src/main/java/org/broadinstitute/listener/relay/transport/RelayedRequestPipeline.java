@@ -2,6 +2,7 @@ package org.broadinstitute.listener.relay.transport;
 
 import com.microsoft.azure.relay.HybridConnectionChannel;
 import com.microsoft.azure.relay.RelayedHttpListenerContext;
+import org.broadinstitute.listener.relay.RequestEnvelope;
 import org.broadinstitute.listener.relay.http.ListenerConnectionHandler;
 import org.broadinstitute.listener.relay.http.RelayedHttpRequestProcessor;
 import org.broadinstitute.listener.relay.http.RelayedHttpRequestProcessor.Result;
@@ -14,7 +15,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.SynchronousSink;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
@@ -59,23 +59,28 @@ public class RelayedRequestPipeline {
         .subscribe(
             result ->
                 // we can't start accepting connections until the connection is open
+                // target WebSockets are opened concurrently, so a slow upgrade does not hold up
+                // the following connections
                 webSocketConnectionsHandler
                     .acceptConnections()
-                    .handle(
-                        (HybridConnectionChannel connectionChannel,
-                            SynchronousSink<ConnectionsPair> sink) -> {
-                          try {
-                            ConnectionsPair connectionsPair =
-                                webSocketConnectionsHandler.createLocalConnection(
-                                    connectionChannel);
-                            sink.next(connectionsPair);
-                          } catch (Exception ex) {
-                            logger.error("Error while creating the local connection", ex);
-                          }
-                        })
+                    .flatMap(
+                        this::createLocalConnection,
+                        webSocketConnectionsHandler.getMaxConcurrentUpgrades())
                     .subscribe(webSocketConnectionsRelayerService::startDataRelay));
   }
 
+  private Mono<ConnectionsPair> createLocalConnection(HybridConnectionChannel connectionChannel) {
+    return Mono.defer(
+            () ->
+                Mono.fromFuture(
+                    webSocketConnectionsHandler.createLocalConnectionAsync(connectionChannel)))
+        .onErrorResume(
+            ex -> {
+              logger.error("Error while creating the local connection", ex);
+              return Mono.empty();
+            });
+  }
+
   public void registerHttpExecutionPipeline(Scheduler scheduler) {
     listenerConnectionHandler
         .receiveRelayedHttpRequests()
@@ -92,15 +97,17 @@ public class RelayedRequestPipeline {
                 sink.next(c);
               }
             })
+        // the request is parsed once, and the parsed values are shared by all the stages
+        .map(RequestEnvelope::of)
         .flatMap(
-            (c) ->
+            (e) ->
                 Mono.fromCallable(
                         () -> {
                           if (listenerConnectionHandler.isRelayedHttpRequestAcceptedByInspectors(
-                              c.getRequest())) {
-                            return httpRequestProcessor.executeRequestOnTarget(c);
+                              e)) {
+                            return httpRequestProcessor.executeRequestOnTarget(e);
                           }
-                          httpRequestProcessor.writeNotAcceptedResponseOnCaller(c);
+                          httpRequestProcessor.writeNotAcceptedResponseOnCaller(e.getContext());
                           return Mono.empty();
                         })
                     .subscribeOn(scheduler))
@@ -0,0 +1,60 @@
+package org.broadinstitute.listener.relay.wss;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of heap buffers of the same size.
+ *
+ * <p>Data larger than the buffers, or acquired while the pool is empty, gets a buffer of its own;
+ * such buffers are only kept on release while the pool holds fewer than {@code maxPooled}.
+ */
+public class ByteBufferPool {
+
+  private final int bufferSize;
+  private final int maxPooled;
+  private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pooled = new AtomicInteger();
+
+  /**
+   * @param bufferSize size of the pooled buffers, in bytes
+   * @param maxPooled maximum number of buffers kept in the pool
+   */
+  public ByteBufferPool(int bufferSize, int maxPooled) {
+    this.bufferSize = bufferSize;
+    this.maxPooled = maxPooled;
+  }
+
+  /** @return an empty buffer of at least {@code size} bytes, limited to {@code size}. */
+  public ByteBuffer acquire(int size) {
+    if (size > bufferSize) {
+      return ByteBuffer.allocate(size);
+    }
+
+    ByteBuffer buffer = buffers.poll();
+    if (buffer == null) {
+      return ByteBuffer.allocate(bufferSize).limit(size);
+    }
+    pooled.decrementAndGet();
+    return buffer.clear().limit(size);
+  }
+
+  /** Gives a buffer back to the pool. The buffer must not be used after it is released. */
+  public void release(ByteBuffer buffer) {
+    if (buffer == null || buffer.capacity() != bufferSize) {
+      return;
+    }
+
+    if (pooled.incrementAndGet() > maxPooled) {
+      pooled.decrementAndGet();
+      return;
+    }
+    buffers.offer(buffer);
+  }
+
+  int getPooled() {
+    return pooled.get();
+  }
+}
@@ -0,0 +1,131 @@
+package org.broadinstitute.listener.relay.wss;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The activity of a pair of connections, recorded by the relays of both directions and read by
+ * {@link WebSocketKeepAlive}. The bytes relayed are taken from the bandwidth of the pair, when it
+ * is limited by {@link WebSocketLimits}, and counted for the summaries of the pair.
+ */
+public class ConnectionActivity {
+
+  private static final long FRAME_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final WebSocketLimits limits;
+  private final WebSocketLimits.PairBuckets callerToTarget;
+  private final WebSocketLimits.PairBuckets targetToCaller;
+  private volatile long lastMessageNanos = System.nanoTime();
+  private volatile long pingSentNanos;
+  private volatile long roundTripNanos = -1;
+  private volatile long lastSummaryNanos = System.nanoTime();
+  private final FrameStats callerToTargetFrames = new FrameStats();
+  private final FrameStats targetToCallerFrames = new FrameStats();
+  private final AtomicLong nextFrameLogNanos = new AtomicLong(System.nanoTime());
+  private final AtomicBoolean closeSummarized = new AtomicBoolean();
+
+  /** An activity with unlimited bandwidth. */
+  public ConnectionActivity() {
+    this(null, null, null);
+  }
+
+  ConnectionActivity(
+      WebSocketLimits limits,
+      WebSocketLimits.PairBuckets callerToTarget,
+      WebSocketLimits.PairBuckets targetToCaller) {
+    this.limits = limits;
+    this.callerToTarget = callerToTarget;
+    this.targetToCaller = targetToCaller;
+  }
+
+  /** Records a message relayed in either direction. */
+  public void onMessage() {
+    lastMessageNanos = System.nanoTime();
+  }
+
+  /**
+   * Records a message relayed from the caller to the target.
+   *
+   * @return how long to wait, in nanoseconds, before reading the next message of the caller
+   */
+  public long onCallerToTarget(long bytes) {
+    long now = System.nanoTime();
+    lastMessageNanos = now;
+    callerToTargetFrames.record(bytes);
+    return limits == null ? 0 : limits.reserveCallerToTarget(callerToTarget, bytes, now);
+  }
+
+  /**
+   * Records a message relayed from the target to the caller.
+   *
+   * @return how long to wait, in nanoseconds, before requesting the next message of the target
+   */
+  public long onTargetToCaller(long bytes) {
+    long now = System.nanoTime();
+    lastMessageNanos = now;
+    targetToCallerFrames.record(bytes);
+    return limits == null ? 0 : limits.reserveTargetToCaller(targetToCaller, bytes, now);
+  }
+
+  /** Records a pong of the target, answering the ping in flight. */
+  public void onPong() {
+    long sent = pingSentNanos;
+    if (sent != 0) {
+      roundTripNanos = System.nanoTime() - sent;
+      pingSentNanos = 0;
+    }
+  }
+
+  void onPingSent(long nowNanos) {
+    pingSentNanos = nowNanos;
+  }
+
+  long getLastMessageNanos() {
+    return lastMessageNanos;
+  }
+
+  /** @return when the ping in flight was sent; 0 if no ping is waiting for its pong. */
+  long getPingSentNanos() {
+    return pingSentNanos;
+  }
+
+  /** Returns the round trip time measured since the last call, or -1 if none was measured. */
+  long takeRoundTripNanos() {
+    long roundTrip = roundTripNanos;
+    roundTripNanos = -1;
+    return roundTrip;
+  }
+
+  public FrameStats getCallerToTargetFrames() {
+    return callerToTargetFrames;
+  }
+
+  public FrameStats getTargetToCallerFrames() {
+    return targetToCallerFrames;
+  }
+
+  /**
+   * Decides whether a frame of the pair may be logged: at most one frame per second is, so
+   * logging every frame can't flood the logs of a busy pair.
+   */
+  public boolean tryLogFrame() {
+    long now = System.nanoTime();
+    long next = nextFrameLogNanos.get();
+    return now - next >= 0
+        && nextFrameLogNanos.compareAndSet(next, now + FRAME_LOG_INTERVAL_NANOS);
+  }
+
+  long getLastSummaryNanos() {
+    return lastSummaryNanos;
+  }
+
+  void onSummary(long nowNanos) {
+    lastSummaryNanos = nowNanos;
+  }
+
+  /** @return true on the first call only, so a pair closed several ways is summarized once. */
+  boolean onClosed() {
+    return closeSummarized.compareAndSet(false, true);
+  }
+}
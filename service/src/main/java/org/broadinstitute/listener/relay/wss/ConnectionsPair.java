@@ -4,12 +4,21 @@ import com.microsoft.azure.relay.HybridConnectionChannel;
 import com.microsoft.azure.relay.WebSocketChannel;
 import java.io.IOException;
 import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.lang.NonNull;
 
 public class ConnectionsPair {
 
+  /** How long the target has to answer the close of the pair before its connection is aborted. */
+  static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(5);
+
   private final Logger logger = LoggerFactory.getLogger(WebSocketConnectionsRelayerService.class);
 
   public HybridConnectionChannel getCallerConnection() {
@@ -30,6 +39,11 @@ public class ConnectionsPair {
 
   private final HybridConnectionChannel callerConnection;
   private final WebSocket localWebSocketConnection;
+  private final ConnectionActivity activity;
+  private final Runnable onClosed;
+  private final AtomicBoolean closed = new AtomicBoolean();
+  // guarded by this
+  private CompletableFuture<WebSocket> lastSend = CompletableFuture.completedFuture(null);
 
   public boolean isConnectionsStateOpen() {
     return !localWebSocketConnection.isInputClosed() && callerConnection.isOpen();
@@ -38,20 +52,100 @@ public class ConnectionsPair {
   public ConnectionsPair(
       @NonNull HybridConnectionChannel callerConnection,
       @NonNull WebSocket localWebSocketConnection) {
+    this(callerConnection, localWebSocketConnection, new ConnectionActivity(), null);
+  }
+
+  /**
+   * @param activity activity of the pair, shared with the listener of the target WebSocket
+   * @param onClosed called once when the pair is closed, e.g. to release its client connection;
+   *     may be null
+   */
+  public ConnectionsPair(
+      @NonNull HybridConnectionChannel callerConnection,
+      @NonNull WebSocket localWebSocketConnection,
+      @NonNull ConnectionActivity activity,
+      Runnable onClosed) {
     this.callerConnection = callerConnection;
     this.localWebSocketConnection = localWebSocketConnection;
+    this.activity = activity;
+    this.onClosed = onClosed;
+  }
+
+  public ConnectionActivity getActivity() {
+    return activity;
   }
 
-  public String readTextFromCaller() {
+  /**
+   * Reads the next text message of the caller.
+   *
+   * @return the message; completes with null when the caller has no more data.
+   */
+  public CompletableFuture<String> readTextFromCallerAsync() {
     try {
-      return WebSocketTextIOUtils.readTextAsync((WebSocketChannel) callerConnection).join();
+      return WebSocketTextIOUtils.readTextAsync((WebSocketChannel) callerConnection);
     } catch (Exception e) {
-      throw new RuntimeException("Failed to read data from the caller connection", e);
+      return CompletableFuture.failedFuture(
+          new IOException("Failed to read data from the caller connection", e));
     }
   }
 
-  public void sendTextToLocalWebSocket(String data) {
-    localWebSocketConnection.sendText(data, true);
+  /**
+   * Reads the next binary fragment of the caller. The public read of the channel does not report
+   * fragment boundaries, so each buffer it returns is a fragment that ends its message.
+   *
+   * @return the fragment; completes with null when the caller has no more data.
+   */
+  public CompletableFuture<BinaryFragment> readBinaryFromCallerAsync() {
+    return callerConnection
+        .readAsync()
+        .thenApply(data -> data == null ? null : new BinaryFragment(data, true));
+  }
+
+  /** @return completes when the message was sent to the target. */
+  public CompletableFuture<WebSocket> sendTextToLocalWebSocket(String data) {
+    return sendToLocalWebSocket(() -> localWebSocketConnection.sendText(data, true));
+  }
+
+  /**
+   * Sends a binary fragment to the target, keeping its place in the message.
+   *
+   * @param last whether the fragment ends the message
+   * @return completes when the fragment was sent to the target.
+   */
+  public CompletableFuture<WebSocket> sendBinaryToLocalWebSocket(ByteBuffer data, boolean last) {
+    return sendToLocalWebSocket(() -> localWebSocketConnection.sendBinary(data, last));
+  }
+
+  // A WebSocket accepts a new message only once the previous one was sent, so the text and
+  // binary messages of the caller are sent one after the other.
+  private synchronized CompletableFuture<WebSocket> sendToLocalWebSocket(
+      Supplier<CompletableFuture<WebSocket>> send) {
+    CompletableFuture<WebSocket> sent;
+    if (lastSend.isDone()) {
+      sent = send.get();
+    } else {
+      sent = lastSend.handle((webSocket, error) -> null).thenCompose(ignored -> send.get());
+    }
+    lastSend = sent;
+    return sent;
+  }
+
+  /**
+   * Logs the frames relayed so far in both directions.
+   *
+   * @param closed whether the pair is closed; the summary of a closed pair is logged once.
+   */
+  public void logSummary(boolean closed) {
+    if (closed && !activity.onClosed()) {
+      return;
+    }
+    activity.onSummary(System.nanoTime());
+    logger.info(
+        "WebSocket {}. Caller to target: {}. Target to caller: {}. Tracking ID:{}",
+        closed ? "closed" : "summary",
+        activity.getCallerToTargetFrames(),
+        activity.getTargetToCallerFrames(),
+        getTrackingId());
   }
 
   public void close() {
@@ -68,8 +162,52 @@ public class ConnectionsPair {
 
     if (!localWebSocketConnection.isInputClosed()) {
       logger.debug("WebSocket connection is open. Attempting to close the local connection");
-      localWebSocketConnection.sendClose(500, "Remote caller is not available");
-      logger.debug("Local connection is closed");
+      closeLocalWebSocket();
+    }
+
+    // the target may never echo the close, so the pair does not wait for it to be released
+    if (closed.compareAndSet(false, true) && onClosed != null) {
+      onClosed.run();
     }
+    logSummary(true);
   }
+
+  /**
+   * Sends a close to the target, and aborts its connection if the close fails or the target does
+   * not answer it within {@link #CLOSE_TIMEOUT}.
+   */
+  private void closeLocalWebSocket() {
+    CompletableFuture<WebSocket> sent;
+    try {
+      sent =
+          localWebSocketConnection.sendClose(
+              WebSocket.NORMAL_CLOSURE, "Remote caller is not available");
+    } catch (RuntimeException e) {
+      sent = CompletableFuture.failedFuture(e);
+    }
+
+    sent.whenComplete(
+        (webSocket, error) -> {
+          if (error != null) {
+            logger.warn(
+                "Failed to close the local connection. Aborting it. Tracking ID:{}",
+                getTrackingId(),
+                error);
+            localWebSocketConnection.abort();
+          }
+        });
+    CompletableFuture.delayedExecutor(CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+        .execute(
+            () -> {
+              if (!localWebSocketConnection.isInputClosed()) {
+                logger.warn(
+                    "The local connection did not answer the close. Aborting it. Tracking ID:{}",
+                    getTrackingId());
+                localWebSocketConnection.abort();
+              }
+            });
+  }
+
+  /** A fragment of a binary message. */
+  public record BinaryFragment(ByteBuffer data, boolean last) {}
 }
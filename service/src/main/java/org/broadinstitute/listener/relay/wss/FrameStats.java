@@ -0,0 +1,39 @@
+package org.broadinstitute.listener.relay.wss;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The frames relayed in one direction of a pair of connections. Recording a frame takes no lock,
+ * as it happens on every message.
+ */
+public class FrameStats {
+
+  private final LongAdder frames = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAccumulator maxFrameSize = new LongAccumulator(Math::max, 0);
+
+  void record(long frameSize) {
+    frames.increment();
+    bytes.add(frameSize);
+    maxFrameSize.accumulate(frameSize);
+  }
+
+  public long getFrames() {
+    return frames.sum();
+  }
+
+  public long getBytes() {
+    return bytes.sum();
+  }
+
+  public long getMaxFrameSize() {
+    return maxFrameSize.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "frames=%d, bytes=%d, max frame size=%d", getFrames(), getBytes(), getMaxFrameSize());
+  }
+}
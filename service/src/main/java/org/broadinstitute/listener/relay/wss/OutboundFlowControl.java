@@ -0,0 +1,66 @@
+package org.broadinstitute.listener.relay.wss;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings and metrics of the flow control between the target WebSockets and the callers.
+ *
+ * <p>Each target WebSocket has at most {@code queueCapacity} messages waiting to be written to its
+ * caller. The depth of the queues is published as {@code listener.websocket.outbound.queue_depth},
+ * and the time a target spends paused on a full queue as {@code listener.websocket.outbound.stall}.
+ * Binary messages are copied into buffers of {@code bufferPool} while they wait, and each write
+ * to a caller fails after {@code writeTimeout}.
+ */
+public class OutboundFlowControl {
+
+  private final int queueCapacity;
+  private final ByteBufferPool bufferPool;
+  private final Duration writeTimeout;
+  private final DistributionSummary queueDepth;
+  private final Timer stallTimer;
+
+  /**
+   * @param queueCapacity maximum number of messages waiting to be written to a caller
+   * @param bufferPool buffers holding the binary messages waiting to be written
+   * @param writeTimeout timeout of the writes of messages to a caller
+   * @param meterRegistry registry of the queue depth and stall time metrics
+   */
+  public OutboundFlowControl(
+      int queueCapacity,
+      ByteBufferPool bufferPool,
+      Duration writeTimeout,
+      MeterRegistry meterRegistry) {
+    if (queueCapacity <= 0) {
+      throw new IllegalArgumentException("The queue capacity must be greater than zero");
+    }
+    this.queueCapacity = queueCapacity;
+    this.bufferPool = bufferPool;
+    this.writeTimeout = writeTimeout;
+    this.queueDepth = meterRegistry.summary("listener.websocket.outbound.queue_depth");
+    this.stallTimer = meterRegistry.timer("listener.websocket.outbound.stall");
+  }
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  public ByteBufferPool getBufferPool() {
+    return bufferPool;
+  }
+
+  public Duration getWriteTimeout() {
+    return writeTimeout;
+  }
+
+  void recordQueueDepth(int depth) {
+    queueDepth.record(depth);
+  }
+
+  void recordStall(long stallNanos) {
+    stallTimer.record(stallNanos, TimeUnit.NANOSECONDS);
+  }
+}
@@ -0,0 +1,99 @@
+package org.broadinstitute.listener.relay.wss;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import org.broadinstitute.listener.relay.http.RelayedHttpRequest;
+
+/**
+ * The WebSocket upgrade requests accepted by the listener, waiting for their caller connection.
+ *
+ * <p>A request is taken when its caller connection arrives. Requests whose connection never
+ * arrives expire after {@code ttl}, and at most {@code maximumSize} requests are kept. The number
+ * of pending requests is published as {@code listener.websocket.pending_upgrades}, and the number
+ * of expired ones as {@code listener.websocket.pending_upgrades.expired}.
+ *
+ * <p>Each request holds the slot reserved by {@link WebSocketLimits#admit()}. A taken request hands
+ * its slot over to the pair; the slot of a request that is evicted or replaced is released.
+ */
+public class PendingUpgrades {
+
+  private final Cache<String, RelayedHttpRequest> requests;
+  private final Counter expiredCounter;
+  private final WebSocketLimits webSocketLimits;
+
+  /**
+   * @param ttl how long a request waits for its caller connection
+   * @param maximumSize maximum number of pending requests
+   * @param webSocketLimits limits holding the slots of the requests
+   * @param meterRegistry registry of the size gauge and expiration counter
+   */
+  public PendingUpgrades(
+      Duration ttl,
+      long maximumSize,
+      WebSocketLimits webSocketLimits,
+      MeterRegistry meterRegistry) {
+    this(
+        ttl,
+        maximumSize,
+        webSocketLimits,
+        meterRegistry,
+        Ticker.systemTicker(),
+        Scheduler.systemScheduler());
+  }
+
+  @VisibleForTesting
+  PendingUpgrades(
+      Duration ttl,
+      long maximumSize,
+      WebSocketLimits webSocketLimits,
+      MeterRegistry meterRegistry,
+      Ticker ticker,
+      Scheduler scheduler) {
+    this.webSocketLimits = webSocketLimits;
+    this.expiredCounter = meterRegistry.counter("listener.websocket.pending_upgrades.expired");
+    this.requests =
+        Caffeine.newBuilder()
+            .expireAfterWrite(ttl)
+            .maximumSize(maximumSize)
+            .ticker(ticker)
+            // expired requests are removed even while no upgrade arrives
+            .scheduler(scheduler)
+            .evictionListener(
+                (String trackingId, RelayedHttpRequest request, RemovalCause cause) -> {
+                  // called once per evicted request, and never for a taken one
+                  webSocketLimits.release();
+                  if (cause == RemovalCause.EXPIRED) {
+                    expiredCounter.increment();
+                  }
+                })
+            .build();
+    Gauge.builder("listener.websocket.pending_upgrades", requests, Cache::estimatedSize)
+        .register(meterRegistry);
+  }
+
+  /** Adds an admitted request, which holds its slot until taken or evicted. */
+  public void add(String trackingId, RelayedHttpRequest request) {
+    if (requests.asMap().put(trackingId, request) != null) {
+      webSocketLimits.release();
+    }
+  }
+
+  /** Removes and returns the request of a caller connection; null if there is none. */
+  public RelayedHttpRequest take(String trackingId) {
+    return requests.asMap().remove(trackingId);
+  }
+
+  @VisibleForTesting
+  long size() {
+    requests.cleanUp();
+    return requests.estimatedSize();
+  }
+}
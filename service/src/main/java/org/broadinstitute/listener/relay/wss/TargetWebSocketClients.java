@@ -0,0 +1,153 @@
+package org.broadinstitute.listener.relay.wss;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The HTTP clients opening the target WebSocket connections.
+ *
+ * <p>A few clients are shared by every connection, instead of one client per connection: each
+ * client runs a selector thread and a fixed number of executor threads, whatever the number of
+ * its connections. A new connection is opened with the client that has the fewest. The threads
+ * and the connections of each client are published as {@code listener.websocket.client.threads}
+ * and {@code listener.websocket.client.connections}, tagged with the index of the client.
+ *
+ * <p>The time taken to open a target WebSocket is published as {@code listener.websocket.upgrade},
+ * tagged with the outcome.
+ */
+public class TargetWebSocketClients implements AutoCloseable {
+
+  private final List<Client> clients;
+  private final Duration connectTimeout;
+  private final int maxConcurrentUpgrades;
+  private final Timer upgradeSuccessTimer;
+  private final Timer upgradeFailureTimer;
+
+  /**
+   * @param clientCount number of clients
+   * @param threadsPerClient number of executor threads of each client
+   * @param connectTimeout maximum time to open a target WebSocket
+   * @param maxConcurrentUpgrades maximum number of target WebSockets being opened at the same time
+   * @param meterRegistry registry of the thread, connection and upgrade metrics
+   */
+  public TargetWebSocketClients(
+      int clientCount,
+      int threadsPerClient,
+      Duration connectTimeout,
+      int maxConcurrentUpgrades,
+      MeterRegistry meterRegistry) {
+    this.connectTimeout = connectTimeout;
+    this.maxConcurrentUpgrades = maxConcurrentUpgrades;
+    this.upgradeSuccessTimer =
+        meterRegistry.timer("listener.websocket.upgrade", "outcome", "success");
+    this.upgradeFailureTimer =
+        meterRegistry.timer("listener.websocket.upgrade", "outcome", "failure");
+    List<Client> created = new ArrayList<>(clientCount);
+    for (int i = 0; i < clientCount; i++) {
+      var client = new Client(i, threadsPerClient);
+      Gauge.builder("listener.websocket.client.threads", client, Client::getThreadCount)
+          .tag("client", String.valueOf(i))
+          .description("Executor threads of the client, and its selector thread")
+          .register(meterRegistry);
+      Gauge.builder("listener.websocket.client.connections", client, Client::getConnectionCount)
+          .tag("client", String.valueOf(i))
+          .register(meterRegistry);
+      created.add(client);
+    }
+    this.clients = Collections.unmodifiableList(created);
+  }
+
+  /**
+   * Returns the client with the fewest connections, counting a new connection for it. The
+   * connection must be released when it closes.
+   */
+  public Connection openConnection() {
+    Client selected = clients.get(0);
+    for (Client client : clients) {
+      if (client.connections.get() < selected.connections.get()) {
+        selected = client;
+      }
+    }
+    selected.connections.incrementAndGet();
+    return new Connection(selected);
+  }
+
+  public Duration getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public int getMaxConcurrentUpgrades() {
+    return maxConcurrentUpgrades;
+  }
+
+  /** Records the time taken to open a target WebSocket. */
+  public void recordUpgrade(long durationNanos, boolean success) {
+    (success ? upgradeSuccessTimer : upgradeFailureTimer)
+        .record(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void close() {
+    clients.forEach(client -> client.executor.shutdown());
+  }
+
+  /** A connection opened with a shared client. */
+  public static class Connection {
+    private final Client client;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Connection(Client client) {
+      this.client = client;
+    }
+
+    public HttpClient getHttpClient() {
+      return client.httpClient;
+    }
+
+    /** Stops counting the connection. Only the first call has an effect. */
+    public void release() {
+      if (released.compareAndSet(false, true)) {
+        client.connections.decrementAndGet();
+      }
+    }
+  }
+
+  static class Client {
+    private final HttpClient httpClient;
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private Client(int index, int threads) {
+      this.executor =
+          (ThreadPoolExecutor)
+              Executors.newFixedThreadPool(
+                  threads,
+                  new ThreadFactoryBuilder()
+                      .setNameFormat("target-websocket-" + index + "-%d")
+                      .setDaemon(true)
+                      .build());
+      this.httpClient = HttpClient.newBuilder().executor(executor).build();
+    }
+
+    int getThreadCount() {
+      // the selector thread of the client is not part of the executor
+      return executor.getPoolSize() + 1;
+    }
+
+    int getConnectionCount() {
+      return connections.get();
+    }
+  }
+}
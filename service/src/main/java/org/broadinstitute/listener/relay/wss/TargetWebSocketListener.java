@@ -6,7 +6,13 @@ import java.io.IOException;
 import java.net.http.WebSocket;
 import java.net.http.WebSocket.Listener;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.lang.NonNull;
@@ -16,15 +22,60 @@ public class TargetWebSocketListener implements Listener {
   private final Logger logger = LoggerFactory.getLogger(TargetWebSocketListener.class);
   private final HybridConnectionChannel connectionChannel;
   private final String trackingId;
+  private final OutboundFlowControl flowControl;
+  private final WebSocketTraffic webSocketTraffic;
+  private final Runnable onClosed;
+  private final ConnectionActivity activity;
+  private final Queue<OutboundMessage> outbound = new ArrayDeque<>();
+  // guarded by outbound
+  private boolean writing;
+  private long stallStartNanos;
 
-  public TargetWebSocketListener(@NonNull HybridConnectionChannel connectionChannel) {
+  /**
+   * @param connectionChannel caller connection the target messages are written to
+   * @param flowControl bounds the messages waiting to be written to the caller
+   * @param webSocketTraffic counts the bytes written to the caller
+   */
+  public TargetWebSocketListener(
+      @NonNull HybridConnectionChannel connectionChannel,
+      @NonNull OutboundFlowControl flowControl,
+      @NonNull WebSocketTraffic webSocketTraffic) {
+    this(connectionChannel, flowControl, webSocketTraffic, null, new ConnectionActivity());
+  }
+
+  /**
+   * @param connectionChannel caller connection the target messages are written to
+   * @param flowControl bounds the messages waiting to be written to the caller
+   * @param webSocketTraffic counts the bytes written to the caller
+   * @param onClosed called when the target WebSocket closes or fails; may be null
+   * @param activity records the messages and pongs of the target, and limits its bandwidth
+   */
+  public TargetWebSocketListener(
+      @NonNull HybridConnectionChannel connectionChannel,
+      @NonNull OutboundFlowControl flowControl,
+      @NonNull WebSocketTraffic webSocketTraffic,
+      Runnable onClosed,
+      @NonNull ConnectionActivity activity) {
     this.connectionChannel = connectionChannel;
+    this.flowControl = flowControl;
+    this.webSocketTraffic = webSocketTraffic;
+    this.onClosed = onClosed;
+    this.activity = activity;
     trackingId = connectionChannel.getTrackingContext().getTrackingId();
   }
 
+  @Override
+  public void onOpen(WebSocket webSocket) {
+    // the target may send as many messages as the queue can hold. One more message is requested
+    // each time a message is written to the caller, so a slow caller pauses the target instead of
+    // blocking the threads of the HTTP client.
+    webSocket.request(flowControl.getQueueCapacity());
+  }
+
   @Override
   public CompletionStage<?> onPong(WebSocket webSocket, ByteBuffer message) {
-    logger.info("OnPong: {}", message);
+    logger.debug("OnPong. Tracking ID:{}", trackingId);
+    activity.onPong();
     return Listener.super.onPong(webSocket, message);
   }
 
@@ -40,6 +91,7 @@ public class TargetWebSocketListener implements Listener {
     } catch (IOException e) {
       logger.error("Failed to close caller connection in the listener", e);
     }
+    notifyClosed();
 
     return Listener.super.onClose(webSocket, statusCode, reason);
   }
@@ -47,38 +99,160 @@ public class TargetWebSocketListener implements Listener {
   @Override
   public void onError(WebSocket webSocket, Throwable error) {
     logger.error("Error WebSocket Target Listener", error);
+    notifyClosed();
+  }
+
+  private void notifyClosed() {
+    if (onClosed != null) {
+      onClosed.run();
+    }
   }
 
   @Override
   public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
-    // the buffer can't live beyond this method, hence cloning the data.
-    if (connectionChannel.isOpen()) {
-      logger.info("Relayed connection is open. Writing binary data. Tracking ID:{}", trackingId);
-      connectionChannel.writeAsync(data).join();
-    }
-    return Listener.super.onBinary(webSocket, data, last);
+    // the buffer can't live beyond this method, hence copying the data. Each fragment is
+    // relayed as it arrives, and the caller's message ends with the target's.
+    ByteBuffer copy = flowControl.getBufferPool().acquire(data.remaining()).put(data).flip();
+    enqueue(webSocket, new OutboundMessage(null, copy, last));
+    return null;
   }
 
   @Override
   public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+    enqueue(webSocket, new OutboundMessage(data.toString(), null, last));
+    return null;
+  }
 
-    if (connectionChannel.isOpen()) {
-      logger.info("Relayed connection is open. Writing text data. Tracking ID:{}", trackingId);
+  private void enqueue(WebSocket webSocket, OutboundMessage message) {
+    activity.onMessage();
+    synchronized (outbound) {
+      outbound.add(message);
+      flowControl.recordQueueDepth(outbound.size());
+      if (outbound.size() >= flowControl.getQueueCapacity() && stallStartNanos == 0) {
+        // no demand is left: the target is paused until a write to the caller completes.
+        stallStartNanos = System.nanoTime();
+      }
+      if (writing) {
+        return;
+      }
+      writing = true;
+    }
+
+    writeQueuedMessages(webSocket);
+  }
 
+  /**
+   * Writes the queued messages to the caller one at a time, in order. Writes that complete
+   * immediately are handled in this loop; otherwise the loop resumes when the write completes.
+   */
+  private void writeQueuedMessages(WebSocket webSocket) {
+    while (true) {
+      OutboundMessage message;
+      synchronized (outbound) {
+        // the message stays in the queue until it is written, so the queue holds every message
+        // the target sent and the caller has not received yet.
+        message = outbound.peek();
+        if (message == null) {
+          writing = false;
+          return;
+        }
+      }
+
+      CompletableFuture<Void> write = write(message);
+      if (!write.isDone()) {
+        write.whenComplete(
+            (result, error) -> {
+              onWritten(webSocket, message, error);
+              writeQueuedMessages(webSocket);
+            });
+        return;
+      }
+
+      Throwable error = null;
       try {
-        WebSocketTextIOUtils.writeTextAsync(
-                (WebSocketChannel) connectionChannel, data.toString(), last)
-            .join();
-        logger.info(
+        write.join();
+      } catch (CompletionException | CancellationException e) {
+        error = e.getCause() != null ? e.getCause() : e;
+      }
+      onWritten(webSocket, message, error);
+    }
+  }
+
+  private CompletableFuture<Void> write(OutboundMessage message) {
+    if (!connectionChannel.isOpen()) {
+      if (logger.isDebugEnabled() && activity.tryLogFrame()) {
+        logger.debug(
+            "Relayed connection is closed. Dropping target data. Tracking ID:{}", trackingId);
+      }
+      return CompletableFuture.completedFuture(null);
+    }
+
+    try {
+      if (message.text() != null) {
+        return WebSocketTextIOUtils.writeTextAsync(
+            (WebSocketChannel) connectionChannel,
+            message.text(),
+            message.last(),
+            flowControl.getWriteTimeout());
+      }
+      // the fragment keeps its place in the message: the caller receives the message the target
+      // sent, whether or not the target's client split it.
+      return WebSocketTextIOUtils.writeBinaryAsync(
+          (WebSocketChannel) connectionChannel,
+          message.binary(),
+          message.last(),
+          flowControl.getWriteTimeout());
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  private void onWritten(WebSocket webSocket, OutboundMessage message, Throwable error) {
+    long delayNanos = 0;
+    if (error != null) {
+      logger.error(
+          "Error while attempting to write data to the caller. Tracking ID:{}", trackingId, error);
+    } else {
+      long size = message.size();
+      delayNanos = activity.onTargetToCaller(size);
+      webSocketTraffic.recordTargetToCaller(size);
+      // the frames are summarized by the pair; only a sample of them is logged
+      if (logger.isDebugEnabled() && activity.tryLogFrame()) {
+        logger.debug(
             "Successfully wrote {} bytes to caller from the target. Tracking ID:{}",
-            data.length(),
+            size,
             trackingId);
-      } catch (Exception e) {
-        logger.error(
-            "Error while attempting to write data to the caller. Tracking ID:{}", trackingId, e);
       }
     }
+    if (message.binary() != null) {
+      flowControl.getBufferPool().release(message.binary());
+    }
+
+    long stalledSince;
+    synchronized (outbound) {
+      outbound.remove();
+      stalledSince = stallStartNanos;
+      stallStartNanos = 0;
+    }
+    if (stalledSince != 0) {
+      flowControl.recordStall(System.nanoTime() - stalledSince);
+    }
 
-    return Listener.super.onText(webSocket, data, last);
+    // the message left the queue: the target may send the next one, once the pair is back within
+    // its bandwidth.
+    if (delayNanos > 0) {
+      CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS)
+          .execute(() -> webSocket.request(1));
+    } else {
+      webSocket.request(1);
+    }
+  }
+
+  /** A message of the target, waiting to be written to the caller. */
+  private record OutboundMessage(String text, ByteBuffer binary, boolean last) {
+
+    long size() {
+      return text != null ? WebSocketTraffic.utf8Length(text) : binary.limit();
+    }
   }
 }
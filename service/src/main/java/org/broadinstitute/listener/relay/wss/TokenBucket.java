@@ -0,0 +1,65 @@
+package org.broadinstitute.listener.relay.wss;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket counting bytes. Reservations never fail: the bucket goes into debt, and the
+ * caller waits for the returned time before sending more.
+ */
+public class TokenBucket {
+
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final long bytesPerSecond;
+  private double tokens;
+  private long lastRefillNanos;
+
+  /**
+   * @param bytesPerSecond rate at which the bucket refills; the bucket holds one second of it
+   */
+  public TokenBucket(long bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+    this.tokens = bytesPerSecond;
+    this.lastRefillNanos = System.nanoTime();
+  }
+
+  /** Takes {@code bytes} from the bucket, and returns how long to wait before the next send. */
+  public long reserve(long bytes, long nowNanos) {
+    return reserve(bytes, nowNanos, bytesPerSecond);
+  }
+
+  /**
+   * Takes {@code bytes} from a bucket refilling at {@code bytesPerSecond}, for buckets whose rate
+   * changes over time, and returns how long to wait before the next send.
+   */
+  public synchronized long reserve(long bytes, long nowNanos, long bytesPerSecond) {
+    refill(nowNanos, bytesPerSecond);
+    tokens -= bytes;
+    return tokens >= 0 ? 0 : (long) Math.ceil(-tokens * NANOS_PER_SECOND / bytesPerSecond);
+  }
+
+  /**
+   * Takes {@code bytes} from the bucket if it holds enough of them. Otherwise empties the bucket,
+   * without going into debt.
+   *
+   * @return whether the bucket held enough bytes
+   */
+  public synchronized boolean tryTake(long bytes, long nowNanos) {
+    refill(nowNanos, bytesPerSecond);
+    if (tokens >= bytes) {
+      tokens -= bytes;
+      return true;
+    }
+    tokens = Math.min(tokens, 0);
+    return false;
+  }
+
+  private void refill(long nowNanos, long bytesPerSecond) {
+    // reservations racing each other may not arrive in the order of their timestamps
+    if (nowNanos > lastRefillNanos) {
+      double refilled = (nowNanos - lastRefillNanos) * bytesPerSecond / NANOS_PER_SECOND;
+      tokens = Math.min(bytesPerSecond, tokens + refilled);
+      lastRefillNanos = nowNanos;
+    }
+  }
+}
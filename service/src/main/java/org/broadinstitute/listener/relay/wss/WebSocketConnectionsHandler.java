@@ -4,10 +4,10 @@ import com.microsoft.azure.relay.HybridConnectionChannel;
 import com.microsoft.azure.relay.HybridConnectionListener;
 import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.WebSocket;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.broadinstitute.listener.relay.RequestEnvelope;
 import org.broadinstitute.listener.relay.http.RelayedHttpRequest;
 import org.broadinstitute.listener.relay.inspectors.InspectorsProcessor;
 import org.broadinstitute.listener.relay.transport.TargetResolver;
@@ -24,58 +24,77 @@ public class WebSocketConnectionsHandler {
   private final HybridConnectionListener listener;
   private final Logger logger = LoggerFactory.getLogger(WebSocketConnectionsHandler.class);
   private final TargetResolver targetResolver;
-  private final Map<String, RelayedHttpRequest> acceptedRequests;
+  private final PendingUpgrades pendingUpgrades;
   private final InspectorsProcessor inspectorsProcessor;
+  private final OutboundFlowControl outboundFlowControl;
+  private final WebSocketTraffic webSocketTraffic;
+  private final TargetWebSocketClients targetWebSocketClients;
+  private final WebSocketLimits webSocketLimits;
 
   public WebSocketConnectionsHandler(
       @NonNull HybridConnectionListener listener,
       @NonNull TargetResolver targetResolver,
-      @NonNull InspectorsProcessor inspectorsProcessor) {
+      @NonNull InspectorsProcessor inspectorsProcessor,
+      @NonNull OutboundFlowControl outboundFlowControl,
+      @NonNull WebSocketTraffic webSocketTraffic,
+      @NonNull TargetWebSocketClients targetWebSocketClients,
+      @NonNull PendingUpgrades pendingUpgrades,
+      @NonNull WebSocketLimits webSocketLimits) {
     this.listener = listener;
     this.targetResolver = targetResolver;
     this.inspectorsProcessor = inspectorsProcessor;
-    acceptedRequests = new HashMap<>();
+    this.outboundFlowControl = outboundFlowControl;
+    this.webSocketTraffic = webSocketTraffic;
+    this.targetWebSocketClients = targetWebSocketClients;
+    this.pendingUpgrades = pendingUpgrades;
+    this.webSocketLimits = webSocketLimits;
   }
 
-  private synchronized RelayedHttpRequest addAcceptedRelayedRequest(
+  private RelayedHttpRequest addAcceptedRelayedRequest(
       String trackingId, @NonNull RelayedHttpRequest relayedHttpRequest) {
-    acceptedRequests.put(trackingId, relayedHttpRequest);
+    pendingUpgrades.add(trackingId, relayedHttpRequest);
     return relayedHttpRequest;
   }
 
-  private synchronized RelayedHttpRequest getAcceptedRelayedRequest(String trackingId) {
-    return acceptedRequests.getOrDefault(trackingId, null);
-  }
-
-  private synchronized void removeAcceptedRelayedRequest(String trackingId) {
-    if (!acceptedRequests.containsKey(trackingId)) {
-      acceptedRequests.remove(trackingId);
-    }
-  }
-
   public Flux<RelayedHttpRequest> acceptHttpUpgradeRequests() {
 
     return Flux.create(
         sink ->
             listener.setAcceptHandler(
                 context -> {
-                  try {
+                  // the slot is held by the pending request once it is added
+                  if (!webSocketLimits.admit()) {
+                    logger.warn(
+                        "The WebSocket upgrade was rejected: too many connections. "
+                            + "Tracking ID:{}",
+                        context.getTrackingContext().getTrackingId());
+                    return false;
+                  }
 
+                  boolean added = false;
+                  try {
+                    var requestEnvelope = RequestEnvelope.of(context);
                     if (!inspectorsProcessor.isRelayedWebSocketUpgradeRequestAccepted(
-                        context.getRequest())) {
+                        requestEnvelope)) {
                       logger.info(
                           "The WebSocket upgrade was rejected by an inspector. Tracking ID:{}",
                           context.getTrackingContext().getTrackingId());
+                      webSocketLimits.release();
                       return false;
                     }
 
                     RelayedHttpRequest request =
                         addAcceptedRelayedRequest(
                             context.getTrackingContext().getTrackingId(),
-                            RelayedHttpRequest.createRelayedHttpRequest(context, targetResolver));
+                            RelayedHttpRequest.createRelayedHttpRequest(
+                                requestEnvelope, targetResolver));
+                    added = true;
                     sink.next(request);
                   } catch (Exception e) {
                     logger.error("Failed to create a relayed http request", e);
+                    if (!added) {
+                      webSocketLimits.release();
+                    }
                     return false;
                   }
 
@@ -108,65 +127,99 @@ public class WebSocketConnectionsHandler {
     return Flux.create(this::acceptConnection);
   }
 
-  public ConnectionsPair createLocalConnection(@NonNull HybridConnectionChannel relayedConnection) {
-
-    try {
-      return new ConnectionsPair(
-          relayedConnection, createWebSocketFromRelayedHttpRequest(relayedConnection));
-
-    } catch (Exception e) {
-      logger.error("Error while creating the connection pair");
-      throw new RuntimeException("Error creating the connection pair", e);
-    }
-  }
-
-  private WebSocket createWebSocketFromRelayedHttpRequest(
-      HybridConnectionChannel relayedConnection) {
+  /**
+   * Opens the target WebSocket of a caller connection. The caller connection is closed if the
+   * target WebSocket can't be opened within the connect timeout.
+   *
+   * @return completes with the pair of connections once the target WebSocket is open.
+   */
+  public CompletableFuture<ConnectionsPair> createLocalConnectionAsync(
+      @NonNull HybridConnectionChannel relayedConnection) {
 
     String trackingId = relayedConnection.getTrackingContext().getTrackingId();
-    RelayedHttpRequest request = getAcceptedRelayedRequest(trackingId);
+    // the request is only needed to open the target WebSocket
+    RelayedHttpRequest request = pendingUpgrades.take(trackingId);
 
     if (request == null) {
-      throw new IllegalStateException(
-          "The request was not in the accepted list tracking id:" + trackingId);
+      // no slot to release: an expired request released its own, and an unknown one had none
+      closeCallerConnection(relayedConnection, trackingId);
+      return CompletableFuture.failedFuture(
+          new IllegalStateException(
+              "The request was not in the accepted list tracking id:" + trackingId));
     }
 
-    WebSocket.Builder builder = HttpClient.newHttpClient().newWebSocketBuilder();
+    // the taken request hands its slot over to the pair
+    webSocketLimits.onPairOpening();
+
+    TargetWebSocketClients.Connection connection = targetWebSocketClients.openConnection();
+    WebSocket.Builder builder =
+        connection
+            .getHttpClient()
+            .newWebSocketBuilder()
+            .connectTimeout(targetWebSocketClients.getConnectTimeout());
 
     // set cookies
     if (request.getHeaders().isPresent()) {
-      if (request.getHeaders().get().containsKey("Cookie")) {
-        builder.header("Cookie", request.getHeaders().get().get("Cookie"));
+      if (request.getHeaders().get().contains("Cookie")) {
+        builder.header("Cookie", request.getHeaders().get().getFirst("Cookie"));
       }
     }
 
-    return getWebSocketConnection(relayedConnection, trackingId, request, builder);
-  }
-
-  private WebSocket getWebSocketConnection(
-      HybridConnectionChannel relayedConnection,
-      String trackingId,
-      RelayedHttpRequest request,
-      WebSocket.Builder builder) {
+    var activity = webSocketLimits.newActivity();
+    long startNanos = System.nanoTime();
+    CompletableFuture<WebSocket> webSocket;
     try {
       URI wsTargetUri = request.getTargetWebSocketUri();
+      webSocket =
+          builder.buildAsync(
+              wsTargetUri,
+              new TargetWebSocketListener(
+                  relayedConnection,
+                  outboundFlowControl,
+                  webSocketTraffic,
+                  connection::release,
+                  activity));
+    } catch (Exception ex) {
+      webSocket = CompletableFuture.failedFuture(ex);
+    }
 
-      WebSocket ws =
-          builder.buildAsync(wsTargetUri, new TargetWebSocketListener(relayedConnection)).get();
-      removeAcceptedRelayedRequest(trackingId);
+    return webSocket.handle(
+        (ws, error) -> {
+          targetWebSocketClients.recordUpgrade(System.nanoTime() - startNanos, error == null);
+          if (error != null) {
+            connection.release();
+            webSocketLimits.onPairClosed();
+            logger.error(
+                "Error while opening target WebSocket connection. Tracking ID:{}",
+                trackingId,
+                error);
+            closeCallerConnection(relayedConnection, trackingId);
+            throw new CompletionException("Failed to create Target WebSocket.", error);
+          }
+
+          logger.info(
+              "Successfully created target WebSocket connection. Tracking ID:{}", trackingId);
+          return new ConnectionsPair(
+              relayedConnection,
+              ws,
+              activity,
+              () -> {
+                connection.release();
+                webSocketLimits.onPairClosed();
+              });
+        });
+  }
 
-      logger.info("Successfully created target WebSocket connection. Tracking ID:{}", trackingId);
+  /** @return maximum number of target WebSockets being opened at the same time. */
+  public int getMaxConcurrentUpgrades() {
+    return targetWebSocketClients.getMaxConcurrentUpgrades();
+  }
 
-      return ws;
-    } catch (Exception ex) {
-      logger.error(
-          "Error while opening target WebSocket connection. Tracking ID:{}", trackingId, ex);
-      try {
-        relayedConnection.close();
-      } catch (IOException e) {
-        logger.error("Failed to close caller connection.Tracking ID:{}", trackingId, ex);
-      }
-      throw new RuntimeException("Failed to create Target WebSocket.", ex);
+  private void closeCallerConnection(HybridConnectionChannel relayedConnection, String trackingId) {
+    try {
+      relayedConnection.close();
+    } catch (IOException e) {
+      logger.error("Failed to close caller connection.Tracking ID:{}", trackingId, e);
     }
   }
 }
@@ -1,75 +1,231 @@
 package org.broadinstitute.listener.relay.wss;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.broadinstitute.listener.relay.wss.ConnectionsPair.BinaryFragment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
 
+/**
+ * Relays the messages of the caller to the target WebSocket.
+ *
+ * <p>Each pair has a single relay, which keeps a read pending on both the text and the binary
+ * messages of the caller, as the caller connection queues them separately. The message whose read
+ * completes first is sent, and the relay reads again only once it was sent, so messages reach the
+ * target one at a time, in the order they were read. When both are ready, text goes first. While
+ * a binary message is incomplete, only its fragments are sent: a WebSocket cannot interleave them
+ * with text.
+ *
+ * <p>Each read is chained to the send of the message, and each send to the next read, so an idle
+ * connection pair holds no thread: the relay resumes on the thread that completes the read. A pair
+ * over its bandwidth waits before its next read, without holding a thread.
+ *
+ * <p>The frames are counted per pair and logged in its summaries; logging each frame is only
+ * enabled at the debug level, and limited to one frame per second for each pair.
+ */
 @Component
 public class WebSocketConnectionsRelayerService {
 
   private final Logger logger = LoggerFactory.getLogger(WebSocketConnectionsRelayerService.class);
-  private final ExecutorService executorService = Executors.newCachedThreadPool();
+  private final WebSocketTraffic webSocketTraffic;
+  private final WebSocketKeepAlive webSocketKeepAlive;
+
+  public WebSocketConnectionsRelayerService(
+      @NonNull WebSocketTraffic webSocketTraffic,
+      @NonNull WebSocketKeepAlive webSocketKeepAlive) {
+    this.webSocketTraffic = webSocketTraffic;
+    this.webSocketKeepAlive = webSocketKeepAlive;
+  }
 
   public void startDataRelay(@NonNull ConnectionsPair connectionsPair) {
-    logger.info("Submitting read operation. Tracking ID:{}", connectionsPair.getTrackingId());
-    executorService.execute(() -> relayDataToLocalEndpoint(connectionsPair));
+    logger.info(
+        "Read and send operation starting. Tracking ID:{}", connectionsPair.getTrackingId());
+    webSocketKeepAlive.register(connectionsPair);
+    relayToLocalEndpoint(connectionsPair);
   }
 
-  public void stopService() {
-    executorService.shutdown();
+  /**
+   * Relays the text and binary messages of the caller until either connection closes or the caller
+   * has no more data, then closes the pair. Returns as soon as a read is pending.
+   */
+  public void relayToLocalEndpoint(@NonNull ConnectionsPair connectionsPair) {
+    relay(new CallerReads(connectionsPair));
   }
 
-  public void readAndSendText(@NonNull ConnectionsPair connectionsPair) {
-
-    String trackingId = connectionsPair.getTrackingId();
+  /**
+   * Sends the next message of the caller to the target, reading it first if needed.
+   *
+   * @return completes with true if a message was relayed; false if the caller has no more data.
+   */
+  private CompletableFuture<Boolean> relayNext(CallerReads reads) {
+    var connectionsPair = reads.connectionsPair;
+    if (reads.text == null && !reads.binaryMessageOpen) {
+      reads.text = connectionsPair.readTextFromCallerAsync();
+    }
+    if (reads.binary == null) {
+      reads.binary = connectionsPair.readBinaryFromCallerAsync();
+    }
 
-    logger.info("Reading from the caller connection. Tracking ID:{}", trackingId);
-    String data = connectionsPair.readTextFromCaller();
+    if (reads.binaryMessageOpen || (reads.binary.isDone() && !reads.text.isDone())) {
+      var read = reads.binary;
+      reads.binary = null;
+      return read.thenCompose(
+          fragment -> {
+            if (fragment != null) {
+              reads.binaryMessageOpen = !fragment.last();
+            }
+            return sendBinary(connectionsPair, fragment);
+          });
+    }
 
-    if (data == null) {
-      logger.info("Received null data from the caller. Tracking ID:{}", trackingId);
-      return;
+    if (reads.text.isDone()) {
+      var read = reads.text;
+      reads.text = null;
+      return read.thenCompose(data -> sendText(connectionsPair, data));
     }
 
-    if (data != null) {
+    return CompletableFuture.anyOf(reads.text, reads.binary)
+        .thenCompose(ignored -> relayNext(reads));
+  }
 
-      logger.info("Read {} bytes from the caller. Tracking ID:{}", data.length(), trackingId);
+  private CompletableFuture<Boolean> sendText(ConnectionsPair connectionsPair, String data) {
+    if (data == null) {
+      logger.info(
+          "Received null data from the caller. Tracking ID:{}", connectionsPair.getTrackingId());
+      return CompletableFuture.completedFuture(false);
+    }
 
-      connectionsPair.sendTextToLocalWebSocket(data);
+    return connectionsPair
+        .sendTextToLocalWebSocket(data)
+        .thenCompose(webSocket -> relayed(connectionsPair, WebSocketTraffic.utf8Length(data)));
+  }
 
+  /**
+   * Sends a binary fragment of the caller to the target. The buffer read from the caller is sent as
+   * is, and ends the target's message only if it ends the caller's.
+   */
+  private CompletableFuture<Boolean> sendBinary(
+      ConnectionsPair connectionsPair, BinaryFragment fragment) {
+    if (fragment == null) {
       logger.info(
-          "Sent {} bytes to the target connection. Tracking ID:{} ", data.length(), trackingId);
+          "Received null binary data from the caller. Tracking ID:{}",
+          connectionsPair.getTrackingId());
+      return CompletableFuture.completedFuture(false);
     }
+
+    int size = fragment.data().remaining();
+    return connectionsPair
+        .sendBinaryToLocalWebSocket(fragment.data(), fragment.last())
+        .thenCompose(webSocket -> relayed(connectionsPair, size));
   }
 
-  public void relayDataToLocalEndpoint(@NonNull ConnectionsPair connectionsPair) {
+  /**
+   * Records a message sent to the target.
+   *
+   * @return completes with true once the pair may read its next message.
+   */
+  private CompletableFuture<Boolean> relayed(ConnectionsPair connectionsPair, long size) {
+    webSocketTraffic.recordCallerToTarget(size);
+    ConnectionActivity activity = connectionsPair.getActivity();
+    long delayNanos = activity.onCallerToTarget(size);
+    if (logger.isDebugEnabled() && activity.tryLogFrame()) {
+      logger.debug(
+          "Sent {} bytes to the target connection. Tracking ID:{}",
+          size,
+          connectionsPair.getTrackingId());
+    }
+    if (delayNanos <= 0) {
+      return CompletableFuture.completedFuture(true);
+    }
+    return CompletableFuture.supplyAsync(
+        () -> true, CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS));
+  }
 
-    logger.info(
-        "Read and send operation starting. Tracking ID:{}", connectionsPair.getTrackingId());
+  private void relay(CallerReads reads) {
+    var connectionsPair = reads.connectionsPair;
+    // messages already available complete their futures immediately; they are relayed in this
+    // loop instead of recursively, so a burst of messages cannot overflow the stack.
     while (connectionsPair.isConnectionsStateOpen()) {
+      CompletableFuture<Boolean> relayed;
+      try {
+        relayed = relayNext(reads);
+      } catch (RuntimeException e) {
+        relayed = CompletableFuture.failedFuture(e);
+      }
+
+      if (!relayed.isDone()) {
+        relayed.whenComplete(
+            (messageRelayed, error) -> {
+              if (continueRelay(connectionsPair, messageRelayed, error)) {
+                relay(reads);
+              }
+            });
+        return;
+      }
 
+      Boolean messageRelayed = null;
+      Throwable error = null;
       try {
-        readAndSendText(connectionsPair);
-      } catch (Exception e) {
-        logger.error(
-            "Error while reading data from the caller socket. Tracking ID:{}",
-            connectionsPair.getTrackingId(),
-            e);
-        connectionsPair.close();
+        messageRelayed = relayed.join();
+      } catch (CompletionException e) {
+        error = e.getCause();
+      } catch (RuntimeException e) {
+        error = e;
+      }
+      if (!continueRelay(connectionsPair, messageRelayed, error)) {
+        return;
       }
     }
 
+    closeConnectionsPair(connectionsPair);
+  }
+
+  private boolean continueRelay(
+      ConnectionsPair connectionsPair, Boolean messageRelayed, Throwable error) {
+    if (error != null) {
+      logger.error(
+          "Error while relaying data from the caller socket. Tracking ID:{}",
+          connectionsPair.getTrackingId(),
+          error);
+      closeConnectionsPair(connectionsPair);
+      return false;
+    }
+
+    if (!Boolean.TRUE.equals(messageRelayed)) {
+      // the caller has no more data; reading again would only spin.
+      closeConnectionsPair(connectionsPair);
+      return false;
+    }
+
+    return true;
+  }
+
+  private void closeConnectionsPair(ConnectionsPair connectionsPair) {
     logger.info(
-        "Stopped WebSocket relay processing. Connections are not open. Tracking ID:{}",
-        connectionsPair.getTrackingId());
+        "Stopped WebSocket relay processing. Tracking ID:{}", connectionsPair.getTrackingId());
 
-    // calling the method again if one of the connections in the
-    // pair is still open.
-    // It is okay to make the call again as it checks if the connection is open before closing it.
+    // It is okay to close the pair when one of the connections is already closed, as it checks
+    // if the connection is open before closing it.
     connectionsPair.close();
     logger.info("Closed connection pair. Tracking ID:{}", connectionsPair.getTrackingId());
   }
+
+  /**
+   * The pending reads of a pair. Only the relay of the pair uses them, one step at a time: each
+   * step starts once the previous one completed.
+   */
+  private static class CallerReads {
+    private final ConnectionsPair connectionsPair;
+    private CompletableFuture<String> text;
+    private CompletableFuture<BinaryFragment> binary;
+    // whether the last binary fragment sent did not end its message
+    private boolean binaryMessageOpen;
+
+    private CallerReads(ConnectionsPair connectionsPair) {
+      this.connectionsPair = connectionsPair;
+    }
+  }
 }
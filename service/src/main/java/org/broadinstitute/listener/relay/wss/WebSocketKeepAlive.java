@@ -0,0 +1,166 @@
+package org.broadinstitute.listener.relay.wss;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pings the target WebSockets and closes the pairs of connections that are idle or unresponsive.
+ *
+ * <p>A single thread checks every registered pair once per ping interval:
+ *
+ * <ul>
+ *   <li>pairs with a closed connection are closed and forgotten;
+ *   <li>pairs without messages in either direction for {@code idleTimeout} are closed;
+ *   <li>pairs whose target did not answer the previous ping within {@code pongTimeout} are closed;
+ *   <li>the target of the other pairs is pinged, and their summary is logged every {@code
+ *       summaryInterval}.
+ * </ul>
+ *
+ * <p>The caller connection can't be pinged through the relay, so a half-open caller is detected by
+ * the idle timeout. The round trip time of the pings is published as {@code
+ * listener.websocket.rtt}, and the closed pairs as {@code listener.websocket.keepalive.closed},
+ * tagged with the reason.
+ */
+public class WebSocketKeepAlive implements AutoCloseable {
+  private static final ByteBuffer PING_PAYLOAD = ByteBuffer.allocate(0);
+
+  private final Logger logger = LoggerFactory.getLogger(WebSocketKeepAlive.class);
+  private final Duration idleTimeout;
+  private final Duration pongTimeout;
+  private final Duration summaryInterval;
+  private final Set<ConnectionsPair> pairs = ConcurrentHashMap.newKeySet();
+  private final ScheduledExecutorService executor;
+  private final Timer roundTripTimer;
+  private final Counter idleCounter;
+  private final Counter unresponsiveCounter;
+
+  /**
+   * @param pingInterval how often the pairs are checked and the targets pinged
+   * @param idleTimeout how long a pair may relay no message before it is closed
+   * @param pongTimeout how long a target has to answer a ping
+   * @param summaryInterval how often the frames relayed by an open pair are logged
+   * @param meterRegistry registry of the round trip time and closed pair metrics
+   */
+  public WebSocketKeepAlive(
+      Duration pingInterval,
+      Duration idleTimeout,
+      Duration pongTimeout,
+      Duration summaryInterval,
+      MeterRegistry meterRegistry) {
+    this(idleTimeout, pongTimeout, summaryInterval, meterRegistry);
+    executor.scheduleWithFixedDelay(
+        this::checkPairs,
+        pingInterval.toMillis(),
+        pingInterval.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  @VisibleForTesting
+  WebSocketKeepAlive(
+      Duration idleTimeout,
+      Duration pongTimeout,
+      Duration summaryInterval,
+      MeterRegistry meterRegistry) {
+    this.idleTimeout = idleTimeout;
+    this.pongTimeout = pongTimeout;
+    this.summaryInterval = summaryInterval;
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("websocket-keepalive-%d")
+                .setDaemon(true)
+                .build());
+    this.roundTripTimer =
+        Timer.builder("listener.websocket.rtt")
+            .description("Round trip time of the pings of the target WebSockets")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    this.idleCounter =
+        meterRegistry.counter("listener.websocket.keepalive.closed", "reason", "idle");
+    this.unresponsiveCounter =
+        meterRegistry.counter("listener.websocket.keepalive.closed", "reason", "unresponsive");
+  }
+
+  /** Starts checking a pair. The pair is forgotten once it is closed. */
+  public void register(ConnectionsPair connectionsPair) {
+    pairs.add(connectionsPair);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  @VisibleForTesting
+  int getRegistered() {
+    return pairs.size();
+  }
+
+  @VisibleForTesting
+  void checkPairs() {
+    long now = System.nanoTime();
+    for (ConnectionsPair pair : pairs) {
+      try {
+        checkPair(pair, now);
+      } catch (RuntimeException e) {
+        logger.error("Failed to check the connections. Tracking ID:{}", pair.getTrackingId(), e);
+      }
+    }
+  }
+
+  private void checkPair(ConnectionsPair pair, long now) {
+    ConnectionActivity activity = pair.getActivity();
+    long roundTrip = activity.takeRoundTripNanos();
+    if (roundTrip >= 0) {
+      roundTripTimer.record(roundTrip, TimeUnit.NANOSECONDS);
+    }
+
+    if (!pair.isConnectionsStateOpen()) {
+      // one of the connections closed on its own: closing the pair closes the other one, and
+      // releases the pair if nothing else did.
+      closePair(pair);
+      return;
+    }
+
+    if (now - activity.getLastMessageNanos() >= idleTimeout.toNanos()) {
+      logger.info("Closing idle connections. Tracking ID:{}", pair.getTrackingId());
+      idleCounter.increment();
+      closePair(pair);
+      return;
+    }
+
+    long pingSent = activity.getPingSentNanos();
+    if (pingSent != 0 && now - pingSent >= pongTimeout.toNanos()) {
+      logger.info("Closing unresponsive connections. Tracking ID:{}", pair.getTrackingId());
+      unresponsiveCounter.increment();
+      closePair(pair);
+      return;
+    }
+
+    if (pingSent == 0) {
+      activity.onPingSent(now);
+      pair.getLocalWebSocketConnection().sendPing(PING_PAYLOAD.duplicate());
+    }
+
+    if (now - activity.getLastSummaryNanos() >= summaryInterval.toNanos()) {
+      pair.logSummary(false);
+    }
+  }
+
+  private void closePair(ConnectionsPair pair) {
+    pairs.remove(pair);
+    pair.close();
+  }
+}
@@ -0,0 +1,144 @@
+package org.broadinstitute.listener.relay.wss;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of WebSocket pairs and the bandwidth they use.
+ *
+ * <p>Each accepted upgrade reserves a slot, held while it waits for its caller, while its target
+ * WebSocket is being opened and while the pair is open. Upgrades are rejected while the {@code
+ * maxPairs} slots are reserved. The open pairs are published as {@code listener.websocket.pairs},
+ * and the rejected upgrades are counted in {@code listener.websocket.rejected}.
+ *
+ * <p>In each direction, a pair relays at most {@code bytesPerSecondPerPair}. The pairs share
+ * {@code bytesPerSecond}: while the shared bucket has bytes left, no pair waits for it. Once it is
+ * empty, each pair is entitled to an equal share of the rate, and only the pairs that relayed more
+ * than their share wait, until they are back within it. A quiet pair is not delayed by a busy one.
+ * Throttled messages are counted in {@code listener.websocket.throttled}, tagged with the
+ * direction.
+ */
+public class WebSocketLimits {
+
+  private final int maxPairs;
+  private final long bytesPerSecondPerPair;
+  private final long bytesPerSecond;
+  private final AtomicInteger reservedSlots = new AtomicInteger();
+  private final AtomicInteger openPairs = new AtomicInteger();
+  private final Direction callerToTarget;
+  private final Direction targetToCaller;
+  private final Counter rejectedCounter;
+
+  /**
+   * @param maxPairs maximum number of slots, for pairs open or waiting for their caller
+   * @param bytesPerSecondPerPair bandwidth of a pair in each direction
+   * @param bytesPerSecond bandwidth of all the pairs in each direction
+   * @param meterRegistry registry of the pair, rejection and throttling metrics
+   */
+  public WebSocketLimits(
+      int maxPairs, long bytesPerSecondPerPair, long bytesPerSecond, MeterRegistry meterRegistry) {
+    this.maxPairs = maxPairs;
+    this.bytesPerSecondPerPair = bytesPerSecondPerPair;
+    this.bytesPerSecond = bytesPerSecond;
+    this.callerToTarget = new Direction("caller_to_target", meterRegistry);
+    this.targetToCaller = new Direction("target_to_caller", meterRegistry);
+    this.rejectedCounter = meterRegistry.counter("listener.websocket.rejected");
+    Gauge.builder("listener.websocket.pairs", openPairs, AtomicInteger::get)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Reserves a slot for a new upgrade, unless all the slots are reserved. The slot is given back by
+   * {@link #release()} if the upgrade never becomes a pair, or by {@link #onPairClosed()}.
+   *
+   * @return true if the upgrade is accepted
+   */
+  public boolean admit() {
+    // the check and the reservation are a single update, so concurrent upgrades can't both take
+    // the last slot.
+    if (reservedSlots.getAndUpdate(slots -> slots < maxPairs ? slots + 1 : slots) >= maxPairs) {
+      rejectedCounter.increment();
+      return false;
+    }
+    return true;
+  }
+
+  /** Gives back the slot of an upgrade rejected, or expired before its caller connected. */
+  public void release() {
+    reservedSlots.decrementAndGet();
+  }
+
+  /** Counts a pair whose target WebSocket is being opened, in the slot of its upgrade. */
+  public void onPairOpening() {
+    openPairs.incrementAndGet();
+  }
+
+  /** Gives back the slot of a pair, once it is closed or its target WebSocket failed to open. */
+  public void onPairClosed() {
+    openPairs.decrementAndGet();
+    reservedSlots.decrementAndGet();
+  }
+
+  public int getOpenPairs() {
+    return openPairs.get();
+  }
+
+  /** @return the activity of a new pair, with its own bandwidth. */
+  public ConnectionActivity newActivity() {
+    return new ConnectionActivity(this, newPairBuckets(), newPairBuckets());
+  }
+
+  private PairBuckets newPairBuckets() {
+    return new PairBuckets(
+        new TokenBucket(bytesPerSecondPerPair), new TokenBucket(getFairShare()));
+  }
+
+  private long getFairShare() {
+    return Math.max(1, bytesPerSecond / Math.max(1, openPairs.get()));
+  }
+
+  long reserveCallerToTarget(PairBuckets pair, long bytes, long nowNanos) {
+    return reserve(callerToTarget, pair, bytes, nowNanos);
+  }
+
+  long reserveTargetToCaller(PairBuckets pair, long bytes, long nowNanos) {
+    return reserve(targetToCaller, pair, bytes, nowNanos);
+  }
+
+  private long reserve(Direction direction, PairBuckets pair, long bytes, long nowNanos) {
+    long delay = pair.limit.reserve(bytes, nowNanos);
+    // the usage of the pair is measured against its share even while the link has capacity to
+    // spare, so a pair that was busy before the link saturated is the first one to wait.
+    long shareDelay = pair.share.reserve(bytes, nowNanos, getFairShare());
+    if (!direction.shared.tryTake(bytes, nowNanos)) {
+      delay = Math.max(delay, shareDelay);
+    }
+    if (delay > 0) {
+      direction.throttledCounter.increment();
+    }
+    return delay;
+  }
+
+  /** The buckets of one direction of a pair. */
+  static class PairBuckets {
+    private final TokenBucket limit;
+    private final TokenBucket share;
+
+    PairBuckets(TokenBucket limit, TokenBucket share) {
+      this.limit = limit;
+      this.share = share;
+    }
+  }
+
+  private class Direction {
+    private final TokenBucket shared = new TokenBucket(bytesPerSecond);
+    private final Counter throttledCounter;
+
+    private Direction(String name, MeterRegistry meterRegistry) {
+      this.throttledCounter =
+          meterRegistry.counter("listener.websocket.throttled", "direction", name);
+    }
+  }
+}
@@ -2,36 +2,118 @@ package org.broadinstitute.listener.relay.wss;
 
 import com.microsoft.azure.relay.WebSocketChannel;
 import com.microsoft.azure.relay.WriteMode;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 import org.springframework.lang.NonNull;
 
 // Note: These methods are a stopgap.
 // They should be removed when the Azure Relay SDK provides the functionality
-// to read and write text data over the websocket connection.
+// to read and write text data, and fragments of messages, over the websocket connection.
+//
+// The methods are looked up once per channel class, not on every message.
 public class WebSocketTextIOUtils {
 
-  public static CompletableFuture<String> readTextAsync(@NonNull WebSocketChannel webSocketChannel)
-      throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-    Method readMethod = webSocketChannel.getClass().getDeclaredMethod("readTextAsync");
-    readMethod.setAccessible(true);
+  public static final Duration DEFAULT_WRITE_TIMEOUT = Duration.ofSeconds(30);
 
-    return (CompletableFuture<String>) readMethod.invoke(webSocketChannel);
+  private static final MethodType READ_TEXT_TYPE =
+      MethodType.methodType(CompletableFuture.class, WebSocketChannel.class);
+  private static final MethodType WRITE_TYPE =
+      MethodType.methodType(
+          CompletableFuture.class,
+          WebSocketChannel.class,
+          Object.class,
+          Duration.class,
+          boolean.class,
+          WriteMode.class);
+
+  private static final ClassValue<MethodHandle> READ_TEXT_METHODS =
+      new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+          return findMethod(type, "readTextAsync", READ_TEXT_TYPE);
+        }
+      };
+
+  private static final ClassValue<MethodHandle> WRITE_METHODS =
+      new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+          return findMethod(type, "writeAsync", WRITE_TYPE);
+        }
+      };
+
+  @SuppressWarnings("unchecked")
+  public static CompletableFuture<String> readTextAsync(
+      @NonNull WebSocketChannel webSocketChannel) {
+    MethodHandle readMethod = READ_TEXT_METHODS.get(webSocketChannel.getClass());
+    try {
+      return (CompletableFuture<String>) readMethod.invokeExact(webSocketChannel);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  public static CompletableFuture<Void> writeTextAsync(
+      @NonNull WebSocketChannel webSocketChannel, String text, boolean last) {
+    return writeTextAsync(webSocketChannel, text, last, DEFAULT_WRITE_TIMEOUT);
   }
 
   public static CompletableFuture<Void> writeTextAsync(
-      @NonNull WebSocketChannel webSocketChannel, String text, boolean last)
-      throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-    Method writeAsync =
-        webSocketChannel
-            .getClass()
-            .getDeclaredMethod(
-                "writeAsync", Object.class, Duration.class, boolean.class, WriteMode.class);
-    writeAsync.setAccessible(true);
-
-    return (CompletableFuture<Void>)
-        writeAsync.invoke(webSocketChannel, text, Duration.ofSeconds(30), last, WriteMode.TEXT);
+      @NonNull WebSocketChannel webSocketChannel, String text, boolean last, Duration timeout) {
+    return write(webSocketChannel, text, last, timeout, WriteMode.TEXT);
+  }
+
+  /**
+   * Writes a fragment of a binary message. The public write of the channel always ends the
+   * message, which would split a message the target sent in several fragments.
+   *
+   * @param last whether the fragment ends the message
+   */
+  public static CompletableFuture<Void> writeBinaryAsync(
+      @NonNull WebSocketChannel webSocketChannel, ByteBuffer data, boolean last, Duration timeout) {
+    return write(webSocketChannel, data, last, timeout, WriteMode.BINARY);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static CompletableFuture<Void> write(
+      WebSocketChannel webSocketChannel,
+      Object data,
+      boolean last,
+      Duration timeout,
+      WriteMode writeMode) {
+    MethodHandle writeMethod = WRITE_METHODS.get(webSocketChannel.getClass());
+    try {
+      return (CompletableFuture<Void>)
+          writeMethod.invokeExact(webSocketChannel, data, timeout, last, writeMode);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Finds a method declared by {@code type}, even if it is not accessible.
+   *
+   * @param callSiteType type of the method with the receiver as first parameter; the returned
+   *     handle is adapted to it.
+   */
+  static MethodHandle findMethod(Class<?> type, String name, MethodType callSiteType) {
+    try {
+      Method method =
+          type.getDeclaredMethod(name, callSiteType.dropParameterTypes(0, 1).parameterArray());
+      method.setAccessible(true);
+      return MethodHandles.lookup().unreflect(method).asType(callSiteType);
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new IllegalStateException(
+          String.format("Method %s not found in %s", name, type.getName()), e);
+    }
   }
 }
@@ -0,0 +1,48 @@
+package org.broadinstitute.listener.relay.wss;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Counts the bytes relayed over WebSocket connections, in {@code listener.websocket.bytes} tagged
+ * with the direction: {@code caller_to_target} or {@code target_to_caller}.
+ */
+public class WebSocketTraffic {
+
+  private final Counter callerToTarget;
+  private final Counter targetToCaller;
+
+  public WebSocketTraffic(MeterRegistry meterRegistry) {
+    this.callerToTarget =
+        meterRegistry.counter("listener.websocket.bytes", "direction", "caller_to_target");
+    this.targetToCaller =
+        meterRegistry.counter("listener.websocket.bytes", "direction", "target_to_caller");
+  }
+
+  public void recordCallerToTarget(long bytes) {
+    callerToTarget.increment(bytes);
+  }
+
+  public void recordTargetToCaller(long bytes) {
+    targetToCaller.increment(bytes);
+  }
+
+  /** @return the size of the text encoded in UTF-8, as sent over the wire. */
+  static long utf8Length(CharSequence text) {
+    long length = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < text.length()) {
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+}
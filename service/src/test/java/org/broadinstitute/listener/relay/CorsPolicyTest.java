@@ -0,0 +1,114 @@
+package org.broadinstitute.listener.relay;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import org.broadinstitute.listener.config.CorsSupportProperties;
+import org.junit.jupiter.api.Test;
+
+class CorsPolicyTest {
+  private final CorsPolicy corsPolicy =
+      CorsPolicy.compile(
+          new CorsSupportProperties(
+              "OPTIONS, GET",
+              "Authorization",
+              "1728000",
+              "frame-ancestors 'self'",
+              List.of("app.terra.bio", "localhost:3000", "*.dsde-dev.broadinstitute.org")));
+
+  @Test
+  void isAllowed_exactHost() {
+    assertThat(corsPolicy.isAllowed("https://app.terra.bio"), equalTo(true));
+    assertThat(corsPolicy.isAllowed("https://app.terra.bio/"), equalTo(true));
+    assertThat(corsPolicy.isAllowed("http://localhost:3000"), equalTo(true));
+    assertThat(corsPolicy.isAllowed("http://localhost:3001"), equalTo(false));
+    assertThat(corsPolicy.isAllowed("https://app.terra.bio.example.com"), equalTo(false));
+    assertThat(corsPolicy.isAllowed("app.terra.bio"), equalTo(false));
+  }
+
+  @Test
+  void isAllowed_wildcardSuffix() {
+    assertThat(corsPolicy.isAllowed("https://leo.dsde-dev.broadinstitute.org"), equalTo(true));
+    assertThat(corsPolicy.isAllowed("https://x.dsde-dev.broadinstitute.org:3000"), equalTo(true));
+    assertThat(corsPolicy.isAllowed("https://dsde-dev.broadinstitute.org"), equalTo(false));
+    assertThat(corsPolicy.isAllowed("https://dsde-dev.broadinstitute.org:3000"), equalTo(false));
+    assertThat(
+        corsPolicy.isAllowed("https://leo.dsde-dev.broadinstitute.org.evil.com"), equalTo(false));
+  }
+
+  @Test
+  void isAllowed_anyHost() {
+    var anyHostPolicy = CorsPolicy.compile(new CorsSupportProperties("", "", "", "", List.of("*")));
+
+    assertThat(anyHostPolicy.isAllowed("notmyorigin.com"), equalTo(true));
+    assertThat(anyHostPolicy.isAllowed("https://myorigin.com:3000"), equalTo(true));
+  }
+
+  @Test
+  void isAllowed_trimmedHosts() {
+    // The space is intentional. The strings from azure_vm_init_script come prepended with spaces.
+    var policy = CorsPolicy.compile(new CorsSupportProperties("", "", "", "", List.of(" a.com")));
+
+    assertThat(policy.isAllowed("https://a.com"), equalTo(true));
+    assertThat(policy.isAllowed("https://a.com/"), equalTo(true));
+  }
+
+  @Test
+  void isAllowed_emptyOrigin() {
+    assertThat(corsPolicy.isAllowed(""), equalTo(true));
+  }
+
+  @Test
+  void isAllowed_originWithoutProtocol() {
+    assertThat(corsPolicy.isAllowed("notmyorigin.com"), equalTo(false));
+    assertThat(corsPolicy.isAllowed("app.terra.bio.envs.bio"), equalTo(false));
+    assertThat(corsPolicy.isAllowed("app.terra.bio:3000"), equalTo(false));
+  }
+
+  @Test
+  void getOriginUrl() {
+    assertThat(CorsPolicy.getOriginUrl("not a url"), equalTo(Optional.empty()));
+    assertThat(
+        CorsPolicy.getOriginUrl("https://app.terra.bio:443").map(URL::getAuthority),
+        equalTo(Optional.of("app.terra.bio:443")));
+  }
+
+  @Test
+  void writeHeaders_allowedOrigin() {
+    var responseHeaders = new HashMap<String, String>();
+    responseHeaders.put("Content-Security-Policy", "from the target");
+
+    var allowed = corsPolicy.writeHeaders(responseHeaders, "https://app.terra.bio");
+
+    assertThat(allowed, equalTo(true));
+    assertThat(responseHeaders, hasEntry("Access-Control-Allow-Origin", "https://app.terra.bio"));
+    assertThat(responseHeaders, hasEntry("Access-Control-Allow-Methods", "OPTIONS, GET"));
+    assertThat(responseHeaders, hasEntry("Access-Control-Allow-Credentials", "true"));
+    assertThat(responseHeaders, hasEntry("Access-Control-Allow-Headers", "Authorization"));
+    assertThat(responseHeaders, hasEntry("Access-Control-Max-Age", "1728000"));
+    // headers already set are kept
+    assertThat(responseHeaders, hasEntry("Content-Security-Policy", "from the target"));
+  }
+
+  @Test
+  void writeHeaders_noOrigin() {
+    var responseHeaders = new HashMap<String, String>();
+
+    assertThat(corsPolicy.writeHeaders(responseHeaders, null), equalTo(true));
+    assertThat(responseHeaders, hasEntry("Access-Control-Allow-Origin", "*"));
+  }
+
+  @Test
+  void writeHeaders_deniedOrigin() {
+    var responseHeaders = new HashMap<String, String>();
+
+    assertThat(corsPolicy.writeHeaders(responseHeaders, "http://malicious.com"), equalTo(false));
+    assertThat(responseHeaders, anEmptyMap());
+  }
+}
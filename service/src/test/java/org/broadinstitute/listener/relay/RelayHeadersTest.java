@@ -0,0 +1,155 @@
+package org.broadinstitute.listener.relay;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class RelayHeadersTest {
+
+  @Test
+  void getFirst_caseInsensitive() {
+    var headers = RelayHeaders.of(Map.of("Content-Type", "text/html"));
+
+    assertThat(headers.getFirst("content-type"), equalTo("text/html"));
+    assertThat(headers.contains("CONTENT-TYPE"), equalTo(true));
+    assertThat(headers.getFirst("Accept"), nullValue());
+  }
+
+  @Test
+  void of_nullIsEmpty() {
+    var headers = RelayHeaders.of(null);
+
+    assertThat(headers.isEmpty(), equalTo(true));
+    assertThat(headers.asMap().isEmpty(), equalTo(true));
+  }
+
+  @Test
+  void of_readOnly() {
+    var headers = RelayHeaders.of(Map.of("Cookie", "a=1"));
+
+    assertThrows(UnsupportedOperationException.class, () -> headers.add("Cookie", "b=2"));
+    assertThrows(UnsupportedOperationException.class, () -> headers.remove("Cookie"));
+  }
+
+  @Test
+  void add_keepsEveryValueInOrder() {
+    var headers = new RelayHeaders();
+    headers.add("Set-Cookie", "a=1");
+    headers.add("Content-Type", "text/html");
+    headers.add("set-cookie", "b=2");
+
+    assertThat(headers.size(), equalTo(3));
+    assertThat(headers.getAll("SET-COOKIE"), equalTo(List.of("a=1", "b=2")));
+    assertThat(headers.getFirst("Set-Cookie"), equalTo("a=1"));
+  }
+
+  @Test
+  void remove_everySpelling() {
+    var headers = new RelayHeaders();
+    headers.add("Server", "a");
+    headers.add("Content-Type", "text/html");
+    headers.add("server", "b");
+
+    assertThat(headers.remove("SERVER"), equalTo(true));
+    assertThat(headers.remove("Server"), equalTo(false));
+    assertThat(headers.size(), equalTo(1));
+    assertThat(headers.getName(0), equalTo("Content-Type"));
+  }
+
+  @Test
+  void setIfAbsent_keepsExistingValue() {
+    var headers = new RelayHeaders();
+    headers.add("content-security-policy", "target");
+
+    assertThat(headers.setIfAbsent("Content-Security-Policy", "listener"), equalTo(false));
+    assertThat(headers.setIfAbsent("Access-Control-Max-Age", "10"), equalTo(true));
+    assertThat(headers.getAll("Content-Security-Policy"), equalTo(List.of("target")));
+
+    headers.set("Content-Security-Policy", "listener");
+    assertThat(headers.getAll("Content-Security-Policy"), equalTo(List.of("listener")));
+  }
+
+  @Test
+  void writeTo_repeatedValuesUseDistinctSpellings() {
+    var headers = new RelayHeaders();
+    headers.add("Set-Cookie", "a=1");
+    headers.add("Set-Cookie", "b=2");
+    headers.add("Set-Cookie", "c=3");
+    headers.add("Content-Type", "text/html");
+    var target = new HashMap<String, String>();
+
+    headers.writeTo(target);
+
+    assertThat(target.size(), equalTo(4));
+    assertThat(target, hasEntry("Set-Cookie", "a=1"));
+    assertThat(target, hasEntry("Content-Type", "text/html"));
+    var cookies =
+        target.entrySet().stream()
+            .filter(e -> e.getKey().equalsIgnoreCase("Set-Cookie"))
+            .map(Map.Entry::getValue)
+            .sorted()
+            .toList();
+    assertThat(cookies, equalTo(List.of("a=1", "b=2", "c=3")));
+  }
+
+  @Test
+  void writeTo_repeatedValuesAreJoined() {
+    var headers = new RelayHeaders();
+    headers.add("Vary", "Origin");
+    headers.add("Vary", "Accept");
+    var target = new HashMap<String, String>();
+
+    headers.writeTo(target);
+
+    assertThat(target.size(), equalTo(1));
+    assertThat(target, hasEntry("Vary", "Origin, Accept"));
+  }
+
+  @Test
+  void writeTo_caseInsensitiveTargetRejectsCookies() {
+    var headers = new RelayHeaders();
+    headers.add("Set-Cookie", "a=1");
+    headers.add("Set-Cookie", "b=2");
+    var target = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+
+    assertThrows(IllegalStateException.class, () -> headers.writeTo(target));
+  }
+
+  @Test
+  void addTo_keepsCookiesAlreadySet() {
+    var target = new HashMap<String, String>();
+    target.put("Set-Cookie", "LeoToken=token");
+
+    RelayHeaders.addTo(target, "Set-Cookie", "ticket=1");
+    RelayHeaders.addTo(target, "Set-Cookie", "other=2");
+
+    assertThat(target.size(), equalTo(3));
+    assertThat(target, hasEntry("Set-Cookie", "LeoToken=token"));
+    assertThat(
+        target.values().stream().sorted().toList(),
+        equalTo(List.of("LeoToken=token", "other=2", "ticket=1")));
+  }
+
+  @Test
+  void asMap_firstValuePerHeader() {
+    var headers = new RelayHeaders();
+    headers.add("Set-Cookie", "a=1");
+    headers.add("set-cookie", "b=2");
+    headers.add("Accept", "*/*");
+
+    var map = headers.asMap();
+
+    assertThat(map.size(), equalTo(2));
+    assertThat(map.get("SET-COOKIE"), equalTo("a=1"));
+    assertThat(map, hasEntry("Accept", "*/*"));
+    assertThat(map.getOrDefault("Origin", "-"), equalTo("-"));
+  }
+}
@@ -0,0 +1,86 @@
+package org.broadinstitute.listener.relay;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.microsoft.azure.relay.RelayedHttpListenerRequest;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import org.broadinstitute.listener.relay.inspectors.TokenChecker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class RequestEnvelopeTest {
+
+  @Mock private RelayedHttpListenerRequest listenerRequest;
+  @Mock private TokenChecker tokenChecker;
+
+  @Test
+  void getHeaders_caseInsensitive() {
+    when(listenerRequest.getHeaders()).thenReturn(Map.of("ReFeRer", "http://example.com"));
+
+    var envelope = RequestEnvelope.of(listenerRequest);
+
+    assertThat(envelope.getHeader("referer"), equalTo(Optional.of("http://example.com")));
+    assertThat(envelope.getHeaders().get("REFERER"), equalTo("http://example.com"));
+  }
+
+  @Test
+  void getHeaders_noHeaders() {
+    when(listenerRequest.getHeaders()).thenReturn(null);
+
+    var envelope = RequestEnvelope.of(listenerRequest);
+
+    assertThat(envelope.hasHeaders(), equalTo(false));
+    assertThat(envelope.getHeaders().isEmpty(), equalTo(true));
+    assertThat(envelope.getToken(), equalTo(Optional.empty()));
+  }
+
+  @Test
+  void getToken_cookieTakesPrecedenceOverAuthorization() {
+    when(listenerRequest.getHeaders())
+        .thenReturn(
+            Map.of(
+                "cookie", "other=1; LeoToken=cookieToken; XLeoToken=wrong",
+                "Authorization", "Bearer headerToken"));
+
+    var envelope = RequestEnvelope.of(listenerRequest);
+
+    assertThat(envelope.getToken(), equalTo(Optional.of("cookieToken")));
+    assertThat(envelope.getCookie("other"), equalTo(Optional.of("1")));
+    assertThat(
+        envelope.getTokenDigest(), equalTo(Optional.of(Utils.getTokenDigest("cookieToken"))));
+  }
+
+  @Test
+  void getToken_fromAuthorization() {
+    when(listenerRequest.getHeaders()).thenReturn(Map.of("authorization", "Bearer headerToken"));
+
+    assertThat(
+        RequestEnvelope.of(listenerRequest).getToken(), equalTo(Optional.of("headerToken")));
+  }
+
+  @Test
+  void getClaims_tokenDecodedOnce() throws IOException, InterruptedException {
+    when(listenerRequest.getHeaders()).thenReturn(Map.of("Authorization", "Bearer token"));
+    var digest = Utils.getTokenDigest("token");
+    when(tokenChecker.getOauthInfo("token", digest))
+        .thenReturn(
+            new OauthInfo(Optional.of(Instant.now().plusSeconds(60)), "", Map.of("sub", "123")));
+
+    var envelope = RequestEnvelope.of(listenerRequest);
+
+    assertThat(envelope.getClaims(tokenChecker), equalTo(Map.of("sub", "123")));
+    assertThat(envelope.getClaims(tokenChecker), equalTo(Map.of("sub", "123")));
+    verify(tokenChecker, times(1)).getOauthInfo("token", digest);
+    verify(listenerRequest, times(1)).getHeaders();
+  }
+}
@@ -2,16 +2,24 @@ package org.broadinstitute.listener.relay;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
 
+import java.lang.management.ManagementFactory;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 import org.broadinstitute.listener.config.CorsSupportProperties;
 import org.junit.jupiter.api.Test;
 
 class UtilTest {
+  private static final String COOKIE_HEADER =
+      "_ga=GA1.1.1234567890; _xsrf=2|63084c74|2d3173085f60; LeoToken=eyJhbGciOiJSUzI1NiJ9.e30.c2ln";
+  private static final int ALLOCATION_ITERATIONS = 10_000;
+
   @Test
   void getTokenFromAuthorization_should_get_token_properly() {
     Map<String, String> headers1 = new HashMap<>();
@@ -53,95 +61,64 @@ class UtilTest {
   }
 
   @Test
-  void isValidOrigin_test() {
-    // The space is intentional. The strings from azure_vm_init_script come prepended with spaces.
-    String allowedOrigin = " myorigin.com";
-
-    CorsSupportProperties mockCorsSupportProperties =
-        new CorsSupportProperties("", "", "", "", List.of(allowedOrigin));
-
-    String correctOrigin = "https://" + "myorigin.com";
-    boolean isValidOrigin = Utils.isValidOrigin(correctOrigin, mockCorsSupportProperties);
-    assert (isValidOrigin);
-
-    String correctOriginTrailingSlash = "https://" + "myorigin.com/";
-    isValidOrigin = Utils.isValidOrigin(correctOriginTrailingSlash, mockCorsSupportProperties);
-    assert (isValidOrigin);
+  void getTokenFromAuthorization_trimsToken() {
+    assertThat(
+        Utils.getTokenFromAuthorization(Map.of("Authorization", "Bearer  asdf ")),
+        equalTo(Optional.of("asdf")));
   }
 
   @Test
-  void isValidOriginWithPort_test() {
-    String allowedOrigin = "myorigin.com:3000";
-
-    CorsSupportProperties mockCorsSupportProperties =
-        new CorsSupportProperties("", "", "", "", List.of(allowedOrigin));
-
-    String originToTest = "https://myorigin.com:3000";
-    boolean isValidOrigin = Utils.isValidOrigin(originToTest, mockCorsSupportProperties);
-    assert (isValidOrigin);
+  void getTokenFromAuthorization_schemeFirst() {
+    assertThat(
+        Utils.getTokenFromAuthorization(Map.of("Authorization", "bearer asdf")),
+        equalTo(Optional.of("asdf")));
+    assertThat(
+        Utils.getTokenFromAuthorization(Map.of("Authorization", "Basic Bearer asdf")),
+        equalTo(Optional.empty()));
+    assertThat(
+        Utils.getTokenFromAuthorization(Map.of("Authorization", "Basic dXNlcjpCZWFyZXIg")),
+        equalTo(Optional.empty()));
   }
 
   @Test
-  void isValidOriginEmptyOrigin_test() {
-    String allowedOrigin = "couldBeAntything";
-
-    CorsSupportProperties mockCorsSupportProperties =
-        new CorsSupportProperties("", "", "", "", List.of(allowedOrigin));
-
-    String originToTest = "";
-    boolean isValidOrigin = Utils.isValidOrigin(originToTest, mockCorsSupportProperties);
-    assert (isValidOrigin);
+  void findCookie() {
+    assertThat(
+        Utils.findCookie(COOKIE_HEADER, "LeoToken"), equalTo("eyJhbGciOiJSUzI1NiJ9.e30.c2ln"));
+    assertThat(Utils.findCookie(COOKIE_HEADER, "_ga"), equalTo("GA1.1.1234567890"));
+    assertThat(Utils.findCookie("XLeoToken=a; LeoTokenX=b", "LeoToken"), nullValue());
+    assertThat(Utils.findCookie("LeoToken=a; LeoToken=b", "LeoToken"), equalTo("a"));
+    assertThat(Utils.findCookie("LeoToken=", "LeoToken"), equalTo(""));
+    assertThat(Utils.findCookie("fake;", "LeoToken"), nullValue());
+    assertThat(Utils.findCookie(null, "LeoToken"), nullValue());
   }
 
   @Test
-  void isValidOriginWildCard_test() {
-    boolean isValidOrigin;
-    String allowedOrigin = "*";
-    CorsSupportProperties mockCorsSupportProperties =
-        new CorsSupportProperties("", "", "", "", List.of(allowedOrigin));
-
-    String invalidOrigin = "notmyorigin.com";
-
-    isValidOrigin = Utils.isValidOrigin(invalidOrigin, mockCorsSupportProperties);
-    assert (isValidOrigin);
-
-    invalidOrigin = "myorigin.com.envs.bio";
-
-    isValidOrigin = Utils.isValidOrigin(invalidOrigin, mockCorsSupportProperties);
-    assert (isValidOrigin);
-
-    String validOriginWithPort = "myorigin.com:3000";
-    isValidOrigin = Utils.isValidOrigin(validOriginWithPort, mockCorsSupportProperties);
-    assert isValidOrigin;
-
-    String validOriginNoProtocol = "myorigin.com";
-    isValidOrigin = Utils.isValidOrigin(validOriginNoProtocol, mockCorsSupportProperties);
-    assert (isValidOrigin);
+  void parsing_onlyAllocatesTheResult() {
+    var corsPolicy =
+        CorsPolicy.compile(new CorsSupportProperties("", "", "", "", List.of("myorigin.com")));
+
+    // the token is the only allocation: a String and its bytes
+    assertThat(
+        bytesPerCall(() -> Utils.findCookie(COOKIE_HEADER, Utils.TOKEN_NAME)), lessThan(128L));
+    assertThat(
+        bytesPerCall(() -> Utils.parseBearerToken("Bearer eyJhbGciOiJSUzI1NiJ9.e30.c2ln")),
+        lessThan(128L));
+    // the origin is parsed once
+    assertThat(bytesPerCall(() -> corsPolicy.isAllowed("https://myorigin.com")), lessThan(64L));
   }
 
-  @Test
-  void isValidOrigin_Error_test() {
-    boolean isValidOrigin;
-    String allowedOrigin = "myorigin.com";
-    CorsSupportProperties mockCorsSupportProperties =
-        new CorsSupportProperties("", "", "", "", List.of(allowedOrigin));
-
-    String invalidOrigin = "notmyorigin.com";
-
-    isValidOrigin = Utils.isValidOrigin(invalidOrigin, mockCorsSupportProperties);
-    assert (!isValidOrigin);
-
-    invalidOrigin = "myorigin.com.envs.bio";
-
-    isValidOrigin = Utils.isValidOrigin(invalidOrigin, mockCorsSupportProperties);
-    assert (!isValidOrigin);
-
-    String validOriginWithPort = "myorigin.com:3000";
-    isValidOrigin = Utils.isValidOrigin(validOriginWithPort, mockCorsSupportProperties);
-    assert !isValidOrigin;
-
-    String validOriginNoProtocol = "myorigin.com";
-    isValidOrigin = Utils.isValidOrigin(validOriginNoProtocol, mockCorsSupportProperties);
-    assert (!isValidOrigin);
+  private static long bytesPerCall(Supplier<Object> parser) {
+    var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    var threadId = Thread.currentThread().getId();
+    // warm up, so that one-off allocations like class loading are not measured
+    for (int i = 0; i < ALLOCATION_ITERATIONS; i++) {
+      parser.get();
+    }
+
+    var before = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < ALLOCATION_ITERATIONS; i++) {
+      parser.get();
+    }
+    return (threadMXBean.getThreadAllocatedBytes(threadId) - before) / ALLOCATION_ITERATIONS;
   }
 }
@@ -0,0 +1,95 @@
+package org.broadinstitute.listener.relay.health;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+
+@ExtendWith(MockitoExtension.class)
+class StatusSnapshotTest {
+
+  @Mock private HealthEndpoint healthEndpoint;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void get_servesSnapshotFromMemory() throws JsonProcessingException {
+    when(healthEndpoint.health()).thenReturn(Health.up().build());
+
+    try (var statusSnapshot =
+        new StatusSnapshot(healthEndpoint, objectMapper, Duration.ofHours(1))) {
+      var first = statusSnapshot.get();
+      var second = statusSnapshot.get();
+
+      assertThat(first.statusCode(), equalTo(200));
+      assertThat(new String(first.body(), StandardCharsets.UTF_8), containsString("UP"));
+      assertThat(second, equalTo(first));
+      verify(healthEndpoint, times(1)).health();
+    }
+  }
+
+  @Test
+  void onAvailabilityChange_recomputesSnapshot()
+      throws JsonProcessingException, InterruptedException {
+    when(healthEndpoint.health()).thenReturn(Health.up().build(), Health.down().build());
+
+    try (var statusSnapshot =
+        new StatusSnapshot(healthEndpoint, objectMapper, Duration.ofHours(1))) {
+      assertThat(statusSnapshot.get().statusCode(), equalTo(200));
+
+      statusSnapshot.onAvailabilityChange(
+          new AvailabilityChangeEvent<>(this, ReadinessState.REFUSING_TRAFFIC));
+
+      verify(healthEndpoint, timeout(1000).times(2)).health();
+      awaitStatusCode(statusSnapshot, 500);
+    }
+  }
+
+  @Test
+  void refresh_failureKeepsPreviousSnapshot() throws JsonProcessingException {
+    when(healthEndpoint.health())
+        .thenReturn(Health.up().build())
+        .thenThrow(new IllegalStateException("indicator failed"));
+
+    try (var statusSnapshot =
+        new StatusSnapshot(healthEndpoint, objectMapper, Duration.ofHours(1))) {
+      statusSnapshot.refresh();
+
+      assertThat(statusSnapshot.get().statusCode(), equalTo(200));
+    }
+  }
+
+  @Test
+  void onDemand_computedOnEveryCall() throws JsonProcessingException {
+    when(healthEndpoint.health()).thenReturn(Health.up().build(), Health.down().build());
+    var statusSnapshot = StatusSnapshot.onDemand(healthEndpoint, objectMapper);
+
+    assertThat(statusSnapshot.get().statusCode(), equalTo(200));
+    assertThat(statusSnapshot.get().statusCode(), equalTo(500));
+  }
+
+  private static void awaitStatusCode(StatusSnapshot statusSnapshot, int statusCode)
+      throws JsonProcessingException, InterruptedException {
+    long deadline = System.nanoTime() + Duration.ofSeconds(1).toNanos();
+    while (statusSnapshot.get().statusCode() != statusCode && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(statusSnapshot.get().statusCode(), equalTo(statusCode));
+  }
+}
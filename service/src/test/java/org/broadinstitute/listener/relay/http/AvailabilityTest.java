@@ -79,6 +79,16 @@ class AvailabilityTest {
         .andExpect(jsonPath("$.status").value("OUT_OF_SERVICE"));
   }
 
+  @Test
+  void probesOnMainPort() throws Exception {
+    mvc.perform(get("/readyz"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.status").value("UP"));
+    mvc.perform(get("/livez"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.status").value("UP"));
+  }
+
   @Test
   void livenessState() throws Exception {
     assertThat(
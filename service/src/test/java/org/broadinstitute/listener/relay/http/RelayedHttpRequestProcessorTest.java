@@ -5,6 +5,8 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -12,6 +14,7 @@ import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -37,6 +40,8 @@ import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -48,10 +53,14 @@ import java.util.Set;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.broadinstitute.listener.config.CorsSupportProperties;
 import org.broadinstitute.listener.relay.InvalidRelayTargetException;
+import org.broadinstitute.listener.relay.RelayHeaders;
+import org.broadinstitute.listener.relay.health.StatusSnapshot;
 import org.broadinstitute.listener.relay.http.RelayedHttpRequestProcessor.Result;
 import org.broadinstitute.listener.relay.inspectors.GoogleTokenInfoClient;
 import org.broadinstitute.listener.relay.inspectors.SamResourceClient;
+import org.broadinstitute.listener.relay.inspectors.SessionTicketSigner;
 import org.broadinstitute.listener.relay.inspectors.TokenChecker;
+import org.broadinstitute.listener.relay.inspectors.TokenUtils;
 import org.broadinstitute.listener.relay.transport.TargetResolver;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -94,6 +103,7 @@ class RelayedHttpRequestProcessorTest {
   @Mock private ObjectMapper objectMapper;
   @Mock private HealthComponent healthComponent;
   @Mock private SamResourceClient samResourceClient;
+  @Mock private GoogleTokenInfoClient googleTokenInfoClient;
   @Captor private ArgumentCaptor<byte[]> responseData;
 
   private Map<String, List<String>> targetResponseHeaders;
@@ -124,10 +134,11 @@ class RelayedHttpRequestProcessorTest {
             httpClient,
             targetHostResolver,
             new CorsSupportProperties("dummy", "dummy", "dummy", "dummy", validHosts),
-            new TokenChecker(new GoogleTokenInfoClient()),
-            healthEndpoint,
-            objectMapper,
-            samResourceClient);
+            new TokenChecker(googleTokenInfoClient),
+            StatusSnapshot.onDemand(healthEndpoint, objectMapper),
+            null,
+            samResourceClient,
+            null);
   }
 
   @Test
@@ -149,7 +160,7 @@ class RelayedHttpRequestProcessorTest {
     // check if response headers from the target were included in the listener's response
     for (Entry<String, List<String>> entry : targetResponseHttpHeaders.map().entrySet()) {
       assertThat(
-          response.getHeaders().get(),
+          response.getHeaders().get().asMap(),
           hasEntry(
               entry.getKey(),
               entry.getValue().stream().findFirst().get())); // multi-part headers are not supported
@@ -206,7 +217,7 @@ class RelayedHttpRequestProcessorTest {
   }
 
   private void validateHeaderRemoval(String headerKey, String headerVal) {
-    Map<String, String> listenerHeaders = mock(HashMap.class);
+    Map<String, String> listenerHeaders = new HashMap<>();
     when(listenerResponse.getHeaders()).thenReturn(listenerHeaders);
 
     when(targetHttpResponse.getContext()).thenReturn(context);
@@ -216,8 +227,9 @@ class RelayedHttpRequestProcessorTest {
 
     // skip #getStatusDescription(...) validation
 
-    Map<String, String> targetHeaders = new HashMap();
-    targetHeaders.put(headerKey, headerVal);
+    var targetHeaders = new RelayHeaders();
+    targetHeaders.add(headerKey, headerVal);
+    targetHeaders.add("Content-Type", "text/html");
     when(targetHttpResponse.getHeaders()).thenReturn(Optional.of(targetHeaders));
 
     // these are needed to make sure the method doesn't Result.FAILURE-out
@@ -225,8 +237,8 @@ class RelayedHttpRequestProcessorTest {
     when(targetHttpResponse.getCallerResponseOutputStream()).thenReturn(responseStream);
 
     processor.writeTargetResponseOnCaller(targetHttpResponse);
-    verify(listenerHeaders).putAll(targetHeaders);
-    verify(listenerHeaders).remove(headerKey);
+    assertThat(listenerHeaders, hasEntry("Content-Type", "text/html"));
+    assertThat(listenerHeaders, not(hasKey(headerKey)));
   }
 
   @Test
@@ -406,6 +418,8 @@ class RelayedHttpRequestProcessorTest {
     when(context.getResponse()).thenReturn(listenerResponse);
     when(healthComponent.getStatus()).thenReturn(Status.UP);
     when(healthEndpoint.health()).thenReturn(healthComponent);
+    var healthJson = "{}".getBytes(StandardCharsets.UTF_8);
+    when(objectMapper.writeValueAsBytes(healthComponent)).thenReturn(healthJson);
     try (MockedStatic<RelayedHttpRequestProcessor> mock =
         mockStatic(RelayedHttpRequestProcessor.class)) {
       mock.when(() -> RelayedHttpRequestProcessor.getOutputStreamFromContext(any()))
@@ -414,7 +428,8 @@ class RelayedHttpRequestProcessorTest {
       Result result = processor.writeStatusResponse(context);
 
       assertThat("Result is Success", result.equals(Result.SUCCESS));
-      verify(objectMapper).writeValue(responseStream, healthComponent);
+      verify(listenerResponse).setStatusCode(200);
+      verify(responseStream).write(healthJson);
       verify(responseStream).close();
     }
   }
@@ -424,6 +439,8 @@ class RelayedHttpRequestProcessorTest {
     when(context.getResponse()).thenReturn(listenerResponse);
     when(healthComponent.getStatus()).thenReturn(Status.DOWN);
     when(healthEndpoint.health()).thenReturn(healthComponent);
+    var healthJson = "{}".getBytes(StandardCharsets.UTF_8);
+    when(objectMapper.writeValueAsBytes(healthComponent)).thenReturn(healthJson);
     try (MockedStatic<RelayedHttpRequestProcessor> mock =
         mockStatic(RelayedHttpRequestProcessor.class)) {
       mock.when(() -> RelayedHttpRequestProcessor.getOutputStreamFromContext(any()))
@@ -432,7 +449,8 @@ class RelayedHttpRequestProcessorTest {
       Result result = processor.writeStatusResponse(context);
 
       assertThat("Result is Success", result.equals(Result.SUCCESS));
-      verify(objectMapper).writeValue(responseStream, healthComponent);
+      verify(listenerResponse).setStatusCode(500);
+      verify(responseStream).write(healthJson);
       verify(responseStream).close();
     }
   }
@@ -473,6 +491,8 @@ class RelayedHttpRequestProcessorTest {
       expectedCorsHeaders.forEach(h -> assertThat(listenerResponse.getHeaders(), hasKey(h)));
       verify(samResourceClient).isUserEnabled(anyString());
       verify(responseStream).close();
+      // the permission cache is primed in the background
+      verify(samResourceClient, timeout(1000)).checkPermission("token");
     }
   }
 
@@ -499,6 +519,101 @@ class RelayedHttpRequestProcessorTest {
     assertThat("Result is Failure", result.equals(Result.FAILURE));
   }
 
+  @Test
+  void writeSetCookieResponse_issuesSessionTicket() throws IOException {
+    var signer =
+        new SessionTicketSigner("fake-resource", Duration.ofMinutes(5), Duration.ofHours(1));
+    processor =
+        new RelayedHttpRequestProcessor(
+            httpClient,
+            targetHostResolver,
+            new CorsSupportProperties("dummy", "dummy", "dummy", "dummy", List.of("app.terra.bio")),
+            new TokenChecker(googleTokenInfoClient),
+            StatusSnapshot.onDemand(healthEndpoint, objectMapper),
+            null,
+            samResourceClient,
+            signer);
+    var token = TokenUtils.buildJWT(Instant.now().plusSeconds(600));
+    when(context.getResponse()).thenReturn(listenerResponse);
+    Map<String, String> headers = new HashMap<>();
+    when(listenerResponse.getHeaders()).thenReturn(headers);
+    when(context.getRequest()).thenReturn(listenerRequest);
+    requestHeaders.put("Authorization", "Bearer " + token);
+    when(listenerRequest.getHeaders()).thenReturn(requestHeaders);
+    when(samResourceClient.isUserEnabled(token)).thenReturn(true);
+    when(samResourceClient.checkPermission(token)).thenReturn(Instant.now().plusSeconds(600));
+
+    try (MockedStatic<RelayedHttpRequestProcessor> mock =
+        mockStatic(RelayedHttpRequestProcessor.class)) {
+      mock.when(() -> RelayedHttpRequestProcessor.getOutputStreamFromContext(any()))
+          .thenReturn(responseStream);
+
+      Result result = processor.writeSetCookieResponse(context);
+
+      assertThat("Result is Success", result.equals(Result.SUCCESS));
+      assertThat(headers.get("Set-Cookie"), startsWith("LeoToken=" + token));
+      var ticketCookie =
+          headers.entrySet().stream()
+              .filter(e -> e.getKey().equalsIgnoreCase("Set-Cookie"))
+              .map(Map.Entry::getValue)
+              .filter(v -> v.startsWith("LeoSessionTicket="))
+              .findFirst()
+              .orElseThrow();
+      var ticket = ticketCookie.substring("LeoSessionTicket=".length(), ticketCookie.indexOf(';'));
+      assertThat(signer.verify(ticket), equalTo(Optional.of("123ABC")));
+      // the permission outlives the ticket TTL, so the cookie expires with the ticket
+      var maxAge = ticketCookie.replaceAll(".*Max-Age=(\\d+);.*", "$1");
+      assertThat(Long.parseLong(maxAge) <= Duration.ofMinutes(5).toSeconds(), equalTo(true));
+    }
+  }
+
+  @Test
+  void writeSetCookieResponse_slowPermissionCheck_noSessionTicket() throws IOException {
+    var signer =
+        new SessionTicketSigner("fake-resource", Duration.ofMinutes(5), Duration.ofHours(1));
+    processor =
+        new RelayedHttpRequestProcessor(
+            httpClient,
+            targetHostResolver,
+            new CorsSupportProperties("dummy", "dummy", "dummy", "dummy", List.of("app.terra.bio")),
+            new TokenChecker(googleTokenInfoClient),
+            StatusSnapshot.onDemand(healthEndpoint, objectMapper),
+            null,
+            samResourceClient,
+            signer);
+    var token = TokenUtils.buildJWT(Instant.now().plusSeconds(600));
+    when(context.getResponse()).thenReturn(listenerResponse);
+    Map<String, String> headers = new HashMap<>();
+    when(listenerResponse.getHeaders()).thenReturn(headers);
+    when(context.getRequest()).thenReturn(listenerRequest);
+    requestHeaders.put("Authorization", "Bearer " + token);
+    when(listenerRequest.getHeaders()).thenReturn(requestHeaders);
+    when(samResourceClient.isUserEnabled(token)).thenReturn(true);
+    when(samResourceClient.checkPermission(token))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(
+                  RelayedHttpRequestProcessor.SESSION_TICKET_PERMISSION_TIMEOUT.toMillis() + 500);
+              return Instant.now().plusSeconds(600);
+            });
+
+    try (MockedStatic<RelayedHttpRequestProcessor> mock =
+        mockStatic(RelayedHttpRequestProcessor.class)) {
+      mock.when(() -> RelayedHttpRequestProcessor.getOutputStreamFromContext(any()))
+          .thenReturn(responseStream);
+
+      Result result = processor.writeSetCookieResponse(context);
+
+      assertThat("Result is Success", result.equals(Result.SUCCESS));
+      assertThat(headers.get("Set-Cookie"), startsWith("LeoToken=" + token));
+      assertThat(
+          headers.values().stream().noneMatch(v -> v.startsWith("LeoSessionTicket=")),
+          equalTo(true));
+      // the check completes in the background and primes the permission cache
+      verify(samResourceClient, timeout(2000)).checkPermission(token);
+    }
+  }
+
   private void setUpRelayedHttpRequestMock()
       throws MalformedURLException, URISyntaxException, InvalidRelayTargetException {
 
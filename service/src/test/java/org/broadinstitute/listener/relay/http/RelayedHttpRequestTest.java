@@ -84,7 +84,7 @@ class RelayedHttpRequestTest {
         RelayedHttpRequest.createRelayedHttpRequest(context, targetResolver);
 
     assertThat(request.getMethod(), equalTo("POST"));
-    assertThat(request.getHeaders().get().entrySet(), equalTo(requestHeaders.entrySet()));
+    assertThat(request.getHeaders().get().asMap().entrySet(), equalTo(requestHeaders.entrySet()));
     assertThat(request.getBody().get(), equalTo(body));
   }
 
@@ -99,7 +99,7 @@ class RelayedHttpRequestTest {
         RelayedHttpRequest.createRelayedHttpRequest(context, targetResolver);
 
     assertThat(request.getMethod(), equalTo("GET"));
-    assertThat(request.getHeaders().get().entrySet(), equalTo(requestHeaders.entrySet()));
+    assertThat(request.getHeaders().get().asMap().entrySet(), equalTo(requestHeaders.entrySet()));
     assertThat(request.getBody().isPresent(), equalTo(false));
   }
 }
@@ -18,6 +18,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import org.broadinstitute.listener.config.CorsSupportProperties;
+import org.broadinstitute.listener.relay.CorsPolicy;
+import org.broadinstitute.listener.relay.RequestEnvelope;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -91,7 +93,9 @@ class TargetHttpResponseTest {
           };
       targetHttpResponse =
           targetHttpResponse.createTargetHttpResponse(
-              httpResponse, context, new CorsSupportProperties("", "", " ", "", validHosts));
+              httpResponse,
+              RequestEnvelope.of(context),
+              CorsPolicy.compile(new CorsSupportProperties("", "", " ", "", validHosts)));
     } catch (Throwable ex) {
     }
 
@@ -101,7 +105,7 @@ class TargetHttpResponseTest {
     // check if response headers from the target were included in the listener's response
     for (Entry<String, List<String>> entry : headers.entrySet()) {
       assertThat(
-          targetHttpResponse.getHeaders().get(),
+          targetHttpResponse.getHeaders().get().asMap(),
           hasEntry(
               entry.getKey(),
               entry.getValue().stream().findFirst().get())); // multi-part headers are not supported
@@ -125,7 +129,9 @@ class TargetHttpResponseTest {
     try {
       targetHttpResponse =
           TargetHttpResponse.createTargetHttpResponse(
-              httpResponse, context, new CorsSupportProperties("", "", " ", "", validHosts));
+              httpResponse,
+              RequestEnvelope.of(context),
+              CorsPolicy.compile(new CorsSupportProperties("", "", " ", "", validHosts)));
     } catch (Throwable ex) {
       thrown = ex;
       assertThat(
@@ -157,7 +163,9 @@ class TargetHttpResponseTest {
     try {
       targetHttpResponse =
           TargetHttpResponse.createTargetHttpResponse(
-              httpResponse, context, new CorsSupportProperties("", "", " ", "", validHosts));
+              httpResponse,
+              RequestEnvelope.of(context),
+              CorsPolicy.compile(new CorsSupportProperties("", "", " ", "", validHosts)));
     } catch (Exception ex) {
       threw = true;
     }
@@ -169,7 +177,7 @@ class TargetHttpResponseTest {
     // check if response headers from the target were included in the listener's response
     for (Entry<String, List<String>> entry : headers.entrySet()) {
       assertThat(
-          targetHttpResponse.getHeaders().get(),
+          targetHttpResponse.getHeaders().get().asMap(),
           hasEntry(
               entry.getKey(),
               entry.getValue().stream().findFirst().get())); // multi-part headers are not supported
@@ -177,4 +185,27 @@ class TargetHttpResponseTest {
 
     assertThat(targetHttpResponse.getContext(), equalTo(context));
   }
+
+  @Test
+  void createLocalHttpResponse_keepsEveryCookie() throws Exception {
+    headers.put("set-cookie", List.of("_xsrf=1", "session=2"));
+    when(httpResponse.body()).thenReturn(body);
+    when(httpHeaders.map()).thenReturn(headers);
+    when(httpResponse.headers()).thenReturn(httpHeaders);
+    when(httpResponse.statusCode()).thenReturn(200);
+    when(context.getRequest()).thenReturn(relayedHttpListenerRequest);
+
+    targetHttpResponse =
+        TargetHttpResponse.createTargetHttpResponse(
+            httpResponse,
+            RequestEnvelope.of(context),
+            CorsPolicy.compile(new CorsSupportProperties("", "", " ", "", List.of("*"))));
+
+    assertThat(
+        targetHttpResponse.getHeaders().get().getAll("Set-Cookie"),
+        equalTo(
+            List.of(
+                "_xsrf=1; Secure; SameSite=None; HttpOnly; Partitioned",
+                "session=2; Secure; SameSite=None; HttpOnly; Partitioned")));
+  }
 }
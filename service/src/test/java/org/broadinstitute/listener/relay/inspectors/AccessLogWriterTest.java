@@ -0,0 +1,103 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.OffsetDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AccessLogWriterTest {
+
+  @Mock private RequestLogger requestLogger;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  void enqueue_recordWrittenInBackground() {
+    var record = record(200);
+
+    try (var writer = new AccessLogWriter(requestLogger, 10, meterRegistry)) {
+      assertThat(writer.enqueue(record), equalTo(true));
+
+      verify(requestLogger, timeout(1000)).write(record);
+    }
+  }
+
+  @Test
+  void enqueue_fullQueueDropsRecords() throws InterruptedException {
+    var writing = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var blocking = record(200);
+    doAnswer(
+            invocation -> {
+              if (invocation.getArgument(0) == blocking) {
+                writing.countDown();
+                release.await();
+              }
+              return null;
+            })
+        .when(requestLogger)
+        .write(any());
+
+    try (var writer = new AccessLogWriter(requestLogger, 2, meterRegistry)) {
+      writer.enqueue(blocking);
+      assertThat(writing.await(1, TimeUnit.SECONDS), equalTo(true));
+
+      var queued = record(201);
+      assertThat(writer.enqueue(queued), equalTo(true));
+      assertThat(writer.enqueue(record(202)), equalTo(true));
+      assertThat(writer.enqueue(record(203)), equalTo(false));
+      assertThat(meterRegistry.counter("listener.access_log.dropped").count(), equalTo(1.0));
+
+      release.countDown();
+      verify(requestLogger, timeout(1000)).write(queued);
+    }
+  }
+
+  @Test
+  void close_writesQueuedRecords() {
+    var writer = new AccessLogWriter(requestLogger, 10, meterRegistry);
+    var first = record(200);
+    var second = record(500);
+    writer.enqueue(first);
+    writer.enqueue(second);
+
+    writer.close();
+
+    verify(requestLogger).write(first);
+    verify(requestLogger).write(second);
+    assertThat(writer.enqueue(record(200)), equalTo(false));
+    assertThat(writer.getQueued(), equalTo(0));
+  }
+
+  private static AccessLogRecord record(int statusCode) {
+    return new AccessLogRecord(
+        "RELAY_REQUEST_RESPONSE",
+        "127.0.0.1",
+        "123ABC",
+        "example@example.com",
+        "app",
+        OffsetDateTime.now(),
+        "GET",
+        "sb://lzexample.servicebus.windows.net/wds",
+        statusCode,
+        "-",
+        "-",
+        "-",
+        12,
+        3,
+        "ID_1",
+        null);
+  }
+}
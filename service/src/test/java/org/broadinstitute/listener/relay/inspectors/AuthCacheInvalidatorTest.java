@@ -0,0 +1,229 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import org.broadinstitute.listener.relay.OauthInfo;
+import org.broadinstitute.listener.relay.Utils;
+import org.broadinstitute.listener.relay.inspectors.SamResourceClient.PermissionCacheKey;
+import org.broadinstitute.listener.relay.inspectors.SharedAuthCache.Invalidation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+@ExtendWith(MockitoExtension.class)
+class AuthCacheInvalidatorTest {
+  private static final String SUBJECT = "123ABC";
+
+  @Mock private GoogleTokenInfoClient googleTokenInfoClient;
+  @Mock private SharedAuthCache sharedAuthCache;
+  @Captor private ArgumentCaptor<Consumer<Invalidation>> invalidationHandler;
+
+  private ConcurrentMapCacheManager cacheManager;
+  private TokenChecker tokenChecker;
+  private SamResourceClient samResourceClient;
+  private SessionTicketSigner sessionTicketSigner;
+  private AuthCacheInvalidator invalidator;
+  private String token;
+  private String otherToken;
+  private PermissionCacheKey tokenKey;
+  private PermissionCacheKey otherTokenKey;
+
+  @BeforeEach
+  void setUp() throws IOException, InterruptedException {
+    cacheManager = new ConcurrentMapCacheManager("expiresAt", "userEnabled");
+    tokenChecker = new TokenChecker(googleTokenInfoClient);
+    var meterRegistry = new SimpleMeterRegistry();
+    samResourceClient =
+        new SamResourceClient(
+            "http://localhost:1",
+            "resourceId",
+            "resourceType",
+            tokenChecker,
+            "write",
+            Duration.ofSeconds(1),
+            new CircuitBreaker("sam", 5, Duration.ofSeconds(30), meterRegistry),
+            meterRegistry,
+            sharedAuthCache);
+    sessionTicketSigner =
+        new SessionTicketSigner("resourceId", Duration.ofMinutes(5), Duration.ofHours(1));
+    invalidator =
+        new AuthCacheInvalidator(
+            cacheManager,
+            tokenChecker,
+            samResourceClient,
+            Optional.of(sessionTicketSigner),
+            Optional.empty());
+
+    // two tokens of the same subject
+    token = TokenUtils.buildJWT(Instant.now().plusSeconds(600));
+    otherToken = TokenUtils.buildJWT(Instant.now().plusSeconds(900));
+    tokenKey = cache(token);
+    otherTokenKey = cache(otherToken);
+  }
+
+  @Test
+  void invalidateByDigest() {
+    var ticket = sessionTicketSigner.issue(SUBJECT, Instant.now().plusSeconds(600)).value();
+
+    var evicted = invalidator.invalidateByDigest(Utils.getTokenDigest(token));
+
+    assertThat(evicted, equalTo(2));
+    assertThat(cacheManager.getCache("expiresAt").get(tokenKey), nullValue());
+    assertThat(cacheManager.getCache("userEnabled").get(tokenKey), nullValue());
+    assertThat(cacheManager.getCache("expiresAt").get(otherTokenKey).get(), equalTo(Instant.MAX));
+    assertThat(tokenChecker.getCachedTokenDigests(SUBJECT).size(), equalTo(1));
+    assertThat(sessionTicketSigner.verify(ticket), equalTo(Optional.empty()));
+  }
+
+  @Test
+  void invalidateBySubject() {
+    var evicted = invalidator.invalidateBySubject(SUBJECT);
+
+    assertThat(evicted, equalTo(4));
+    assertThat(cacheManager.getCache("expiresAt").get(tokenKey), nullValue());
+    assertThat(cacheManager.getCache("expiresAt").get(otherTokenKey), nullValue());
+    assertThat(tokenChecker.getCachedTokenDigests(SUBJECT).size(), equalTo(0));
+  }
+
+  @Test
+  void invalidateBySubject_restoredEntries() {
+    var digest = "restored-digest";
+    var expiresAt = Instant.now().plusSeconds(600);
+    tokenChecker.restoreOauthInfo(
+        Map.of(digest, new OauthInfo(Optional.of(expiresAt), "", Map.of("sub", SUBJECT))));
+    samResourceClient.restorePermissions(Map.of(digest, expiresAt), Duration.ofMinutes(5));
+
+    invalidator.invalidateBySubject(SUBJECT);
+
+    assertThat(tokenChecker.getCachedTokenDigests(SUBJECT).size(), equalTo(0));
+    assertThat(samResourceClient.exportPermissions().containsKey(digest), equalTo(false));
+  }
+
+  @Test
+  void invalidateAll_duringTokenCheck_answerNotCached() throws IOException, InterruptedException {
+    var googleResponse = new GoogleOauthInfoResponse();
+    googleResponse.expires_in = 600;
+    googleResponse.user_id = SUBJECT;
+    doAnswer(
+            invocation -> {
+              invalidator.invalidateAll();
+              return googleResponse;
+            })
+        .when(googleTokenInfoClient)
+        .getTokenInfo("googleToken");
+
+    var oauthInfo = tokenChecker.getOauthInfo("googleToken");
+
+    assertThat(oauthInfo.claims().get("sub"), equalTo(SUBJECT));
+    assertThat(
+        tokenChecker.getCachedOauthInfo(Utils.getTokenDigest("googleToken")),
+        equalTo(Optional.empty()));
+  }
+
+  @Test
+  void invalidateAll_duringPermissionCheck_answerNotCached() {
+    var accessToken = TokenUtils.buildJWT(Instant.now().plusSeconds(700));
+    var digest = Utils.getTokenDigest(accessToken);
+    var expiresAt = Instant.now().plusSeconds(600);
+    doAnswer(
+            invocation -> {
+              invalidator.invalidateAll();
+              return Optional.of(expiresAt);
+            })
+        .when(sharedAuthCache)
+        .getPermission(digest);
+
+    assertThat(samResourceClient.checkPermission(accessToken), equalTo(expiresAt));
+
+    assertThat(samResourceClient.exportPermissions().containsKey(digest), equalTo(false));
+    verify(sharedAuthCache).evictPermission(digest);
+  }
+
+  @Test
+  void invalidateBySubject_unknownSubject() {
+    var evicted = invalidator.invalidateBySubject("unknown");
+
+    assertThat(evicted, equalTo(0));
+    assertThat(tokenChecker.getCachedTokenDigests(SUBJECT).size(), equalTo(2));
+  }
+
+  @Test
+  void invalidateAll() {
+    var ticket =
+        sessionTicketSigner.issue("another-subject", Instant.now().plusSeconds(600)).value();
+
+    invalidator.invalidateAll();
+
+    assertThat(cacheManager.getCache("expiresAt").get(tokenKey), nullValue());
+    assertThat(cacheManager.getCache("userEnabled").get(otherTokenKey), nullValue());
+    assertThat(tokenChecker.exportOauthInfo().size(), equalTo(0));
+    assertThat(samResourceClient.exportPermissions().size(), equalTo(0));
+    assertThat(sessionTicketSigner.verify(ticket), equalTo(Optional.empty()));
+  }
+
+  @Test
+  void invalidateByDigest_publishedToOtherReplicas() {
+    var sharedInvalidator = newSharedInvalidator();
+
+    sharedInvalidator.invalidateByDigest(Utils.getTokenDigest(token));
+
+    verify(sharedAuthCache).evictPermission(Utils.getTokenDigest(token));
+    verify(sharedAuthCache).publishInvalidation(Invalidation.digest(Utils.getTokenDigest(token)));
+  }
+
+  @Test
+  void invalidationOfOtherReplica_evictsLocalCachesOnly() {
+    var ticket = sessionTicketSigner.issue(SUBJECT, Instant.now().plusSeconds(600)).value();
+    newSharedInvalidator();
+    verify(sharedAuthCache).subscribeToInvalidations(invalidationHandler.capture());
+
+    invalidationHandler.getValue().accept(Invalidation.subject(SUBJECT));
+
+    assertThat(cacheManager.getCache("expiresAt").get(tokenKey), nullValue());
+    assertThat(cacheManager.getCache("userEnabled").get(otherTokenKey), nullValue());
+    assertThat(tokenChecker.getCachedTokenDigests(SUBJECT).size(), equalTo(0));
+    assertThat(samResourceClient.exportPermissions().size(), equalTo(0));
+    assertThat(sessionTicketSigner.verify(ticket), equalTo(Optional.empty()));
+    verify(sharedAuthCache, never()).evictPermission(anyString());
+    verify(sharedAuthCache, never()).publishInvalidation(any());
+  }
+
+  private AuthCacheInvalidator newSharedInvalidator() {
+    return new AuthCacheInvalidator(
+        cacheManager,
+        tokenChecker,
+        samResourceClient,
+        Optional.of(sessionTicketSigner),
+        Optional.of(sharedAuthCache));
+  }
+
+  private PermissionCacheKey cache(String accessToken) throws IOException, InterruptedException {
+    var oauthInfo = tokenChecker.getOauthInfo(accessToken);
+    samResourceClient.restorePermissions(
+        Map.of(Utils.getTokenDigest(accessToken), oauthInfo.expiresAt().get()),
+        Duration.ofMinutes(5));
+    var key = samResourceClient.cacheKey(accessToken);
+    cacheManager.getCache("expiresAt").put(key, Instant.MAX);
+    cacheManager.getCache("userEnabled").put(key, true);
+    return key;
+  }
+}
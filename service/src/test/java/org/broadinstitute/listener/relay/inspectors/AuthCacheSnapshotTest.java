@@ -0,0 +1,149 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.broadinstitute.listener.relay.OauthInfo;
+import org.broadinstitute.listener.relay.Utils;
+import org.broadinstitute.listener.relay.inspectors.AuthCacheSnapshot.Entry;
+import org.broadinstitute.listener.relay.inspectors.AuthCacheSnapshot.EntryType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AuthCacheSnapshotTest {
+  private static final Map<String, String> CLAIMS =
+      Map.of("sub", "123ABC", "email", "user@example.com");
+
+  @TempDir Path tempDir;
+  @Mock GoogleTokenInfoClient googleTokenInfoClient;
+
+  @Test
+  void writeEntries_roundTrip() throws IOException {
+    var path = tempDir.resolve("snapshot");
+    var expiresAt = Instant.now().plusSeconds(600).truncatedTo(ChronoUnit.SECONDS);
+    var entries =
+        List.of(
+            new Entry(EntryType.OAUTH_INFO, Utils.getTokenDigest("token1"), expiresAt, CLAIMS),
+            new Entry(EntryType.PERMISSION, Utils.getTokenDigest("token2"), expiresAt, Map.of()));
+
+    AuthCacheSnapshot.writeEntries(path, entries);
+
+    assertThat(AuthCacheSnapshot.readEntries(path), equalTo(entries));
+  }
+
+  @Test
+  void readEntries_skipsExpiredEntries() throws IOException {
+    var path = tempDir.resolve("snapshot");
+    var expiresAt = Instant.now().plusSeconds(600).truncatedTo(ChronoUnit.SECONDS);
+    var validEntry =
+        new Entry(EntryType.PERMISSION, Utils.getTokenDigest("token1"), expiresAt, Map.of());
+    var expiredEntry =
+        new Entry(
+            EntryType.OAUTH_INFO,
+            Utils.getTokenDigest("token2"),
+            Instant.now().minusSeconds(10),
+            CLAIMS);
+
+    AuthCacheSnapshot.writeEntries(path, List.of(validEntry, expiredEntry));
+
+    assertThat(AuthCacheSnapshot.readEntries(path), contains(validEntry));
+  }
+
+  @Test
+  void readEntries_unknownFormat() throws IOException {
+    var path = Files.writeString(tempDir.resolve("snapshot"), "not a snapshot");
+
+    assertThrows(IOException.class, () -> AuthCacheSnapshot.readEntries(path));
+  }
+
+  @Test
+  void snapshot_restoredAfterRestart() throws IOException, InterruptedException {
+    var path = tempDir.resolve("snapshot");
+    var expiresAt = Instant.now().plusSeconds(600).truncatedTo(ChronoUnit.SECONDS);
+    var digest = Utils.getTokenDigest("accessToken");
+
+    var tokenChecker = new TokenChecker(googleTokenInfoClient);
+    var samResourceClient = newSamResourceClient(tokenChecker);
+    tokenChecker.restoreOauthInfo(
+        Map.of(
+            digest,
+            new OauthInfo(Optional.of(expiresAt), "", Map.of("sub", "123ABC", "hd", "dropped")),
+            Utils.getTokenDigest("noSubject"),
+            new OauthInfo(Optional.of(expiresAt), "", Map.of())));
+    samResourceClient.restorePermissions(Map.of(digest, expiresAt), Duration.ofHours(1));
+    var snapshot =
+        new AuthCacheSnapshot(
+            path, Duration.ofHours(1), Duration.ofHours(1), tokenChecker, samResourceClient);
+    snapshot.close();
+
+    // a new listener
+    var restartedTokenChecker = new TokenChecker(googleTokenInfoClient);
+    var restartedSamResourceClient = newSamResourceClient(restartedTokenChecker);
+    var restartedSnapshot =
+        new AuthCacheSnapshot(
+            path,
+            Duration.ofHours(1),
+            Duration.ofHours(1),
+            restartedTokenChecker,
+            restartedSamResourceClient);
+    restartedSnapshot.close();
+
+    assertThat(restartedSamResourceClient.checkPermission("accessToken"), equalTo(expiresAt));
+    var restoredOauthInfo = restartedTokenChecker.getOauthInfo("accessToken");
+    assertThat(restoredOauthInfo.expiresAt().get(), equalTo(expiresAt));
+    assertThat(restoredOauthInfo.claims(), equalTo(Map.of("sub", "123ABC")));
+    assertThat(restartedTokenChecker.getCachedTokenDigests("123ABC"), equalTo(Set.of(digest)));
+    assertThat(restartedTokenChecker.exportOauthInfo().keySet(), equalTo(Set.of(digest)));
+    verify(googleTokenInfoClient, never()).getTokenInfo(anyString());
+  }
+
+  @Test
+  void snapshot_missingFileIsIgnored() {
+    var tokenChecker = new TokenChecker(googleTokenInfoClient);
+    var snapshot =
+        new AuthCacheSnapshot(
+            tempDir.resolve("missing"),
+            Duration.ofHours(1),
+            Duration.ofHours(1),
+            tokenChecker,
+            newSamResourceClient(tokenChecker));
+    snapshot.close();
+
+    assertThat(tokenChecker.exportOauthInfo().entrySet(), empty());
+  }
+
+  private static SamResourceClient newSamResourceClient(TokenChecker tokenChecker) {
+    var meterRegistry = new SimpleMeterRegistry();
+    return new SamResourceClient(
+        "http://localhost:1",
+        "resourceId",
+        "resourceType",
+        tokenChecker,
+        "write",
+        Duration.ofSeconds(1),
+        new CircuitBreaker("sam", 5, Duration.ofSeconds(30), meterRegistry),
+        meterRegistry,
+        null);
+  }
+}
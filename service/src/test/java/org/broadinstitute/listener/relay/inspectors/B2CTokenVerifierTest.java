@@ -0,0 +1,163 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class B2CTokenVerifierTest {
+  private static final String ISSUER = "https://fake.b2clogin.com/tenant/v2.0/";
+  private static final String AUDIENCE = "fake-client-id";
+  private static final String KEY_ID = "key-1";
+
+  @TempDir Path tempDir;
+  @Mock GoogleTokenInfoClient googleTokenInfoClient;
+
+  private KeyPair keyPair;
+  private JwksKeyProvider keyProvider;
+  private B2CTokenVerifier verifier;
+
+  @BeforeEach
+  void setUp() throws NoSuchAlgorithmException, IOException {
+    keyPair = generateKeyPair();
+    Path jwksFile = writeJwks(KEY_ID, (RSAPublicKey) keyPair.getPublic());
+    keyProvider = new JwksKeyProvider(jwksFile.toString(), Duration.ofHours(1));
+    verifier = new B2CTokenVerifier(keyProvider, ISSUER, AUDIENCE);
+  }
+
+  @AfterEach
+  void tearDown() {
+    keyProvider.close();
+  }
+
+  @Test
+  void verify_validToken() {
+    var token = buildToken(keyPair, KEY_ID, ISSUER, AUDIENCE);
+
+    assertThat(verifier.verify(JWT.decode(token)), equalTo(Optional.empty()));
+  }
+
+  @Test
+  void verify_signedWithAnotherKey() throws NoSuchAlgorithmException {
+    var token = buildToken(generateKeyPair(), KEY_ID, ISSUER, AUDIENCE);
+
+    assertThat(verifier.verify(JWT.decode(token)), equalTo(Optional.of("JWT signature invalid")));
+  }
+
+  @Test
+  void verify_unknownKeyId() {
+    var token = buildToken(keyPair, "unknown-key", ISSUER, AUDIENCE);
+
+    assertThat(verifier.verify(JWT.decode(token)), equalTo(Optional.of("JWT signature invalid")));
+  }
+
+  @Test
+  void verify_invalidIssuer() {
+    var token = buildToken(keyPair, KEY_ID, "https://malicious.com/", AUDIENCE);
+
+    assertThat(verifier.verify(JWT.decode(token)), equalTo(Optional.of("JWT issuer invalid")));
+  }
+
+  @Test
+  void verify_invalidAudience() {
+    var token = buildToken(keyPair, KEY_ID, ISSUER, "another-client-id");
+
+    assertThat(verifier.verify(JWT.decode(token)), equalTo(Optional.of("JWT audience invalid")));
+  }
+
+  @Test
+  void verify_hmacSignedToken() {
+    var token = TokenUtils.buildJWT(Instant.now().plusSeconds(120));
+
+    assertThat(
+        verifier.verify(JWT.decode(token)), equalTo(Optional.of("JWT algorithm not supported")));
+  }
+
+  @Test
+  void getOauthInfo_invalidTokenIsRejectedLocally() throws IOException, InterruptedException {
+    var tokenChecker = new TokenChecker(googleTokenInfoClient, verifier);
+    var token = buildToken(keyPair, KEY_ID, "https://malicious.com/", AUDIENCE);
+
+    var res = tokenChecker.getOauthInfo(token);
+
+    assertThat(res.error(), equalTo("JWT issuer invalid"));
+    assertThat(res.expiresAt(), equalTo(Optional.empty()));
+    verify(googleTokenInfoClient, never()).getTokenInfo(anyString());
+  }
+
+  @Test
+  void getOauthInfo_validToken() throws IOException, InterruptedException {
+    var tokenChecker = new TokenChecker(googleTokenInfoClient, verifier);
+    var token = buildToken(keyPair, KEY_ID, ISSUER, AUDIENCE);
+
+    var res = tokenChecker.getOauthInfo(token);
+
+    assertThat(res.error(), equalTo(""));
+    assertThat(res.claims().get("sub"), equalTo("123ABC"));
+  }
+
+  private static KeyPair generateKeyPair() throws NoSuchAlgorithmException {
+    var generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    return generator.generateKeyPair();
+  }
+
+  private static String buildToken(
+      KeyPair signingKeyPair, String keyId, String issuer, String audience) {
+    var algorithm =
+        Algorithm.RSA256(
+            (RSAPublicKey) signingKeyPair.getPublic(), (RSAPrivateKey) signingKeyPair.getPrivate());
+    return JWT.create()
+        .withKeyId(keyId)
+        .withIssuer(issuer)
+        .withAudience(audience)
+        .withSubject("123ABC")
+        .withExpiresAt(Date.from(Instant.now().plusSeconds(300)))
+        .sign(algorithm);
+  }
+
+  private Path writeJwks(String keyId, RSAPublicKey publicKey) throws IOException {
+    var jwks =
+        String.format(
+            "{\"keys\":[{\"kty\":\"RSA\",\"use\":\"sig\",\"alg\":\"RS256\",\"kid\":\"%s\",\"n\":\"%s\",\"e\":\"%s\"}]}",
+            keyId, base64Url(publicKey.getModulus()), base64Url(publicKey.getPublicExponent()));
+    return Files.writeString(tempDir.resolve("jwks.json"), jwks, StandardCharsets.UTF_8);
+  }
+
+  private static String base64Url(BigInteger value) {
+    var bytes = value.toByteArray();
+    if (bytes[0] == 0) {
+      // drop the sign byte
+      bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+  }
+}
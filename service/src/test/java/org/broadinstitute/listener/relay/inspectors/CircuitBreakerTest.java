@@ -0,0 +1,92 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.broadinstitute.listener.relay.inspectors.CircuitBreaker.State;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+  private SimpleMeterRegistry meterRegistry;
+  private CircuitBreaker circuitBreaker;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    circuitBreaker = new CircuitBreaker("test", 2, Duration.ofMillis(200), meterRegistry);
+  }
+
+  @Test
+  void opensAfterConsecutiveFailures() {
+    circuitBreaker.onFailure();
+    assertThat(circuitBreaker.getState(), equalTo(State.CLOSED));
+
+    circuitBreaker.onFailure();
+    assertThat(circuitBreaker.getState(), equalTo(State.OPEN));
+    assertThat(circuitBreaker.tryAcquirePermission(), equalTo(false));
+    assertThat(
+        meterRegistry
+            .get("listener.circuit_breaker.rejected_calls")
+            .tag("name", "test")
+            .counter()
+            .count(),
+        equalTo(1.0));
+    assertThat(
+        meterRegistry.get("listener.circuit_breaker.state").tag("name", "test").gauge().value(),
+        equalTo(1.0));
+  }
+
+  @Test
+  void successResetsFailureCount() {
+    circuitBreaker.onFailure();
+    circuitBreaker.onSuccess();
+    circuitBreaker.onFailure();
+
+    assertThat(circuitBreaker.getState(), equalTo(State.CLOSED));
+    assertThat(circuitBreaker.tryAcquirePermission(), equalTo(true));
+  }
+
+  @Test
+  void halfOpenLetsOneTrialCallThrough() throws InterruptedException {
+    circuitBreaker.onFailure();
+    circuitBreaker.onFailure();
+    Thread.sleep(300);
+
+    assertThat(circuitBreaker.tryAcquirePermission(), equalTo(true));
+    assertThat(circuitBreaker.getState(), equalTo(State.HALF_OPEN));
+    assertThat(circuitBreaker.tryAcquirePermission(), equalTo(false));
+
+    circuitBreaker.onSuccess();
+    assertThat(circuitBreaker.getState(), equalTo(State.CLOSED));
+    assertThat(circuitBreaker.tryAcquirePermission(), equalTo(true));
+  }
+
+  @Test
+  void failedTrialCallOpensAgain() throws InterruptedException {
+    circuitBreaker.onFailure();
+    circuitBreaker.onFailure();
+    Thread.sleep(300);
+
+    assertThat(circuitBreaker.tryAcquirePermission(), equalTo(true));
+    circuitBreaker.onFailure();
+
+    assertThat(circuitBreaker.getState(), equalTo(State.OPEN));
+    assertThat(circuitBreaker.tryAcquirePermission(), equalTo(false));
+  }
+
+  @Test
+  void releasedTrialPermissionKeepsBreakerHalfOpen() throws InterruptedException {
+    circuitBreaker.onFailure();
+    circuitBreaker.onFailure();
+    Thread.sleep(300);
+
+    assertThat(circuitBreaker.tryAcquirePermission(), equalTo(true));
+    circuitBreaker.releasePermission();
+
+    assertThat(circuitBreaker.getState(), equalTo(State.HALF_OPEN));
+    assertThat(circuitBreaker.tryAcquirePermission(), equalTo(true));
+  }
+}
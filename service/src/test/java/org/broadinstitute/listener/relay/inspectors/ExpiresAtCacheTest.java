@@ -3,16 +3,17 @@ package org.broadinstitute.listener.relay.inspectors;
 import static java.util.Optional.ofNullable;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.time.Instant;
 import java.util.Optional;
+import org.broadinstitute.listener.relay.inspectors.SamResourceClient.PermissionCacheKey;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -40,7 +41,7 @@ class ExpiresAtCacheTest {
   public static class CacheTestConfig {
     @Bean
     public CacheManager cacheManager() {
-      return new ConcurrentMapCacheManager("expiresAt");
+      return new ConcurrentMapCacheManager("expiresAt", "userEnabled");
     }
 
     @Bean
@@ -53,12 +54,14 @@ class ExpiresAtCacheTest {
   void setUp() {
     mock = AopTestUtils.getTargetObject(samResourceClient);
     reset(mock);
+    when(mock.cacheKey(anyString()))
+        .thenAnswer(invocation -> new PermissionCacheKey(invocation.getArgument(0), 0));
     when(mock.checkPermission("accessToken")).thenReturn(Instant.ofEpochSecond(100));
   }
 
   private Optional<Instant> getCachedExpiresAt(String accessToken) {
     return ofNullable(cacheManager.getCache("expiresAt"))
-        .map(c -> c.get(accessToken, Instant.class));
+        .map(c -> c.get(new PermissionCacheKey(accessToken, 0), Instant.class));
   }
 
   @Test
@@ -69,9 +72,23 @@ class ExpiresAtCacheTest {
     verify(mock, times(1)).checkPermission("accessToken");
 
     samResourceClient.checkPermission("accessToken");
-    verifyNoMoreInteractions(mock);
+    verify(mock, times(1)).checkPermission("accessToken");
 
     samResourceClient.checkPermission("accessToken2");
     verify(mock, times(1)).checkPermission("accessToken2");
   }
+
+  @Test
+  void isUserEnabled_onlyEnabledUsersAreCached() {
+    when(mock.isUserEnabled("enabledToken")).thenReturn(true);
+    when(mock.isUserEnabled("disabledToken")).thenReturn(false);
+
+    assertThat(samResourceClient.isUserEnabled("enabledToken"), equalTo(true));
+    assertThat(samResourceClient.isUserEnabled("enabledToken"), equalTo(true));
+    verify(mock, times(1)).isUserEnabled("enabledToken");
+
+    assertThat(samResourceClient.isUserEnabled("disabledToken"), equalTo(false));
+    assertThat(samResourceClient.isUserEnabled("disabledToken"), equalTo(false));
+    verify(mock, times(2)).isUserEnabled("disabledToken");
+  }
 }
@@ -0,0 +1,58 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import org.broadinstitute.listener.relay.inspectors.CircuitBreaker.State;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class GoogleTokenInfoClientTest {
+
+  @Mock private HttpClient httpClient;
+  @Mock private HttpResponse<Object> response;
+
+  private CircuitBreaker circuitBreaker;
+  private GoogleTokenInfoClient tokenInfoClient;
+
+  @BeforeEach
+  void setUp() {
+    circuitBreaker =
+        new CircuitBreaker("tokeninfo", 1, Duration.ofMinutes(1), new SimpleMeterRegistry());
+    tokenInfoClient =
+        new GoogleTokenInfoClient(httpClient, Duration.ofSeconds(1), circuitBreaker);
+  }
+
+  @Test
+  void getTokenInfo_tooManyRequestsIsAFailure() throws IOException, InterruptedException {
+    when(httpClient.send(any(), any())).thenReturn(response);
+    when(response.statusCode()).thenReturn(429);
+
+    assertThrows(IOException.class, () -> tokenInfoClient.getTokenInfo("token"));
+
+    assertThat(circuitBreaker.getState(), equalTo(State.OPEN));
+  }
+
+  @Test
+  void getTokenInfo_invalidTokenIsASuccess() throws IOException, InterruptedException {
+    when(httpClient.send(any(), any())).thenReturn(response);
+    when(response.statusCode()).thenReturn(400);
+    when(response.body()).thenReturn("{\"error\":\"invalid_token\"}");
+
+    tokenInfoClient.getTokenInfo("token");
+
+    assertThat(circuitBreaker.getState(), equalTo(State.CLOSED));
+  }
+}
@@ -0,0 +1,195 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.broadinstitute.listener.relay.Utils;
+import org.broadinstitute.listener.relay.inspectors.SharedAuthCache.Invalidation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+@ExtendWith(MockitoExtension.class)
+class RedisSharedAuthCacheTest {
+  private static final String PREFIX = "listener:permission:type:id:write:";
+
+  @Mock private JedisPool jedisPool;
+  @Mock private Jedis jedis;
+  @Mock private GoogleTokenInfoClient googleTokenInfoClient;
+
+  private SimpleMeterRegistry meterRegistry;
+  private CircuitBreaker circuitBreaker;
+  private RedisSharedAuthCache sharedAuthCache;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    circuitBreaker = new CircuitBreaker("redis", 1, Duration.ofMinutes(1), meterRegistry);
+    sharedAuthCache =
+        new RedisSharedAuthCache(
+            jedisPool, PREFIX, Duration.ofMinutes(30), circuitBreaker, meterRegistry);
+  }
+
+  @Test
+  void getPermission_hit() {
+    var expiresAt = Instant.now().plusSeconds(600).truncatedTo(ChronoUnit.SECONDS);
+    when(jedisPool.getResource()).thenReturn(jedis);
+    when(jedis.get(PREFIX + "digest")).thenReturn(String.valueOf(expiresAt.getEpochSecond()));
+
+    assertThat(sharedAuthCache.getPermission("digest"), equalTo(Optional.of(expiresAt)));
+    assertThat(requestCount("hit"), equalTo(1.0));
+  }
+
+  @Test
+  void getPermission_miss() {
+    when(jedisPool.getResource()).thenReturn(jedis);
+
+    assertThat(sharedAuthCache.getPermission("digest"), equalTo(Optional.empty()));
+    assertThat(requestCount("miss"), equalTo(1.0));
+  }
+
+  @Test
+  void getPermission_serverUnavailable_opensCircuitBreaker() {
+    when(jedisPool.getResource()).thenThrow(new JedisConnectionException("connection refused"));
+
+    assertThat(sharedAuthCache.getPermission("digest"), equalTo(Optional.empty()));
+    assertThat(sharedAuthCache.getPermission("digest"), equalTo(Optional.empty()));
+
+    assertThat(circuitBreaker.getState(), equalTo(CircuitBreaker.State.OPEN));
+    assertThat(requestCount("error"), equalTo(2.0));
+    verify(jedisPool).getResource();
+  }
+
+  @Test
+  void putPermission_ttlCappedByMaxTtl() {
+    var expiresAt = Instant.now().plus(Duration.ofHours(2));
+    when(jedisPool.getResource()).thenReturn(jedis);
+
+    sharedAuthCache.putPermission("digest", expiresAt);
+
+    verify(jedis)
+        .setex(
+            PREFIX + "digest",
+            (int) Duration.ofMinutes(30).toSeconds(),
+            String.valueOf(expiresAt.getEpochSecond()));
+  }
+
+  @Test
+  void putPermission_expiredPermissionIsSkipped() {
+    sharedAuthCache.putPermission("digest", Instant.now().minusSeconds(10));
+
+    verifyNoInteractions(jedisPool);
+  }
+
+  @Test
+  void evictAllPermissions_deletesPrefixedKeys() {
+    when(jedisPool.getResource()).thenReturn(jedis);
+    when(jedis.scan(anyString(), any(ScanParams.class)))
+        .thenReturn(
+            new ScanResult<>("7", List.of(PREFIX + "a", PREFIX + "b")),
+            new ScanResult<>(ScanParams.SCAN_POINTER_START, List.of(PREFIX + "c")));
+
+    sharedAuthCache.evictAllPermissions();
+
+    verify(jedis).del(PREFIX + "a", PREFIX + "b");
+    verify(jedis).del(PREFIX + "c");
+  }
+
+  @Test
+  void publishInvalidation_ignoredByPublisher() {
+    when(jedisPool.getResource()).thenReturn(jedis);
+    var otherReplica =
+        new RedisSharedAuthCache(
+            jedisPool, PREFIX, Duration.ofMinutes(30), circuitBreaker, meterRegistry);
+
+    sharedAuthCache.publishInvalidation(Invalidation.subject("123ABC"));
+
+    var message = ArgumentCaptor.forClass(String.class);
+    verify(jedis).publish(eq(PREFIX + "invalidations"), message.capture());
+    assertThat(sharedAuthCache.parseInvalidation(message.getValue()), equalTo(Optional.empty()));
+    assertThat(
+        otherReplica.parseInvalidation(message.getValue()),
+        equalTo(Optional.of(Invalidation.subject("123ABC"))));
+  }
+
+  @Test
+  void subscribeToInvalidations_handlesMessagesOfOtherReplicas() throws InterruptedException {
+    when(jedisPool.getResource()).thenReturn(jedis);
+    doAnswer(
+            invocation -> {
+              JedisPubSub pubSub = invocation.getArgument(0);
+              pubSub.onMessage(PREFIX + "invalidations", "other-replica DIGEST digest");
+              pubSub.onMessage(PREFIX + "invalidations", "other-replica ALL ");
+              pubSub.onMessage(PREFIX + "invalidations", "other-replica UNKNOWN x");
+              return null;
+            })
+        .when(jedis)
+        .subscribe(any(JedisPubSub.class), eq(PREFIX + "invalidations"));
+    var received = new CopyOnWriteArrayList<Invalidation>();
+    var done = new CountDownLatch(2);
+
+    sharedAuthCache.subscribeToInvalidations(
+        invalidation -> {
+          received.add(invalidation);
+          done.countDown();
+        });
+
+    assertThat(done.await(5, TimeUnit.SECONDS), equalTo(true));
+    sharedAuthCache.close();
+    assertThat(received, equalTo(List.of(Invalidation.digest("digest"), Invalidation.all())));
+  }
+
+  @Test
+  void samResourceClient_sharedPermissionAvoidsSamCall() throws Exception {
+    var expiresAt = Instant.now().plusSeconds(600).truncatedTo(ChronoUnit.SECONDS);
+    var digest = Utils.getTokenDigest("accessToken");
+    when(jedisPool.getResource()).thenReturn(jedis);
+    when(jedis.get(PREFIX + digest)).thenReturn(String.valueOf(expiresAt.getEpochSecond()));
+    var samResourceClient =
+        new SamResourceClient(
+            "http://localhost:1",
+            "id",
+            "type",
+            new TokenChecker(googleTokenInfoClient),
+            "write",
+            Duration.ofSeconds(1),
+            new CircuitBreaker("sam", 5, Duration.ofSeconds(30), meterRegistry),
+            meterRegistry,
+            sharedAuthCache);
+
+    assertThat(samResourceClient.checkPermission("accessToken"), equalTo(expiresAt));
+    verify(googleTokenInfoClient, never()).getTokenInfo(anyString());
+    verify(jedis, never()).setex(anyString(), anyInt(), anyString());
+  }
+
+  private double requestCount(String result) {
+    return meterRegistry.counter("listener.auth_cache.l2.requests", "result", result).count();
+  }
+}
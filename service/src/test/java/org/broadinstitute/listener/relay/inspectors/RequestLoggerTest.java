@@ -2,6 +2,9 @@ package org.broadinstitute.listener.relay.inspectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import ch.qos.logback.classic.Level;
@@ -16,6 +19,8 @@ import java.net.URISyntaxException;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.Map;
+import org.broadinstitute.listener.relay.RequestEnvelope;
+import org.broadinstitute.listener.relay.Utils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -26,6 +31,7 @@ import org.slf4j.LoggerFactory;
 public class RequestLoggerTest {
 
   @Mock RelayedHttpListenerRequest mockRequest;
+  @Mock GoogleTokenInfoClient googleTokenInfoClient;
 
   @Test
   void logRequest() throws URISyntaxException, IOException, InterruptedException {
@@ -50,7 +56,10 @@ public class RequestLoggerTest {
                 "Mozilla/5.0 (Macintosh Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML,like Gecko) Chrome/113.0.0.0 Safari/537.36"));
     when(mockRequest.getRemoteEndPoint()).thenReturn(endpoint);
 
-    var requestLogger = new RequestLogger();
+    var tokenChecker = new TokenChecker(googleTokenInfoClient);
+    // the claims are logged once the token was checked, e.g. by an inspector
+    tokenChecker.getOauthInfo(token);
+    var requestLogger = new RequestLogger(tokenChecker);
 
     requestLogger.logRequest(
         mockRequest, 200, OffsetDateTime.parse("2023-05-23T10:23:22.256527-04:00"), "HTTP_REQUEST");
@@ -59,6 +68,41 @@ public class RequestLoggerTest {
     assertThat(
         msgs.get(0).getFormattedMessage(),
         equalTo(
-            "HTTP_REQUEST - 127.0.0.1 \"123ABC\" \"-\" \"example@example.com\" \"app\" [2023-05-23T10:23:22.256527-04:00] \"GET sb://lzexample.servicebus.windows.net/wds-example-example\" 200 \"http://example.com/referer\" \"-\" \"Mozilla/5.0 (Macintosh Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML,like Gecko) Chrome/113.0.0.0 Safari/537.36\""));
+            "HTTP_REQUEST - 127.0.0.1 \"123ABC\" \"-\" \"example@example.com\" \"app\" [2023-05-23T10:23:22.256527-04:00] \"GET sb://lzexample.servicebus.windows.net/wds-example-example\" 200 \"http://example.com/referer\" \"-\" \"Mozilla/5.0 (Macintosh Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML,like Gecko) Chrome/113.0.0.0 Safari/537.36\" - - \"-\""));
+  }
+
+  @Test
+  void logRequest_uncheckedTokenIsNotChecked() throws URISyntaxException {
+    Logger headerLogger = (Logger) LoggerFactory.getLogger(RequestLogger.class);
+    ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    appender.start();
+    headerLogger.addAppender(appender);
+
+    when(mockRequest.getHttpMethod()).thenReturn("GET");
+    when(mockRequest.getUri()).thenReturn(new URI("sb://lzexample.servicebus.windows.net/wds"));
+    when(mockRequest.getHeaders()).thenReturn(Map.of("Authorization", "Bearer opaque-token"));
+    var tokenChecker = mock(TokenChecker.class);
+    var requestEnvelope = RequestEnvelope.of(mockRequest);
+
+    var requestLogger = new RequestLogger(tokenChecker);
+    var record =
+        requestLogger.capture(
+            requestEnvelope,
+            404,
+            OffsetDateTime.parse("2023-05-23T10:23:22.256527-04:00"),
+            "HTTP_REQUEST",
+            12,
+            3);
+    requestLogger.write(record);
+
+    verify(tokenChecker).getCachedOauthInfo(Utils.getTokenDigest("opaque-token"));
+    verifyNoMoreInteractions(tokenChecker);
+    var msgs = appender.list.stream().filter(i -> i.getLevel().equals(Level.INFO)).toList();
+    assertThat(
+        msgs.get(0).getFormattedMessage(),
+        equalTo(
+            "HTTP_REQUEST -  \"-\" \"-\" \"-\" \"-\" [2023-05-23T10:23:22.256527-04:00] "
+                + "\"GET sb://lzexample.servicebus.windows.net/wds\" 404 "
+                + "\"-\" \"-\" \"-\" 12 3 \"-\""));
   }
 }
@@ -9,9 +9,13 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Optional;
@@ -31,11 +35,23 @@ import org.mockito.junit.jupiter.MockitoExtension;
 class SamResourceClientTest {
 
   private TokenChecker tokenChecker = mock(TokenChecker.class);
+  private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private CircuitBreaker circuitBreaker =
+      new CircuitBreaker("sam", 2, Duration.ofMinutes(1), meterRegistry);
   @Mock private ApiClient apiClient;
 
   @Spy
   private SamResourceClient samResourceClient =
-      new SamResourceClient("samUrl", "resourceId", "resourceType", tokenChecker, "myaction");
+      new SamResourceClient(
+          "samUrl",
+          "resourceId",
+          "resourceType",
+          tokenChecker,
+          "myaction",
+          Duration.ofSeconds(1),
+          circuitBreaker,
+          meterRegistry,
+          null);
 
   @BeforeEach
   void setUp() throws IOException, InterruptedException, ApiException {
@@ -93,4 +109,85 @@ class SamResourceClientTest {
     var res = samResourceClient.isUserEnabled("token");
     assertFalse(res);
   }
+
+  @Test
+  void checkPermission_samUnavailable_servesKnownGoodPermission()
+      throws IOException, InterruptedException, ApiException {
+    var expiresAt = Instant.now().plusSeconds(100);
+    when(tokenChecker.getOauthInfo(any()))
+        .thenReturn(new OauthInfo(Optional.of(expiresAt), "", Map.of()));
+    when(apiClient.escapeString(any())).thenReturn("string");
+    when(apiClient.execute(any(), any()))
+        .thenReturn(new ApiResponse(200, Map.of(), true))
+        .thenThrow(new ApiException(503, "Service Unavailable"));
+
+    assertThat(samResourceClient.checkPermission("accessToken"), equalTo(expiresAt));
+    assertThat(samResourceClient.checkPermission("accessToken"), equalTo(expiresAt));
+    assertThat(samResourceClient.getStaleDecisionCount(), equalTo(1.0));
+  }
+
+  @Test
+  void checkPermission_samUnavailable_noKnownGoodPermission()
+      throws IOException, InterruptedException, ApiException {
+    when(tokenChecker.getOauthInfo(any()))
+        .thenReturn(new OauthInfo(Optional.of(Instant.now().plusSeconds(100)), "", Map.of()));
+    when(apiClient.escapeString(any())).thenReturn("string");
+    doThrow(new ApiException(503, "Service Unavailable")).when(apiClient).execute(any(), any());
+
+    assertThat(samResourceClient.checkPermission("accessToken"), equalTo(Instant.EPOCH));
+    assertThat(samResourceClient.getStaleDecisionCount(), equalTo(0.0));
+  }
+
+  @Test
+  void checkPermission_permissionRevoked_knownGoodPermissionDropped()
+      throws IOException, InterruptedException, ApiException {
+    var expiresAt = Instant.now().plusSeconds(100);
+    when(tokenChecker.getOauthInfo(any()))
+        .thenReturn(new OauthInfo(Optional.of(expiresAt), "", Map.of()));
+    when(apiClient.escapeString(any())).thenReturn("string");
+    when(apiClient.execute(any(), any()))
+        .thenReturn(new ApiResponse(200, Map.of(), true))
+        .thenReturn(new ApiResponse(200, Map.of(), false))
+        .thenThrow(new ApiException(503, "Service Unavailable"));
+
+    assertThat(samResourceClient.checkPermission("accessToken"), equalTo(expiresAt));
+    assertThat(samResourceClient.checkPermission("accessToken"), equalTo(Instant.EPOCH));
+    assertThat(samResourceClient.checkPermission("accessToken"), equalTo(Instant.EPOCH));
+  }
+
+  @Test
+  void checkPermission_circuitBreakerOpen_samIsNotCalled()
+      throws IOException, InterruptedException, ApiException {
+    var expiresAt = Instant.now().plusSeconds(100);
+    when(tokenChecker.getOauthInfo(any()))
+        .thenReturn(new OauthInfo(Optional.of(expiresAt), "", Map.of()));
+    when(apiClient.escapeString(any())).thenReturn("string");
+    when(apiClient.execute(any(), any()))
+        .thenReturn(new ApiResponse(200, Map.of(), true))
+        .thenThrow(new ApiException(500, "Internal Server Error"));
+
+    samResourceClient.checkPermission("accessToken");
+    samResourceClient.checkPermission("accessToken");
+    samResourceClient.checkPermission("accessToken");
+    assertThat(circuitBreaker.getState(), equalTo(CircuitBreaker.State.OPEN));
+
+    assertThat(samResourceClient.checkPermission("accessToken"), equalTo(expiresAt));
+    verify(apiClient, times(3)).execute(any(), any());
+    assertThat(samResourceClient.getStaleDecisionCount(), equalTo(3.0));
+  }
+
+  @Test
+  void checkPermission_unauthorized_doesNotOpenCircuitBreaker()
+      throws IOException, InterruptedException, ApiException {
+    when(tokenChecker.getOauthInfo(any()))
+        .thenReturn(new OauthInfo(Optional.of(Instant.now().plusSeconds(100)), "", Map.of()));
+    when(apiClient.escapeString(any())).thenReturn("string");
+    doThrow(new ApiException(401, "Unauthorized")).when(apiClient).execute(any(), any());
+
+    samResourceClient.checkPermission("accessToken");
+    samResourceClient.checkPermission("accessToken");
+    samResourceClient.checkPermission("accessToken");
+
+    assertThat(circuitBreaker.getState(), equalTo(CircuitBreaker.State.CLOSED));
+  }
 }
@@ -0,0 +1,137 @@
+package org.broadinstitute.listener.relay.inspectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.microsoft.azure.relay.RelayedHttpListenerRequest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import org.broadinstitute.listener.relay.RequestEnvelope;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SessionTicketSignerTest {
+  private static final String RESOURCE_ID = "fake-resource";
+  private static final String SUBJECT = "123ABC";
+
+  @Mock private SamResourceClient samResourceClient;
+  @Mock private RelayedHttpListenerRequest listenerRequest;
+
+  private SessionTicketSigner signer;
+
+  @BeforeEach
+  void setUp() {
+    signer = new SessionTicketSigner(RESOURCE_ID, Duration.ofMinutes(5), Duration.ofHours(1));
+  }
+
+  @Test
+  void verify_issuedTicket() {
+    var ticket = signer.issue(SUBJECT, Instant.now().plusSeconds(600)).value();
+
+    assertThat(signer.verify(ticket), equalTo(Optional.of(SUBJECT)));
+  }
+
+  @Test
+  void verify_expiredTicket() {
+    var ticket = signer.issue(SUBJECT, Instant.now().minusSeconds(1)).value();
+
+    assertThat(signer.verify(ticket), equalTo(Optional.empty()));
+  }
+
+  @Test
+  void verify_tamperedSubject() {
+    var ticket = signer.issue(SUBJECT, Instant.now().plusSeconds(600)).value();
+    var parts = ticket.split("\\.");
+    var tampered = String.join(".", parts[0], parts[1], "b3RoZXI", parts[3]);
+
+    assertThat(signer.verify(tampered), equalTo(Optional.empty()));
+  }
+
+  @Test
+  void verify_tamperedExpiry() {
+    var ticket = signer.issue(SUBJECT, Instant.now().plusSeconds(600)).value();
+    var parts = ticket.split("\\.");
+    var expiry = Long.parseLong(parts[1]) + 3600;
+    var tampered = String.join(".", parts[0], String.valueOf(expiry), parts[2], parts[3]);
+
+    assertThat(signer.verify(tampered), equalTo(Optional.empty()));
+  }
+
+  @Test
+  void verify_malformedTicket() {
+    assertThat(signer.verify("not-a-ticket"), equalTo(Optional.empty()));
+    assertThat(signer.verify("a.b.c.d"), equalTo(Optional.empty()));
+    assertThat(signer.verify("0.99999999999.!!.!!"), equalTo(Optional.empty()));
+  }
+
+  @Test
+  void verify_ticketOfAnotherResource() {
+    var otherSigner =
+        new SessionTicketSigner("other-resource", Duration.ofMinutes(5), Duration.ofHours(1));
+    var ticket = otherSigner.issue(SUBJECT, Instant.now().plusSeconds(600)).value();
+
+    assertThat(signer.verify(ticket), equalTo(Optional.empty()));
+  }
+
+  @Test
+  void verify_ticketSignedWithPreviousKey() {
+    var ticket = signer.issue(SUBJECT, Instant.now().plusSeconds(600)).value();
+
+    signer.rotateKey();
+    assertThat(signer.verify(ticket), equalTo(Optional.of(SUBJECT)));
+
+    signer.rotateKey();
+    assertThat(signer.verify(ticket), equalTo(Optional.empty()));
+  }
+
+  @Test
+  void issue_ticketDoesNotOutliveTtl() {
+    var ticket = signer.issue(SUBJECT, Instant.now().plusSeconds(3600));
+    var expiresAt = Long.parseLong(ticket.value().split("\\.")[1]);
+
+    assertThat(expiresAt <= Instant.now().plusSeconds(300).getEpochSecond(), equalTo(true));
+    assertThat(ticket.expiresAt().getEpochSecond(), equalTo(expiresAt));
+  }
+
+  @Test
+  void constructor_ttlLongerThanRotationInterval() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new SessionTicketSigner(RESOURCE_ID, Duration.ofHours(2), Duration.ofHours(1)));
+  }
+
+  @Test
+  void samPermissionInspector_validTicketSkipsPermissionCheck() {
+    var ticket = signer.issue(SUBJECT, Instant.now().plusSeconds(600)).value();
+    when(listenerRequest.getHeaders())
+        .thenReturn(Map.of("Cookie", "LeoToken=token; LeoSessionTicket=" + ticket));
+    var inspector = new SamPermissionInspector(samResourceClient, Optional.of(signer));
+
+    assertThat(
+        inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest)), equalTo(true));
+    verify(samResourceClient, never()).checkPermission(anyString());
+  }
+
+  @Test
+  void samPermissionInspector_invalidTicketFallsBackToPermissionCheck() {
+    when(listenerRequest.getHeaders())
+        .thenReturn(Map.of("Cookie", "LeoToken=token; LeoSessionTicket=0.1.c3Vi.c2ln"));
+    when(samResourceClient.checkPermission("token")).thenReturn(Instant.now().plusSeconds(60));
+    var inspector = new SamPermissionInspector(samResourceClient, Optional.of(signer));
+
+    assertThat(
+        inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest)), equalTo(true));
+    verify(samResourceClient).checkPermission("token");
+  }
+}
@@ -4,11 +4,13 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.microsoft.azure.relay.RelayedHttpListenerRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
@@ -17,7 +19,10 @@ import java.net.http.HttpResponse;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import org.broadinstitute.listener.relay.RequestEnvelope;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -49,6 +54,7 @@ class SetDateAccessedInspectorTest {
   private SetDateAccessedInspector inspector;
   private UUID workspaceId;
   private Map<String, String> headers;
+  private SimpleMeterRegistry meterRegistry;
 
   @BeforeEach
   void setUp() throws IOException, URISyntaxException, InterruptedException {
@@ -58,7 +64,13 @@ class SetDateAccessedInspectorTest {
     options =
         new SetDateAccessedInspectorOptions(
             SERVICE_HOST, workspaceId, CALL_WINDOW_IN_SECONDS, RUNTIME_NAME, httpClient);
-    inspector = new SetDateAccessedInspector(options);
+    meterRegistry = new SimpleMeterRegistry();
+    inspector = new SetDateAccessedInspector(options, meterRegistry);
+  }
+
+  @AfterEach
+  void tearDown() {
+    inspector.close();
   }
 
   @Test
@@ -67,10 +79,11 @@ class SetDateAccessedInspectorTest {
     when(listenerRequest.getHeaders()).thenReturn(headers);
     when(httpClient.send(any(), any())).thenReturn(httpResponse);
 
-    inspector.inspectWebSocketUpgradeRequest(listenerRequest);
-    inspector.inspectWebSocketUpgradeRequest(listenerRequest);
+    inspector.inspectWebSocketUpgradeRequest(RequestEnvelope.of(listenerRequest));
+    inspector.inspectWebSocketUpgradeRequest(RequestEnvelope.of(listenerRequest));
 
-    verify(httpClient, times(1)).send(any(), any());
+    verify(httpClient, timeout(1000).times(1)).send(any(), any());
+    verify(httpClient, after(500).times(1)).send(any(), any());
   }
 
   @Test
@@ -79,10 +92,11 @@ class SetDateAccessedInspectorTest {
     when(listenerRequest.getHeaders()).thenReturn(headers);
     when(httpClient.send(any(), any())).thenReturn(httpResponse);
 
-    inspector.inspectRelayedHttpRequest(listenerRequest);
-    inspector.inspectRelayedHttpRequest(listenerRequest);
+    inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest));
+    inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest));
 
-    verify(httpClient, times(1)).send(any(), any());
+    verify(httpClient, timeout(1000).times(1)).send(any(), any());
+    verify(httpClient, after(500).times(1)).send(any(), any());
   }
 
   @Test
@@ -91,15 +105,15 @@ class SetDateAccessedInspectorTest {
     when(listenerRequest.getHeaders()).thenReturn(headers);
     when(httpClient.send(any(), any())).thenReturn(httpResponse);
 
-    inspector.inspectRelayedHttpRequest(listenerRequest);
-    inspector.inspectRelayedHttpRequest(listenerRequest);
-    inspector.inspectRelayedHttpRequest(listenerRequest);
+    inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest));
+    inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest));
+    inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest));
     Thread.sleep(CALL_WINDOW_IN_SECONDS * 1000);
-    inspector.inspectRelayedHttpRequest(listenerRequest);
-    inspector.inspectRelayedHttpRequest(listenerRequest);
-    inspector.inspectRelayedHttpRequest(listenerRequest);
+    inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest));
+    inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest));
+    inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest));
 
-    verify(httpClient, times(2)).send(any(), any());
+    verify(httpClient, timeout(1000).times(2)).send(any(), any());
   }
 
   @Test
@@ -108,13 +122,16 @@ class SetDateAccessedInspectorTest {
     when(listenerRequest.getHeaders()).thenReturn(headers);
     when(httpClient.send(any(), any())).thenReturn(httpResponse);
 
-    inspector.inspectRelayedHttpRequest(listenerRequest);
+    inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest));
 
-    verify(httpClient, times(1)).send(httpRequestArgumentCaptor.capture(), any());
+    verify(httpClient, timeout(1000).times(1)).send(httpRequestArgumentCaptor.capture(), any());
 
     assertThat(
         httpRequestArgumentCaptor.getValue().headers().map(),
         hasEntry(AUTHORIZATION_HEADER, List.of(AUTH_TOKEN)));
+    assertThat(
+        httpRequestArgumentCaptor.getValue().timeout(),
+        is(Optional.of(DateAccessedReporter.TIMEOUT)));
   }
 
   @Test
@@ -125,9 +142,9 @@ class SetDateAccessedInspectorTest {
 
     when(listenerRequest.getHeaders()).thenReturn(customHeaders);
 
-    inspector.inspectRelayedHttpRequest(listenerRequest);
+    inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest));
 
-    verify(httpClient, times(0)).send(httpRequestArgumentCaptor.capture(), any());
+    verify(httpClient, after(500).times(0)).send(httpRequestArgumentCaptor.capture(), any());
   }
 
   @Test
@@ -136,6 +153,37 @@ class SetDateAccessedInspectorTest {
     when(listenerRequest.getHeaders()).thenReturn(headers);
     when(httpClient.send(any(), any())).thenThrow(RuntimeException.class);
 
-    assertThat(inspector.inspectRelayedHttpRequest(listenerRequest), is(true));
+    assertThat(inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest)), is(true));
+  }
+
+  @Test
+  void inspectRelayedHttpRequest_doesNotWaitForTheService()
+      throws IOException, InterruptedException {
+    when(listenerRequest.getHeaders()).thenReturn(headers);
+    when(httpClient.send(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(2000);
+              return httpResponse;
+            });
+
+    long start = System.nanoTime();
+    assertThat(inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest)), is(true));
+
+    assertThat(System.nanoTime() - start < 1_000_000_000L, is(true));
+    verify(httpClient, timeout(1000).times(1)).send(any(), any());
+  }
+
+  @Test
+  void inspectRelayedHttpRequest_recordsActivityMetrics() throws IOException, InterruptedException {
+    when(listenerRequest.getHeaders()).thenReturn(headers);
+    when(httpClient.send(any(), any())).thenReturn(httpResponse);
+    when(httpResponse.statusCode()).thenReturn(200);
+
+    inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest));
+    inspector.inspectRelayedHttpRequest(RequestEnvelope.of(listenerRequest));
+
+    verify(httpClient, timeout(1000).times(1)).send(any(), any());
+    assertThat(meterRegistry.counter("listener.date_accessed.activity").count(), is(2.0));
   }
 }
@@ -5,9 +5,13 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.Optional;
@@ -74,4 +78,41 @@ class TokenCheckerTest {
     assertThat(res.error(), equalTo("JWT expired"));
     assertThat(res.expiresAt(), equalTo(Optional.empty()));
   }
+
+  @Test
+  void getOauthInfo_validTokenIsCached() throws IOException, InterruptedException {
+    var googleResponse = new GoogleOauthInfoResponse();
+    googleResponse.expires_in = 300;
+    googleResponse.user_id = "1234";
+    when(googleTokenInfoClient.getTokenInfo("token")).thenReturn(googleResponse);
+
+    var first = tokenChecker.getOauthInfo("token");
+    var second = tokenChecker.getOauthInfo("token");
+
+    assertThat(second, equalTo(first));
+    verify(googleTokenInfoClient, times(1)).getTokenInfo("token");
+  }
+
+  @Test
+  void getOauthInfo_invalidTokenIsNotCached() throws IOException, InterruptedException {
+    var googleResponse = new GoogleOauthInfoResponse();
+    googleResponse.error = "invalid_token";
+    when(googleTokenInfoClient.getTokenInfo("token")).thenReturn(googleResponse);
+
+    tokenChecker.getOauthInfo("token");
+    tokenChecker.getOauthInfo("token");
+
+    verify(googleTokenInfoClient, times(2)).getTokenInfo("token");
+  }
+
+  @Test
+  void getOauthInfo_b2cTokenIsCached() throws IOException, InterruptedException {
+    var token = TokenUtils.buildJWT(Instant.now().plusSeconds(120));
+
+    var first = tokenChecker.getOauthInfo(token);
+    var second = tokenChecker.getOauthInfo(token);
+
+    assertThat(second, equalTo(first));
+    verify(googleTokenInfoClient, never()).getTokenInfo(anyString());
+  }
 }
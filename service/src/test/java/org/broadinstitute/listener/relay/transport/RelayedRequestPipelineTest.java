@@ -1,12 +1,16 @@
 package org.broadinstitute.listener.relay.transport;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.microsoft.azure.relay.HybridConnectionChannel;
 import com.microsoft.azure.relay.RelayedHttpListenerContext;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import org.broadinstitute.listener.relay.RequestEnvelope;
 import org.broadinstitute.listener.relay.http.ListenerConnectionHandler;
 import org.broadinstitute.listener.relay.http.RelayedHttpRequestProcessor;
 import org.broadinstitute.listener.relay.http.RelayedHttpRequestProcessor.Result;
@@ -56,14 +60,15 @@ class RelayedRequestPipelineTest {
     when(listenerConnectionHandler.isPreflight(any())).thenReturn(false);
     when(listenerConnectionHandler.isSetCookie(any())).thenReturn(false);
     when(listenerConnectionHandler.isStatus(any())).thenReturn(false);
-    when(relayedHttpRequestProcessor.executeRequestOnTarget(requestContext))
+    when(relayedHttpRequestProcessor.executeRequestOnTarget(envelopeOf(requestContext)))
         .thenReturn(targetHttpResponse);
     when(relayedHttpRequestProcessor.writeTargetResponseOnCaller(targetHttpResponse))
         .thenReturn(Result.SUCCESS);
 
     relayedRequestPipeline.registerHttpExecutionPipeline(Schedulers.immediate());
 
-    verify(relayedHttpRequestProcessor, times(1)).executeRequestOnTarget(requestContext);
+    verify(relayedHttpRequestProcessor, times(1))
+        .executeRequestOnTarget(envelopeOf(requestContext));
     verify(relayedHttpRequestProcessor, times(1)).writeTargetResponseOnCaller(targetHttpResponse);
     verify(relayedHttpRequestProcessor, times(0)).writeNotAcceptedResponseOnCaller(any());
   }
@@ -80,7 +85,8 @@ class RelayedRequestPipelineTest {
 
     relayedRequestPipeline.registerHttpExecutionPipeline(Schedulers.immediate());
 
-    verify(relayedHttpRequestProcessor, times(0)).executeRequestOnTarget(any());
+    verify(relayedHttpRequestProcessor, times(0))
+        .executeRequestOnTarget(any(RequestEnvelope.class));
     verify(relayedHttpRequestProcessor, times(0)).writeTargetResponseOnCaller(any());
     verify(relayedHttpRequestProcessor, times(1)).writeNotAcceptedResponseOnCaller(requestContext);
   }
@@ -89,16 +95,26 @@ class RelayedRequestPipelineTest {
   void openListenerConnection_continuesAfterException() {
     when(webSocketConnectionsHandler.acceptConnections())
         .thenReturn(
-            Flux.just(hybridConnectionChannel, hybridConnectionChannel, hybridConnectionChannel));
-
-    when(webSocketConnectionsHandler.createLocalConnection(hybridConnectionChannel))
-        .thenReturn(connectionsPair)
+            Flux.just(
+                hybridConnectionChannel,
+                hybridConnectionChannel,
+                hybridConnectionChannel,
+                hybridConnectionChannel));
+
+    when(webSocketConnectionsHandler.getMaxConcurrentUpgrades()).thenReturn(4);
+    when(webSocketConnectionsHandler.createLocalConnectionAsync(hybridConnectionChannel))
+        .thenReturn(CompletableFuture.completedFuture(connectionsPair))
         .thenThrow(NullPointerException.class)
-        .thenReturn(connectionsPair);
+        .thenReturn(CompletableFuture.failedFuture(new HttpTimeoutException("timed out")))
+        .thenReturn(CompletableFuture.completedFuture(connectionsPair));
 
     when(listenerConnectionHandler.openConnection()).thenReturn(Mono.just("open"));
     relayedRequestPipeline.openListenerConnection();
 
     verify(webSocketConnectionsRelayerService, times(2)).startDataRelay(connectionsPair);
   }
+
+  private static RequestEnvelope envelopeOf(RelayedHttpListenerContext context) {
+    return argThat(e -> e.getContext() == context);
+  }
 }
@@ -0,0 +1,49 @@
+package org.broadinstitute.listener.relay.wss;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import org.junit.jupiter.api.Test;
+
+class ByteBufferPoolTest {
+
+  @Test
+  void acquire_releasedBufferIsReused() {
+    var pool = new ByteBufferPool(16, 2);
+    var buffer = pool.acquire(8);
+    buffer.put(new byte[] {1, 2, 3});
+
+    pool.release(buffer);
+    var reused = pool.acquire(4);
+
+    assertThat(reused, sameInstance(buffer));
+    assertThat(reused.position(), equalTo(0));
+    assertThat(reused.limit(), equalTo(4));
+  }
+
+  @Test
+  void acquire_largeDataGetsItsOwnBuffer() {
+    var pool = new ByteBufferPool(16, 2);
+    var buffer = pool.acquire(32);
+
+    assertThat(buffer.capacity(), equalTo(32));
+
+    pool.release(buffer);
+    assertThat(pool.getPooled(), equalTo(0));
+  }
+
+  @Test
+  void release_poolIsBounded() {
+    var pool = new ByteBufferPool(16, 2);
+    var first = pool.acquire(1);
+    var second = pool.acquire(1);
+    var third = pool.acquire(1);
+
+    pool.release(first);
+    pool.release(second);
+    pool.release(third);
+
+    assertThat(pool.getPooled(), equalTo(2));
+  }
+}
@@ -0,0 +1,36 @@
+package org.broadinstitute.listener.relay.wss;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import org.junit.jupiter.api.Test;
+
+class ConnectionActivityTest {
+
+  private final ConnectionActivity activity = new ConnectionActivity();
+
+  @Test
+  void onMessages_framesAggregatedPerDirection() {
+    activity.onCallerToTarget(10);
+    activity.onCallerToTarget(30);
+    activity.onTargetToCaller(5);
+
+    FrameStats callerToTarget = activity.getCallerToTargetFrames();
+    assertThat(callerToTarget.getFrames(), equalTo(2L));
+    assertThat(callerToTarget.getBytes(), equalTo(40L));
+    assertThat(callerToTarget.getMaxFrameSize(), equalTo(30L));
+    assertThat(activity.getTargetToCallerFrames().getFrames(), equalTo(1L));
+  }
+
+  @Test
+  void tryLogFrame_oneFramePerSecond() {
+    assertThat(activity.tryLogFrame(), equalTo(true));
+    assertThat(activity.tryLogFrame(), equalTo(false));
+  }
+
+  @Test
+  void onClosed_onlyFirstCall() {
+    assertThat(activity.onClosed(), equalTo(true));
+    assertThat(activity.onClosed(), equalTo(false));
+  }
+}
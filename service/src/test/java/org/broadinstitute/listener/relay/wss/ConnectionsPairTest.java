@@ -3,8 +3,12 @@ package org.broadinstitute.listener.relay.wss;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -12,6 +16,9 @@ import static org.mockito.Mockito.when;
 import com.microsoft.azure.relay.HybridConnectionChannel;
 import java.io.IOException;
 import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -57,20 +64,102 @@ class ConnectionsPairTest {
   @Test
   void sendTextToLocalWebSocket_dataIsProvided() {
     String msg = "MSG";
+    when(targetWebSocket.sendText(msg, true))
+        .thenReturn(CompletableFuture.completedFuture(targetWebSocket));
+
     connectionsPair.sendTextToLocalWebSocket(msg);
 
     verify(targetWebSocket, times(1)).sendText(eq(msg), eq(true));
   }
 
+  @Test
+  void sendBinaryToLocalWebSocket_waitsForPreviousSend() {
+    var textSent = new CompletableFuture<WebSocket>();
+    var data = ByteBuffer.wrap(new byte[] {1, 2, 3});
+    when(targetWebSocket.sendText("MSG", true)).thenReturn(textSent);
+    when(targetWebSocket.sendBinary(data, true))
+        .thenReturn(CompletableFuture.completedFuture(targetWebSocket));
+
+    connectionsPair.sendTextToLocalWebSocket("MSG");
+    var binarySent = connectionsPair.sendBinaryToLocalWebSocket(data, true);
+
+    verify(targetWebSocket, never()).sendBinary(any(), anyBoolean());
+
+    textSent.complete(targetWebSocket);
+
+    verify(targetWebSocket, times(1)).sendBinary(data, true);
+    assertThat(binarySent.isDone(), equalTo(true));
+  }
+
+  @Test
+  void sendBinaryToLocalWebSocket_fragmentsKeepTheirPlaceInTheMessage() {
+    var first = ByteBuffer.wrap(new byte[] {1, 2});
+    var second = ByteBuffer.wrap(new byte[] {3});
+    when(targetWebSocket.sendBinary(first, false))
+        .thenReturn(CompletableFuture.completedFuture(targetWebSocket));
+    when(targetWebSocket.sendBinary(second, true))
+        .thenReturn(CompletableFuture.completedFuture(targetWebSocket));
+
+    connectionsPair.sendBinaryToLocalWebSocket(first, false);
+    connectionsPair.sendBinaryToLocalWebSocket(second, true);
+
+    var inOrder = inOrder(targetWebSocket);
+    inOrder.verify(targetWebSocket).sendBinary(first, false);
+    inOrder.verify(targetWebSocket).sendBinary(second, true);
+  }
+
+  @Test
+  void readBinaryFromCallerAsync_bufferEndsTheMessage() {
+    var data = ByteBuffer.wrap(new byte[] {1, 2, 3});
+    when(callerConnection.readAsync()).thenReturn(CompletableFuture.completedFuture(data));
+
+    var fragment = connectionsPair.readBinaryFromCallerAsync().join();
+
+    assertThat(fragment, equalTo(new ConnectionsPair.BinaryFragment(data, true)));
+  }
+
   @Test
   void close_bothConnectionsAreOpen() throws IOException {
     when(callerConnection.isOpen()).thenReturn(true);
     when(targetWebSocket.isInputClosed()).thenReturn(false);
+    when(targetWebSocket.sendClose(eq(WebSocket.NORMAL_CLOSURE), any()))
+        .thenReturn(CompletableFuture.completedFuture(targetWebSocket));
 
     connectionsPair.close();
 
     verify(callerConnection, times(1)).close();
-    verify(targetWebSocket, times(1)).sendClose(eq(500), any());
+    verify(targetWebSocket, times(1)).sendClose(eq(WebSocket.NORMAL_CLOSURE), any());
+    verify(targetWebSocket, never()).abort();
+  }
+
+  @Test
+  void close_failedCloseAbortsTarget() {
+    when(callerConnection.isOpen()).thenReturn(false);
+    when(targetWebSocket.isInputClosed()).thenReturn(false);
+    when(targetWebSocket.sendClose(eq(WebSocket.NORMAL_CLOSURE), any()))
+        .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("output closed")));
+
+    connectionsPair.close();
+
+    verify(targetWebSocket).abort();
+  }
+
+  @Test
+  void close_releasesPairOnce() {
+    var released = new AtomicInteger();
+    connectionsPair =
+        new ConnectionsPair(
+            callerConnection,
+            targetWebSocket,
+            new ConnectionActivity(),
+            released::incrementAndGet);
+    when(callerConnection.isOpen()).thenReturn(false);
+    when(targetWebSocket.isInputClosed()).thenReturn(true);
+
+    connectionsPair.close();
+    connectionsPair.close();
+
+    assertThat(released.get(), equalTo(1));
   }
 
   @Test
@@ -81,17 +170,19 @@ class ConnectionsPairTest {
     connectionsPair.close();
 
     verify(callerConnection, times(1)).close();
-    verify(targetWebSocket, times(0)).sendClose(eq(500), any());
+    verify(targetWebSocket, times(0)).sendClose(anyInt(), any());
   }
 
   @Test
   void close_onlyWebSocketConnectionIsOpen() throws IOException {
     when(callerConnection.isOpen()).thenReturn(false);
     when(targetWebSocket.isInputClosed()).thenReturn(false);
+    when(targetWebSocket.sendClose(eq(WebSocket.NORMAL_CLOSURE), any()))
+        .thenReturn(CompletableFuture.completedFuture(targetWebSocket));
 
     connectionsPair.close();
 
     verify(callerConnection, times(0)).close();
-    verify(targetWebSocket, times(1)).sendClose(eq(500), any());
+    verify(targetWebSocket, times(1)).sendClose(eq(WebSocket.NORMAL_CLOSURE), any());
   }
 }
@@ -0,0 +1,104 @@
+package org.broadinstitute.listener.relay.wss;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.broadinstitute.listener.relay.http.RelayedHttpRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class PendingUpgradesTest {
+
+  private static final Duration TTL = Duration.ofSeconds(60);
+
+  @Mock private RelayedHttpRequest request;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AtomicLong nanos = new AtomicLong();
+  private final WebSocketLimits webSocketLimits = new WebSocketLimits(1, 1000, 1000, meterRegistry);
+  private final PendingUpgrades pendingUpgrades =
+      new PendingUpgrades(
+          TTL,
+          100_000,
+          webSocketLimits,
+          meterRegistry,
+          nanos::get,
+          Scheduler.disabledScheduler());
+
+  @Test
+  void take_requestIsRemoved() {
+    pendingUpgrades.add("ID_1", request);
+
+    assertThat(pendingUpgrades.take("ID_1"), sameInstance(request));
+    assertThat(pendingUpgrades.take("ID_1"), nullValue());
+    assertThat(pendingUpgrades.size(), equalTo(0L));
+  }
+
+  @Test
+  void take_expiredRequestIsGone() {
+    pendingUpgrades.add("ID_1", request);
+    nanos.addAndGet(TTL.plusSeconds(1).toNanos());
+
+    assertThat(pendingUpgrades.size(), equalTo(0L));
+    assertThat(expired(), equalTo(1.0));
+    assertThat(pendingUpgrades.take("ID_1"), nullValue());
+  }
+
+  @Test
+  void take_expiredRequestReleasesItsSlot() {
+    webSocketLimits.admit();
+    pendingUpgrades.add("ID_1", request);
+    nanos.addAndGet(TTL.plusSeconds(1).toNanos());
+    pendingUpgrades.size();
+
+    assertThat(webSocketLimits.admit(), equalTo(true));
+  }
+
+  @Test
+  void take_takenRequestKeepsItsSlot() {
+    webSocketLimits.admit();
+    pendingUpgrades.add("ID_1", request);
+    pendingUpgrades.take("ID_1");
+    nanos.addAndGet(TTL.plusSeconds(1).toNanos());
+    pendingUpgrades.size();
+
+    assertThat(webSocketLimits.admit(), equalTo(false));
+  }
+
+  @Test
+  void soak_upgradesNeverConnectedStayBounded() {
+    // one upgrade per millisecond for ten minutes, none of them connected
+    long upgrades = TimeUnit.MINUTES.toMillis(10);
+    long maxPending = TTL.toMillis() + 1;
+
+    for (long i = 0; i < upgrades; i++) {
+      pendingUpgrades.add("ID_" + i, request);
+      nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+      if (i % 1000 == 0) {
+        assertThat(pendingUpgrades.size(), lessThanOrEqualTo(maxPending));
+      }
+    }
+
+    long pending = pendingUpgrades.size();
+    assertThat(pending, lessThanOrEqualTo(maxPending));
+    assertThat(expired(), equalTo((double) (upgrades - pending)));
+    assertThat(
+        meterRegistry.get("listener.websocket.pending_upgrades").gauge().value(),
+        equalTo((double) pending));
+  }
+
+  private double expired() {
+    return meterRegistry.counter("listener.websocket.pending_upgrades.expired").count();
+  }
+}
@@ -0,0 +1,78 @@
+package org.broadinstitute.listener.relay.wss;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class TargetWebSocketClientsTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  void openConnection_clientWithFewestConnectionsIsUsed() {
+    try (var clients = newClients(2, 1)) {
+      var first = clients.openConnection();
+      var second = clients.openConnection();
+
+      assertThat(second.getHttpClient(), not(sameInstance(first.getHttpClient())));
+
+      first.release();
+      var third = clients.openConnection();
+
+      assertThat(third.getHttpClient(), sameInstance(first.getHttpClient()));
+    }
+  }
+
+  @Test
+  void release_connectionIsCountedOnce() {
+    try (var clients = newClients(1, 1)) {
+      var connection = clients.openConnection();
+      clients.openConnection();
+
+      connection.release();
+      connection.release();
+
+      assertThat(connectionGauge("0"), equalTo(1.0));
+    }
+  }
+
+  @Test
+  void recordUpgrade_taggedWithOutcome() {
+    try (var clients = newClients(1, 1)) {
+      clients.recordUpgrade(1000, true);
+      clients.recordUpgrade(1000, false);
+      clients.recordUpgrade(1000, false);
+
+      assertThat(
+          meterRegistry.timer("listener.websocket.upgrade", "outcome", "failure").count(),
+          equalTo(2L));
+    }
+  }
+
+  @Test
+  void threadGauge_countsSelectorThread() {
+    try (var clients = newClients(1, 2)) {
+      assertThat(
+          meterRegistry.get("listener.websocket.client.threads").tag("client", "0").gauge().value(),
+          equalTo(1.0));
+    }
+  }
+
+  private TargetWebSocketClients newClients(int clientCount, int threadsPerClient) {
+    return new TargetWebSocketClients(
+        clientCount, threadsPerClient, Duration.ofSeconds(1), 1, meterRegistry);
+  }
+
+  private double connectionGauge(String client) {
+    return meterRegistry
+        .get("listener.websocket.client.connections")
+        .tag("client", client)
+        .gauge()
+        .value();
+  }
+}
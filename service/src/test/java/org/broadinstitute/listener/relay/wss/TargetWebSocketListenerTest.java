@@ -0,0 +1,191 @@
+package org.broadinstitute.listener.relay.wss;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.microsoft.azure.relay.TrackingContext;
+import com.microsoft.azure.relay.WebSocketChannel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.OngoingStubbing;
+import org.mockito.verification.VerificationMode;
+
+@ExtendWith(MockitoExtension.class)
+class TargetWebSocketListenerTest {
+
+  @Mock private WebSocketChannel callerConnection;
+  @Mock private TrackingContext trackingContext;
+  @Mock private WebSocket targetWebSocket;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final ByteBufferPool bufferPool = new ByteBufferPool(16, 4);
+  private TargetWebSocketListener listener;
+  private MockedStatic<WebSocketTextIOUtils> channelIO;
+
+  @BeforeEach
+  void setUp() {
+    channelIO = mockStatic(WebSocketTextIOUtils.class);
+    when(callerConnection.getTrackingContext()).thenReturn(trackingContext);
+    when(trackingContext.getTrackingId()).thenReturn("ID_1");
+    listener =
+        new TargetWebSocketListener(
+            callerConnection,
+            new OutboundFlowControl(
+                2, bufferPool, WebSocketTextIOUtils.DEFAULT_WRITE_TIMEOUT, meterRegistry),
+            new WebSocketTraffic(meterRegistry));
+  }
+
+  @AfterEach
+  void tearDown() {
+    channelIO.close();
+  }
+
+  @Test
+  void onOpen_requestsQueueCapacity() {
+    listener.onOpen(targetWebSocket);
+
+    verify(targetWebSocket).request(2);
+  }
+
+  @Test
+  void onBinary_demandRequestedWhenWriteCompletes() {
+    var write = new CompletableFuture<Void>();
+    when(callerConnection.isOpen()).thenReturn(true);
+    whenBinaryWritten().thenReturn(write);
+
+    var stage = listener.onBinary(targetWebSocket, bytes("first"), true);
+
+    assertThat(stage, equalTo(null));
+    verify(targetWebSocket, never()).request(1);
+
+    write.complete(null);
+
+    verify(targetWebSocket).request(1);
+  }
+
+  @Test
+  void onBinary_messagesWrittenInOrderOneAtATime() {
+    var firstWrite = new CompletableFuture<Void>();
+    when(callerConnection.isOpen()).thenReturn(true);
+    whenBinaryWritten()
+        .thenReturn(firstWrite)
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    listener.onBinary(targetWebSocket, bytes("first"), true);
+    listener.onBinary(targetWebSocket, bytes("second"), true);
+
+    verifyBinaryWritten(times(1));
+
+    firstWrite.complete(null);
+
+    var written = ArgumentCaptor.forClass(ByteBuffer.class);
+    channelIO.verify(
+        () ->
+            WebSocketTextIOUtils.writeBinaryAsync(
+                eq(callerConnection), written.capture(), eq(true), any()),
+        times(2));
+    assertThat(written.getAllValues(), contains(bytes("first"), bytes("second")));
+    verify(targetWebSocket, times(2)).request(1);
+    assertThat(
+        meterRegistry.counter("listener.websocket.bytes", "direction", "target_to_caller").count(),
+        equalTo(11.0));
+    assertThat(bufferPool.getPooled(), equalTo(2));
+  }
+
+  @Test
+  void onBinary_fullQueueRecordsStall() {
+    var firstWrite = new CompletableFuture<Void>();
+    when(callerConnection.isOpen()).thenReturn(true);
+    whenBinaryWritten()
+        .thenReturn(firstWrite)
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    listener.onBinary(targetWebSocket, bytes("first"), true);
+    listener.onBinary(targetWebSocket, bytes("second"), true);
+    firstWrite.complete(null);
+
+    assertThat(meterRegistry.timer("listener.websocket.outbound.stall").count(), equalTo(1L));
+    assertThat(
+        meterRegistry.summary("listener.websocket.outbound.queue_depth").max(), equalTo(2.0));
+  }
+
+  @Test
+  void onBinary_failedWriteStillRequestsDemand() {
+    when(callerConnection.isOpen()).thenReturn(true);
+    whenBinaryWritten()
+        .thenReturn(CompletableFuture.failedFuture(new IOException("connection reset")));
+
+    listener.onBinary(targetWebSocket, bytes("first"), true);
+
+    verify(targetWebSocket).request(1);
+  }
+
+  @Test
+  void onBinary_closedCallerDropsData() {
+    when(callerConnection.isOpen()).thenReturn(false);
+
+    listener.onBinary(targetWebSocket, bytes("first"), true);
+
+    verifyBinaryWritten(never());
+    verify(targetWebSocket).request(1);
+  }
+
+  @Test
+  void onBinary_fragmentsKeepTheMessageBoundary() {
+    when(callerConnection.isOpen()).thenReturn(true);
+    whenBinaryWritten().thenReturn(CompletableFuture.completedFuture(null));
+
+    // the pooled buffer of a fragment is reused once written, so each write is verified first
+    listener.onBinary(targetWebSocket, bytes("first"), false);
+    channelIO.verify(
+        () ->
+            WebSocketTextIOUtils.writeBinaryAsync(
+                eq(callerConnection), eq(bytes("first")), eq(false), any()));
+
+    listener.onBinary(targetWebSocket, bytes("second"), true);
+    channelIO.verify(
+        () ->
+            WebSocketTextIOUtils.writeBinaryAsync(
+                eq(callerConnection), eq(bytes("second")), eq(true), any()));
+  }
+
+  private OngoingStubbing<CompletableFuture<Void>> whenBinaryWritten() {
+    return channelIO.when(
+        () ->
+            WebSocketTextIOUtils.writeBinaryAsync(
+                eq(callerConnection), any(ByteBuffer.class), anyBoolean(), any()));
+  }
+
+  private void verifyBinaryWritten(VerificationMode mode) {
+    channelIO.verify(
+        () ->
+            WebSocketTextIOUtils.writeBinaryAsync(
+                eq(callerConnection), any(ByteBuffer.class), anyBoolean(), any()),
+        mode);
+  }
+
+  private static ByteBuffer bytes(String data) {
+    return ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -3,18 +3,27 @@ package org.broadinstitute.listener.relay.wss;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.microsoft.azure.relay.HybridConnectionChannel;
 import com.microsoft.azure.relay.HybridConnectionListener;
 import com.microsoft.azure.relay.RelayedHttpListenerContext;
 import com.microsoft.azure.relay.RelayedHttpListenerRequest;
 import com.microsoft.azure.relay.TrackingContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.concurrent.CompletionException;
 import org.broadinstitute.listener.relay.InvalidRelayTargetException;
+import org.broadinstitute.listener.relay.RequestEnvelope;
 import org.broadinstitute.listener.relay.http.RelayedHttpRequest;
 import org.broadinstitute.listener.relay.inspectors.InspectorsProcessor;
 import org.broadinstitute.listener.relay.transport.TargetResolver;
@@ -30,6 +39,7 @@ class WebSocketConnectionsHandlerTest {
 
   private static final String TARGET_URL = "http://localhost:8080/g?a=a";
   private static final String TARGET_WS_URL = "ws://localhost:8080/";
+  private static final String UNREACHABLE_TARGET_WS_URL = "ws://localhost:1/";
 
   private static final String RELAY_URL = "https://relay.azure.com/connection/g?a=a";
 
@@ -41,20 +51,36 @@ class WebSocketConnectionsHandlerTest {
   @Mock private RelayedHttpListenerRequest listenerRequest;
   @Mock private TargetResolver targetHostResolver;
   @Mock private InspectorsProcessor inspectorsProcessor;
+  @Mock private HybridConnectionChannel callerConnection;
 
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final WebSocketLimits webSocketLimits = new WebSocketLimits(1, 1024, 1024, meterRegistry);
   private WebSocketConnectionsHandler webSocketConnectionsHandler;
 
   @BeforeEach
   void setUp() {
     webSocketConnectionsHandler =
-        new WebSocketConnectionsHandler(listener, targetHostResolver, inspectorsProcessor);
+        new WebSocketConnectionsHandler(
+            listener,
+            targetHostResolver,
+            inspectorsProcessor,
+            new OutboundFlowControl(
+                16,
+                new ByteBufferPool(1024, 4),
+                WebSocketTextIOUtils.DEFAULT_WRITE_TIMEOUT,
+                meterRegistry),
+            new WebSocketTraffic(meterRegistry),
+            new TargetWebSocketClients(1, 1, Duration.ofSeconds(1), 1, meterRegistry),
+            new PendingUpgrades(Duration.ofMinutes(1), 100, webSocketLimits, meterRegistry),
+            webSocketLimits);
   }
 
   @Test
   void acceptHttpUpgradeRequests_acceptedByInspectors()
       throws MalformedURLException, URISyntaxException, InvalidRelayTargetException {
     setUpRelayedHttpUpgradeRequestMock();
-    when(inspectorsProcessor.isRelayedWebSocketUpgradeRequestAccepted(listenerRequest))
+    when(inspectorsProcessor.isRelayedWebSocketUpgradeRequestAccepted(
+            argThat((RequestEnvelope e) -> e.getContext() == context)))
         .thenReturn(true);
 
     final RelayedHttpRequest[] relayedHttpRequests = new RelayedHttpRequest[1];
@@ -69,7 +95,8 @@ class WebSocketConnectionsHandlerTest {
 
   @Test
   void acceptHttpUpgradeRequests_rejectedByInspectors() {
-    when(inspectorsProcessor.isRelayedWebSocketUpgradeRequestAccepted(listenerRequest))
+    when(inspectorsProcessor.isRelayedWebSocketUpgradeRequestAccepted(
+            argThat((RequestEnvelope e) -> e.getContext() == context)))
         .thenReturn(false);
 
     final RelayedHttpRequest[] relayedHttpRequests = new RelayedHttpRequest[1];
@@ -80,13 +107,83 @@ class WebSocketConnectionsHandlerTest {
 
     assertThat(relayedHttpRequests[0], equalTo(null));
     assertThat(handlerReturn, equalTo(false));
+    // the rejected upgrade gave back its slot
+    assertThat(webSocketLimits.admit(), equalTo(true));
+  }
+
+  @Test
+  void acceptHttpUpgradeRequests_rejectedWhenTooManyConnections()
+      throws MalformedURLException, URISyntaxException, InvalidRelayTargetException {
+    setUpRelayedHttpUpgradeRequestMock();
+    when(inspectorsProcessor.isRelayedWebSocketUpgradeRequestAccepted(any())).thenReturn(true);
+    webSocketConnectionsHandler.acceptHttpUpgradeRequests().subscribe();
+
+    boolean firstReturn = listener.getAcceptHandler().apply(context);
+    boolean secondReturn = listener.getAcceptHandler().apply(context);
+
+    assertThat(firstReturn, equalTo(true));
+    assertThat(secondReturn, equalTo(false));
+    assertThat(meterRegistry.counter("listener.websocket.rejected").count(), equalTo(1.0));
+  }
+
+  @Test
+  void createLocalConnectionAsync_unknownRequestClosesCaller() throws IOException {
+    when(callerConnection.getTrackingContext()).thenReturn(trackingContext);
+    when(trackingContext.getTrackingId()).thenReturn("ID_2");
+
+    var connectionsPair = webSocketConnectionsHandler.createLocalConnectionAsync(callerConnection);
+
+    assertThat(connectionsPair.isCompletedExceptionally(), equalTo(true));
+    verify(callerConnection).close();
+  }
+
+  @Test
+  void createLocalConnectionAsync_failedUpgradeReleasesItsSlotOnce()
+      throws MalformedURLException, URISyntaxException, InvalidRelayTargetException {
+    setUpRelayedHttpUpgradeRequestMock(UNREACHABLE_TARGET_WS_URL);
+    when(inspectorsProcessor.isRelayedWebSocketUpgradeRequestAccepted(any())).thenReturn(true);
+    when(callerConnection.getTrackingContext()).thenReturn(trackingContext);
+    webSocketConnectionsHandler.acceptHttpUpgradeRequests().subscribe();
+    listener.getAcceptHandler().apply(context);
+
+    var connectionsPair = webSocketConnectionsHandler.createLocalConnectionAsync(callerConnection);
+
+    assertThrows(CompletionException.class, connectionsPair::join);
+    // the only slot is free again, and was released once
+    assertThat(webSocketLimits.admit(), equalTo(true));
+    assertThat(webSocketLimits.admit(), equalTo(false));
+  }
+
+  @Test
+  void createLocalConnectionAsync_failedUpgradeClosesCaller()
+      throws MalformedURLException, URISyntaxException, InvalidRelayTargetException, IOException {
+    setUpRelayedHttpUpgradeRequestMock(UNREACHABLE_TARGET_WS_URL);
+    when(inspectorsProcessor.isRelayedWebSocketUpgradeRequestAccepted(any())).thenReturn(true);
+    when(callerConnection.getTrackingContext()).thenReturn(trackingContext);
+    webSocketConnectionsHandler.acceptHttpUpgradeRequests().subscribe();
+    listener.getAcceptHandler().apply(context);
+
+    var connectionsPair = webSocketConnectionsHandler.createLocalConnectionAsync(callerConnection);
+
+    assertThrows(CompletionException.class, connectionsPair::join);
+    verify(callerConnection).close();
+    assertThat(webSocketLimits.getOpenPairs(), equalTo(0));
+    assertThat(
+        meterRegistry.timer("listener.websocket.upgrade", "outcome", "failure").count(),
+        equalTo(1L));
   }
 
   private void setUpRelayedHttpUpgradeRequestMock()
       throws MalformedURLException, URISyntaxException, InvalidRelayTargetException {
+    setUpRelayedHttpUpgradeRequestMock(TARGET_WS_URL);
+  }
+
+  private void setUpRelayedHttpUpgradeRequestMock(String targetWebSocketUri)
+      throws MalformedURLException, URISyntaxException, InvalidRelayTargetException {
 
     when(targetHostResolver.createTargetUrl(any())).thenReturn(new URL(TARGET_URL));
-    when(targetHostResolver.createTargetWebSocketUri(any())).thenReturn(new URI(TARGET_WS_URL));
+    when(targetHostResolver.createTargetWebSocketUri(any()))
+        .thenReturn(new URI(targetWebSocketUri));
 
     when(listenerRequest.getHttpMethod()).thenReturn("GET");
     when(listenerRequest.getHeaders()).thenReturn(new HashMap<>());
@@ -2,11 +2,20 @@ package org.broadinstitute.listener.relay.wss;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import org.junit.jupiter.api.AfterEach;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import org.broadinstitute.listener.relay.wss.ConnectionsPair.BinaryFragment;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -19,41 +28,207 @@ import org.mockito.junit.jupiter.MockitoExtension;
 class WebSocketConnectionsRelayerServiceTest {
 
   @Mock private ConnectionsPair connectionsPair;
+  @Mock private WebSocket webSocket;
+  @Mock private WebSocketKeepAlive webSocketKeepAlive;
   @Captor private ArgumentCaptor<String> wsMsg;
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
   private WebSocketConnectionsRelayerService relayerService;
   private static final String WS_MSG = "{hello world}";
 
   @BeforeEach
   void setUp() {
-    relayerService = new WebSocketConnectionsRelayerService();
+    relayerService =
+        new WebSocketConnectionsRelayerService(
+            new WebSocketTraffic(meterRegistry), webSocketKeepAlive);
+    lenient().when(connectionsPair.getActivity()).thenReturn(new ConnectionActivity());
   }
 
-  @AfterEach
-  void tearDown() {
-    relayerService.stopService();
+  @Test
+  void startDataRelay_pairIsKeptAlive() {
+    relayerService.startDataRelay(connectionsPair);
+
+    verify(webSocketKeepAlive).register(connectionsPair);
   }
 
   @Test
-  void readAndSendText_dataIsReadAndSent() {
-    when(connectionsPair.readTextFromCaller()).thenReturn(WS_MSG);
+  void relayToLocalEndpoint_textIsReadAndSentUntilConnectionCloses() {
+    when(connectionsPair.isConnectionsStateOpen()).thenReturn(true).thenReturn(false);
+    when(connectionsPair.readTextFromCallerAsync())
+        .thenReturn(CompletableFuture.completedFuture(WS_MSG));
+    when(connectionsPair.readBinaryFromCallerAsync()).thenReturn(new CompletableFuture<>());
+    when(connectionsPair.sendTextToLocalWebSocket(WS_MSG))
+        .thenReturn(CompletableFuture.completedFuture(webSocket));
 
-    relayerService.readAndSendText(connectionsPair);
-    verify(connectionsPair, times(1)).readTextFromCaller();
-    verify(connectionsPair, times(1)).sendTextToLocalWebSocket(wsMsg.capture());
+    relayerService.relayToLocalEndpoint(connectionsPair);
 
+    verify(connectionsPair, times(1)).readTextFromCallerAsync();
+    verify(connectionsPair, times(1)).sendTextToLocalWebSocket(wsMsg.capture());
     assertThat(wsMsg.getValue(), equalTo(WS_MSG));
+    assertThat(callerToTargetBytes(), equalTo((double) WS_MSG.length()));
+    verify(connectionsPair).close();
   }
 
   @Test
-  void relayDataToLocalEndpoint_dataIsReadAndSentUntilConnectionCloses() {
+  void relayToLocalEndpoint_binaryIsReadAndSent() {
+    var data = ByteBuffer.wrap(new byte[] {1, 2, 3});
     when(connectionsPair.isConnectionsStateOpen()).thenReturn(true).thenReturn(false);
-    when(connectionsPair.readTextFromCaller()).thenReturn(WS_MSG);
+    when(connectionsPair.readTextFromCallerAsync()).thenReturn(new CompletableFuture<>());
+    when(connectionsPair.readBinaryFromCallerAsync())
+        .thenReturn(CompletableFuture.completedFuture(new BinaryFragment(data, true)));
+    when(connectionsPair.sendBinaryToLocalWebSocket(data, true))
+        .thenReturn(CompletableFuture.completedFuture(webSocket));
 
-    relayerService.relayDataToLocalEndpoint(connectionsPair);
+    relayerService.relayToLocalEndpoint(connectionsPair);
 
-    verify(connectionsPair, times(1)).readTextFromCaller();
-    verify(connectionsPair, times(1)).sendTextToLocalWebSocket(wsMsg.capture());
+    verify(connectionsPair, times(1)).sendBinaryToLocalWebSocket(data, true);
+    assertThat(callerToTargetBytes(), equalTo(3.0));
+  }
 
-    assertThat(wsMsg.getValue(), equalTo(WS_MSG));
+  @Test
+  void relayToLocalEndpoint_fragmentsKeepTheirPlaceInTheMessage() {
+    var first = ByteBuffer.wrap(new byte[] {1, 2});
+    var second = ByteBuffer.wrap(new byte[] {3});
+    when(connectionsPair.isConnectionsStateOpen()).thenReturn(true, true, false);
+    when(connectionsPair.readTextFromCallerAsync()).thenReturn(new CompletableFuture<>());
+    when(connectionsPair.readBinaryFromCallerAsync())
+        .thenReturn(CompletableFuture.completedFuture(new BinaryFragment(first, false)))
+        .thenReturn(CompletableFuture.completedFuture(new BinaryFragment(second, true)));
+    when(connectionsPair.sendBinaryToLocalWebSocket(first, false))
+        .thenReturn(CompletableFuture.completedFuture(webSocket));
+    when(connectionsPair.sendBinaryToLocalWebSocket(second, true))
+        .thenReturn(CompletableFuture.completedFuture(webSocket));
+
+    relayerService.relayToLocalEndpoint(connectionsPair);
+
+    var inOrder = inOrder(connectionsPair);
+    inOrder.verify(connectionsPair).sendBinaryToLocalWebSocket(first, false);
+    inOrder.verify(connectionsPair).sendBinaryToLocalWebSocket(second, true);
+    assertThat(callerToTargetBytes(), equalTo(3.0));
+  }
+
+  @Test
+  void relayToLocalEndpoint_messagesAreSentInTheOrderTheyWereRead() {
+    var pendingText = new CompletableFuture<String>();
+    var pendingBinary = new CompletableFuture<BinaryFragment>();
+    var data = ByteBuffer.wrap(new byte[] {1, 2, 3});
+    when(connectionsPair.isConnectionsStateOpen()).thenReturn(true, true, false);
+    when(connectionsPair.readTextFromCallerAsync()).thenReturn(pendingText);
+    when(connectionsPair.readBinaryFromCallerAsync())
+        .thenReturn(pendingBinary)
+        .thenReturn(new CompletableFuture<>());
+    when(connectionsPair.sendBinaryToLocalWebSocket(data, true))
+        .thenReturn(CompletableFuture.completedFuture(webSocket));
+    when(connectionsPair.sendTextToLocalWebSocket(WS_MSG))
+        .thenReturn(CompletableFuture.completedFuture(webSocket));
+
+    relayerService.relayToLocalEndpoint(connectionsPair);
+    pendingBinary.complete(new BinaryFragment(data, true));
+    pendingText.complete(WS_MSG);
+
+    var inOrder = inOrder(connectionsPair);
+    inOrder.verify(connectionsPair).sendBinaryToLocalWebSocket(data, true);
+    inOrder.verify(connectionsPair).sendTextToLocalWebSocket(WS_MSG);
+    verify(connectionsPair).close();
+  }
+
+  @Test
+  void relayToLocalEndpoint_textWaitsForTheEndOfTheBinaryMessage() {
+    var pendingText = new CompletableFuture<String>();
+    var pendingSecond = new CompletableFuture<BinaryFragment>();
+    var first = ByteBuffer.wrap(new byte[] {1, 2});
+    var second = ByteBuffer.wrap(new byte[] {3});
+    when(connectionsPair.isConnectionsStateOpen()).thenReturn(true, true, true, false);
+    when(connectionsPair.readTextFromCallerAsync()).thenReturn(pendingText);
+    when(connectionsPair.readBinaryFromCallerAsync())
+        .thenReturn(CompletableFuture.completedFuture(new BinaryFragment(first, false)))
+        .thenReturn(pendingSecond)
+        .thenReturn(new CompletableFuture<>());
+    when(connectionsPair.sendBinaryToLocalWebSocket(first, false))
+        .thenReturn(CompletableFuture.completedFuture(webSocket));
+    when(connectionsPair.sendBinaryToLocalWebSocket(second, true))
+        .thenReturn(CompletableFuture.completedFuture(webSocket));
+    when(connectionsPair.sendTextToLocalWebSocket(WS_MSG))
+        .thenReturn(CompletableFuture.completedFuture(webSocket));
+
+    relayerService.relayToLocalEndpoint(connectionsPair);
+    pendingText.complete(WS_MSG);
+
+    verify(connectionsPair, never()).sendTextToLocalWebSocket(WS_MSG);
+
+    pendingSecond.complete(new BinaryFragment(second, true));
+
+    var inOrder = inOrder(connectionsPair);
+    inOrder.verify(connectionsPair).sendBinaryToLocalWebSocket(first, false);
+    inOrder.verify(connectionsPair).sendBinaryToLocalWebSocket(second, true);
+    inOrder.verify(connectionsPair).sendTextToLocalWebSocket(WS_MSG);
+    verify(connectionsPair).close();
+  }
+
+  @Test
+  void relayToLocalEndpoint_resumesWhenPendingReadCompletes() {
+    var pendingRead = new CompletableFuture<String>();
+    when(connectionsPair.isConnectionsStateOpen()).thenReturn(true, true, false);
+    when(connectionsPair.readTextFromCallerAsync())
+        .thenReturn(pendingRead)
+        .thenReturn(CompletableFuture.completedFuture(WS_MSG));
+    when(connectionsPair.readBinaryFromCallerAsync()).thenReturn(new CompletableFuture<>());
+    when(connectionsPair.sendTextToLocalWebSocket(WS_MSG))
+        .thenReturn(CompletableFuture.completedFuture(webSocket));
+
+    relayerService.relayToLocalEndpoint(connectionsPair);
+
+    verify(connectionsPair, never()).sendTextToLocalWebSocket(WS_MSG);
+    verify(connectionsPair, never()).close();
+
+    pendingRead.complete(WS_MSG);
+
+    verify(connectionsPair, times(2)).sendTextToLocalWebSocket(WS_MSG);
+    verify(connectionsPair).close();
+  }
+
+  @Test
+  void relayToLocalEndpoint_nullTextClosesPairWithoutReadingAgain() {
+    when(connectionsPair.isConnectionsStateOpen()).thenReturn(true);
+    when(connectionsPair.readTextFromCallerAsync())
+        .thenReturn(CompletableFuture.completedFuture(null));
+    when(connectionsPair.readBinaryFromCallerAsync()).thenReturn(new CompletableFuture<>());
+
+    relayerService.relayToLocalEndpoint(connectionsPair);
+
+    verify(connectionsPair, times(1)).readTextFromCallerAsync();
+    verify(connectionsPair, never()).sendTextToLocalWebSocket(any());
+    verify(connectionsPair).close();
+  }
+
+  @Test
+  void relayToLocalEndpoint_nullBinaryClosesPair() {
+    when(connectionsPair.isConnectionsStateOpen()).thenReturn(true);
+    when(connectionsPair.readTextFromCallerAsync()).thenReturn(new CompletableFuture<>());
+    when(connectionsPair.readBinaryFromCallerAsync())
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    relayerService.relayToLocalEndpoint(connectionsPair);
+
+    verify(connectionsPair, times(1)).readBinaryFromCallerAsync();
+    verify(connectionsPair).close();
+  }
+
+  @Test
+  void relayToLocalEndpoint_readFailureClosesPair() {
+    when(connectionsPair.isConnectionsStateOpen()).thenReturn(true);
+    when(connectionsPair.readTextFromCallerAsync())
+        .thenReturn(CompletableFuture.failedFuture(new IOException("connection reset")));
+    when(connectionsPair.readBinaryFromCallerAsync()).thenReturn(new CompletableFuture<>());
+
+    relayerService.relayToLocalEndpoint(connectionsPair);
+
+    verify(connectionsPair, times(1)).readTextFromCallerAsync();
+    verify(connectionsPair).close();
+  }
+
+  private double callerToTargetBytes() {
+    return meterRegistry
+        .counter("listener.websocket.bytes", "direction", "caller_to_target")
+        .count();
   }
 }
@@ -0,0 +1,128 @@
+package org.broadinstitute.listener.relay.wss;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class WebSocketKeepAliveTest {
+
+  private static final Duration LONG = Duration.ofHours(1);
+
+  @Mock private ConnectionsPair connectionsPair;
+  @Mock private WebSocket targetWebSocket;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final ConnectionActivity activity = new ConnectionActivity();
+
+  @Test
+  void checkPairs_targetIsPingedOnceUntilPong() {
+    setUpOpenPair();
+    when(connectionsPair.getLocalWebSocketConnection()).thenReturn(targetWebSocket);
+    when(targetWebSocket.sendPing(any()))
+        .thenReturn(CompletableFuture.completedFuture(targetWebSocket));
+
+    try (var keepAlive = new WebSocketKeepAlive(LONG, LONG, LONG, meterRegistry)) {
+      keepAlive.register(connectionsPair);
+
+      keepAlive.checkPairs();
+      keepAlive.checkPairs();
+      verify(targetWebSocket, times(1)).sendPing(any());
+
+      activity.onPong();
+      keepAlive.checkPairs();
+
+      verify(targetWebSocket, times(2)).sendPing(any());
+      assertThat(meterRegistry.timer("listener.websocket.rtt").count(), equalTo(1L));
+    }
+  }
+
+  @Test
+  void checkPairs_idlePairIsClosed() {
+    setUpOpenPair();
+
+    try (var keepAlive = new WebSocketKeepAlive(Duration.ZERO, LONG, LONG, meterRegistry)) {
+      keepAlive.register(connectionsPair);
+
+      keepAlive.checkPairs();
+
+      verify(connectionsPair).close();
+      assertThat(keepAlive.getRegistered(), equalTo(0));
+      assertThat(closed("idle"), equalTo(1.0));
+    }
+  }
+
+  @Test
+  void checkPairs_unresponsivePairIsClosed() {
+    setUpOpenPair();
+    when(connectionsPair.getLocalWebSocketConnection()).thenReturn(targetWebSocket);
+    when(targetWebSocket.sendPing(any()))
+        .thenReturn(CompletableFuture.completedFuture(targetWebSocket));
+
+    try (var keepAlive = new WebSocketKeepAlive(LONG, Duration.ZERO, LONG, meterRegistry)) {
+      keepAlive.register(connectionsPair);
+
+      keepAlive.checkPairs();
+      verify(connectionsPair, never()).close();
+
+      keepAlive.checkPairs();
+
+      verify(connectionsPair).close();
+      assertThat(keepAlive.getRegistered(), equalTo(0));
+      assertThat(closed("unresponsive"), equalTo(1.0));
+    }
+  }
+
+  @Test
+  void checkPairs_closedPairIsClosedAndForgotten() {
+    when(connectionsPair.getActivity()).thenReturn(activity);
+    when(connectionsPair.isConnectionsStateOpen()).thenReturn(false);
+
+    try (var keepAlive = new WebSocketKeepAlive(LONG, LONG, LONG, meterRegistry)) {
+      keepAlive.register(connectionsPair);
+
+      keepAlive.checkPairs();
+
+      assertThat(keepAlive.getRegistered(), equalTo(0));
+      verify(connectionsPair).close();
+    }
+  }
+
+  @Test
+  void checkPairs_summaryLoggedEveryInterval() {
+    setUpOpenPair();
+    when(connectionsPair.getLocalWebSocketConnection()).thenReturn(targetWebSocket);
+    when(targetWebSocket.sendPing(any()))
+        .thenReturn(CompletableFuture.completedFuture(targetWebSocket));
+
+    try (var keepAlive = new WebSocketKeepAlive(LONG, LONG, Duration.ZERO, meterRegistry)) {
+      keepAlive.register(connectionsPair);
+
+      keepAlive.checkPairs();
+
+      verify(connectionsPair).logSummary(false);
+    }
+  }
+
+  private void setUpOpenPair() {
+    when(connectionsPair.getActivity()).thenReturn(activity);
+    when(connectionsPair.isConnectionsStateOpen()).thenReturn(true);
+  }
+
+  private double closed(String reason) {
+    return meterRegistry.counter("listener.websocket.keepalive.closed", "reason", reason).count();
+  }
+}
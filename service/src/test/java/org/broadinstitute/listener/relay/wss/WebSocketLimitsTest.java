@@ -0,0 +1,144 @@
+package org.broadinstitute.listener.relay.wss;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.mockito.Mockito.when;
+
+import com.microsoft.azure.relay.HybridConnectionChannel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.http.WebSocket;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class WebSocketLimitsTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Mock private HybridConnectionChannel callerConnection;
+  @Mock private WebSocket targetWebSocket;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  void admit_rejectsAtMaxPairs() {
+    var limits = new WebSocketLimits(2, 1000, 1000, meterRegistry);
+    limits.admit();
+    limits.onPairOpening();
+
+    assertThat(limits.admit(), equalTo(true));
+    assertThat(limits.admit(), equalTo(false));
+    assertThat(meterRegistry.counter("listener.websocket.rejected").count(), equalTo(1.0));
+  }
+
+  @Test
+  void admit_releasedSlotIsReused() {
+    var limits = new WebSocketLimits(1, 1000, 1000, meterRegistry);
+
+    assertThat(limits.admit(), equalTo(true));
+    limits.release();
+
+    assertThat(limits.admit(), equalTo(true));
+    assertThat(limits.admit(), equalTo(false));
+  }
+
+  @Test
+  void admit_concurrentUpgradesNeverExceedMaxPairs() throws InterruptedException {
+    var limits = new WebSocketLimits(10, 1000, 1000, meterRegistry);
+    var admitted = new AtomicInteger();
+    var executor = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < 1000; i++) {
+      executor.execute(
+          () -> {
+            if (limits.admit()) {
+              admitted.incrementAndGet();
+            }
+          });
+    }
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+
+    assertThat(admitted.get(), equalTo(10));
+    assertThat(meterRegistry.counter("listener.websocket.rejected").count(), equalTo(990.0));
+  }
+
+  @Test
+  void admit_closedPairGivesBackItsSlot() {
+    var limits = new WebSocketLimits(1, 1000, 1000, meterRegistry);
+    when(targetWebSocket.isInputClosed()).thenReturn(true);
+    limits.admit();
+    limits.onPairOpening();
+    var connectionsPair =
+        new ConnectionsPair(
+            callerConnection, targetWebSocket, limits.newActivity(), limits::onPairClosed);
+
+    assertThat(limits.admit(), equalTo(false));
+
+    connectionsPair.close();
+
+    assertThat(limits.admit(), equalTo(true));
+    assertThat(meterRegistry.get("listener.websocket.pairs").gauge().value(), equalTo(0.0));
+  }
+
+  @Test
+  void tokenBucket_burstThenWaitForRefill() {
+    var bucket = new TokenBucket(1000);
+    long now = System.nanoTime();
+
+    assertThat(bucket.reserve(1000, now), equalTo(0L));
+    assertThat(bucket.reserve(500, now), equalTo(SECOND / 2));
+    // the debt is paid back after half a second, and the next half second refills 500 bytes
+    assertThat(bucket.reserve(500, now + SECOND), equalTo(0L));
+  }
+
+  @Test
+  void tokenBucket_tryTakeDoesNotGoIntoDebt() {
+    var bucket = new TokenBucket(1000);
+    long now = System.nanoTime();
+
+    assertThat(bucket.tryTake(800, now), equalTo(true));
+    assertThat(bucket.tryTake(800, now), equalTo(false));
+    assertThat(bucket.tryTake(500, now + SECOND / 2), equalTo(true));
+  }
+
+  @Test
+  void reserve_pairOverItsBandwidthIsThrottled() {
+    var limits = new WebSocketLimits(2, 1000, 10_000, meterRegistry);
+    var pair = new WebSocketLimits.PairBuckets(new TokenBucket(1000), new TokenBucket(10_000));
+    long now = System.nanoTime();
+
+    assertThat(limits.reserveCallerToTarget(pair, 1000, now), equalTo(0L));
+    assertThat(limits.reserveCallerToTarget(pair, 1000, now), equalTo(SECOND));
+    assertThat(throttled("caller_to_target"), equalTo(1.0));
+  }
+
+  @Test
+  void reserve_heavyPairWaitsAndLightPairDoesNot() {
+    var limits = new WebSocketLimits(2, 10_000, 1000, meterRegistry);
+    limits.onPairOpening();
+    limits.onPairOpening();
+    // each pair is entitled to half of the shared bandwidth
+    var heavy = new WebSocketLimits.PairBuckets(new TokenBucket(10_000), new TokenBucket(500));
+    var light = new WebSocketLimits.PairBuckets(new TokenBucket(10_000), new TokenBucket(500));
+    long now = System.nanoTime();
+
+    // the heavy pair drains the shared bucket, then exceeds its share of it
+    assertThat(limits.reserveTargetToCaller(heavy, 1000, now), equalTo(0L));
+    assertThat(limits.reserveTargetToCaller(heavy, 1000, now), greaterThan(0L));
+    // the light pair is within its share, so the saturated link does not delay it
+    assertThat(limits.reserveTargetToCaller(light, 100, now), equalTo(0L));
+    // the directions have separate buckets
+    assertThat(limits.reserveCallerToTarget(heavy, 100, now), equalTo(0L));
+    assertThat(throttled("target_to_caller"), equalTo(1.0));
+  }
+
+  private double throttled(String direction) {
+    return meterRegistry.counter("listener.websocket.throttled", "direction", direction).count();
+  }
+}
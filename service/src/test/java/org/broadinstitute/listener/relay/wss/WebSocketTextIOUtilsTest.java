@@ -0,0 +1,48 @@
+package org.broadinstitute.listener.relay.wss;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.lang.invoke.MethodType;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+class WebSocketTextIOUtilsTest {
+
+  @Test
+  void findMethod_privateMethodIsAdaptedToCallSite() throws Throwable {
+    var handle =
+        WebSocketTextIOUtils.findMethod(
+            TextChannel.class,
+            "readTextAsync",
+            MethodType.methodType(CompletableFuture.class, Object.class));
+
+    var text = (CompletableFuture<?>) handle.invokeExact((Object) new TextChannel("hello"));
+
+    assertThat(text.join(), equalTo("hello"));
+  }
+
+  @Test
+  void findMethod_missingMethodFails() {
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            WebSocketTextIOUtils.findMethod(
+                TextChannel.class,
+                "writeAsync",
+                MethodType.methodType(CompletableFuture.class, Object.class)));
+  }
+
+  private static class TextChannel {
+    private final String text;
+
+    TextChannel(String text) {
+      this.text = text;
+    }
+
+    private CompletableFuture<String> readTextAsync() {
+      return CompletableFuture.completedFuture(text);
+    }
+  }
+}